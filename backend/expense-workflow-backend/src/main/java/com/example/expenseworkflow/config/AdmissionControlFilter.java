@@ -0,0 +1,166 @@
+/**
+ * /api/** の入口で流量と同時実行数を制限し、過負荷時は即座に429/503を返すフィルタクラス。
+ * <ul>
+ *   <li>ユーザー（未ログインはIP）ごとの {@link TokenBucket} で毎秒の許可数を超えたリクエストを 429 + Retry-After にする</li>
+ *   <li>処理中リクエスト数が「コネクションプール上限×倍率」を超える、または
+ *       Hikariで接続待ちのスレッドがプール上限以上いるときは 503 + Retry-After にする</li>
+ * </ul>
+ * 1人の連打やフロントの自動リトライでHikariの接続を使い切り、他ユーザーが60秒の
+ * connection-timeout を待たされる状況を防ぐ。{@code app.admission.enabled=false} で無効化できる。
+ * 拒否の応答はControllerに届く前に書くため、{@link CorsConfig} のルールでCORSヘッダを付けてから返す
+ * （付けないとブラウザは429/503を読めず、フロントが Retry-After を見て待てない）。
+ * 順序は {@link TraceFilter}・{@link StaleReadFilter} の後（拒否もトレースし、DB起動待ちのスナップショット応答は止めない）。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.CorsProcessor;
+import org.springframework.web.cors.DefaultCorsProcessor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 25)
+@ConditionalOnProperty(name = "app.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+	private static final String SESSION_KEY_USER_ID = "SESSION_KEY_USER_ID"; // AuthController と同じキーでユーザーIDを読む
+
+	private final double permitsPerSecond;
+	private final int burst;
+	private final double concurrencyMultiplier;
+	private final ObjectProvider<DataSource> dataSourceProvider;
+	private final CorsConfigurationSource corsConfigurationSource; // 拒否の応答に付けるCORSのルール
+	private final CorsProcessor corsProcessor = new DefaultCorsProcessor();
+
+	private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>(); // ユーザー（またはIP）ごとのバケット
+	private final AtomicInteger inFlight = new AtomicInteger(); // 現在処理中の /api リクエスト数
+	private volatile HikariDataSource hikari; // プール状況を読むためのHikari（解決できなければnull）
+	private volatile boolean hikariResolved;
+
+	public AdmissionControlFilter(
+			@Value("${app.admission.permits-per-second:10}") double permitsPerSecond,
+			@Value("${app.admission.burst:30}") int burst,
+			@Value("${app.admission.concurrency-multiplier:4}") double concurrencyMultiplier,
+			ObjectProvider<DataSource> dataSourceProvider,
+			@Qualifier(CorsConfig.API_CORS_CONFIGURATION_SOURCE) CorsConfigurationSource corsConfigurationSource) {
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+		this.concurrencyMultiplier = concurrencyMultiplier;
+		this.dataSourceProvider = dataSourceProvider;
+		this.corsConfigurationSource = corsConfigurationSource;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		return !path.startsWith("/api/")
+				|| "/api/health".equals(path) // 死活監視は常に通す
+				|| "OPTIONS".equals(request.getMethod()); // CORSプリフライトはDBを使わないので数えない
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		// 1. ユーザー単位の流量制限
+		long now = System.nanoTime();
+		TokenBucket bucket = buckets.computeIfAbsent(clientKey(request), k -> new TokenBucket(permitsPerSecond, burst, now));
+		long waitNanos = bucket.tryAcquire(now);
+		if (waitNanos > 0) {
+			reject(request, response, HttpStatus.TOO_MANY_REQUESTS, waitNanos);
+			return;
+		}
+
+		// 2. 全体の同時実行数とコネクションプールの混み具合による負荷制限
+		int running = inFlight.incrementAndGet();
+		try {
+			if (isOverloaded(running)) {
+				reject(request, response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+				return;
+			}
+			filterChain.doFilter(request, response);
+		} finally {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	// プール上限から同時実行の上限を求め、さらにHikariで接続待ちの行列ができていれば過負荷とみなす
+	private boolean isOverloaded(int running) {
+		HikariDataSource ds = hikari();
+		if (ds == null) {
+			return false; // プール情報が取れない構成では流量制限だけを行う
+		}
+		int poolSize = ds.getMaximumPoolSize();
+		if (running > poolSize * concurrencyMultiplier) {
+			return true;
+		}
+		HikariPoolMXBean pool = ds.getHikariPoolMXBean(); // プール未起動（DB未接続）の間はnull
+		return pool != null && pool.getThreadsAwaitingConnection() >= poolSize;
+	}
+
+	private HikariDataSource hikari() {
+		if (!hikariResolved) {
+			DataSource ds = dataSourceProvider.getIfAvailable();
+			try {
+				hikari = ds != null && ds.isWrapperFor(HikariDataSource.class) ? ds.unwrap(HikariDataSource.class) : null;
+			} catch (java.sql.SQLException e) {
+				hikari = null;
+			}
+			hikariResolved = true;
+		}
+		return hikari;
+	}
+
+	// ログイン済みならユーザーID、未ログインならIPアドレスをバケットのキーにする（セッションは新規作成しない）
+	private static String clientKey(HttpServletRequest request) {
+		HttpSession session = request.getSession(false);
+		Object userId = session != null ? session.getAttribute(SESSION_KEY_USER_ID) : null;
+		return userId != null ? "user:" + userId : "ip:" + request.getRemoteAddr();
+	}
+
+	private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status, long retryAfterNanos) throws IOException {
+		CorsConfiguration cors = corsConfigurationSource.getCorsConfiguration(request);
+		if (cors != null && !corsProcessor.processRequest(cors, request, response)) {
+			return; // 許可していないオリジン（403は processRequest が書く）
+		}
+		long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999L)); // 切り上げて最低1秒
+		response.setStatus(status.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+	}
+
+	// 満杯に戻ったバケットを定期的に捨てて、ユーザー数に比例してメモリが増え続けないようにする
+	@Scheduled(fixedDelay = 60_000)
+	void evictIdleBuckets() {
+		long now = System.nanoTime();
+		buckets.values().removeIf(b -> b.isIdle(now));
+	}
+}
@@ -3,11 +3,19 @@
  * {@link WebMvcConfigurer#addCorsMappings} をオーバーライドし、
  * フロントエンド（Vite開発サーバ・Railwayデプロイ先）からのリクエストを許可する。
  * セッションCookieを使用するため {@code allowCredentials(true)} を設定している。
+ * Controllerに届く前に応答を書くフィルタ（{@link AdmissionControlFilter} の429/503など）向けに、
+ * 同じルールを {@link CorsConfigurationSource} のBeanとしても公開する。
  */
 
 package com.example.expenseworkflow.config;
 
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -15,18 +23,37 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class CorsConfig implements WebMvcConfigurer {
 
+    public static final String API_CORS_CONFIGURATION_SOURCE = "apiCorsConfigurationSource"; // HandlerMappingIntrospector（これもCorsConfigurationSource）と区別して注入する名前
+
+    private static final String API_PATTERN = "/api/**"; // /api配下のエンドポイントにだけCORSを適用する（最小適用）
+
 	// 親インターフェースのメソッドを上書きしてCORSルールを登録する
     @Override
     public void addCorsMappings(CorsRegistry registry) { // CORSの許可パターンをここで設定する
-        registry.addMapping("/api/**") // /api配下のエンドポイントにだけCORSを適用する（最小適用）
-                .allowedOrigins( // 許可するフロントのOrigin（開発用の最小セット）
-                        "http://localhost:5173", // Viteのデフォルト開発サーバOrigin
-                        "http://localhost:3000",  // もし3000で動かす場合にも対応（最小の追加）
-                        "https://sincere-empathy-production.up.railway.app", // RailwayフロントエンドURL
-                        "https://pretty-youthfulness-production-next.up.railway.app" // Next.js版フロントエンド（Railway）
-                )
-                .allowedMethods("GET", "POST", "PATCH", "PUT", "DELETE", "OPTIONS") // CORSを許可する
-                .allowedHeaders("*") // 送信ヘッダは一旦全許可（healthでは実害が少ないため）
-                .allowCredentials(true); // Cookie（JSESSIONID）を送受信できるように credentials を許可する // セッション方式の必須要件
+        registry.addMapping(API_PATTERN).combine(apiCorsConfiguration());
+    }
+
+    // フィルタから同じルールを引くための CorsConfigurationSource
+    @Bean(API_CORS_CONFIGURATION_SOURCE)
+    public CorsConfigurationSource apiCorsConfigurationSource() {
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration(API_PATTERN, apiCorsConfiguration());
+        return source;
+    }
+
+    // /api/** の許可ルール
+    static CorsConfiguration apiCorsConfiguration() {
+        CorsConfiguration config = new CorsConfiguration();
+        config.setAllowedOrigins(List.of( // 許可するフロントのOrigin（開発用の最小セット）
+                "http://localhost:5173", // Viteのデフォルト開発サーバOrigin
+                "http://localhost:3000",  // もし3000で動かす場合にも対応（最小の追加）
+                "https://sincere-empathy-production.up.railway.app", // RailwayフロントエンドURL
+                "https://pretty-youthfulness-production-next.up.railway.app" // Next.js版フロントエンド（Railway）
+        ));
+        config.setAllowedMethods(List.of("GET", "POST", "PATCH", "PUT", "DELETE", "OPTIONS")); // CORSを許可する
+        config.setAllowedHeaders(List.of("*")); // 送信ヘッダは一旦全許可（healthでは実害が少ないため）
+        config.setExposedHeaders(List.of("ETag", "Content-Disposition", "Content-Range", "Location", "X-Next-Cursor", "X-Has-More", "traceresponse", "Age", "X-Served-From", "Retry-After")); // 版番号（ETag）・添付ファイルのファイル名・部分取得範囲・作成先URL・変更フィードのカーソル・トレースID・スナップショットの経過秒数と出どころ・429/503の再試行までの秒数をフロントのJSから読めるようにする
+        config.setAllowCredentials(true); // Cookie（JSESSIONID）を送受信できるように credentials を許可する // セッション方式の必須要件
+        return config;
     }
 }
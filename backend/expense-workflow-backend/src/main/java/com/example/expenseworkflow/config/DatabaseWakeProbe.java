@@ -0,0 +1,166 @@
+/**
+ * DBに今すぐ接続できるかを、リクエストを60秒待たせずに判断するクラス（{@link StaleReadFilter} が使う）。
+ * <ul>
+ *   <li>Hikariのプールに接続が1本でもあれば（空きが無く全て使用中でも）、接続できるとみなす。
+ *       使用中で埋まっているのはプールの混雑であって、DBのスリープではないため</li>
+ *   <li>プールに接続が1本も無ければ別スレッドで接続を取りに行き、{@code app.stale-read.probe-millis} だけ待つ。
+ *       間に合わないか、接続の確立そのものに失敗したら（{@link #isConnectionFailure(Throwable)}）「スリープ中」とし、
+ *       接続の取得はそのまま裏で続ける（この取得がDBを起こす）</li>
+ *   <li>スリープ中の間は待たずに false を返す。裏の取得が成功した時点で接続できる状態へ戻る
+ *       （失敗したら {@code app.stale-read.retry-seconds} 秒あけて取り直す）</li>
+ * </ul>
+ * 同時に走る裏の取得は1本だけにする。{@code app.stale-read.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.net.ConnectException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+@Component
+@ConditionalOnProperty(name = "app.stale-read.enabled", havingValue = "true")
+public class DatabaseWakeProbe {
+
+	private static final Logger log = LoggerFactory.getLogger(DatabaseWakeProbe.class);
+
+	private final ObjectProvider<DataSource> dataSourceProvider;
+	private final long probeMillis; // 空きの接続が無いとき、裏の接続取得を待つ時間
+	private final long retryMillis; // 裏の接続取得が失敗したあと、取り直すまでの間隔
+
+	private volatile boolean asleep; // 直近の判断で接続できなかった
+	private volatile CompletableFuture<Boolean> probe; // 実行中の裏の接続取得（無ければnull）
+
+	public DatabaseWakeProbe(
+			ObjectProvider<DataSource> dataSourceProvider,
+			@Value("${app.stale-read.probe-millis:1500}") long probeMillis,
+			@Value("${app.stale-read.retry-seconds:5}") long retrySeconds) {
+		this.dataSourceProvider = dataSourceProvider;
+		this.probeMillis = probeMillis;
+		this.retryMillis = TimeUnit.SECONDS.toMillis(retrySeconds);
+	}
+
+	/** DBに今すぐ接続できそうなら true。スリープ中なら待たずに false を返し、裏で起こし続ける。 */
+	public boolean isReachable() {
+		if (asleep) {
+			startProbe();
+			return false;
+		}
+		if (hasPooledConnection()) {
+			return true; // 空きが無くても、接続を確立できている（混雑は Hikari の待ち行列に任せる）
+		}
+		try {
+			if (startProbe().get(probeMillis, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+			markAsleep(); // 接続が1本も無い状態で、接続の確立に失敗した
+			return false;
+		} catch (TimeoutException | ExecutionException e) { // 接続が1本も無い状態で、作成が終わらない
+			markAsleep();
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/** 接続の確立に失敗したと分かったときに呼ぶ（以降は起きるまで待たずに false を返す）。 */
+	public void markAsleep() {
+		if (!asleep) {
+			asleep = true;
+			log.info("Database looks asleep; serving read snapshots until it answers");
+		}
+		startProbe();
+	}
+
+	// 裏の接続取得を（走っていなければ）始める。取れたら起きた状態に戻す
+	private synchronized CompletableFuture<Boolean> startProbe() {
+		CompletableFuture<Boolean> running = probe;
+		if (running != null && !running.isDone()) {
+			return running;
+		}
+		CompletableFuture<Boolean> started = new CompletableFuture<>();
+		probe = started;
+		Thread.ofVirtual().name("db-wake-probe").start(() -> {
+			boolean ok = connect();
+			if (ok) {
+				if (asleep) {
+					log.info("Database is reachable again");
+				}
+				asleep = false;
+			} else {
+				sleepBeforeRetry(); // スリープ中の間は、この後の isReachable から再び始まる
+			}
+			started.complete(ok);
+		});
+		return started;
+	}
+
+	private boolean connect() {
+		DataSource ds = dataSourceProvider.getIfAvailable();
+		if (ds == null) {
+			return false;
+		}
+		try (Connection connection = ds.getConnection()) { // Hikariの connection-timeout まで待つ（この間にDBが起きる）
+			return connection.isValid(5);
+		} catch (SQLException | RuntimeException e) {
+			log.debug("Database wake probe failed", e);
+			return false;
+		}
+	}
+
+	// プールに確立済みの接続（空き・使用中を問わない）があるか
+	private boolean hasPooledConnection() {
+		DataSource ds = dataSourceProvider.getIfAvailable();
+		try {
+			if (ds == null || !ds.isWrapperFor(HikariDataSource.class)) {
+				return false;
+			}
+			HikariPoolMXBean pool = ds.unwrap(HikariDataSource.class).getHikariPoolMXBean(); // プール未起動の間はnull
+			return pool != null && pool.getTotalConnections() > 0;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 例外がDBへの接続の確立に失敗したものかを返す（TCP接続の拒否・タイムアウトや、SQLState 08xx の接続エラー。
+	 * MySQLの CommunicationsException は 08S01）。プールの待ち時間切れ（Hikari の SQLTransientConnectionException）は、
+	 * 原因に接続エラーを持たない限り混雑とみなして含めない。
+	 */
+	public static boolean isConnectionFailure(Throwable e) {
+		for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+			if (t instanceof ConnectException) {
+				return true;
+			}
+			if (t instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void sleepBeforeRetry() {
+		try {
+			Thread.sleep(retryMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
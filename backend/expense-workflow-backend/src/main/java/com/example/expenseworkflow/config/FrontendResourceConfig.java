@@ -0,0 +1,119 @@
+/**
+ * フロントエンド（Viteのビルド結果）をバックエンドから同じオリジンで配信するコンフィグクラス。
+ * フロントとAPIが同じオリジンになるので、CORSのプリフライトと SameSite=None のCookieが不要になり、フロント用のサービスも要らなくなる。
+ * <ul>
+ *   <li>ファイル名にハッシュが入る {@code /assets/**} は1年・immutable でキャッシュさせる（内容が変われば名前が変わる）</li>
+ *   <li>それ以外（index.html など）は no-cache にし、ETag で毎回再検証させる（新しいビルドをすぐ反映する）</li>
+ *   <li>事前に作った {@code .br} / {@code .gz} があれば Accept-Encoding に応じてそれを返す（{@code npm run build:backend} が作る）</li>
+ *   <li>ETag は内容（圧縮済みなら圧縮後のバイト列）のSHA-256から作る強いETagにする</li>
+ *   <li>拡張子の無いパス（{@code /requests/12} など）でファイルが無ければ index.html を返し、画面遷移はフロントのルータに任せる</li>
+ * </ul>
+ * 配信元は {@code app.frontend.location}（既定は jar 内の classpath:/frontend/。{@code -Pbundle-frontend} でビルド結果を同梱する）。
+ * {@code app.frontend.enabled=true} のときだけ登録される（例は application-frontend.properties）。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+
+@Configuration
+@ConditionalOnProperty(name = "app.frontend.enabled", havingValue = "true")
+public class FrontendResourceConfig implements WebMvcConfigurer {
+
+	private static final int MAX_ETAG_ENTRIES = 10_000; // ETagを覚えておくファイル数の上限（超えたら作り直す）
+
+	private final String location;
+	private final Map<String, String> etags = new ConcurrentHashMap<>(); // URL+更新時刻+サイズ → ETag（毎回ファイルを読まないため）
+
+	public FrontendResourceConfig(@Value("${app.frontend.location:classpath:/frontend/}") String location) {
+		this.location = location.endsWith("/") ? location : location + "/";
+	}
+
+	@Override
+	public void addResourceHandlers(ResourceHandlerRegistry registry) {
+		// ハッシュ付きのファイル名：内容が変わればURLも変わるので、ブラウザに再検証させない
+		registry.addResourceHandler("/assets/**")
+				.addResourceLocations(location + "assets/")
+				.setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+				.setEtagGenerator(this::etag)
+				.resourceChain(true)
+				.addResolver(new EncodedResourceResolver())
+				.addResolver(new PathResourceResolver());
+
+		// index.html などURLが変わらないファイル：毎回ETagで再検証させる。無いページは index.html にフォールバックする
+		registry.addResourceHandler("/**")
+				.addResourceLocations(location, "classpath:/static/") // robots.txt など既存の静的ファイルも引き続き返す
+				.setCacheControl(CacheControl.noCache())
+				.setEtagGenerator(this::etag)
+				.resourceChain(true)
+				.addResolver(new EncodedResourceResolver())
+				.addResolver(new SpaFallbackResolver());
+	}
+
+	// 内容のSHA-256の先頭16バイトを強いETagにする
+	String etag(Resource resource) {
+		try {
+			String key = resource.getURL() + "|" + resource.lastModified() + "|" + resource.contentLength();
+			if (etags.size() > MAX_ETAG_ENTRIES) {
+				etags.clear();
+			}
+			return etags.computeIfAbsent(key, k -> digest(resource));
+		} catch (IOException | UncheckedIOException e) {
+			return null; // ETagを付けない（Last-Modified だけで再検証させる）
+		}
+	}
+
+	private static String digest(Resource resource) {
+		try (InputStream in = resource.getInputStream()) {
+			MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[8192];
+			for (int n; (n = in.read(buffer)) > 0;) {
+				sha256.update(buffer, 0, n);
+			}
+			return HexFormat.of().formatHex(sha256.digest(), 0, 16);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// ファイルが無ければ、画面のパス（拡張子なし・/api 以外）に限って index.html を返す
+	static class SpaFallbackResolver extends PathResourceResolver {
+
+		@Override
+		protected Resource getResource(String resourcePath, Resource location) throws IOException {
+			Resource resource = super.getResource(resourcePath, location);
+			if (resource != null || !isPagePath(resourcePath)) {
+				return resource;
+			}
+			return super.getResource("index.html", location);
+		}
+
+		static boolean isPagePath(String resourcePath) {
+			if (resourcePath.startsWith("api/") || resourcePath.equals("api")) {
+				return false; // 存在しないAPIは404のままにする
+			}
+			String lastSegment = resourcePath.substring(resourcePath.lastIndexOf('/') + 1);
+			return !lastSegment.contains("."); // 拡張子付き（.js や .png）の欠落は本当の404
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * MyBatisで実行するSQL文を1文ずつ子スパンにするインターセプタクラス。
+ * スパン名は「SQL + マップドステートメントID」（例: {@code SQL ExpenseRequestMapper.selectInbox}）で、
+ * 属性に操作の種類と件数を付ける。SQLの本文やバインド値は記録しない（金額・タイトルなどを書き出さないため）。
+ * Interceptor のBeanは MyBatis のスターターが SqlSessionFactory に登録する。
+ * {@code app.tracing.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.util.List;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true")
+@Intercepts({
+		@Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }),
+		@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class }),
+		@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class }),
+})
+public class MyBatisTracingInterceptor implements Interceptor {
+
+	private final Tracer tracer;
+
+	public MyBatisTracingInterceptor(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@Override
+	public Object intercept(Invocation invocation) throws Throwable {
+		MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+		String id = shortId(ms.getId());
+		Span span = tracer.startChild("SQL " + id, Span.KIND_CLIENT);
+		if (span == null) {
+			return invocation.proceed(); // 記録中のリクエストの外（バッチジョブなど）
+		}
+		try (span) {
+			span.attribute("db.system", "mysql")
+					.attribute("db.operation.name", ms.getSqlCommandType().name())
+					.attribute("mybatis.statement.id", ms.getId());
+			Object result;
+			try {
+				result = invocation.proceed();
+			} catch (Throwable e) {
+				span.recordError(e); // close より前に記録する
+				throw e;
+			}
+			if (result instanceof List<?> rows) {
+				span.attribute("db.response.returned_rows", rows.size());
+			} else if (result instanceof Integer affected) {
+				span.attribute("db.response.affected_rows", affected);
+			}
+			return result;
+		}
+	}
+
+	// パッケージを落として「Mapper名.文ID」にする
+	private static String shortId(String id) {
+		int method = id.lastIndexOf('.');
+		int type = method > 0 ? id.lastIndexOf('.', method - 1) : -1;
+		return id.substring(type + 1);
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * 終了したスパンをためておき、1秒ごとに OTLP/JSON（ExportTraceServiceRequest）の1行としてファイルへ追記するクラス。
+ * 1行がそのままOTLPのHTTP/JSONのリクエストボディになるので、OpenTelemetry Collector の filelog / otlpjsonfile レシーバ
+ * （または curl で /v1/traces へ送る）でJaeger等に取り込める。
+ * 書き出しはリクエストのスレッドでは行わず、キューが満杯なら捨てて {@code expense.tracing.spans.dropped} を数える
+ * （トレースのためにリクエストを遅くしない）。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import tools.jackson.databind.json.JsonMapper;
+
+@Component
+@ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true")
+public class OtlpFileSpanExporter {
+
+	private static final Logger log = LoggerFactory.getLogger(OtlpFileSpanExporter.class);
+
+	private static final int QUEUE_CAPACITY = 10_000; // 書き出し待ちのスパン数の上限
+	private static final int MAX_BATCH = 2_000; // 1行に入れるスパン数の上限
+
+	private final Path file;
+	private final String serviceName;
+	private final JsonMapper jsonMapper;
+	private final Counter dropped;
+
+	private final BlockingQueue<Span> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+	public OtlpFileSpanExporter(
+			@Value("${app.tracing.file:traces/spans.otlp.jsonl}") String file,
+			@Value("${app.tracing.service-name:expense-workflow-backend}") String serviceName,
+			JsonMapper jsonMapper,
+			MeterRegistry meterRegistry) {
+		this.file = Path.of(file);
+		this.serviceName = serviceName;
+		this.jsonMapper = jsonMapper;
+		this.dropped = Counter.builder("expense.tracing.spans.dropped")
+				.description("書き出しが追いつかず捨てたスパン数")
+				.register(meterRegistry);
+	}
+
+	// 終了したスパンを書き出し待ちに入れる（満杯なら捨てる）
+	void export(Span span) {
+		if (!queue.offer(span)) {
+			dropped.increment();
+		}
+	}
+
+	// たまっているスパンをファイルへ追記する
+	@Scheduled(fixedDelay = 1_000)
+	public synchronized void flush() {
+		List<Span> batch = new ArrayList<>();
+		while (queue.drainTo(batch, MAX_BATCH) > 0) {
+			try {
+				Path dir = file.toAbsolutePath().getParent();
+				if (dir != null) {
+					Files.createDirectories(dir);
+				}
+				try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+					out.write(jsonMapper.writeValueAsBytes(toExportRequest(batch)));
+					out.write('\n');
+				}
+			} catch (IOException | RuntimeException e) {
+				dropped.increment(batch.size());
+				log.warn("スパンを書き出せませんでした（{}件を破棄）: {}", batch.size(), e.toString());
+			}
+			batch.clear();
+		}
+	}
+
+	// 停止時に残りを書き出す
+	@PreDestroy
+	void shutdown() {
+		flush();
+	}
+
+	// https://opentelemetry.io/docs/specs/otlp/#json-protobuf-encoding の形にする（64bit整数は文字列）
+	private Map<String, Object> toExportRequest(List<Span> spans) {
+		List<Map<String, Object>> otlpSpans = new ArrayList<>(spans.size());
+		for (Span span : spans) {
+			Map<String, Object> s = new LinkedHashMap<>();
+			s.put("traceId", span.traceId());
+			s.put("spanId", span.spanId());
+			if (span.parentSpanId() != null) {
+				s.put("parentSpanId", span.parentSpanId());
+			}
+			s.put("name", span.name());
+			s.put("kind", span.kind());
+			s.put("startTimeUnixNano", String.valueOf(span.startEpochNanos()));
+			s.put("endTimeUnixNano", String.valueOf(span.endEpochNanos()));
+			s.put("attributes", attributes(span.attributes()));
+			s.put("status", span.errorMessage() != null
+					? Map.of("code", 2, "message", span.errorMessage()) // STATUS_CODE_ERROR
+					: Map.of("code", 0)); // STATUS_CODE_UNSET
+			otlpSpans.add(s);
+		}
+		Map<String, Object> resource = Map.of("attributes", attributes(Map.of("service.name", serviceName)));
+		Map<String, Object> scope = Map.of("name", "com.example.expenseworkflow");
+		return Map.of("resourceSpans", List.of(Map.of(
+				"resource", resource,
+				"scopeSpans", List.of(Map.of("scope", scope, "spans", otlpSpans)))));
+	}
+
+	private static List<Map<String, Object>> attributes(Map<String, Object> values) {
+		List<Map<String, Object>> list = new ArrayList<>(values.size());
+		for (Map.Entry<String, Object> e : values.entrySet()) {
+			Object v = e.getValue();
+			Map<String, Object> value = switch (v) {
+				case Integer i -> Map.of("intValue", String.valueOf(i));
+				case Long l -> Map.of("intValue", String.valueOf(l));
+				case Boolean b -> Map.of("boolValue", b);
+				default -> Map.of("stringValue", String.valueOf(v));
+			};
+			list.add(Map.of("key", e.getKey(), "value", value));
+		}
+		return list;
+	}
+}
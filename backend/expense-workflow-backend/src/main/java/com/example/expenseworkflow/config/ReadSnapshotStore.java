@@ -0,0 +1,174 @@
+/**
+ * ユーザーごとに、読み取りAPIの最後の成功レスポンス（スナップショット）を保持するクラス。
+ * DBがスリープから起きるまでの間に {@link StaleReadFilter} がこれを返す。
+ * <ul>
+ *   <li>メモリ上ではユーザーID→（キー→スナップショット）で持ち、1ユーザーあたり {@code app.stale-read.max-entries-per-user} 件まで
+ *       （超えたら保存の古いものから捨てる）。{@code app.stale-read.max-body-bytes} を超えるレスポンスは保存しない</li>
+ *   <li>変更のあったユーザーの分を数秒ごとに {@code app.stale-read.dir} の {@code user-<ID>.snap} へ書き出す
+ *       （GZIPで圧縮した独自のバイナリ形式。一時ファイルに書いてから置き換えるので、途中で落ちても壊れたファイルは残らない）</li>
+ *   <li>再起動後は、そのユーザーの初回の参照時にファイルから読み戻す</li>
+ * </ul>
+ * 保存先はユーザーごとのデータを含むため、アプリのユーザー以外が読めない場所にすること。
+ * {@code app.stale-read.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "app.stale-read.enabled", havingValue = "true")
+public class ReadSnapshotStore {
+
+	private static final Logger log = LoggerFactory.getLogger(ReadSnapshotStore.class);
+
+	private static final int MAGIC = 0x45525331; // "ERS1"（形式を変えたら番号を上げ、古いファイルは読み捨てる）
+
+	private final Path dir;
+	private final int maxEntriesPerUser;
+	private final int maxBodyBytes;
+
+	private final Map<Long, Map<String, Snapshot>> users = new ConcurrentHashMap<>(); // ユーザーID→キー→スナップショット
+	private final Set<Long> dirty = ConcurrentHashMap.newKeySet(); // 書き出していない変更のあるユーザー
+
+	/**
+	 * 1件分のレスポンス。
+	 *
+	 * @param contentType  Content-Type
+	 * @param body         本文
+	 * @param savedAtMillis 保存した時刻（System.currentTimeMillis）
+	 */
+	public record Snapshot(String contentType, byte[] body, long savedAtMillis) {
+	}
+
+	public ReadSnapshotStore(
+			@Value("${app.stale-read.dir:snapshots}") String dir,
+			@Value("${app.stale-read.max-entries-per-user:32}") int maxEntriesPerUser,
+			@Value("${app.stale-read.max-body-bytes:262144}") int maxBodyBytes) {
+		this.dir = Path.of(dir);
+		this.maxEntriesPerUser = maxEntriesPerUser;
+		this.maxBodyBytes = maxBodyBytes;
+	}
+
+	public Snapshot get(long userId, String key) {
+		return entriesOf(userId).get(key);
+	}
+
+	public void put(long userId, String key, Snapshot snapshot) {
+		if (snapshot.body().length > maxBodyBytes) {
+			return;
+		}
+		Map<String, Snapshot> entries = entriesOf(userId);
+		entries.put(key, snapshot);
+		while (entries.size() > maxEntriesPerUser) {
+			entries.entrySet().stream()
+					.min(Comparator.comparingLong(e -> e.getValue().savedAtMillis()))
+					.ifPresent(oldest -> entries.remove(oldest.getKey(), oldest.getValue()));
+		}
+		dirty.add(userId);
+	}
+
+	// 変更のあったユーザーの分をファイルへ書き出す
+	@Scheduled(fixedDelay = 2_000)
+	@PreDestroy
+	public void flush() {
+		for (Long userId : dirty) {
+			dirty.remove(userId);
+			try {
+				write(userId, users.get(userId));
+			} catch (IOException e) {
+				dirty.add(userId); // 次回に書き直す
+				log.warn("Failed to write read snapshots for user {}", userId, e);
+			}
+		}
+	}
+
+	// メモリに無ければファイルから読み戻す（ファイルも無ければ空）
+	private Map<String, Snapshot> entriesOf(long userId) {
+		return users.computeIfAbsent(userId, id -> {
+			Map<String, Snapshot> entries = new ConcurrentHashMap<>();
+			try {
+				entries.putAll(read(fileOf(id)));
+			} catch (NoSuchFileException e) {
+				// まだ保存されていない
+			} catch (IOException e) {
+				log.warn("Ignoring unreadable read snapshots for user {}", id, e);
+			}
+			return entries;
+		});
+	}
+
+	private Path fileOf(long userId) {
+		return dir.resolve("user-" + userId + ".snap");
+	}
+
+	private void write(long userId, Map<String, Snapshot> entries) throws IOException {
+		Files.createDirectories(dir);
+		Path file = fileOf(userId);
+		Path tmp = dir.resolve(file.getFileName() + ".tmp");
+		Map<String, Snapshot> copy = new LinkedHashMap<>(entries); // 書き出し中の put と競合しないよう写してから書く
+		try (OutputStream os = Files.newOutputStream(tmp);
+				DataOutputStream out = new DataOutputStream(new GZIPOutputStream(os))) {
+			out.writeInt(MAGIC);
+			out.writeInt(copy.size());
+			for (Map.Entry<String, Snapshot> e : copy.entrySet()) {
+				out.writeUTF(e.getKey());
+				out.writeUTF(e.getValue().contentType());
+				out.writeLong(e.getValue().savedAtMillis());
+				out.writeInt(e.getValue().body().length);
+				out.write(e.getValue().body());
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private Map<String, Snapshot> read(Path file) throws IOException {
+		Map<String, Snapshot> entries = new LinkedHashMap<>();
+		try (InputStream is = Files.newInputStream(file);
+				DataInputStream in = new DataInputStream(new GZIPInputStream(is))) {
+			if (in.readInt() != MAGIC) {
+				return entries; // 古い形式は読み捨てる（次の保存で書き直される）
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				String contentType = in.readUTF();
+				long savedAt = in.readLong();
+				int length = in.readInt();
+				if (length < 0 || length > maxBodyBytes) {
+					throw new IOException("Corrupt snapshot entry length " + length);
+				}
+				byte[] body = in.readNBytes(length);
+				if (body.length != length) {
+					throw new IOException("Truncated snapshot file");
+				}
+				entries.put(key, new Snapshot(contentType, body, savedAt));
+			}
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,15 @@
+/**
+ * バックグラウンドジョブ（{@code @Scheduled}）を有効化するコンフィグクラス。
+ * 各ジョブは {@code app.*.enabled} プロパティで個別にON/OFFし、
+ * 既定ではOFFにしてスリープ中のRailway DBを定期処理で起こさないようにする。
+ */
+
+package com.example.expenseworkflow.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
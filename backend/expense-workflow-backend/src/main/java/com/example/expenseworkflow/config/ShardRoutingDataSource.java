@@ -0,0 +1,42 @@
+/**
+ * 接続を取り出すときに {@link ShardContext} のシャード番号を見て、対応するDBのコネクションプールへ振り分ける DataSource。
+ * シャード番号が未設定なら既定のシャード（0番）へつなぐ。users などの共通テーブルと、
+ * 申請に紐づかないデータ（添付ファイルのメタデータなど）はこの既定のシャードに置く。
+ * 各シャードのプールは {@link ShardingConfig} が作り、アプリ終了時に {@link #close()} で閉じる。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import com.example.expenseworkflow.store.ShardContext;
+import com.zaxxer.hikari.HikariDataSource;
+
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+	private final List<HikariDataSource> shards; // シャード番号順のコネクションプール
+
+	public ShardRoutingDataSource(List<HikariDataSource> shards) {
+		this.shards = List.copyOf(shards);
+		Map<Object, Object> targets = new HashMap<>();
+		for (int i = 0; i < shards.size(); i++) {
+			targets.put(i, shards.get(i));
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(shards.get(0));
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		return ShardContext.current(); // null なら既定のシャード
+	}
+
+	@Override
+	public void close() {
+		shards.forEach(HikariDataSource::close);
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * 申請データの水平分割（シャーディング）を有効にしたときに、既定の DataSource を {@link ShardRoutingDataSource} に置き換えるコンフィグクラス。
+ * {@code app.sharding.urls} に並べたJDBC URLごとにHikariCPのプールを作る（接続設定は spring.datasource.* を共通で使う）。
+ * 申請IDが全シャードで重ならないよう、各接続の開始時に
+ * {@code auto_increment_increment}（シャード数）と {@code auto_increment_offset}（シャード番号+1）を設定する。
+ * 各シャードには schema.sql を適用し、users は全シャードに同じ内容を置く（{@code ShardRebalancer --sync-users} で0番から複製できる）。
+ * {@code app.sharding.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import com.example.expenseworkflow.store.ShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+	@Bean
+	@Primary
+	public ShardRoutingDataSource dataSource(
+			Environment environment,
+			@Value("${app.sharding.urls}") String urls,
+			@Value("${spring.datasource.username:}") String username,
+			@Value("${spring.datasource.password:}") String password,
+			@Value("${spring.datasource.driver-class-name:com.mysql.cj.jdbc.Driver}") String driverClassName) {
+		List<String> jdbcUrls = ShardRouter.parseUrls(urls);
+		List<HikariDataSource> shards = new ArrayList<>(jdbcUrls.size());
+		for (int i = 0; i < jdbcUrls.size(); i++) {
+			HikariDataSource shard = new HikariDataSource();
+			Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(shard)); // タイムアウト・最小接続数などは単一DBのときと同じ設定を使う
+			shard.setPoolName("shard-" + i);
+			shard.setJdbcUrl(jdbcUrls.get(i));
+			shard.setUsername(username);
+			shard.setPassword(password);
+			shard.setDriverClassName(driverClassName);
+			shard.setConnectionInitSql("SET SESSION auto_increment_increment = " + jdbcUrls.size()
+					+ ", auto_increment_offset = " + (i + 1)); // シャードごとに採番の系列をずらし、IDを全体で一意にする
+			shards.add(shard);
+		}
+		return new ShardRoutingDataSource(shards);
+	}
+}
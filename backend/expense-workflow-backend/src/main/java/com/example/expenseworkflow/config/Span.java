@@ -0,0 +1,123 @@
+/**
+ * トレースの1区間（HTTPリクエスト・RequestStoreのメソッド・接続の取得・SQL文など）を表すクラス。
+ * {@link Tracer} が開始し、{@link #close()} で終了時刻を記録して {@link OtlpFileSpanExporter} へ渡す。
+ * 開始から終了までは同じスレッドの「現在のスパン」になり、その間に開始したスパンはこのスパンの子になる。
+ * try-with-resources で使う前提（{@link Tracer#startChild} はトレース外なら null を返すが、null は try-with-resources で無視される）。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class Span implements AutoCloseable {
+
+	// OTLP の SpanKind（https://opentelemetry.io/docs/specs/otel/trace/api/#spankind）
+	public static final int KIND_INTERNAL = 1;
+	public static final int KIND_SERVER = 2;
+	public static final int KIND_CLIENT = 3;
+
+	private final Tracer tracer;
+	private final Span parent; // 同じスレッドで1つ外側のスパン（終了時に現在のスパンを戻す先。ルートならnull）
+	private final String traceId; // 32桁の16進
+	private final String spanId; // 16桁の16進
+	private final String parentSpanId; // 親のスパンID（フロントから受け取った traceparent の親を含む。無ければnull）
+	private final int kind;
+	private final long startEpochNanos;
+	private final long startNanoTime; // 経過時間は単調増加の nanoTime で測る
+	private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+	private String name;
+	private long endEpochNanos;
+	private String errorMessage; // エラーで終わった場合のメッセージ（正常終了ならnull）
+	private boolean ended;
+
+	Span(Tracer tracer, Span parent, String traceId, String spanId, String parentSpanId, String name, int kind, long startEpochNanos) {
+		this.tracer = tracer;
+		this.parent = parent;
+		this.traceId = traceId;
+		this.spanId = spanId;
+		this.parentSpanId = parentSpanId;
+		this.name = name;
+		this.kind = kind;
+		this.startEpochNanos = startEpochNanos;
+		this.startNanoTime = System.nanoTime();
+	}
+
+	// 属性を追加する（値が null なら何もしない）
+	public Span attribute(String key, Object value) {
+		if (value != null) {
+			attributes.put(key, value);
+		}
+		return this;
+	}
+
+	// 名前を付け直す（HTTPのルートのように、処理の後で分かる名前にする）
+	public void rename(String name) {
+		this.name = name;
+	}
+
+	// エラーとして記録する
+	public void recordError(Throwable error) {
+		errorMessage = error.getClass().getSimpleName() + (error.getMessage() != null ? ": " + error.getMessage() : "");
+	}
+
+	public void recordError(String message) {
+		errorMessage = message;
+	}
+
+	// 下流へ渡す W3C traceparent（このスパンを親とする）
+	public String traceparent() {
+		return "00-" + traceId + "-" + spanId + "-01";
+	}
+
+	@Override
+	public void close() {
+		if (ended) {
+			return;
+		}
+		ended = true;
+		endEpochNanos = startEpochNanos + (System.nanoTime() - startNanoTime);
+		tracer.finish(this);
+	}
+
+	Span parent() {
+		return parent;
+	}
+
+	String traceId() {
+		return traceId;
+	}
+
+	String spanId() {
+		return spanId;
+	}
+
+	String parentSpanId() {
+		return parentSpanId;
+	}
+
+	String name() {
+		return name;
+	}
+
+	int kind() {
+		return kind;
+	}
+
+	long startEpochNanos() {
+		return startEpochNanos;
+	}
+
+	long endEpochNanos() {
+		return endEpochNanos;
+	}
+
+	Map<String, Object> attributes() {
+		return attributes;
+	}
+
+	String errorMessage() {
+		return errorMessage;
+	}
+}
@@ -0,0 +1,159 @@
+/**
+ * DBがスリープから起きるまでの間、ログイン中ユーザーの読み取りAPIに前回の成功レスポンスを即座に返すフィルタクラス
+ * （stale-while-revalidate）。
+ * <ul>
+ *   <li>対象は {@code app.stale-read.paths} のGET（既定は /api/me・/api/requests・/api/inbox と各履歴）。
+ *       ユーザーID・パス・クエリ・Accept ごとに、200の応答を {@link ReadSnapshotStore} に保存する</li>
+ *   <li>保存済みの応答があり、{@link DatabaseWakeProbe} がDBに今すぐ接続できないと判断したら、DBを待たずにそれを返す。
+ *       応答には {@code X-Served-From: snapshot} と、保存からの経過秒数の {@code Age} を付ける</li>
+ *   <li>処理中にDBへの接続の確立に失敗した場合も、保存済みの応答があれば500の代わりにそれを返す</li>
+ *   <li>DBの起こし直し（再検証）は {@link DatabaseWakeProbe} が裏で続け、起きた後の最初のリクエストから通常の処理と保存に戻る</li>
+ * </ul>
+ * 保存済みの応答が無いリクエストと、更新系のリクエストは従来どおりDBを待つ。
+ * スナップショットはコントローラを通さずに返すので、CORSのヘッダは {@link CorsConfig} のルール（{@link CorsConfigurationSource}）をここで当てる。
+ * 流量制限（{@link AdmissionControlFilter}）より前で動かす（スナップショットはDB接続を使わないので、プールの混雑で断らない）。
+ * {@code app.stale-read.enabled=true} のときだけ登録される（例は application-railway.properties）。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.CorsProcessor;
+import org.springframework.web.cors.DefaultCorsProcessor;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+@ConditionalOnProperty(name = "app.stale-read.enabled", havingValue = "true")
+public class StaleReadFilter extends OncePerRequestFilter {
+
+	public static final String SERVED_FROM_HEADER = "X-Served-From"; // スナップショットから返したときに "snapshot"
+
+	private static final String SESSION_KEY_USER_ID = "SESSION_KEY_USER_ID"; // AuthController と同じキーでユーザーIDを読む
+
+	private final ReadSnapshotStore snapshotStore;
+	private final DatabaseWakeProbe wakeProbe;
+	private final List<String[]> paths; // 対象パスのセグメント（"*" は任意の1セグメント）
+	private final CorsConfigurationSource corsConfigurationSource; // /api/** のCORSのルール
+	private final CorsProcessor corsProcessor = new DefaultCorsProcessor();
+
+	public StaleReadFilter(
+			ReadSnapshotStore snapshotStore,
+			DatabaseWakeProbe wakeProbe,
+			@Qualifier(CorsConfig.API_CORS_CONFIGURATION_SOURCE) CorsConfigurationSource corsConfigurationSource,
+			@Value("${app.stale-read.paths:/api/me,/api/requests,/api/requests/*/history,/api/inbox,/api/inbox/*/history}") String paths) {
+		this.snapshotStore = snapshotStore;
+		this.wakeProbe = wakeProbe;
+		this.corsConfigurationSource = corsConfigurationSource;
+		this.paths = Arrays.stream(paths.split(","))
+				.map(String::trim)
+				.filter(p -> !p.isEmpty())
+				.map(p -> p.split("/"))
+				.toList();
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		return !"GET".equals(request.getMethod()) || !isSnapshotPath(path);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		Long userId = userIdOf(request);
+		if (userId == null) {
+			filterChain.doFilter(request, response); // 未ログインは保存も返却もしない
+			return;
+		}
+		String key = keyOf(request);
+		ReadSnapshotStore.Snapshot snapshot = snapshotStore.get(userId, key);
+		if (snapshot != null && !wakeProbe.isReachable()) {
+			serve(request, response, snapshot); // DBを待たずに前回の応答を返す
+			return;
+		}
+
+		ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+		try {
+			filterChain.doFilter(request, wrapper);
+		} catch (IOException | ServletException | RuntimeException e) {
+			if (snapshot != null && DatabaseWakeProbe.isConnectionFailure(e) && !response.isCommitted()) { // プールの混雑による待ち時間切れは含めない
+				wakeProbe.markAsleep();
+				response.reset();
+				serve(request, response, snapshot);
+				return;
+			}
+			throw e;
+		}
+		if (wrapper.getStatus() == HttpServletResponse.SC_OK && wrapper.getContentType() != null) {
+			snapshotStore.put(userId, key, new ReadSnapshotStore.Snapshot(
+					wrapper.getContentType(), wrapper.getContentAsByteArray(), System.currentTimeMillis()));
+		}
+		wrapper.copyBodyToResponse();
+	}
+
+	private void serve(HttpServletRequest request, HttpServletResponse response, ReadSnapshotStore.Snapshot snapshot) throws IOException {
+		CorsConfiguration cors = corsConfigurationSource.getCorsConfiguration(request);
+		if (cors != null && !corsProcessor.processRequest(cors, request, response)) {
+			return; // 許可していないオリジン（403は processRequest が書く）
+		}
+		long ageSeconds = Math.max(0, (System.currentTimeMillis() - snapshot.savedAtMillis()) / 1000);
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(snapshot.contentType());
+		response.setHeader(HttpHeaders.AGE, Long.toString(ageSeconds));
+		response.setHeader(SERVED_FROM_HEADER, "snapshot");
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store"); // ブラウザには保存させない（DBが起きたら最新を取り直す）
+		response.setContentLength(snapshot.body().length);
+		response.getOutputStream().write(snapshot.body());
+	}
+
+	// パス・クエリ・Accept（JSON / CBOR）ごとに別の応答として保存する
+	private static String keyOf(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		String query = request.getQueryString();
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+		return path + (query != null ? "?" + query : "") + "|" + (accept != null ? accept : "*/*");
+	}
+
+	boolean isSnapshotPath(String path) {
+		String[] segments = path.split("/");
+		for (String[] pattern : paths) {
+			if (pattern.length != segments.length) {
+				continue;
+			}
+			boolean matches = true;
+			for (int i = 0; i < pattern.length && matches; i++) {
+				matches = "*".equals(pattern[i]) ? !segments[i].isEmpty() : pattern[i].equals(segments[i]);
+			}
+			if (matches) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Long userIdOf(HttpServletRequest request) {
+		HttpSession session = request.getSession(false);
+		Object userId = session != null ? session.getAttribute(SESSION_KEY_USER_ID) : null;
+		return userId instanceof Long id ? id : null;
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ * 1ユーザー分のリクエスト流量を制限するロックフリーのトークンバケット。
+ * GCRA（Generic Cell Rate Algorithm）で「次にバケットが満杯へ戻る理論時刻」を1つの {@link AtomicLong} に持ち、
+ * CASだけで判定するため、同じユーザーの同時リクエストでもロックを取らない。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TokenBucket {
+
+	private final long intervalNanos; // トークン1個が補充される間隔（= 1秒 / 毎秒の許可数）
+	private final long burstNanos; // バケット容量（連続で許可できる数）を時間に換算した値
+	private final AtomicLong theoreticalArrival; // 理論到着時刻（TAT）。これが現在時刻以下ならバケットは満杯
+
+	public TokenBucket(double permitsPerSecond, int burst, long nowNanos) {
+		this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+		this.burstNanos = intervalNanos * burst;
+		this.theoreticalArrival = new AtomicLong(nowNanos);
+	}
+
+	/**
+	 * トークンを1個取得する。
+	 *
+	 * @return 許可したら0、拒否したら次に許可されるまでの待ち時間（ナノ秒）
+	 */
+	public long tryAcquire(long nowNanos) {
+		while (true) {
+			long tat = theoreticalArrival.get();
+			long next = Math.max(tat, nowNanos) + intervalNanos;
+			long waitNanos = next - nowNanos - burstNanos;
+			if (waitNanos > 0) {
+				return waitNanos; // 容量を使い切っている
+			}
+			if (theoreticalArrival.compareAndSet(tat, next)) {
+				return 0;
+			}
+			// 他スレッドが先に取得したので最新の値でやり直す
+		}
+	}
+
+	// しばらく使われずバケットが満杯に戻っているか（アイドルなバケットを捨てる判定に使う）
+	public boolean isIdle(long nowNanos) {
+		return theoreticalArrival.get() <= nowNanos;
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * /api/** の各リクエストをルートスパンで包むフィルタクラス。
+ * <ul>
+ *   <li>フロントが送る W3C {@code traceparent} を引き継ぎ、ブラウザ側の操作とサーバ側の処理を1本のトレースにつなぐ</li>
+ *   <li>スパン名は処理後に「メソッド + ルートのパターン」（例: {@code POST /api/requests/{id}/approve}）にする</li>
+ *   <li>セッションの読み込みも子スパンにし、応答に {@code traceresponse} ヘッダを付けて、フロントからトレースIDを引けるようにする</li>
+ * </ul>
+ * 流量制限（{@link AdmissionControlFilter}）で断ったリクエストも記録するため、それより前で動かす。
+ * {@code app.tracing.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.io.IOException;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true")
+public class TraceFilter extends OncePerRequestFilter {
+
+	private final Tracer tracer;
+
+	public TraceFilter(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		return !path.startsWith("/api/")
+				|| "OPTIONS".equals(request.getMethod()); // CORSプリフライトは記録しない
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		Span span = tracer.startServerSpan(request.getMethod(), request.getHeader("traceparent"));
+		if (span == null) {
+			filterChain.doFilter(request, response); // サンプリング外
+			return;
+		}
+		try (span) {
+			span.attribute("http.request.method", request.getMethod())
+					.attribute("url.path", request.getRequestURI());
+			response.setHeader("traceresponse", span.traceparent());
+
+			try (Span session = tracer.startChild("http.session.lookup", Span.KIND_INTERNAL)) {
+				request.getSession(false); // 以降の getSession はここで読み込んだものを使う
+			}
+
+			try {
+				filterChain.doFilter(request, response);
+			} catch (IOException | ServletException | RuntimeException e) {
+				span.recordError(e);
+				throw e;
+			} finally {
+				Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+				if (route != null) {
+					span.rename(request.getMethod() + " " + route);
+					span.attribute("http.route", route.toString());
+				}
+				span.attribute("http.response.status_code", response.getStatus());
+				if (response.getStatus() >= 500) {
+					span.recordError("HTTP " + response.getStatus());
+				}
+			}
+		}
+	}
+}
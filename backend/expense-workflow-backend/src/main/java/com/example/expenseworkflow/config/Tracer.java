@@ -0,0 +1,104 @@
+/**
+ * 外部のトレーシング基盤なしで、1リクエスト内の処理時間の内訳をスパンとして記録するクラス。
+ * <ul>
+ *   <li>HTTPの入口（{@link TraceFilter}）でルートスパンを開始する。フロントが W3C {@code traceparent} を送っていれば、
+ *       そのトレースIDと親スパンIDを引き継ぐ（sampled フラグが 00 なら記録しない）。無ければ {@code app.tracing.sample-ratio} の割合で記録する</li>
+ *   <li>RequestStore・接続の取得・SQL文のスパンは、記録中のリクエストの中でだけ子スパンとして開始する
+ *       （バッチジョブなどリクエスト外の処理は記録しない）</li>
+ *   <li>現在のスパンはスレッドごとに保持する。scatter-gather など別スレッドで動いた処理はトレースに含まれない</li>
+ * </ul>
+ * 終了したスパンは {@link OtlpFileSpanExporter} がOTLP/JSON形式でファイルへ書き出す。
+ * {@code app.tracing.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true")
+public class Tracer {
+
+	// version-traceid-parentid-flags（https://www.w3.org/TR/trace-context/#traceparent-header）
+	private static final Pattern TRACEPARENT = Pattern.compile("^00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})$");
+	private static final String INVALID_TRACE_ID = "0".repeat(32);
+	private static final String INVALID_SPAN_ID = "0".repeat(16);
+
+	private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>(); // このスレッドで現在開いているスパン
+
+	private final OtlpFileSpanExporter exporter;
+	private final double sampleRatio; // traceparent の無いリクエストを記録する割合（0〜1）
+
+	public Tracer(
+			OtlpFileSpanExporter exporter,
+			@Value("${app.tracing.sample-ratio:1.0}") double sampleRatio) {
+		this.exporter = exporter;
+		this.sampleRatio = sampleRatio;
+	}
+
+	// このスレッドで現在開いているスパンを返す。無ければ null
+	public Span current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * HTTPリクエストのルートスパンを開始する。記録しない（サンプリング外）なら null。
+	 *
+	 * @param traceparent 受け取った W3C traceparent ヘッダ（無い・不正なら新しいトレースを始める）
+	 */
+	public Span startServerSpan(String name, String traceparent) {
+		Matcher m = traceparent != null ? TRACEPARENT.matcher(traceparent.trim()) : null;
+		if (m != null && m.matches() && !INVALID_TRACE_ID.equals(m.group(1)) && !INVALID_SPAN_ID.equals(m.group(2))) {
+			boolean sampled = (HexFormat.fromHexDigits(m.group(3)) & 0x01) != 0; // 呼び出し元の判断に従う
+			return sampled ? open(null, m.group(1), m.group(2), name, Span.KIND_SERVER) : null;
+		}
+		if (ThreadLocalRandom.current().nextDouble() >= sampleRatio) {
+			return null;
+		}
+		return open(null, randomHex(16), null, name, Span.KIND_SERVER);
+	}
+
+	// 現在のスパンの子を開始する。記録中のリクエストの外なら null
+	public Span startChild(String name, int kind) {
+		Span parent = CURRENT.get();
+		if (parent == null) {
+			return null;
+		}
+		return open(parent, parent.traceId(), parent.spanId(), name, kind);
+	}
+
+	// Span#close から呼ばれ、現在のスパンを親へ戻して書き出しへ回す
+	void finish(Span span) {
+		if (CURRENT.get() == span) {
+			if (span.parent() != null) {
+				CURRENT.set(span.parent());
+			} else {
+				CURRENT.remove();
+			}
+		}
+		exporter.export(span);
+	}
+
+	private Span open(Span parent, String traceId, String parentSpanId, String name, int kind) {
+		Instant now = Instant.now();
+		Span span = new Span(this, parent, traceId, randomHex(8), parentSpanId, name, kind,
+				now.getEpochSecond() * 1_000_000_000L + now.getNano());
+		CURRENT.set(span);
+		return span;
+	}
+
+	private static String randomHex(int bytes) {
+		byte[] b = new byte[bytes];
+		ThreadLocalRandom.current().nextBytes(b);
+		b[0] |= 1; // 全桁0（不正なID）にならないようにする
+		return HexFormat.of().formatHex(b);
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * HTTP以外のスパン（RequestStoreのメソッド・コネクションプールからの接続の取得）を差し込むコンフィグクラス。
+ * <ul>
+ *   <li>{@link RequestStore} の実装のメソッドを「実装クラス名.メソッド名」のスパンで包む。
+ *       トランザクションより外側で包むので、BEGIN〜COMMIT の時間も含まれる</li>
+ *   <li>DataSource のBeanを包み、{@code getConnection()} を {@code hikari.acquire} のスパンにする（プールの空き待ちが見える）</li>
+ * </ul>
+ * どちらも記録中のリクエストの外では何もしない。{@code app.tracing.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.config;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.example.expenseworkflow.store.RequestStore;
+import com.zaxxer.hikari.HikariDataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true")
+public class TracingConfig {
+
+	// RequestStore のメソッドを包むアドバイザ（@Transactional と同じ自動プロキシの仕組みに乗せるため基盤ロールにする）
+	@Bean
+	@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+	static Advisor requestStoreTracingAdvisor(ObjectProvider<Tracer> tracerProvider) {
+		StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+			@Override
+			public boolean matches(Method method, Class<?> targetClass) {
+				return RequestStore.class.isAssignableFrom(targetClass)
+						&& method.getDeclaringClass() != Object.class
+						&& isRequestStoreMethod(method);
+			}
+		};
+		MethodInterceptor interceptor = invocation -> {
+			Tracer tracer = tracerProvider.getObject();
+			Class<?> target = invocation.getThis() != null ? AopUtils.getTargetClass(invocation.getThis()) : RequestStore.class;
+			Span span = tracer.startChild(target.getSimpleName() + "." + invocation.getMethod().getName(), Span.KIND_INTERNAL);
+			if (span == null) {
+				return invocation.proceed();
+			}
+			try (span) {
+				try {
+					return invocation.proceed();
+				} catch (Throwable e) {
+					span.recordError(e); // close より前に記録する
+					throw e;
+				}
+			}
+		};
+		DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(pointcut, interceptor);
+		advisor.setOrder(Ordered.HIGHEST_PRECEDENCE); // トランザクションのアドバイスより外側
+		return advisor;
+	}
+
+	// DataSource のBeanを接続取得のスパンを出すラッパーに差し替える
+	@Bean
+	static BeanPostProcessor tracingDataSourcePostProcessor(ObjectProvider<Tracer> tracerProvider) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource ds && !(bean instanceof TracingDataSource)) {
+					return new TracingDataSource(ds, tracerProvider);
+				}
+				return bean;
+			}
+		};
+	}
+
+	private static boolean isRequestStoreMethod(Method method) {
+		try {
+			RequestStore.class.getMethod(method.getName(), method.getParameterTypes());
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	// getConnection を hikari.acquire のスパンで包む DataSource（unwrap / isWrapperFor は元の DataSource へ委譲される）
+	// 差し替え後のBeanに対して終了時の close が呼ばれるので、元の DataSource のプールを閉じるよう委譲する
+	static class TracingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+		private final ObjectProvider<Tracer> tracerProvider;
+
+		TracingDataSource(DataSource target, ObjectProvider<Tracer> tracerProvider) {
+			super(target);
+			this.tracerProvider = tracerProvider;
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			Span span = tracerProvider.getObject().startChild("hikari.acquire", Span.KIND_INTERNAL);
+			if (span == null) {
+				return super.getConnection();
+			}
+			try (span) {
+				span.attribute("db.client.connection.pool.name", poolName());
+				try {
+					return super.getConnection();
+				} catch (SQLException | RuntimeException e) {
+					span.recordError(e);
+					throw e;
+				}
+			}
+		}
+
+		@Override
+		public void close() throws Exception {
+			if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+
+		// シャーディング時は ShardRoutingDataSource の unwrap が今選ぶシャードのプールを返すので、都度たどる
+		private String poolName() {
+			try {
+				DataSource target = obtainTargetDataSource();
+				return target.isWrapperFor(HikariDataSource.class) ? target.unwrap(HikariDataSource.class).getPoolName() : null;
+			} catch (SQLException e) {
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * 経理向けの集計を提供するコントローラクラス。
+ * <ul>
+ *   <li>GET /api/analytics : 申請を絞り込み（status・from/to・applicantId・approverId）、
+ *       groupBy（NONE / APPLICANT / APPROVER / STATUS / MONTH）ごとに
+ *       measure（AMOUNT / APPROVAL_HOURS）を metric（COUNT / SUM / AVG / MIN / MAX）で集計して、値の大きい順に返す</li>
+ * </ul>
+ * 例: {@code /api/analytics?groupBy=APPROVER&metric=AVG&measure=APPROVAL_HOURS&limit=10}（承認までの平均時間が長い承認者の上位10人）。
+ * OLTPのテーブルは集計しない。{@link AnalyticsSnapshot}（メモリ上の列指向のスナップショット）で答えるため、
+ * 結果は最大 {@code app.analytics.refresh-seconds} 秒遅れる。
+ * 利用できるのは APPROVER / ADMIN ロールのユーザーのみ（他人の申請内容を含むため）。
+ */
+
+package com.example.expenseworkflow.controller;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import jakarta.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.expenseworkflow.controller.dto.AnalyticsGroupResponse;
+import com.example.expenseworkflow.controller.dto.AnalyticsResponse;
+import com.example.expenseworkflow.domain.User;
+import com.example.expenseworkflow.mapper.UserMapper;
+import com.example.expenseworkflow.store.AnalyticsQuery;
+import com.example.expenseworkflow.store.AnalyticsSnapshot;
+
+@RestController
+@RequestMapping("/api")
+@Profile("!inmemory") // DBの無い inmemory プロファイルでは登録しない（/api/analytics は404）
+public class AnalyticsController {
+
+	private static final String SESSION_KEY_USER_ID = "SESSION_KEY_USER_ID";
+	private static final Set<String> ANALYTICS_ROLES = Set.of("APPROVER", "ADMIN"); // 集計を読めるロール
+
+	private final AnalyticsSnapshot analyticsSnapshot;
+	private final UserMapper userMapper;
+	private final int defaultLimit;
+	private final int maxLimit;
+
+	public AnalyticsController(
+			AnalyticsSnapshot analyticsSnapshot,
+			UserMapper userMapper,
+			@Value("${app.analytics.default-limit:50}") int defaultLimit,
+			@Value("${app.analytics.max-limit:1000}") int maxLimit) {
+		this.analyticsSnapshot = analyticsSnapshot;
+		this.userMapper = userMapper;
+		this.defaultLimit = defaultLimit;
+		this.maxLimit = maxLimit;
+	}
+
+	@GetMapping("/analytics")
+	public AnalyticsResponse analytics(
+			HttpSession session,
+			@RequestParam(value = "groupBy", defaultValue = "NONE") String groupBy,
+			@RequestParam(value = "metric", defaultValue = "COUNT") String metric,
+			@RequestParam(value = "measure", defaultValue = "AMOUNT") String measure,
+			@RequestParam(value = "status", required = false) List<String> status,
+			@RequestParam(value = "from", required = false) String from,
+			@RequestParam(value = "to", required = false) String to,
+			@RequestParam(value = "applicantId", required = false) Long applicantId,
+			@RequestParam(value = "approverId", required = false) Long approverId,
+			@RequestParam(value = "limit", required = false) Integer limit) {
+		requireAnalyticsRole(requireUserId(session));
+
+		Set<String> statuses = new LinkedHashSet<>();
+		if (status != null) {
+			status.stream().map(s -> s.trim().toUpperCase(Locale.ROOT)).filter(s -> !s.isEmpty()).forEach(statuses::add);
+		}
+		AnalyticsQuery query = new AnalyticsQuery(
+				parseEnum(AnalyticsQuery.GroupBy.class, "groupBy", groupBy),
+				parseEnum(AnalyticsQuery.Metric.class, "metric", metric),
+				parseEnum(AnalyticsQuery.Measure.class, "measure", measure),
+				statuses,
+				parseDate("from", from),
+				parseDate("to", to),
+				applicantId,
+				approverId,
+				limit == null ? defaultLimit : Math.max(1, Math.min(limit, maxLimit)));
+
+		AnalyticsSnapshot.Result result = analyticsSnapshot.query(query);
+		List<AnalyticsGroupResponse> groups = result.groups().stream()
+				.map(g -> new AnalyticsGroupResponse(g.key(), g.count(), g.value()))
+				.toList();
+		return new AnalyticsResponse(query.groupBy().name(), query.metric().name(), query.measure().name(),
+				groups, result.matchedRows(), result.totalRows(), result.snapshotAt());
+	}
+
+	private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+		try {
+			return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid " + name + ": " + value);
+		}
+	}
+
+	private static LocalDate parseDate(String name, String value) {
+		if (value == null || value.isBlank()) {
+			return null;
+		}
+		try {
+			return LocalDate.parse(value.trim());
+		} catch (DateTimeParseException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid " + name + ": " + value);
+		}
+	}
+
+	private void requireAnalyticsRole(Long userId) {
+		User user = userMapper.findById(userId);
+		if (user == null) {
+			throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+		}
+		if (!ANALYTICS_ROLES.contains(user.getRole())) {
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+		}
+	}
+
+	private Long requireUserId(HttpSession session) {
+		Object userIdObj = session != null ? session.getAttribute(SESSION_KEY_USER_ID) : null;
+		if (userIdObj instanceof Long userId) {
+			return userId;
+		}
+		throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+	}
+}
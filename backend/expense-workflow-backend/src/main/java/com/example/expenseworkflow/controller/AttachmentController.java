@@ -0,0 +1,239 @@
+/**
+ * 申請の添付ファイル（領収書など）のHTTPエンドポイントを提供するコントローラクラス。
+ * <ul>
+ *   <li>POST /api/requests/{id}/attachments?fileName=... : 添付ファイルのアップロード（本文はファイルそのもの。Content-Type にMIMEタイプを指定）</li>
+ *   <li>GET  /api/requests/{id}/attachments              : 添付ファイル一覧取得</li>
+ *   <li>GET  /api/requests/{id}/attachments/{attachmentId} : 添付ファイルのダウンロード（Range・If-None-Match 対応）</li>
+ * </ul>
+ * アップロードはmultipartを使わずリクエスト本文をそのままファイルストアへ流し込み、ヒープにファイル全体を載せない。
+ * 権限と申請の状態は本文を読む前に1回だけ確かめ、メタデータを登録できなかったときはどこからも参照されないファイル本体を消す。
+ * ダウンロードは Tomcat の sendfile（カーネル内でのファイル→ソケット転送）を使い、
+ * 使えない環境では {@link FileChannel#transferTo} でコピーする。ETag は内容の SHA-256（強いETag）。
+ */
+
+package com.example.expenseworkflow.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.expenseworkflow.controller.dto.AttachmentResponse;
+import com.example.expenseworkflow.domain.Attachment;
+import com.example.expenseworkflow.store.AttachmentStore;
+import com.example.expenseworkflow.store.ContentAddressedFileStore;
+import com.example.expenseworkflow.store.ContentAddressedFileStore.StoredFile;
+import com.example.expenseworkflow.store.IdempotencyStore;
+
+@RestController
+@RequestMapping("/api/requests/{id}/attachments")
+public class AttachmentController {
+
+	private static final String SESSION_KEY_USER_ID = "SESSION_KEY_USER_ID";
+	private static final int MAX_FILE_NAME_LENGTH = 255; // expense_request_attachments.file_name の列長
+
+	// Tomcat の sendfile 用リクエスト属性（対応環境では support が TRUE になる）
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	private final AttachmentStore attachmentStore;
+	private final ContentAddressedFileStore fileStore;
+	private final IdempotencyStore idempotencyStore; // 自動リトライで同じファイルが二重登録されないようにする
+	private final Set<String> allowedTypes; // アップロードを受け付けるMIMEタイプ
+
+	public AttachmentController(
+			AttachmentStore attachmentStore,
+			ContentAddressedFileStore fileStore,
+			IdempotencyStore idempotencyStore,
+			@Value("${app.attachments.allowed-types:application/pdf,image/jpeg,image/png}") String allowedTypes) {
+		this.attachmentStore = attachmentStore;
+		this.fileStore = fileStore;
+		this.idempotencyStore = idempotencyStore;
+		this.allowedTypes = Arrays.stream(allowedTypes.split(","))
+				.map(String::trim)
+				.filter(t -> !t.isEmpty())
+				.collect(Collectors.toUnmodifiableSet());
+	}
+
+	// リクエスト本文をファイルとして保存し、申請に紐づける（201＋Locationで返す）
+	@PostMapping
+	public ResponseEntity<AttachmentResponse> upload(
+			HttpSession session,
+			HttpServletRequest request,
+			@PathVariable("id") Long id,
+			@RequestParam("fileName") String fileName,
+			@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) throws IOException {
+		Long userId = requireUserId(session);
+		String contentType = normalizeContentType(request.getContentType());
+		String safeFileName = sanitizeFileName(fileName);
+		if (request.getContentLengthLong() > fileStore.getMaxBytes()) { // 本文を読む前に宣言サイズで弾く
+			throw new ResponseStatusException(HttpStatus.CONTENT_TOO_LARGE,
+					"Attachment exceeds " + fileStore.getMaxBytes() + " bytes");
+		}
+		attachmentStore.requireUploadable(userId, id);
+
+		StoredFile stored;
+		try (InputStream in = request.getInputStream()) {
+			stored = fileStore.store(in);
+		}
+		// 保存は内容で決まるキーなので再送でも冪等。メタデータ登録だけを Idempotency-Key で1回にする
+		AttachmentResponse body;
+		try {
+			body = idempotencyStore.execute(userId, "POST /api/requests/" + id + "/attachments", idempotencyKey,
+					Objects.hash(stored.sha256(), safeFileName, contentType),
+					() -> toResponse(attachmentStore.register(userId, id, safeFileName, contentType, stored)));
+		} catch (RuntimeException e) {
+			attachmentStore.discardIfUnreferenced(stored); // どの添付からも参照されないファイル本体を残さない
+			throw e;
+		}
+		fileStore.release(stored); // 登録済みなので、以後はDBの参照が削除を止める
+		return ResponseEntity.created(URI.create("/api/requests/" + id + "/attachments/" + body.getId())).body(body);
+	}
+
+	// 申請に紐づく添付ファイルの一覧を返す
+	@GetMapping
+	public List<AttachmentResponse> list(HttpSession session, @PathVariable("id") Long id) {
+		Long userId = requireUserId(session);
+		return attachmentStore.list(userId, id).stream().map(AttachmentController::toResponse).toList();
+	}
+
+	// 添付ファイルをダウンロードする。Range 指定があれば206で一部だけ返す
+	@GetMapping("/{attachmentId}")
+	public void download(
+			HttpSession session,
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("id") Long id,
+			@PathVariable("attachmentId") Long attachmentId) throws IOException {
+		Long userId = requireUserId(session);
+		Attachment attachment = attachmentStore.find(userId, id, attachmentId);
+		Path path = attachment != null ? attachmentStore.contentOf(attachment) : null;
+		if (path == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+		}
+
+		long size = attachment.getSizeBytes();
+		String etag = "\"" + attachment.getSha256() + "\"";
+		response.setHeader(HttpHeaders.ETAG, etag);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable"); // 内容が変わればIDも変わるので長期キャッシュしてよい
+
+		if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+			response.setStatus(HttpStatus.NOT_MODIFIED.value());
+			return;
+		}
+
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		ByteRange range = ifRange == null || ifRange.equals(etag)
+				? ByteRange.parse(request.getHeader(HttpHeaders.RANGE), size)
+				: null; // If-Range が一致しなければ（別の内容を持っているので）全体を返す
+		if (range == ByteRange.UNSATISFIABLE) {
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+			response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+			return;
+		}
+		if (range == null) {
+			range = new ByteRange(0, size - 1);
+			response.setStatus(HttpStatus.OK.value());
+		} else {
+			response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + size);
+		}
+
+		response.setContentType(attachment.getContentType());
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+				ContentDisposition.attachment().filename(attachment.getFileName(), StandardCharsets.UTF_8).build().toString());
+		response.setHeader("X-Content-Type-Options", "nosniff"); // ブラウザにMIMEタイプを推測させない
+		response.setContentLengthLong(range.length());
+
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+			// 本文の書き出しを Tomcat に任せる。カーネルがファイルからソケットへ直接転送する
+			request.setAttribute(SENDFILE_FILENAME, path.toString());
+			request.setAttribute(SENDFILE_START, range.start());
+			request.setAttribute(SENDFILE_END, range.end() + 1); // end は含まない位置で指定する
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			long position = range.start();
+			long remaining = range.length();
+			while (remaining > 0) {
+				long sent = channel.transferTo(position, remaining, out);
+				if (sent <= 0) {
+					break;
+				}
+				position += sent;
+				remaining -= sent;
+			}
+		}
+	}
+
+	private static AttachmentResponse toResponse(Attachment a) {
+		return new AttachmentResponse(a.getId(), a.getFileName(), a.getContentType(), a.getSizeBytes(), a.getSha256(), a.getCreatedAt());
+	}
+
+	// Content-Type からパラメータを除いたMIMEタイプを取り出し、許可リストにあるものだけ受け付ける
+	private String normalizeContentType(String header) {
+		try {
+			MediaType type = header != null ? MediaType.parseMediaType(header) : null;
+			String value = type != null ? type.getType() + "/" + type.getSubtype() : null;
+			if (value != null && allowedTypes.contains(value.toLowerCase())) {
+				return value.toLowerCase();
+			}
+		} catch (InvalidMediaTypeException e) {
+			// 解釈できない Content-Type は未対応として扱う
+		}
+		throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Allowed types: " + allowedTypes);
+	}
+
+	// パス区切りや制御文字を除き、列長に収まるファイル名にする
+	private static String sanitizeFileName(String fileName) {
+		String name = fileName != null ? fileName : "";
+		name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+		name = name.replaceAll("\\p{Cntrl}", "").trim();
+		if (name.isEmpty()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fileName is required");
+		}
+		return name.length() > MAX_FILE_NAME_LENGTH ? name.substring(0, MAX_FILE_NAME_LENGTH) : name;
+	}
+
+	private Long requireUserId(HttpSession session) {
+		Object userIdObj = session != null ? session.getAttribute(SESSION_KEY_USER_ID) : null;
+		if (userIdObj instanceof Long userId) {
+			return userId;
+		}
+		throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+	}
+}
@@ -21,6 +21,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.example.expenseworkflow.controller.dto.LoginRequest;
 import com.example.expenseworkflow.domain.User;
+import com.example.expenseworkflow.jfr.LoginVerificationEvent;
 import com.example.expenseworkflow.mapper.UserMapper;
 
 
@@ -53,7 +54,10 @@ public class AuthController {
 			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 		}
 		
+		LoginVerificationEvent verification = new LoginVerificationEvent(); // JFRで記録中なら、BCrypt照合にかかった時間を残す
+		verification.begin();
 		boolean ok = passwordEncoder.matches(body.getPassword(),  user.getPasswordHash());
+		verification.record(user.getId(), ok, user.getPasswordHash());
 		if (!ok) { // パスワードが一致しなければログイン失敗として扱う
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
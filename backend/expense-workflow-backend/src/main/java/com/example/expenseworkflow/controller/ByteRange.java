@@ -0,0 +1,64 @@
+/**
+ * HTTP の Range ヘッダ（{@code bytes=start-end}）を解釈した結果を表すクラス。
+ * 添付ファイルのダウンロードで、大きなPDFの途中から再開・部分取得できるようにするために使う。
+ * 複数範囲の指定（{@code bytes=0-1,5-9}）は扱わず、ファイル全体を返す（RFC 9110 上、Range は無視してよい）。
+ */
+
+package com.example.expenseworkflow.controller;
+
+public record ByteRange(long start, long end) { // start〜end（両端を含む）
+
+	// 範囲がファイルと重ならない（416 Range Not Satisfiable にする）ことを表す値
+	public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+	public long length() {
+		return end - start + 1;
+	}
+
+	/**
+	 * Range ヘッダを解釈する。
+	 *
+	 * @param header Range ヘッダの値
+	 * @param size   ファイルサイズ
+	 * @return 部分取得する範囲。ヘッダが無い・解釈できない・複数範囲の場合は null（全体を返す）、
+	 *         ファイルと重ならない場合は {@link #UNSATISFIABLE}
+	 */
+	public static ByteRange parse(String header, long size) {
+		if (header == null || !header.startsWith("bytes=")) {
+			return null;
+		}
+		String spec = header.substring("bytes=".length()).trim();
+		if (spec.contains(",")) {
+			return null;
+		}
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		String first = spec.substring(0, dash).trim();
+		String last = spec.substring(dash + 1).trim();
+		try {
+			if (first.isEmpty()) { // bytes=-500 : 末尾から500バイト
+				if (last.isEmpty()) {
+					return null;
+				}
+				long suffix = Long.parseLong(last);
+				if (suffix <= 0 || size == 0) {
+					return UNSATISFIABLE;
+				}
+				return new ByteRange(Math.max(0, size - suffix), size - 1);
+			}
+			long start = Long.parseLong(first);
+			long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1); // 末尾を超える指定はファイル末尾までに切り詰める
+			if (start < 0 || start >= size) {
+				return UNSATISFIABLE;
+			}
+			if (end < start) {
+				return null; // last < first は構文上無効な指定なので無視する
+			}
+			return new ByteRange(start, end);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
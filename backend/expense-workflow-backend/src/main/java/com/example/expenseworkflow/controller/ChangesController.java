@@ -0,0 +1,135 @@
+/**
+ * 申請の変更フィード（会計システム連携などの下流向け）を提供するコントローラクラス。
+ * <ul>
+ *   <li>GET /api/changes?since={cursor}&amp;limit={N} : since より後の状態遷移を、対象申請の現在の内容と合わせて
+ *       NDJSON（1行1レコードのJSON）で返す</li>
+ * </ul>
+ * expense_request_actions.id をカーソルにした主キーの範囲検索なので、下流は前回以降の変更件数分だけを取り込める。
+ * 次回の since に渡す値は X-Next-Cursor、続きがあるかは X-Has-More ヘッダで返す。
+ * シャーディング時のカーソルはシャードごとの操作履歴IDのカンマ区切り（{@link ChangeCursor}）なので、下流は値を解釈せずそのまま渡す。
+ * 直近 {@code app.changes.settle-seconds} 秒以内に記録された遷移は、採番順とコミット順が前後しても
+ * 取りこぼさないよう次回の取得に回す。締め切りは created_at と同じDBの時計（NOW()）で計算する。
+ * これは経験則による猶予で、settle-seconds より長く開いていたトランザクションの遷移は、コミットされた時には
+ * カーソルが先へ進んでいて取りこぼすことがある。
+ * 利用できるのは APPROVER / ADMIN ロールのユーザーのみ（他人の申請内容を含むため）。
+ */
+
+package com.example.expenseworkflow.controller;
+
+import java.util.List;
+import java.util.Set;
+
+import jakarta.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.expenseworkflow.controller.dto.ChangeEventResponse;
+import com.example.expenseworkflow.domain.User;
+import com.example.expenseworkflow.mapper.UserMapper;
+import com.example.expenseworkflow.store.ChangeCursor;
+import com.example.expenseworkflow.store.ChangePage;
+import com.example.expenseworkflow.store.RequestStore;
+import com.example.expenseworkflow.store.ShardRouter;
+
+import tools.jackson.databind.json.JsonMapper;
+
+@RestController
+@RequestMapping("/api")
+public class ChangesController {
+
+	public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor"; // 次回の since に渡す値
+	public static final String HAS_MORE_HEADER = "X-Has-More"; // limit 件で打ち切った（続きがある）かどうか
+
+	private static final String SESSION_KEY_USER_ID = "SESSION_KEY_USER_ID";
+	private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+	private static final Set<String> FEED_ROLES = Set.of("APPROVER", "ADMIN"); // フィードを読めるロール
+	private static final int FLUSH_EVERY = 100; // この行数ごとにクライアントへ送り出す
+
+	private final RequestStore requestStore;
+	private final ShardRouter shardRouter; // カーソルの位置の個数（シャード数）を決める
+	private final UserMapper userMapper;
+	private final JsonMapper jsonMapper;
+	private final int defaultLimit;
+	private final int maxLimit;
+	private final long settleSeconds;
+
+	public ChangesController(
+			RequestStore requestStore,
+			ShardRouter shardRouter,
+			UserMapper userMapper,
+			JsonMapper jsonMapper,
+			@Value("${app.changes.default-limit:500}") int defaultLimit,
+			@Value("${app.changes.max-limit:5000}") int maxLimit,
+			@Value("${app.changes.settle-seconds:5}") long settleSeconds) {
+		this.requestStore = requestStore;
+		this.shardRouter = shardRouter;
+		this.userMapper = userMapper;
+		this.jsonMapper = jsonMapper;
+		this.defaultLimit = defaultLimit;
+		this.maxLimit = maxLimit;
+		this.settleSeconds = settleSeconds;
+	}
+
+	// since より後の遷移を1ページ分取得し、NDJSONで書き出す（DB接続は書き出し前に返す）
+	@GetMapping("/changes")
+	public ResponseEntity<StreamingResponseBody> changes(
+			HttpSession session,
+			@RequestParam(value = "since", defaultValue = "0") String since,
+			@RequestParam(value = "limit", required = false) Integer limit) {
+		requireFeedRole(requireUserId(session));
+		ChangeCursor cursor;
+		try {
+			cursor = ChangeCursor.parse(since, shardRouter.shardCount());
+		} catch (IllegalArgumentException e) { // NumberFormatException を含む
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid since cursor");
+		}
+		int pageSize = limit == null ? defaultLimit : Math.max(1, Math.min(limit, maxLimit));
+
+		ChangePage changes = requestStore.changesSince(cursor, settleSeconds, pageSize);
+		List<ChangeEventResponse> page = changes.items();
+
+		StreamingResponseBody body = out -> {
+			int written = 0;
+			for (ChangeEventResponse change : page) {
+				out.write(jsonMapper.writeValueAsBytes(change));
+				out.write('\n');
+				if (++written % FLUSH_EVERY == 0) {
+					out.flush();
+				}
+			}
+			out.flush();
+		};
+		return ResponseEntity.ok()
+				.contentType(NDJSON)
+				.header(NEXT_CURSOR_HEADER, changes.next().toString())
+				.header(HAS_MORE_HEADER, Boolean.toString(page.size() == pageSize))
+				.body(body);
+	}
+
+	private void requireFeedRole(Long userId) {
+		User user = userMapper.findById(userId);
+		if (user == null) {
+			throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+		}
+		if (!FEED_ROLES.contains(user.getRole())) {
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+		}
+	}
+
+	private Long requireUserId(HttpSession session) {
+		Object userIdObj = session != null ? session.getAttribute(SESSION_KEY_USER_ID) : null;
+		if (userIdObj instanceof Long userId) {
+			return userId;
+		}
+		throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+	}
+}
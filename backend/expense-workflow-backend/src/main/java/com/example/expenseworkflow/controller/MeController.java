@@ -2,6 +2,7 @@
  * ログイン状態の確認とログイン中ユーザー情報の返却を担うコントローラクラス。
  * GET /api/me に対し、セッションにuserIdが存在すれば200＋ユーザー情報を返し、
  * 未ログインの場合は401を返す。フロントエンドのログイン状態判定の正として機能する。
+ * 複数タブの同時リロードでも同じユーザーの検索は {@link SingleFlight} で1クエリにまとめる。
  */
 
 package com.example.expenseworkflow.controller;
@@ -17,6 +18,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.expenseworkflow.controller.dto.MeResponse;
 import com.example.expenseworkflow.domain.User;
 import com.example.expenseworkflow.mapper.UserMapper;
+import com.example.expenseworkflow.store.SingleFlight;
 
 import lombok.RequiredArgsConstructor;
 
@@ -28,6 +30,7 @@ public class MeController {
 	
 	private static final String SESSION_KEY_USER_ID = "SESSION_KEY_USER_ID"; // AuthController と同じキーでユーザーIDを読む
 	private final UserMapper userMapper;
+	private final SingleFlight singleFlight; // 同じユーザーの同時 /api/me を1クエリにまとめる
 	
 	
 	@GetMapping("/me")
@@ -43,7 +46,7 @@ public class MeController {
 			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 		}
 		
-		User user = userMapper.findById(userId);
+		User user = singleFlight.execute("findUserById", userId, () -> userMapper.findById(userId));
 		if (user == null) {
 			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 		}
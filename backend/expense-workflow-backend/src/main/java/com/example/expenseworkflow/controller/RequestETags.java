@@ -0,0 +1,41 @@
+/**
+ * 申請の版番号（expense_requests.version）とHTTPの ETag / If-Match ヘッダを相互変換するユーティリティクラス。
+ * ETag は {@code "3"} のような強いETagとして返し、If-Match は {@code "3"}・{@code W/"3"}・{@code *} を受け付ける。
+ */
+
+package com.example.expenseworkflow.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public final class RequestETags {
+
+	public static final String IF_MATCH = "If-Match"; // 更新系APIで版番号を受け取るヘッダ名
+
+	private RequestETags() {
+	}
+
+	// 版番号をETagヘッダ値（ダブルクォート付き）に変換する
+	public static String format(Long version) {
+		return "\"" + (version != null ? version : 0L) + "\"";
+	}
+
+	// If-Match ヘッダ値を版番号に変換する。未指定・"*" なら null（版を問わない）を返す
+	public static Long parseIfMatch(String ifMatch) {
+		if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+			return null;
+		}
+		String value = ifMatch.trim();
+		if (value.startsWith("W/")) {
+			value = value.substring(2);
+		}
+		if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+			value = value.substring(1, value.length() - 1);
+		}
+		try {
+			return Long.valueOf(value);
+		} catch (NumberFormatException e) {
+			throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match any version");
+		}
+	}
+}
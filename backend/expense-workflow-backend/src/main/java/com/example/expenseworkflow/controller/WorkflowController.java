@@ -11,11 +11,14 @@
  *   <li>POST /api/requests/{id}/reject   : 却下（SUBMITTED→REJECTED）</li>
  * </ul>
  * 実処理は {@link com.example.expenseworkflow.store.RequestStore} に委譲する。
+ * POST系の操作は Idempotency-Key ヘッダに対応し、再送時は実処理を繰り返さずに最初の結果を返す。
+ * また If-Match ヘッダ（GET /api/inbox/{id} のETag）で版番号を指定でき、他の操作に先を越されていれば412を返す。
  */
 
 package com.example.expenseworkflow.controller;
 
 import java.util.List;
+import java.util.Objects;
 
 import jakarta.servlet.http.HttpSession;
 
@@ -24,6 +27,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
@@ -31,6 +35,7 @@ import org.springframework.web.server.ResponseStatusException;
 import com.example.expenseworkflow.controller.dto.InboxItemResponse;
 import com.example.expenseworkflow.controller.dto.RequestDetailResponse;
 import com.example.expenseworkflow.controller.dto.RequestHistoryItemResponse;
+import com.example.expenseworkflow.store.IdempotencyStore;
 import com.example.expenseworkflow.store.RequestStore;
 
 import lombok.RequiredArgsConstructor;
@@ -45,6 +50,7 @@ public class WorkflowController {
 	private static final String SESSION_KEY_USER_ID = "SESSION_KEY_USER_ID"; // セッションからログインユーザーIDを取り出すときに使う「キー文字列」を定数化しています（打ち間違い防止）。
 
 	private final RequestStore requestStore; // 申請の検索や状態遷移（submit/approve/return）を行う依存先。ここに実処理を委譲します。
+	private final IdempotencyStore idempotencyStore; // Idempotency-Key 付きの再送に前回の結果を返すためのストア
 
 	
 	 // GET /inbox をこのメソッドに割り当てます（受信箱＝承認待ち等の一覧を返す想定）。
@@ -63,29 +69,33 @@ public class WorkflowController {
 		if (detail == null) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		return ResponseEntity.ok(detail);
+		return ResponseEntity.ok().eTag(RequestETags.format(detail.getVersion())).body(detail);
 	}
 
 	// 申請を提出してDRAFT→SUBMITTEDへ遷移させる
 	@PostMapping("/requests/{id}/submit")
-	public ResponseEntity<Void> submit(HttpSession session, @PathVariable("id") Long id) {
+	public ResponseEntity<Void> submit(
+			HttpSession session,
+			@PathVariable("id") Long id,
+			@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+			@RequestHeader(value = RequestETags.IF_MATCH, required = false) String ifMatch) {
 		Long userId = requireUserId(session);
-		boolean ok = requestStore.submit(userId, id);
-		if (!ok) {
-			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-		}
-		return ResponseEntity.ok().build();
+		Long expectedVersion = RequestETags.parseIfMatch(ifMatch);
+		return idempotencyStore.execute(userId, "POST /api/requests/" + id + "/submit", idempotencyKey, Objects.hashCode(expectedVersion),
+				() -> toResponse(requestStore.submit(userId, id, expectedVersion)));
 	}
 
 	// 申請を承認してSUBMITTED→APPROVEDへ遷移させる
 	@PostMapping("/requests/{id}/approve")
-	public ResponseEntity<Void> approve(HttpSession session, @PathVariable("id") Long id) {
+	public ResponseEntity<Void> approve(
+			HttpSession session,
+			@PathVariable("id") Long id,
+			@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+			@RequestHeader(value = RequestETags.IF_MATCH, required = false) String ifMatch) {
 		Long userId = requireUserId(session);
-		boolean ok = requestStore.approve(userId, id);
-		if (!ok) {
-			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-		}
-		return ResponseEntity.ok().build();
+		Long expectedVersion = RequestETags.parseIfMatch(ifMatch);
+		return idempotencyStore.execute(userId, "POST /api/requests/" + id + "/approve", idempotencyKey, Objects.hashCode(expectedVersion),
+				() -> toResponse(requestStore.approve(userId, id, expectedVersion)));
 	}
 
 	// 申請を差戻してSUBMITTED→RETURNEDへ遷移させる
@@ -93,28 +103,28 @@ public class WorkflowController {
 	public ResponseEntity<Void> returnRequest(
 			HttpSession session,
 			@PathVariable("id") Long id,
-			@org.springframework.web.bind.annotation.RequestBody com.example.expenseworkflow.controller.dto.ReturnRequestRequest body
+			@org.springframework.web.bind.annotation.RequestBody com.example.expenseworkflow.controller.dto.ReturnRequestRequest body,
+			@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+			@RequestHeader(value = RequestETags.IF_MATCH, required = false) String ifMatch
 	) { // メソッド定義を開始する
 		Long userId = requireUserId(session);
 		String comment = body != null ? body.getComment() : null;
-		boolean ok = requestStore.returnRequest(userId, id, comment);
-		if (!ok) {
-			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-		} // 失敗時分岐を閉じる
-		return ResponseEntity.ok().build();
+		Long expectedVersion = RequestETags.parseIfMatch(ifMatch);
+		return idempotencyStore.execute(userId, "POST /api/requests/" + id + "/return", idempotencyKey, Objects.hash(comment, expectedVersion),
+				() -> toResponse(requestStore.returnRequest(userId, id, comment, expectedVersion)));
 	}
 	
 	// 申請者が申請を取り下げる（DRAFT/RETURNED→WITHDRAWN）
 	@PostMapping("/requests/{id}/withdraw")
 	public ResponseEntity<Void> withdraw(
 			HttpSession session,
-			@PathVariable("id") Long id) {
+			@PathVariable("id") Long id,
+			@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+			@RequestHeader(value = RequestETags.IF_MATCH, required = false) String ifMatch) {
 		Long userId = requireUserId(session);
-		boolean ok = requestStore.withdraw(userId, id);
-		if (!ok) {
-			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-		}
-		return ResponseEntity.ok().build();
+		Long expectedVersion = RequestETags.parseIfMatch(ifMatch);
+		return idempotencyStore.execute(userId, "POST /api/requests/" + id + "/withdraw", idempotencyKey, Objects.hashCode(expectedVersion),
+				() -> toResponse(requestStore.withdraw(userId, id, expectedVersion)));
 	}
 
 	// 承認者が申請を却下する（SUBMITTED→REJECTED）
@@ -123,13 +133,14 @@ public class WorkflowController {
 			HttpSession session,
 			@PathVariable("id") Long id,
 			@org.springframework.web.bind.annotation.RequestBody
-			com.example.expenseworkflow.controller.dto.ReturnRequestRequest body) {
+			com.example.expenseworkflow.controller.dto.ReturnRequestRequest body,
+			@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+			@RequestHeader(value = RequestETags.IF_MATCH, required = false) String ifMatch) {
 		Long userId = requireUserId(session);
-		boolean ok = requestStore.reject(userId, id, body.getComment());
-		if (!ok) {
-			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-		}
-		return ResponseEntity.ok().build();
+		String comment = body.getComment();
+		Long expectedVersion = RequestETags.parseIfMatch(ifMatch);
+		return idempotencyStore.execute(userId, "POST /api/requests/" + id + "/reject", idempotencyKey, Objects.hash(comment, expectedVersion),
+				() -> toResponse(requestStore.reject(userId, id, comment, expectedVersion)));
 	}
 	
     // 承認者本人が担当する申請の操作履歴を返す
@@ -144,6 +155,14 @@ public class WorkflowController {
         return ResponseEntity.ok(history);
     }
 
+	// 状態遷移の成否を 200 / 404 のレスポンスに変換する共通処理。
+	private static ResponseEntity<Void> toResponse(boolean ok) {
+		if (!ok) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		return ResponseEntity.ok().build();
+	}
+
 	 // セッションからユーザーIDを「必須で」取り出す共通処理。取れない/不正なら401にします。
 	private Long requireUserId(HttpSession session) {
 		Object userIdObj = session != null ? session.getAttribute(SESSION_KEY_USER_ID) : null;
@@ -0,0 +1,20 @@
+/**
+ * GET /api/analytics の1グループ分の集計結果を表すDTOクラス。
+ * key はグループ化のキーに応じて、ユーザーID・ステータス・年月（yyyy-MM）、グループ化なしなら "all" になる。
+ */
+
+package com.example.expenseworkflow.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsGroupResponse {
+
+	private String key; // グループのキー
+	private long count; // 対象の申請件数
+	private double value; // 集計値（金額なら円、承認までの時間なら時間）
+}
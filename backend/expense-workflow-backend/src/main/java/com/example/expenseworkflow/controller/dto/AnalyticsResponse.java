@@ -0,0 +1,27 @@
+/**
+ * GET /api/analytics のレスポンスとして、グループごとの集計結果とスナップショットの情報を返すDTOクラス。
+ * snapshotAt はスナップショットに最後に差分を取り込んだ日時で、結果はこの時点までの内容になる。
+ */
+
+package com.example.expenseworkflow.controller.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsResponse {
+
+	private String groupBy; // グループ化のキー
+	private String metric; // 集計方法
+	private String measure; // 集計した値
+	private List<AnalyticsGroupResponse> groups; // 値の大きい順のグループ（limit 件まで）
+	private int matchedRows; // 条件に合った申請の件数
+	private int totalRows; // スナップショット内の申請の件数
+	private Instant snapshotAt; // スナップショットの日時
+}
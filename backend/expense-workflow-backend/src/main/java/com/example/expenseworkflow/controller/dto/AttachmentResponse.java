@@ -0,0 +1,26 @@
+/**
+ * 添付ファイルAPIのレスポンスとして、添付ファイル1件のメタデータを表すDTOクラス。
+ * sha256 はダウンロード時のETagと同じ値で、クライアント側の重複確認にも使える。
+ */
+
+package com.example.expenseworkflow.controller.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentResponse {
+
+	private Long id;
+	private String fileName; // アップロード時のファイル名
+	private String contentType; // MIMEタイプ（例：application/pdf）
+	private long sizeBytes; // ファイルサイズ（バイト）
+	private String sha256; // 内容のSHA-256（16進）
+	private LocalDateTime createdAt; // アップロード日時
+
+}
@@ -0,0 +1,36 @@
+/**
+ * GET /api/changes の1行（NDJSONの1レコード）として、申請の状態遷移1件と対象申請の現在の内容を表すDTOクラス。
+ * actionId は expense_request_actions.id（単調増加）で、次回の since に渡すカーソルになる。
+ * 会計システム連携などの下流システムが、前回以降の変更だけを取り込むために使う。
+ */
+
+package com.example.expenseworkflow.controller.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeEventResponse {
+
+	private Long actionId; // 操作履歴ID（カーソル）
+	private String action; // 操作種別（SUBMIT・APPROVE等）
+	private String fromStatus; // 操作前ステータス
+	private String toStatus; // 操作後ステータス
+	private Long actorId; // 操作したユーザーID
+	private String comment; // コメント（差戻し・却下など）
+	private LocalDateTime actedAt; // 操作日時
+
+	private Long requestId; // 対象申請ID
+	private Long applicantId; // 申請者ユーザーID
+	private Long currentApproverId; // 現在の承認者ユーザーID
+	private String title; // 申請の現在の件名
+	private Integer amount; // 申請の現在の金額
+	private String status; // 申請の現在のステータス
+	private Long version; // 申請の現在の版番号
+
+}
@@ -1,6 +1,7 @@
 /**
  * GET /api/requests/{id}・GET /api/inbox/{id} のレスポンスとして、申請の詳細情報を返すDTOクラス。
  * 申請の基本情報（id・件名・金額・ステータス・備考）に加えて、操作履歴（actions）と差戻しコメントを保持する。
+ * duplicateOfRequestId は提出時に二重申請の疑いを検出した場合の先行申請ID（承認者への注意喚起用）。
  */
 
 package com.example.expenseworkflow.controller.dto;
@@ -21,4 +22,6 @@ public class RequestDetailResponse {
 	private String note; // 備考を返すフィールドを保持する
 	private List<RequestActionResponse> actions; // 履歴actionsを配列で返すフィールドを保持する
 	private String lastReturnComment; // 最新の差戻しコメントを返すフィールドを保持する（差戻しなしの場合はnull）
+	private Long version; // 楽観ロック用の版番号（ETagヘッダと同じ値。更新時に If-Match で送り返す）
+	private Long duplicateOfRequestId; // 申請者・金額・経費発生日・件名が一致する先行申請のID（重複の疑いが無ければnull）
 }
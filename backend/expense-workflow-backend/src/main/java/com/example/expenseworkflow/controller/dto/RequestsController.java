@@ -1,10 +1,10 @@
 /**
  * 申請（ExpenseRequest）のCRUD操作を提供するコントローラクラス。
  * <ul>
- *   <li>GET    /api/requests       : ログインユーザー自身の申請一覧取得</li>
- *   <li>POST   /api/requests       : 申請の新規作成</li>
- *   <li>GET    /api/requests/{id}  : 申請詳細取得（自分の申請のみ）</li>
- *   <li>PATCH  /api/requests/{id}  : 差戻し（RETURNED）申請の内容編集</li>
+ *   <li>GET    /api/requests       : ログインユーザー自身の申請一覧取得（?fields=title,status 等で返す列を絞れる）</li>
+ *   <li>POST   /api/requests       : 申請の新規作成（Idempotency-Key ヘッダで再送時の二重作成を防ぐ）</li>
+ *   <li>GET    /api/requests/{id}  : 申請詳細取得（自分の申請のみ。版番号をETagで返す）</li>
+ *   <li>PATCH  /api/requests/{id}  : 差戻し（RETURNED）申請の内容編集（If-Match の版と違えば412）</li>
  *   <li>GET    /api/requests/{id}/history : 申請者向け操作履歴取得</li>
  * </ul>
  * 実処理は {@link com.example.expenseworkflow.store.RequestStore} に委譲する。
@@ -13,7 +13,13 @@
 package com.example.expenseworkflow.controller.dto;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 
 import jakarta.servlet.http.HttpSession;
 
@@ -24,11 +30,15 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.example.expenseworkflow.controller.RequestETags;
 import com.example.expenseworkflow.controller.UpdateRequestRequest;
+import com.example.expenseworkflow.store.IdempotencyStore;
 import com.example.expenseworkflow.store.RequestStore;
 
 import lombok.RequiredArgsConstructor;
@@ -39,22 +49,41 @@ import lombok.RequiredArgsConstructor;
 public class RequestsController {
 
 	private static final String SESSION_KEY_USER_ID = "SESSION_KEY_USER_ID";
+	private static final Map<String, Function<RequestSummaryResponse, Object>> SUMMARY_FIELDS = Map.of( // fieldsに指定できる列名と値の取り出し方（idは常に返す）
+			"title", RequestSummaryResponse::getTitle,
+			"amount", RequestSummaryResponse::getAmount,
+			"status", RequestSummaryResponse::getStatus,
+			"note", RequestSummaryResponse::getNote,
+			"lastReturnComment", RequestSummaryResponse::getLastReturnComment);
 	private final RequestStore requestStore; 
+	private final IdempotencyStore idempotencyStore; // Idempotency-Key 付きの再送に前回の結果を返すためのストア
 	
 
+	// fields 未指定なら全列、指定時は id + 指定列だけをSELECTして、そのキーだけを返す（例：?fields=title,status）
 	@GetMapping("/requests")
-	public List<RequestSummaryResponse> listRequests(HttpSession session) {
+	public List<?> listRequests(HttpSession session, @RequestParam(value = "fields", required = false) String fields) {
 		Long userId = requireUserId(session);
-		return requestStore.listByApplicant(userId);
+		Set<String> selected = parseFields(fields);
+		List<RequestSummaryResponse> items = requestStore.listByApplicant(userId, selected);
+		if (selected == null) {
+			return items;
+		}
+		return items.stream().map(item -> sparse(item, selected)).toList();
 	}
 
-	// 申請を新規作成して、作成したサマリを返す
+	// 申請を新規作成して、作成したサマリを返す（同じIdempotency-Keyの再送には最初に作成したサマリを返す）
 	@PostMapping("/requests")
-	public RequestSummaryResponse createRequest(HttpSession session, @RequestBody CreateRequestRequest body) {
+	public RequestSummaryResponse createRequest(
+			HttpSession session,
+			@RequestBody CreateRequestRequest body,
+			@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+		Long userId = requireUserId(session);
 		String safeTitle = body != null && body.getTitle() != null ? body.getTitle() : "";
 		int safeAmount = body != null ? body.getAmount() : 0;
 		String safeNote = body != null && body.getNote() != null ? body.getNote() : "";
-		return requestStore.create(requireUserId(session), safeTitle, safeAmount, safeNote);
+		return idempotencyStore.execute(userId, "POST /api/requests", idempotencyKey,
+				Objects.hash(safeTitle, safeAmount, safeNote),
+				() -> requestStore.create(userId, safeTitle, safeAmount, safeNote));
 	}
 
 	// URLの{id}を受け取り詳細を返す
@@ -75,27 +104,37 @@ public class RequestsController {
 				found.getStatus(),
 				found.getNote(),
 				Collections.<RequestActionResponse> emptyList(),
-				found.getLastReturnComment()
+				found.getLastReturnComment(),
+				found.getVersion(),
+				null // 重複の疑いは承認者向けの詳細（/api/inbox/{id}）でだけ返す
 		);
 
-		return ResponseEntity.ok(detail);
+		return ResponseEntity.ok().eTag(RequestETags.format(found.getVersion())).body(detail); // 版番号をETagで返し、更新時に If-Match で送り返してもらう
 
 	}
 
 	
 	// 差戻し（RETURNED）の申請を編集して保存する（表示は次のGETで確認する前提で204を返す）
 	@PatchMapping("/requests/{id}")
-	public ResponseEntity<Void> updateRequest(HttpSession session, @PathVariable("id") Long id, @RequestBody UpdateRequestRequest body) {
+	public ResponseEntity<Void> updateRequest(
+			HttpSession session,
+			@PathVariable("id") Long id,
+			@RequestBody UpdateRequestRequest body,
+			@RequestHeader(value = RequestETags.IF_MATCH, required = false) String ifMatch) {
 
 		String safeTitle = body != null && body.getTitle() != null ? body.getTitle() : "";
 		int safeAmount = body != null ? body.getAmount() : 0;
 		String safeNote = body != null && body.getNote() != null ? body.getNote() : "";
 
-		boolean updated = requestStore.updateReturned(requireUserId(session), id, safeTitle, safeAmount, safeNote);
+		Long expectedVersion = RequestETags.parseIfMatch(ifMatch);
+		boolean updated = requestStore.updateReturned(requireUserId(session), id, safeTitle, safeAmount, safeNote, expectedVersion);
 		if (!updated) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
 
+		if (expectedVersion != null) {
+			return ResponseEntity.noContent().eTag(RequestETags.format(expectedVersion + 1)).build(); // 版を指定して更新できたときは更新後の版を返す
+		}
 		return ResponseEntity.noContent().build();
 
 	}
@@ -113,6 +152,35 @@ public class RequestsController {
         return ResponseEntity.ok(history);
     }
 	
+	// "title,status" 形式の fields を列名Setへ変換する。未知の列名はSQLへ渡さず400にする
+	private Set<String> parseFields(String fields) {
+		if (fields == null || fields.isBlank()) {
+			return null;
+		}
+		Set<String> result = new LinkedHashSet<>();
+		for (String raw : fields.split(",")) {
+			String name = raw.trim();
+			if (name.isEmpty() || "id".equals(name)) {
+				continue;
+			}
+			if (!SUMMARY_FIELDS.containsKey(name)) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown field: " + name);
+			}
+			result.add(name);
+		}
+		return result;
+	}
+
+	// 指定された列だけを持つマップに詰め替える（値がnullの列もキーは残し、指定しなかった列は出さない）
+	private static Map<String, Object> sparse(RequestSummaryResponse item, Set<String> fields) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("id", item.getId());
+		for (String name : fields) {
+			result.put(name, SUMMARY_FIELDS.get(name).apply(item));
+		}
+		return result;
+	}
+
 	private Long requireUserId(HttpSession session) { // 未ログインで申請作成できないようにユーザーIDを必須化する
 		Object userIdObj = session != null ? session.getAttribute(SESSION_KEY_USER_ID) : null;
 		if (userIdObj == null) {
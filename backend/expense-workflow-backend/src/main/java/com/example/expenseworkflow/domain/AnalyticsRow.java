@@ -0,0 +1,25 @@
+/**
+ * 分析用スナップショット（{@link com.example.expenseworkflow.store.AnalyticsSnapshot}）へ読み込む申請1件分の列を表すドメインクラス。
+ * 初回の全件読み込みでは申請の列だけ、承認日時の読み込みでは requestId と approvedAt だけ、
+ * 差分の取り込みでは操作履歴のID（actionId）と申請の現在の列が入る。
+ */
+
+package com.example.expenseworkflow.domain;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import lombok.Data;
+
+@Data
+public class AnalyticsRow {
+	private Long actionId; // 差分の取り込み元になった操作履歴ID（全件読み込みではnull）
+	private Long requestId;
+	private Long applicantId;
+	private Long approverId; // current_approver_id（承認済みなら最終承認者）
+	private Integer amount;
+	private String status;
+	private LocalDate expenseDate;
+	private LocalDateTime submittedAt;
+	private LocalDateTime approvedAt; // 最終承認（to_status=APPROVED の操作）の日時。未承認ならnull
+}
@@ -0,0 +1,14 @@
+/**
+ * approver_budget_ledger を承認者ごとに月単位で合計した結果を表すドメインクラス。
+ * 起動後・月替わり後に {@link com.example.expenseworkflow.store.ApproverBudget} がメモリ上の消化額を作り直すときに使う。
+ */
+
+package com.example.expenseworkflow.domain;
+
+import lombok.Data;
+
+@Data
+public class ApproverBudgetUsage {
+	private Long approverId;
+	private Long usedAmount; // その月に最終承認した金額の合計
+}
@@ -0,0 +1,24 @@
+/**
+ * expense_request_attachmentsテーブルの1レコードを表すドメインクラス（エンティティ）。
+ * 領収書などの添付ファイルのメタデータ（ファイル名・MIMEタイプ・サイズ・SHA-256）を保持する。
+ * ファイル本体はDBではなく {@link com.example.expenseworkflow.store.ContentAddressedFileStore} に保存する。
+ */
+
+package com.example.expenseworkflow.domain;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+
+@Data
+public class Attachment {
+	private Long id;
+	private Long requestId;
+	private Long uploaderId;
+	private String fileName;
+	private String contentType;
+	private Long sizeBytes;
+	private String sha256; // ファイルストア上の保存キー兼ETag
+	private LocalDateTime createdAt;
+
+}
@@ -30,5 +30,8 @@ public class ExpenseRequest {
 	private LocalDateTime createdAt;
 	private LocalDateTime updatedAt;
 	private String note;
+	private Long version; // 楽観ロック用の版番号（ETagとして返し、If-Matchで照合する）
+	private LocalDateTime escalatedAt; // 最終エスカレーション日時（承認期限超過で上長へ回付・警告した日時）
+	private Long duplicateOfRequestId; // 重複の疑いがある先行申請ID（提出時に申請者・金額・経費発生日・件名が一致した申請）
 
 }
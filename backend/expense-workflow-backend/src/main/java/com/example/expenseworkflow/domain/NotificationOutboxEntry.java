@@ -0,0 +1,26 @@
+/**
+ * notification_outbox の1行（承認者への通知1件）を、送信に使う通知先・申請の内容と合わせて表すドメインクラス。
+ * {@link com.example.expenseworkflow.notification.NotificationDispatcher} が送信中として予約した行を読み直すときに使う。
+ */
+
+package com.example.expenseworkflow.domain;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+
+@Data
+public class NotificationOutboxEntry {
+	private Long id;
+	private Long recipientId;
+	private String recipientEmail; // users.email
+	private String recipientName; // users.name
+	private Long requestId;
+	private String eventType; // SUBMITTED / FORWARDED / ESCALATED
+	private Long actorId;
+	private String actorName; // 操作したユーザーの users.name
+	private String title; // 申請タイトル（申請が見つからなければnull）
+	private Integer amount;
+	private int attempts; // 今回の予約を含む送信の試行回数
+	private LocalDateTime createdAt;
+}
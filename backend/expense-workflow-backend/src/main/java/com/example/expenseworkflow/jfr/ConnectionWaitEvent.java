@@ -0,0 +1,30 @@
+/**
+ * コネクションプールから接続を取り出すまでの待ち1回分を表すJFRイベント（{@link JfrConfig} が DataSource を包んで記録する）。
+ * 取り出す直前にプールで接続待ちだったスレッド数も残し、待ちがプール不足によるものかを見分けられるようにする。
+ */
+
+package com.example.expenseworkflow.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(ConnectionWaitEvent.NAME)
+@Label("Connection Wait")
+@Category({ "Expense Workflow", "Database" })
+@Description("DataSource.getConnection の待ち時間")
+public class ConnectionWaitEvent extends Event {
+
+	public static final String NAME = "com.example.expenseworkflow.ConnectionWait";
+
+	@Label("Pool Name")
+	String poolName;
+
+	@Label("Threads Awaiting")
+	int threadsAwaiting; // 取り出し開始時点でプールの空きを待っていたスレッド数（不明なら-1）
+
+	@Label("Success")
+	boolean success;
+}
@@ -0,0 +1,100 @@
+/**
+ * 独自のJFRイベントを登録し、DataSource のBeanを包んで接続の取り出し待ちを {@link ConnectionWaitEvent} として記録するコンフィグクラス。
+ * JFRで記録していない間のイベントは何もしないので、常に有効にしておける（{@code app.jfr.events.enabled=false} で外せる）。
+ * 記録は {@code -XX:StartFlightRecording:settings=jfr/expense-workflow.jfc} のように起動オプションで始めるか、
+ * {@code app.jfr.recording.enabled=true} で {@link JfrRecording} に始めさせる。
+ */
+
+package com.example.expenseworkflow.jfr;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import jdk.jfr.FlightRecorder;
+
+@Configuration
+@ConditionalOnProperty(name = "app.jfr.events.enabled", havingValue = "true", matchIfMissing = true)
+public class JfrConfig {
+
+	static {
+		// 記録を始める前から JMC やイベント一覧（jfr summary / jcmd JFR.configure）に型が見えるよう登録しておく
+		FlightRecorder.register(WorkflowTransitionEvent.class);
+		FlightRecorder.register(LoginVerificationEvent.class);
+		FlightRecorder.register(SqlStatementEvent.class);
+		FlightRecorder.register(ConnectionWaitEvent.class);
+	}
+
+	// DataSource のBeanを接続待ちのイベントを出すラッパーに差し替える
+	@Bean
+	static BeanPostProcessor jfrDataSourcePostProcessor() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource ds && !(bean instanceof JfrDataSource)) {
+					return new JfrDataSource(ds);
+				}
+				return bean;
+			}
+		};
+	}
+
+	// getConnection の待ちを記録する DataSource（unwrap / isWrapperFor は元の DataSource へ委譲される）
+	// 差し替え後のBeanに対して終了時の close が呼ばれるので、元の DataSource のプールを閉じるよう委譲する
+	static class JfrDataSource extends DelegatingDataSource implements AutoCloseable {
+
+		JfrDataSource(DataSource target) {
+			super(target);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			ConnectionWaitEvent event = new ConnectionWaitEvent();
+			if (!event.isEnabled()) {
+				return super.getConnection();
+			}
+			HikariDataSource pool = pool();
+			HikariPoolMXBean mxBean = pool != null ? pool.getHikariPoolMXBean() : null; // プール未起動の間はnull
+			event.threadsAwaiting = mxBean != null ? mxBean.getThreadsAwaitingConnection() : -1;
+			event.begin();
+			try {
+				Connection connection = super.getConnection();
+				event.success = true;
+				return connection;
+			} finally {
+				event.end();
+				if (event.shouldCommit()) {
+					event.poolName = pool != null ? pool.getPoolName() : null;
+					event.commit();
+				}
+			}
+		}
+
+		@Override
+		public void close() throws Exception {
+			if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+
+		// シャーディング時は ShardRoutingDataSource の unwrap が今選ぶシャードのプールを返す
+		private HikariDataSource pool() {
+			try {
+				DataSource target = obtainTargetDataSource();
+				return target.isWrapperFor(HikariDataSource.class) ? target.unwrap(HikariDataSource.class) : null;
+			} catch (SQLException e) {
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * アプリ起動時に、同梱の設定（classpath:jfr/expense-workflow.jfc）でJFRの連続記録を始めるクラス。
+ * 直近 {@code app.jfr.recording.max-age-hours} 時間（かつ {@code max-size} バイト以内）だけをディスクに保持し、
+ * 停止時（とJVM終了時）に {@code app.jfr.recording.file} へ書き出す。実行中は {@code jcmd <pid> JFR.dump name=expense-workflow} で取り出せる。
+ * 起動オプションで記録を始められない環境（PaaSなど）向け。{@code app.jfr.recording.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.jfr;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+@Component
+@ConditionalOnProperty(name = "app.jfr.recording.enabled", havingValue = "true")
+public class JfrRecording {
+
+	static final String SETTINGS = "jfr/expense-workflow.jfc"; // 同梱の設定
+	static final String NAME = "expense-workflow";
+
+	private final Duration maxAge;
+	private final long maxSize;
+	private final Path file;
+
+	private Recording recording;
+
+	public JfrRecording(
+			@Value("${app.jfr.recording.max-age-hours:6}") int maxAgeHours,
+			@Value("${app.jfr.recording.max-size:268435456}") long maxSize,
+			@Value("${app.jfr.recording.file:jfr/expense-workflow.jfr}") String file) {
+		this.maxAge = Duration.ofHours(maxAgeHours);
+		this.maxSize = maxSize;
+		this.file = Path.of(file);
+	}
+
+	@PostConstruct
+	void start() throws IOException, ParseException {
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null) {
+			Files.createDirectories(dir);
+		}
+		recording = new Recording(loadSettings());
+		recording.setName(NAME);
+		recording.setToDisk(true);
+		recording.setMaxAge(maxAge);
+		recording.setMaxSize(maxSize);
+		recording.setDestination(file); // stop 時にここへ書き出す
+		recording.setDumpOnExit(true);
+		recording.start();
+	}
+
+	@PreDestroy
+	void stop() {
+		if (recording != null) {
+			recording.stop();
+			recording.close();
+		}
+	}
+
+	// 同梱の .jfc を読む（jar の中にあるのでファイルパスではなくストリームで渡す）
+	static Configuration loadSettings() throws IOException, ParseException {
+		try (Reader reader = new InputStreamReader(new ClassPathResource(SETTINGS).getInputStream(), StandardCharsets.UTF_8)) {
+			return Configuration.create(reader);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * JFRの記録ファイル（.jfr）を読み、独自イベントとJDKの主なイベントを表にまとめて標準出力へ出すコマンドラインツール。
+ * Springを起動せず、JMCを開かなくても本番の記録から次をすぐに見られるようにする。
+ * <ul>
+ *   <li>状態遷移（操作・遷移元→遷移先ごと）、ログイン照合（成否・BCryptのコストごと）、SQL文（文IDごと）、接続待ち（プールごと）の
+ *       件数・平均・p95・最大（ミリ秒）</li>
+ *   <li>CPUサンプルの多いメソッド（jdk.ExecutionSample の先頭フレーム）と、GCの回数・停止時間</li>
+ * </ul>
+ * 例:
+ * <pre>
+ * java -cp target/expense-workflow-backend-1.0.0.jar \
+ *   -Dloader.main=com.example.expenseworkflow.jfr.JfrRecordingAnalyzer \
+ *   org.springframework.boot.loader.launch.PropertiesLauncher \
+ *   jfr/expense-workflow.jfr --top=15
+ * </pre>
+ */
+
+package com.example.expenseworkflow.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+public class JfrRecordingAnalyzer {
+
+	// 1つの集計キーの所要時間を集める
+	static final class Stats {
+		private final List<Long> nanos = new ArrayList<>();
+		private long total;
+
+		void add(Duration d) {
+			long n = d.toNanos();
+			nanos.add(n);
+			total += n;
+		}
+
+		int count() {
+			return nanos.size();
+		}
+
+		long total() {
+			return total;
+		}
+
+		// 小さい方から p の位置の値（p は 0〜1）
+		long percentile(double p) {
+			List<Long> sorted = nanos.stream().sorted().toList();
+			int index = (int) Math.ceil(p * sorted.size()) - 1;
+			return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+		}
+	}
+
+	private final Map<String, Stats> transitions = new HashMap<>();
+	private final Map<String, Stats> logins = new HashMap<>();
+	private final Map<String, Stats> statements = new HashMap<>();
+	private final Map<String, Stats> connectionWaits = new HashMap<>();
+	private final Map<String, Integer> hotMethods = new HashMap<>();
+	private int executionSamples;
+	private int gcCount;
+	private Duration gcPauseTotal = Duration.ZERO;
+	private Duration gcPauseLongest = Duration.ZERO;
+
+	public static void main(String[] args) throws IOException {
+		String file = null;
+		int top = 10;
+		for (String arg : args) {
+			if (arg.startsWith("--top=")) {
+				top = Integer.parseInt(arg.substring("--top=".length()));
+			} else if (!arg.startsWith("--")) {
+				file = arg;
+			}
+		}
+		if (file == null) {
+			System.err.println("Usage: JfrRecordingAnalyzer <recording.jfr> [--top=10]");
+			System.exit(2);
+		}
+		System.out.print(summarize(Path.of(file), top));
+	}
+
+	// 記録ファイルを1度だけ読み、集計結果の表を返す
+	public static String summarize(Path file, int top) throws IOException {
+		JfrRecordingAnalyzer analyzer = new JfrRecordingAnalyzer();
+		try (RecordingFile recording = new RecordingFile(file)) {
+			while (recording.hasMoreEvents()) {
+				analyzer.accept(recording.readEvent());
+			}
+		}
+		return analyzer.report(top);
+	}
+
+	void accept(RecordedEvent event) {
+		switch (event.getEventType().getName()) {
+			case WorkflowTransitionEvent.NAME -> add(transitions,
+					event.getString("action") + " " + event.getString("fromStatus") + " -> " + event.getString("toStatus"), event);
+			case LoginVerificationEvent.NAME -> add(logins,
+					(event.getBoolean("success") ? "success" : "failure") + " cost=" + event.getInt("cost"), event);
+			case SqlStatementEvent.NAME -> add(statements, event.getString("statementId"), event);
+			case ConnectionWaitEvent.NAME -> add(connectionWaits,
+					event.getString("poolName") + (event.getBoolean("success") ? "" : " (failed)"), event);
+			case "jdk.ExecutionSample" -> {
+				executionSamples++;
+				RecordedStackTrace stack = event.getStackTrace();
+				if (stack != null && !stack.getFrames().isEmpty()) {
+					RecordedFrame frame = stack.getFrames().get(0);
+					hotMethods.merge(frame.getMethod().getType().getName() + "." + frame.getMethod().getName(), 1, Integer::sum);
+				}
+			}
+			case "jdk.GarbageCollection" -> {
+				gcCount++;
+				Duration pauses = event.getDuration("sumOfPauses");
+				gcPauseTotal = gcPauseTotal.plus(pauses);
+				Duration longest = event.getDuration("longestPause");
+				if (longest.compareTo(gcPauseLongest) > 0) {
+					gcPauseLongest = longest;
+				}
+			}
+			default -> {
+				// 集計対象外
+			}
+		}
+	}
+
+	private static void add(Map<String, Stats> table, String key, RecordedEvent event) {
+		table.computeIfAbsent(key, k -> new Stats()).add(event.getDuration());
+	}
+
+	String report(int top) {
+		StringBuilder out = new StringBuilder();
+		table(out, "Workflow transitions", "action from -> to", transitions, Integer.MAX_VALUE);
+		table(out, "Login verifications", "outcome", logins, Integer.MAX_VALUE);
+		table(out, "SQL statements (top " + top + " by total time)", "statement", statements, top);
+		table(out, "Connection waits", "pool", connectionWaits, Integer.MAX_VALUE);
+
+		out.append("== Hot methods (top ").append(top).append(" of ").append(executionSamples).append(" execution samples) ==\n");
+		hotMethods.entrySet().stream()
+				.sorted(Map.Entry.<String, Integer> comparingByValue().reversed())
+				.limit(top)
+				.forEach(e -> out.append(String.format("%6.1f%%  %s%n", 100.0 * e.getValue() / executionSamples, e.getKey())));
+		out.append('\n');
+
+		out.append("== Garbage collection ==\n");
+		out.append(String.format("collections=%d  total pause=%.1f ms  longest pause=%.1f ms%n%n",
+				gcCount, millis(gcPauseTotal.toNanos()), millis(gcPauseLongest.toNanos())));
+		return out.toString();
+	}
+
+	// 合計時間の長い順に、件数・平均・p95・最大（ミリ秒）を並べる
+	private static void table(StringBuilder out, String title, String keyLabel, Map<String, Stats> rows, int limit) {
+		out.append("== ").append(title).append(" ==\n");
+		if (rows.isEmpty()) {
+			out.append("(no events)\n\n");
+			return;
+		}
+		out.append(String.format("%8s %10s %10s %10s %10s  %s%n", "count", "total ms", "avg ms", "p95 ms", "max ms", keyLabel));
+		rows.entrySet().stream()
+				.sorted(Comparator.comparingLong((Map.Entry<String, Stats> e) -> e.getValue().total()).reversed())
+				.limit(limit)
+				.forEach(e -> {
+					Stats s = e.getValue();
+					out.append(String.format("%8d %10.1f %10.2f %10.2f %10.2f  %s%n", s.count(), millis(s.total()),
+							millis(s.total() / s.count()), millis(s.percentile(0.95)), millis(s.percentile(1.0)), e.getKey()));
+				});
+		out.append('\n');
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+}
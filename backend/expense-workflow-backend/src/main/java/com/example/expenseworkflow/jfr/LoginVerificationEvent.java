@@ -0,0 +1,53 @@
+/**
+ * ログイン時のBCryptによるパスワード照合1回分を表すJFRイベント。
+ * BCryptはコスト係数に比例してCPUを使うので、ログインの集中でCPUが埋まっていないかを係数と一緒に見る。
+ */
+
+package com.example.expenseworkflow.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(LoginVerificationEvent.NAME)
+@Label("Login Verification")
+@Category({ "Expense Workflow", "Auth" })
+@Description("AuthController.login の BCrypt によるパスワード照合")
+@StackTrace(false)
+public class LoginVerificationEvent extends Event {
+
+	public static final String NAME = "com.example.expenseworkflow.LoginVerification";
+
+	@Label("User Id")
+	long userId;
+
+	@Label("Success")
+	boolean success;
+
+	@Label("BCrypt Cost")
+	int cost; // ハッシュの "$2a$10$..." の10（読めなければ0）
+
+	public void record(Long userId, boolean success, String passwordHash) {
+		end();
+		if (shouldCommit()) {
+			this.userId = userId != null ? userId : 0;
+			this.success = success;
+			this.cost = costOf(passwordHash);
+			commit();
+		}
+	}
+
+	static int costOf(String hash) {
+		if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(hash.substring(4, 6));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
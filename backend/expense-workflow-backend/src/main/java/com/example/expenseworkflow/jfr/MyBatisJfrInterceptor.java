@@ -0,0 +1,64 @@
+/**
+ * MyBatisで実行するSQL文ごとに {@link SqlStatementEvent} を記録するインターセプタクラス。
+ * JFRで記録していない間（イベントが無効な間）は時刻も取らずにそのまま実行する。
+ * {@code app.jfr.events.enabled=false} で登録しないようにできる。
+ */
+
+package com.example.expenseworkflow.jfr;
+
+import java.util.List;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.expenseworkflow.store.ShardContext;
+
+@Component
+@ConditionalOnProperty(name = "app.jfr.events.enabled", havingValue = "true", matchIfMissing = true)
+@Intercepts({
+		@Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }),
+		@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class }),
+		@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class }),
+})
+public class MyBatisJfrInterceptor implements Interceptor {
+
+	@Override
+	public Object intercept(Invocation invocation) throws Throwable {
+		SqlStatementEvent event = new SqlStatementEvent();
+		if (!event.isEnabled()) {
+			return invocation.proceed();
+		}
+		event.begin();
+		int rows = -1;
+		try {
+			Object result = invocation.proceed();
+			if (result instanceof List<?> list) {
+				rows = list.size();
+			} else if (result instanceof Integer affected) {
+				rows = affected;
+			}
+			return result;
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+				Integer shard = ShardContext.current();
+				event.statementId = ms.getId();
+				event.operation = ms.getSqlCommandType().name();
+				event.rows = rows;
+				event.shard = shard != null ? shard : -1;
+				event.commit();
+			}
+		}
+	}
+}
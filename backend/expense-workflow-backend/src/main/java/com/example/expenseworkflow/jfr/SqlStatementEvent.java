@@ -0,0 +1,33 @@
+/**
+ * MyBatisで実行したSQL文1回分を表すJFRイベント（{@link MyBatisJfrInterceptor} が記録する）。
+ * SQLの本文やバインド値は含めない。遅い文だけを残すには .jfc の threshold を使う。
+ */
+
+package com.example.expenseworkflow.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(SqlStatementEvent.NAME)
+@Label("SQL Statement")
+@Category({ "Expense Workflow", "Database" })
+@Description("MyBatis のマップドステートメントの実行")
+public class SqlStatementEvent extends Event {
+
+	public static final String NAME = "com.example.expenseworkflow.SqlStatement";
+
+	@Label("Statement Id")
+	String statementId; // Mapperの完全修飾名.文ID
+
+	@Label("Operation")
+	String operation; // SELECT / INSERT / UPDATE / DELETE
+
+	@Label("Rows")
+	int rows; // SELECTは返した行数、更新系は更新件数（例外なら-1）
+
+	@Label("Shard")
+	int shard; // 実行したシャード番号（シャーディングなし・既定なら-1）
+}
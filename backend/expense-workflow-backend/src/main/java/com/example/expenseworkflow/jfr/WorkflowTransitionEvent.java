@@ -0,0 +1,52 @@
+/**
+ * 申請の状態遷移（提出・承認・差戻し・取り下げ・却下）1回分を表すJFRイベント。
+ * 期間は RequestStore のメソッドに入ってから操作履歴を記録するまで（コミットは含まない）。
+ * 遷移できなかった操作（権限なし・状態違いなど）は記録しない。
+ */
+
+package com.example.expenseworkflow.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(WorkflowTransitionEvent.NAME)
+@Label("Workflow Transition")
+@Category({ "Expense Workflow", "Request" })
+@Description("RequestStore による申請の状態遷移")
+@StackTrace(false)
+public class WorkflowTransitionEvent extends Event {
+
+	public static final String NAME = "com.example.expenseworkflow.WorkflowTransition";
+
+	@Label("Request Id")
+	long requestId;
+
+	@Label("Actor Id")
+	long actorId;
+
+	@Label("Action")
+	String action; // SUBMIT / APPROVE / RETURN / WITHDRAW / REJECT
+
+	@Label("From Status")
+	String fromStatus;
+
+	@Label("To Status")
+	String toStatus;
+
+	// 遷移が確定したところで終了時刻を打ち、しきい値を超えていれば記録する
+	public void record(Long requestId, Long actorId, String action, String fromStatus, String toStatus) {
+		end();
+		if (shouldCommit()) {
+			this.requestId = requestId != null ? requestId : 0;
+			this.actorId = actorId != null ? actorId : 0;
+			this.action = action;
+			this.fromStatus = fromStatus;
+			this.toStatus = toStatus;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * 分析用スナップショット（AnalyticsSnapshot）の読み込みに使うMyBatis Mapperインターフェース。
+ * SQLはresources/mapper/AnalyticsMapper.xmlに定義する。
+ * どれも主キーの範囲でページングして読み、OLTPのテーブルで集計（GROUP BY）はしない。
+ */
+
+package com.example.expenseworkflow.mapper;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import com.example.expenseworkflow.domain.AnalyticsRow;
+
+@Mapper
+public interface AnalyticsMapper {
+
+	// 申請を afterId より後からID順に limit 件読む（archive=true ならアーカイブ済みの申請）
+	List<AnalyticsRow> selectRequestRows(
+			@Param("archive") boolean archive,
+			@Param("afterId") long afterId,
+			@Param("limit") int limit);
+
+	// 最終承認の操作（to_status=APPROVED）を afterActionId より後から操作履歴ID順に limit 件読む
+	List<AnalyticsRow> selectApprovals(
+			@Param("archive") boolean archive,
+			@Param("afterActionId") long afterActionId,
+			@Param("limit") int limit);
+
+	// 現在の操作履歴IDの最大値（全件読み込みの開始時点。以降の差分はここから取り込む）
+	long selectMaxActionId();
+
+	// since より後の操作履歴と、対象申請の現在の列を操作履歴ID順に limit 件読む（DBの時計で記録から settleSeconds 秒経っていない行は次回に回す）
+	List<AnalyticsRow> selectChangedRows(
+			@Param("since") long since,
+			@Param("settleSeconds") long settleSeconds,
+			@Param("limit") int limit);
+}
@@ -0,0 +1,26 @@
+/**
+ * approver_budget_ledgerテーブル（承認者の月次予算の消化台帳）へのアクセスを担うMyBatis Mapperインターフェース。
+ * SQLはresources/mapper/ApproverBudgetMapper.xmlに定義する。
+ * 予算の上限確認はメモリ上の消化額で行い（ApproverBudget）、ここでは台帳の追記と月ごとの合計だけを扱う。
+ */
+
+package com.example.expenseworkflow.mapper;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import com.example.expenseworkflow.domain.ApproverBudgetUsage;
+
+@Mapper
+public interface ApproverBudgetMapper {
+	int insertLedgerEntry( // 最終承認1件分の消化を台帳に1行追記する（集計行は更新しないので行ロックを取り合わない）
+			@Param("approverId") Long approverId,
+			@Param("usageMonth") LocalDate usageMonth,
+			@Param("requestId") Long requestId,
+			@Param("amount") long amount);
+
+	List<ApproverBudgetUsage> selectUsageByMonth(@Param("usageMonth") LocalDate usageMonth); // 指定月（月初日）の消化額を承認者ごとに合計する
+}
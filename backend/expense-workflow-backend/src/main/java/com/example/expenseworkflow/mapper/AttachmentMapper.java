@@ -0,0 +1,22 @@
+/**
+ * expense_request_attachmentsテーブルへのアクセスを担うMyBatis Mapperインターフェース。
+ * SQLはresources/mapper/AttachmentMapper.xmlに定義する。
+ * 申請に対するアクセス権の確認は呼び出し側（AttachmentStore）で行う前提。
+ */
+
+package com.example.expenseworkflow.mapper;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import com.example.expenseworkflow.domain.Attachment;
+
+@Mapper
+public interface AttachmentMapper {
+	int insertAttachment(Attachment attachment); // 添付ファイルのメタデータを1行INSERTする（採番されたIDはattachment.idに反映される）
+	List<Attachment> selectAttachmentsByRequestId(@Param("requestId") Long requestId); // 申請に紐づく添付ファイルを登録順に取得する
+	Attachment selectAttachmentByIdAndRequestId(@Param("id") Long id, @Param("requestId") Long requestId); // 申請IDとの組で1件取得する（別申請の添付は見えない）
+	int countAttachmentsBySha256(@Param("sha256") String sha256); // 同じ内容（ファイル本体）を参照する添付の件数
+}
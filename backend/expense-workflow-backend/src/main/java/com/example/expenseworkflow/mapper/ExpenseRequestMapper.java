@@ -6,11 +6,15 @@
 
 package com.example.expenseworkflow.mapper;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import com.example.expenseworkflow.controller.dto.ChangeEventResponse;
 import com.example.expenseworkflow.controller.dto.InboxItemResponse;
 import com.example.expenseworkflow.controller.dto.RequestHistoryItemResponse;
 import com.example.expenseworkflow.controller.dto.RequestSummaryResponse;
@@ -21,7 +25,10 @@ public interface ExpenseRequestMapper { // MyBatisが実装を生成するため
 
 	List<RequestSummaryResponse> selectRequestSummaries();
 
-	List<RequestSummaryResponse> selectRequestSummariesByApplicant(@Param("applicantUserId") Long applicantUserId);
+	List<RequestSummaryResponse> selectRequestSummariesByApplicant( // fields が null なら全列、指定時はidと指定列だけをSELECTする
+			@Param("applicantUserId") Long applicantUserId,
+			@Param("fields") Set<String> fields
+	);
 
 	ExpenseRequest selectExpenseRequestById(@Param("id") Long id);
 
@@ -37,20 +44,31 @@ public interface ExpenseRequestMapper { // MyBatisが実装を生成するため
 			@Param("id") Long id,
 			@Param("applicantUserId") Long applicantUserId,
 			@Param("approverUserId") Long approverUserId,
-			@Param("toStatus") String toStatus
+			@Param("toStatus") String toStatus,
+			@Param("duplicateOfRequestId") Long duplicateOfRequestId, // 重複の疑いがある先行申請ID（無ければnull）
+			@Param("expectedVersion") Long expectedVersion // If-Match の版番号（nullなら版を問わない）
 		);
 	
 	int updateStatusForApprover( // 承認者が承認/差戻しを実行するための状態更新メソッドを宣言する
 			@Param("id") Long id,
 			@Param("approverUserId") Long approverUserId,
-			@Param("toStatus") String toStatus
+			@Param("toStatus") String toStatus,
+			@Param("expectedVersion") Long expectedVersion // If-Match の版番号（nullなら版を問わない）
+	);
+
+	int updateApproverForNextLevel( // 多段承認で、SUBMITTEDのまま承認者を次段へ進めるメソッドを宣言する
+			@Param("id") Long id,
+			@Param("approverUserId") Long approverUserId,
+			@Param("nextApproverUserId") Long nextApproverUserId,
+			@Param("expectedVersion") Long expectedVersion // If-Match の版番号（nullなら版を問わない）
 	);
 
 	int updateStatusForApproverWithComment( // 差戻し専用：statusをRETURNEDに更新しつつlast_return_commentとlast_returned_atも同時に書き込むメソッドを宣言する
 			@Param("id") Long id,
 			@Param("approverUserId") Long approverUserId,
 			@Param("toStatus") String toStatus,
-			@Param("comment") String comment
+			@Param("comment") String comment,
+			@Param("expectedVersion") Long expectedVersion // If-Match の版番号（nullなら版を問わない）
 	);
 
 	int insertExpenseRequestAction( // 差戻しなどの操作履歴を expense_request_actions に1行INSERTするためのメソッドを宣言する
@@ -67,17 +85,20 @@ public interface ExpenseRequestMapper { // MyBatisが実装を生成するため
 			@Param("applicantUserId") Long applicantUserId,
 			@Param("title") String title,
 			@Param("amount") int amount,
-			@Param("note") String note
+			@Param("note") String note,
+			@Param("expectedVersion") Long expectedVersion // If-Match の版番号（nullなら版を問わない）
 	);
 	
 	int updateStatusToWithdrawn( // 申請者が申請を取り下げる（DRAFT/RETURNED→WITHDRAWN）ためのメソッドを宣言する
 			@Param("id") Long id,
-			@Param("applicantUserId") Long applicantUserId
+			@Param("applicantUserId") Long applicantUserId,
+			@Param("expectedVersion") Long expectedVersion // If-Match の版番号（nullなら版を問わない）
 	);
 
 	int updateStatusToRejected( // 承認者が申請を却下する（SUBMITTED→REJECTED）ためのメソッドを宣言する
 			@Param("id") Long id,
-			@Param("approverUserId") Long approverUserId
+			@Param("approverUserId") Long approverUserId,
+			@Param("expectedVersion") Long expectedVersion // If-Match の版番号（nullなら版を問わない）
 	);
 	
     // 申請者本人の申請の操作履歴を古い順に取得する
@@ -93,5 +114,62 @@ public interface ExpenseRequestMapper { // MyBatisが実装を生成するため
             @Param("requestId") Long requestId,
             @Param("approverUserId") Long approverUserId
     );
+
+    // ===== アーカイブ（完了済み申請の退避） =====
+
+    // 完了済み（APPROVED/REJECTED/WITHDRAWN）かつ cutoff より前に更新された申請IDを古い順に limit 件取得する
+    List<Long> selectArchivableRequestIds(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    int copyRequestsToArchive(@Param("ids") List<Long> ids); // 指定IDの申請を expense_requests_archive へコピーする
+
+    int copyActionsToArchive(@Param("ids") List<Long> ids); // 指定申請IDの操作履歴を expense_request_actions_archive へコピーする
+
+    int deleteArchivedActions(@Param("ids") List<Long> ids); // コピー済みの操作履歴をホットテーブルから削除する
+
+    int deleteArchivedRequests(@Param("ids") List<Long> ids); // コピー済みの申請をホットテーブルから削除する
+
+    ExpenseRequest selectArchivedExpenseRequestByIdAndApplicant(@Param("id") Long id, @Param("applicantUserId") Long applicantUserId);
+
+    ExpenseRequest selectArchivedExpenseRequestByIdAndApprover(@Param("id") Long id, @Param("approverUserId") Long approverUserId);
+
+    List<RequestHistoryItemResponse>
+        selectArchivedHistoryByRequestIdAndApplicant(
+            @Param("requestId") Long requestId,
+            @Param("applicantUserId") Long applicantUserId
+    );
+
+    List<RequestHistoryItemResponse>
+        selectArchivedHistoryByRequestIdAndApprover(
+            @Param("requestId") Long requestId,
+            @Param("approverUserId") Long approverUserId
+    );
+
+    // ===== 変更フィード（GET /api/changes） =====
+
+    // 操作履歴IDが since より大きく、記録から settleSeconds 秒以上経った（DBの時計で）遷移を、対象申請の現在の内容と合わせてID順に limit 件取得する
+    List<ChangeEventResponse> selectChangesSince(
+            @Param("since") long since,
+            @Param("settleSeconds") long settleSeconds,
+            @Param("limit") int limit);
+
+    // ===== エスカレーション（承認期限超過） =====
+
+    // SUBMITTEDのまま cutoff より前に提出され、cutoff 以降にエスカレーションされていない申請を提出の古い順に limit 件取得する
+    List<ExpenseRequest> selectOverdueSubmissions(
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("excludeIds") Collection<Long> excludeIds,
+            @Param("limit") int limit);
+
+    // 承認者を nextApproverUserId に付け替えて escalated_at を記録する（同じ承認者を渡せば警告のみ）。読んだ版のままのときだけ更新する
+    int escalateRequest(
+            @Param("id") Long id,
+            @Param("approverUserId") Long approverUserId,
+            @Param("nextApproverUserId") Long nextApproverUserId,
+            @Param("expectedVersion") Long expectedVersion);
+
+    // ===== 二重申請検出 =====
+
+    // 提出済み以降（SUBMITTED / RETURNED / APPROVED）の申請の指紋の材料（ID・申請者・件名・経費発生日・金額）をID順に取得する
+    List<ExpenseRequest> selectDuplicateCandidates();
     
 }
@@ -0,0 +1,66 @@
+/**
+ * {@link UserMapper} のメモリ実装。{@code inmemory} プロファイルでDBの代わりに使う。
+ * data.sql と同じユーザー（user1@example.com / admin1@example.com、上長関係も同じ）を起動時に持つため、
+ * ログイン・/api/me・承認経路の解決がMySQLなしで動く。
+ * MyBatisのMapperより優先させるため {@code @Primary} を付けている。
+ */
+
+package com.example.expenseworkflow.mapper;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.example.expenseworkflow.domain.User;
+
+@Component
+@Primary
+@Profile("inmemory")
+public class InMemoryUserMapper implements UserMapper {
+
+	private static final String DEMO_PASSWORD_HASH = "$2a$10$S7LUgukvAMtErZNWQ60zdeEZRsfje3BVN0w21REkN7RkI4F32UrUu"; // data.sql と同じBCryptハッシュ
+
+	private final Map<Long, User> users = Map.of( // data.sql の初期データと同じ内容
+			1L, user(1L, "user1@example.com", "Approver 1", "APPLICANT", 2L),
+			2L, user(2L, "admin1@example.com", "Admin 1", "APPROVER", null));
+
+	@Override
+	public User findByEmail(String email) {
+		return users.values().stream()
+				.filter(u -> u.getEmail().equals(email))
+				.findFirst()
+				.map(InMemoryUserMapper::copyOf)
+				.orElse(null);
+	}
+
+	@Override
+	public User findById(Long id) {
+		User user = id != null ? users.get(id) : null;
+		return user != null ? copyOf(user) : null;
+	}
+
+	@Override
+	public List<User> findAllOrgEdges() {
+		return users.values().stream().map(InMemoryUserMapper::copyOf).toList();
+	}
+
+	private static User user(Long id, String email, String name, String role, Long managerId) {
+		User u = new User();
+		u.setId(id);
+		u.setEmail(email);
+		u.setName(name);
+		u.setRole(role);
+		u.setManagerId(managerId);
+		u.setIsActive(true);
+		u.setPasswordHash(DEMO_PASSWORD_HASH);
+		return u;
+	}
+
+	// 呼び出し側で書き換えられても保持中のデータに影響しないよう、毎回コピーを返す
+	private static User copyOf(User u) {
+		return user(u.getId(), u.getEmail(), u.getName(), u.getRole(), u.getManagerId());
+	}
+}
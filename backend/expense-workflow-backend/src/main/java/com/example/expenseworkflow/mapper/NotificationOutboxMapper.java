@@ -0,0 +1,52 @@
+/**
+ * notification_outbox テーブル（承認者への通知の送信待ち）へのアクセスを担うMyBatis Mapperインターフェース。
+ * SQLはresources/mapper/NotificationOutboxMapper.xmlに定義する。
+ * 行の追加は状態遷移と同じトランザクションで行い、取り出し・送信結果の記録は NotificationDispatcher が行う。
+ */
+
+package com.example.expenseworkflow.mapper;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import com.example.expenseworkflow.domain.NotificationOutboxEntry;
+
+@Mapper
+public interface NotificationOutboxMapper {
+	int insertEntry( // 通知を1件、送信待ちとして追加する（notBefore まではまとめ待ち）
+			@Param("recipientId") Long recipientId,
+			@Param("requestId") Long requestId,
+			@Param("actorId") Long actorId,
+			@Param("eventType") String eventType,
+			@Param("notBefore") LocalDateTime notBefore);
+
+	List<Long> selectDueRecipients( // 送信時刻を迎えた通知のある通知先（古い順に limit 人）
+			@Param("now") LocalDateTime now,
+			@Param("limit") int limit);
+
+	List<Long> lockPendingIds( // 通知先の送信待ちをまとめて行ロックする（他のインスタンスがロック中の行は飛ばす）
+			@Param("recipientIds") Collection<Long> recipientIds,
+			@Param("now") LocalDateTime now,
+			@Param("limit") int limit);
+
+	int reserve( // 送信中として予約する（試行回数を増やし、leaseUntil までは他から取り出させない）
+			@Param("ids") Collection<Long> ids,
+			@Param("leaseUntil") LocalDateTime leaseUntil);
+
+	List<NotificationOutboxEntry> selectEntries(@Param("ids") Collection<Long> ids); // 予約した通知を通知先・申請の内容付きで読む
+
+	int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+	int markRetry( // 送信に失敗した通知を nextAttemptAt に再送する
+			@Param("ids") Collection<Long> ids,
+			@Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+			@Param("error") String error);
+
+	int markFailed(@Param("ids") Collection<Long> ids, @Param("error") String error); // 再送を諦める
+
+	int deleteSentBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit); // 送信日時（sent_at）が cutoff より前の送信済みの行を消す
+}
@@ -1,11 +1,14 @@
 /**
  * usersテーブルへのアクセスを担うMyBatis Mapperインターフェース。
  * SQLはresources/mapper/UserMapper.xmlに定義する。
- * ログイン照合（findByEmail）と /api/me のセッション検証（findById）に使用する。
+ * ログイン照合（findByEmail）と /api/me のセッション検証（findById）、
+ * 承認経路用の組織図構築（findAllOrgEdges）に使用する。
  */
 
 package com.example.expenseworkflow.mapper;
 
+import java.util.List;
+
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
@@ -16,4 +19,5 @@ import com.example.expenseworkflow.domain.User;
 public interface UserMapper {
 	User findByEmail(@Param("email") String email); // email で users を1件取得する（ログイン照合に使う）
 	User findById(@Param("id") Long id); // id で users を1件取得する（/api/me 判定に使う）
+	List<User> findAllOrgEdges(); // 全ユーザーの id と managerId だけを取得する（組織図キャッシュの構築に使う）
 }
@@ -0,0 +1,22 @@
+/**
+ * 1人の通知先へ1通で送る通知のまとまり（ダイジェスト）を表すレコード。
+ * {@link NotificationDispatcher} が送信待ちの通知を通知先ごとにまとめて作り、{@link NotificationSender} に渡す。
+ *
+ * @param recipientId    通知先ユーザーID
+ * @param recipientEmail 通知先のメールアドレス
+ * @param recipientName  通知先の表示名
+ * @param entries        まとめた通知（古い順）
+ */
+
+package com.example.expenseworkflow.notification;
+
+import java.util.List;
+
+import com.example.expenseworkflow.domain.NotificationOutboxEntry;
+
+public record NotificationDigest(
+		Long recipientId,
+		String recipientEmail,
+		String recipientName,
+		List<NotificationOutboxEntry> entries) {
+}
@@ -0,0 +1,184 @@
+/**
+ * notification_outbox に積まれた通知をバックグラウンドで取り出し、通知先ごとに1通のダイジェストにまとめて送るジョブ。
+ * {@code app.notifications.poll-millis} ごとに次を繰り返す。
+ * <ul>
+ *   <li>送信時刻を迎えた通知のある通知先を最大 {@code app.notifications.batch-size} 人選び、
+ *       その通知先の送信待ちを（まとめ待ちのものも含めて）短いトランザクションで行ロックし、送信中として予約する。
+ *       ロックは {@code SKIP LOCKED} で取るので、複数台で動かしても同じ通知を同時に送らない</li>
+ *   <li>トランザクションの外で {@link NotificationSender} に送らせ、成功したら送信済みにする</li>
+ *   <li>失敗したら {@code app.notifications.backoff-seconds} から倍々に（{@code max-backoff-seconds} まで）間隔を空けて再送し、
+ *       {@code app.notifications.max-attempts} 回失敗したら諦めて FAILED にする</li>
+ * </ul>
+ * 予約には期限（{@code app.notifications.lease-seconds}）があり、送信中に落ちたインスタンスの分は期限後に別の実行が送り直す
+ * （送信後・記録前に落ちると同じダイジェストが2回届きうる。少なくとも1回は届くことを優先する）。
+ * 送信済みの行は {@code app.notifications.retention-days} 日後に消す。
+ * シャーディング時はシャードごとに並行して処理する。{@code app.notifications.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.notification;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.expenseworkflow.domain.NotificationOutboxEntry;
+import com.example.expenseworkflow.mapper.NotificationOutboxMapper;
+import com.example.expenseworkflow.store.ShardRouter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Component
+@ConditionalOnProperty(name = "app.notifications.enabled", havingValue = "true")
+public class NotificationDispatcher {
+
+	private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+	private static final int MAX_ENTRIES_PER_RECIPIENT = 50; // 1通にまとめる通知の上限（残りは次の実行で送る）
+	private static final int MAX_ERROR_LENGTH = 500; // last_error 列の長さ
+	private static final int PURGE_BATCH_SIZE = 1000; // 1回の実行で消す送信済みの行数
+
+	private final NotificationOutboxMapper notificationOutboxMapper;
+	private final TransactionTemplate transactionTemplate;
+	private final NotificationSender notificationSender;
+	private final ShardRouter shardRouter;
+	private final int batchSize; // 1回の予約で選ぶ通知先の人数
+	private final int maxBatches; // 1回の実行で処理するバッチ数の上限
+	private final long leaseSeconds; // 送信中の予約の期限
+	private final long backoffSeconds; // 1回目の失敗後に再送するまでの秒数
+	private final long maxBackoffSeconds; // 再送間隔の上限
+	private final int maxAttempts; // この回数失敗したら諦める
+	private final int retentionDays; // 送信済みの行を残す日数
+
+	private final Counter sent;
+	private final Counter retried;
+	private final Counter failed;
+
+	// 1回の予約の結果（選んだ通知先の人数と、予約した通知ID）
+	private record Claim(int recipients, List<Long> ids) {
+	}
+
+	public NotificationDispatcher(
+			NotificationOutboxMapper notificationOutboxMapper,
+			TransactionTemplate transactionTemplate,
+			NotificationSender notificationSender,
+			ShardRouter shardRouter,
+			@Value("${app.notifications.batch-size:50}") int batchSize,
+			@Value("${app.notifications.max-batches:20}") int maxBatches,
+			@Value("${app.notifications.lease-seconds:300}") long leaseSeconds,
+			@Value("${app.notifications.backoff-seconds:60}") long backoffSeconds,
+			@Value("${app.notifications.max-backoff-seconds:3600}") long maxBackoffSeconds,
+			@Value("${app.notifications.max-attempts:8}") int maxAttempts,
+			@Value("${app.notifications.retention-days:7}") int retentionDays,
+			MeterRegistry meterRegistry) {
+		this.notificationOutboxMapper = notificationOutboxMapper;
+		this.transactionTemplate = transactionTemplate;
+		this.notificationSender = notificationSender;
+		this.shardRouter = shardRouter;
+		this.batchSize = batchSize;
+		this.maxBatches = maxBatches;
+		this.leaseSeconds = leaseSeconds;
+		this.backoffSeconds = backoffSeconds;
+		this.maxBackoffSeconds = maxBackoffSeconds;
+		this.maxAttempts = maxAttempts;
+		this.retentionDays = retentionDays;
+		this.sent = Counter.builder("expense.notifications.sent").register(meterRegistry);
+		this.retried = Counter.builder("expense.notifications.retried").register(meterRegistry);
+		this.failed = Counter.builder("expense.notifications.failed").register(meterRegistry);
+	}
+
+	@Scheduled(fixedDelayString = "${app.notifications.poll-millis:5000}")
+	public void run() {
+		shardRouter.forEachShard(this::runOnShard); // シャーディング時はシャードごとに並行して処理する
+	}
+
+	private void runOnShard() {
+		for (int i = 0; i < maxBatches; i++) {
+			if (dispatchBatch(LocalDateTime.now()) < batchSize) {
+				break; // 送信時刻を迎えた通知先が残っていなければ終了する
+			}
+		}
+		int purged = notificationOutboxMapper.deleteSentBefore(LocalDateTime.now().minusDays(retentionDays), PURGE_BATCH_SIZE);
+		if (purged > 0) {
+			log.debug("Purged {} sent notifications", purged);
+		}
+	}
+
+	// 1バッチ分の通知先を予約して送り、選んだ通知先の人数を返す
+	int dispatchBatch(LocalDateTime now) {
+		Claim claim = transactionTemplate.execute(status -> {
+			List<Long> recipients = notificationOutboxMapper.selectDueRecipients(now, batchSize);
+			if (recipients.isEmpty()) {
+				return new Claim(0, List.of());
+			}
+			List<Long> ids = notificationOutboxMapper.lockPendingIds(recipients, now, recipients.size() * MAX_ENTRIES_PER_RECIPIENT);
+			if (!ids.isEmpty()) {
+				notificationOutboxMapper.reserve(ids, now.plusSeconds(leaseSeconds));
+			}
+			return new Claim(recipients.size(), ids);
+		});
+		if (claim == null || claim.ids().isEmpty()) {
+			return claim != null ? claim.recipients() : 0;
+		}
+
+		// 予約した通知を通知先ごとにまとめる（ID順に読むので、各ダイジェストの中は古い順）
+		Map<Long, List<NotificationOutboxEntry>> byRecipient = new LinkedHashMap<>();
+		for (NotificationOutboxEntry entry : notificationOutboxMapper.selectEntries(claim.ids())) {
+			byRecipient.computeIfAbsent(entry.getRecipientId(), k -> new ArrayList<>()).add(entry);
+		}
+		for (List<NotificationOutboxEntry> entries : byRecipient.values()) {
+			NotificationOutboxEntry first = entries.get(0);
+			deliver(new NotificationDigest(first.getRecipientId(), first.getRecipientEmail(), first.getRecipientName(), entries), now);
+		}
+		return claim.recipients();
+	}
+
+	// 1通送り、結果を記録する
+	private void deliver(NotificationDigest digest, LocalDateTime now) {
+		List<Long> ids = digest.entries().stream().map(NotificationOutboxEntry::getId).toList();
+		if (digest.recipientEmail() == null || digest.recipientEmail().isBlank()) {
+			notificationOutboxMapper.markFailed(ids, "recipient has no email address");
+			failed.increment(ids.size());
+			return;
+		}
+		try {
+			notificationSender.send(digest);
+		} catch (IOException | RuntimeException e) {
+			int attempts = digest.entries().stream().mapToInt(NotificationOutboxEntry::getAttempts).max().orElse(1);
+			String error = truncate(e.toString());
+			if (attempts >= maxAttempts) {
+				notificationOutboxMapper.markFailed(ids, error);
+				failed.increment(ids.size());
+				log.warn("Gave up notifying user {} of {} events after {} attempts: {}", digest.recipientId(), ids.size(), attempts, error);
+			} else {
+				notificationOutboxMapper.markRetry(ids, now.plusSeconds(backoffSeconds(attempts)), error);
+				retried.increment(ids.size());
+				log.info("Failed to notify user {} (attempt {}), will retry: {}", digest.recipientId(), attempts, error);
+			}
+			return;
+		}
+		notificationOutboxMapper.markSent(ids, LocalDateTime.now());
+		sent.increment(ids.size());
+	}
+
+	// attempts 回目の失敗の後に再送するまでの秒数（倍々に延ばし、上限で止める）
+	long backoffSeconds(int attempts) {
+		int doublings = Math.max(0, Math.min(attempts - 1, 30));
+		return Math.min(maxBackoffSeconds, backoffSeconds << doublings);
+	}
+
+	private static String truncate(String message) {
+		return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+	}
+}
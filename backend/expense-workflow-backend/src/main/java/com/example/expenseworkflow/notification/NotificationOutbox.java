@@ -0,0 +1,50 @@
+/**
+ * 承認者への通知を notification_outbox に積むクラス（トランザクショナルアウトボックス）。
+ * 状態遷移と同じトランザクションの中で1行INSERTするだけで、メールは送らない。
+ * 遷移がロールバックされれば通知も残らず、コミットされれば {@link NotificationDispatcher} が後で必ず取り出す。
+ * SMTPサーバーの遅延や停止が提出・承認の応答時間やトランザクションの長さに影響しない。
+ * 積んだ通知は {@code app.notifications.digest-seconds} 秒後まで送らずに待ち、その間に同じ通知先へ積まれた通知と1通にまとめる。
+ * {@code app.notifications.enabled=false}（既定）のときは何も積まない（送る仕組みが無いのに行だけが溜まらないようにする）。
+ */
+
+package com.example.expenseworkflow.notification;
+
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.expenseworkflow.mapper.NotificationOutboxMapper;
+
+@Component
+public class NotificationOutbox {
+
+	public static final String SUBMITTED = "SUBMITTED"; // 申請者が提出した（1段目の承認者へ）
+	public static final String FORWARDED = "FORWARDED"; // 前段の承認者が承認して回ってきた（次段の承認者へ）
+	public static final String ESCALATED = "ESCALATED"; // 承認期限を過ぎて上長へ回付された
+
+	private final NotificationOutboxMapper notificationOutboxMapper;
+	private final boolean enabled;
+	private final long digestSeconds; // 積んでから送るまで待つ秒数（この間の通知を1通にまとめる）
+
+	public NotificationOutbox(
+			NotificationOutboxMapper notificationOutboxMapper,
+			@Value("${app.notifications.enabled:false}") boolean enabled,
+			@Value("${app.notifications.digest-seconds:60}") long digestSeconds) {
+		this.notificationOutboxMapper = notificationOutboxMapper;
+		this.enabled = enabled;
+		this.digestSeconds = digestSeconds;
+	}
+
+	/**
+	 * recipientId への通知を1件積む。呼び出し側のトランザクション内で呼ぶこと。
+	 * 通知先が決まっていない（null）ときは何もしない。
+	 */
+	public void enqueue(Long recipientId, Long requestId, Long actorId, String eventType) {
+		if (!enabled || recipientId == null || recipientId.equals(actorId)) {
+			return; // 自分の操作を自分に知らせる必要はない
+		}
+		notificationOutboxMapper.insertEntry(recipientId, requestId, actorId, eventType,
+				LocalDateTime.now().plusSeconds(digestSeconds));
+	}
+}
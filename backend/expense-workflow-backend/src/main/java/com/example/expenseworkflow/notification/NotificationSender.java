@@ -0,0 +1,14 @@
+/**
+ * 通知のダイジェストを1通送るインタフェース。
+ * 既定の実装は {@link SmtpNotificationSender}。送れなかった場合は例外を投げ、
+ * {@link NotificationDispatcher} が間隔を空けて再送する（同じダイジェストが2回届くことはありうる）。
+ */
+
+package com.example.expenseworkflow.notification;
+
+import java.io.IOException;
+
+public interface NotificationSender {
+
+	void send(NotificationDigest digest) throws IOException;
+}
@@ -0,0 +1,132 @@
+/**
+ * 通知のダイジェストをメール1通として送る {@link NotificationSender} の実装。
+ * 送信は spring-boot-starter-mail の {@link JavaMailSender}（{@code spring.mail.*} で設定）に任せる。
+ * <ul>
+ *   <li>既定では STARTTLS を必須にし（{@code mail.smtp.starttls.required}）、サーバー証明書のホスト名も確かめる
+ *       （{@code mail.smtp.ssl.checkserveridentity}）。最初からTLSで接続するなら {@code spring.mail.protocol=smtps}</li>
+ *   <li>{@code spring.mail.username} があるのに STARTTLS 必須でも SMTPS でもない設定では、平文で認証情報を送らないよう起動時に失敗させる</li>
+ *   <li>本文はUTF-8のプレーンテキストで、件名・表示名の符号化は JavaMail に任せる</li>
+ * </ul>
+ * 開発・テストでは、ローカルで動かすSMTPのスタンドイン（Mailpit・GreenMail など）に host / port を向ける。
+ * {@code app.notifications.app-url} があれば、各申請の画面へのリンクを本文に入れる。
+ * {@code app.notifications.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.notification;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.mail.MailException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+
+import com.example.expenseworkflow.domain.NotificationOutboxEntry;
+
+@Component
+@ConditionalOnProperty(name = "app.notifications.enabled", havingValue = "true")
+public class SmtpNotificationSender implements NotificationSender {
+
+	private final JavaMailSender mailSender;
+	private final String from;
+	private final String appUrl; // 本文に入れるリンクの先頭（空ならリンクを入れない）
+
+	public SmtpNotificationSender(
+			JavaMailSender mailSender,
+			@Value("${app.notifications.from:no-reply@localhost}") String from,
+			@Value("${app.notifications.app-url:}") String appUrl) {
+		requireEncryptedAuth(mailSender);
+		this.mailSender = mailSender;
+		this.from = from;
+		this.appUrl = appUrl.endsWith("/") ? appUrl.substring(0, appUrl.length() - 1) : appUrl;
+	}
+
+	@Override
+	public void send(NotificationDigest digest) throws IOException {
+		try {
+			mailSender.send(message(digest));
+		} catch (MailException | MessagingException e) { // 4xx・5xx・接続失敗はどれも呼び出し側（NotificationDispatcher）の再送に任せる
+			throw new IOException("Failed to send notification mail to " + digest.recipientEmail() + ": " + e.getMessage(), e);
+		}
+	}
+
+	// ヘッダと本文を組み立てる
+	MimeMessage message(NotificationDigest digest) throws MessagingException, IOException {
+		MimeMessage message = mailSender.createMimeMessage();
+		MimeMessageHelper helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
+		helper.setFrom(from);
+		helper.setTo(recipient(digest));
+		helper.setSubject("【経費精算】承認待ちの申請があります（" + digest.entries().size() + "件）");
+		helper.setText(body(digest));
+		return message;
+	}
+
+	// 通知ごとに1項目の本文
+	String body(NotificationDigest digest) {
+		StringBuilder b = new StringBuilder();
+		if (digest.recipientName() != null) {
+			b.append(digest.recipientName()).append(" さん\n\n");
+		}
+		b.append("承認をお待ちの申請が ").append(digest.entries().size()).append(" 件あります。\n\n");
+		for (NotificationOutboxEntry e : digest.entries()) {
+			b.append("・#").append(e.getRequestId());
+			if (e.getTitle() != null) {
+				b.append(' ').append(e.getTitle());
+			}
+			if (e.getAmount() != null) {
+				b.append(String.format("（%,d円）", e.getAmount()));
+			}
+			b.append('\n');
+			String actor = e.getActorName() != null ? e.getActorName() + " さん" : "ユーザー" + e.getActorId();
+			b.append("  ").append(switch (e.getEventType()) {
+				case NotificationOutbox.SUBMITTED -> actor + "が提出しました";
+				case NotificationOutbox.FORWARDED -> actor + "が承認し、あなたに回付されました";
+				case NotificationOutbox.ESCALATED -> "承認期限を過ぎたため、あなたに回付されました";
+				default -> e.getEventType();
+			}).append('\n');
+			if (!appUrl.isEmpty()) {
+				b.append("  ").append(appUrl).append("/requests/").append(e.getRequestId()).append('\n');
+			}
+		}
+		return b.toString();
+	}
+
+	// 宛先（表示名付き）。アドレスとして読めなければ IOException にする
+	private static InternetAddress recipient(NotificationDigest digest) throws IOException {
+		String to = digest.recipientEmail();
+		if (to == null || to.isBlank()) {
+			throw new IOException("Invalid mail address: " + to);
+		}
+		try {
+			InternetAddress address = new InternetAddress(to, true);
+			if (digest.recipientName() != null && !digest.recipientName().isBlank()) {
+				address.setPersonal(digest.recipientName(), StandardCharsets.UTF_8.name());
+			}
+			return address;
+		} catch (MessagingException e) {
+			throw new IOException("Invalid mail address: " + to, e);
+		}
+	}
+
+	// 認証情報を設定しているなら、STARTTLS 必須か SMTPS でなければ起動させない（平文で AUTH を送らない）
+	static void requireEncryptedAuth(JavaMailSender mailSender) {
+		if (!(mailSender instanceof JavaMailSenderImpl impl) || impl.getUsername() == null || impl.getUsername().isEmpty()) {
+			return;
+		}
+		String protocol = impl.getProtocol() != null ? impl.getProtocol() : "smtp";
+		boolean encrypted = "smtps".equals(protocol)
+				|| "true".equalsIgnoreCase(impl.getJavaMailProperties().getProperty("mail.smtp.starttls.required"));
+		if (!encrypted) {
+			throw new IllegalStateException("spring.mail.username is set but the connection is not encrypted;"
+					+ " set spring.mail.properties.mail.smtp.starttls.required=true or spring.mail.protocol=smtps");
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * MyBatisで実行するSQL文を、現在のリクエストの {@link QueryStats} に1文ずつ加算するインターセプタクラス。
+ * 文の数・SELECTで取得した行数・実行時間を数える。リクエストの外（バッチジョブなど）では時刻も取らずにそのまま実行する。
+ * {@code app.query-stats.enabled=false} で登録しないようにできる。
+ */
+
+package com.example.expenseworkflow.querystats;
+
+import java.util.List;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "app.query-stats.enabled", havingValue = "true", matchIfMissing = true)
+@Intercepts({
+		@Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }),
+		@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class }),
+		@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class }),
+})
+public class MyBatisQueryStatsInterceptor implements Interceptor {
+
+	@Override
+	public Object intercept(Invocation invocation) throws Throwable {
+		QueryStats stats = QueryStats.current();
+		if (stats == null) {
+			return invocation.proceed();
+		}
+		MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+		long start = System.nanoTime();
+		long rows = 0;
+		try {
+			Object result = invocation.proceed();
+			if (result instanceof List<?> list) {
+				rows = list.size();
+			}
+			return result;
+		} finally {
+			stats.record(shortId(ms.getId()), rows, System.nanoTime() - start); // 失敗した文も1文として数える
+		}
+	}
+
+	// パッケージを落として「Mapper名.文ID」にする
+	static String shortId(String id) {
+		int method = id.lastIndexOf('.');
+		int type = method > 0 ? id.lastIndexOf('.', method - 1) : -1;
+		return id.substring(type + 1);
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * 1件のHTTPリクエストの中で実行したSQL文の数・取得行数・DB時間を数える入れ物クラス。
+ * {@link QueryStatsFilter} がリクエストごとに作って現在のスレッドに結び付け、{@link MyBatisQueryStatsInterceptor} が1文ごとに加算する。
+ * シャーディング時の並行処理（{@link com.example.expenseworkflow.store.ShardRouter#onEachShard}）には
+ * {@link #call} で同じ入れ物を引き継ぐので、加算は複数スレッドから同時に行われうる。
+ * 同じ文を何度も実行していれば（N+1の疑い）{@link #repeated} で分かる。
+ */
+
+package com.example.expenseworkflow.querystats;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public final class QueryStats {
+
+	private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>(); // このスレッドで数えている入れ物（無ければnull）
+
+	private final LongAdder statements = new LongAdder(); // 実行した文の数
+	private final LongAdder rows = new LongAdder(); // SELECTで取得した行数
+	private final LongAdder nanos = new LongAdder(); // 文の実行にかかった時間の合計
+	private final Map<String, LongAdder> byStatement = new ConcurrentHashMap<>(); // 「Mapper名.文ID」→実行回数
+
+	// このスレッドで数えている入れ物を返す。リクエストの外（バッチジョブなど）なら null
+	public static QueryStats current() {
+		return CURRENT.get();
+	}
+
+	// stats をこのスレッドの入れ物にする。返した Scope を閉じると元に戻す
+	public static Scope bind(QueryStats stats) {
+		Scope scope = new Scope(CURRENT.get());
+		CURRENT.set(stats);
+		return scope;
+	}
+
+	// stats をこのスレッドの入れ物にして action を実行し、終わったら元に戻す（stats が null なら何もせずに実行する）
+	public static <T> T call(QueryStats stats, Supplier<T> action) {
+		if (stats == null) {
+			return action.get();
+		}
+		try (Scope scope = bind(stats)) {
+			return action.get();
+		}
+	}
+
+	/** {@link #bind} の前の入れ物に戻すためのハンドル。 */
+	public static final class Scope implements AutoCloseable {
+
+		private final QueryStats previous;
+
+		private Scope(QueryStats previous) {
+			this.previous = previous;
+		}
+
+		@Override
+		public void close() {
+			if (previous != null) {
+				CURRENT.set(previous);
+			} else {
+				CURRENT.remove();
+			}
+		}
+	}
+
+	/**
+	 * 1文分を加算する。
+	 *
+	 * @param statementId 文のID（「Mapper名.文ID」）
+	 * @param fetchedRows SELECTで取得した行数（更新系は0）
+	 * @param elapsedNanos 実行にかかった時間
+	 */
+	public void record(String statementId, long fetchedRows, long elapsedNanos) {
+		statements.increment();
+		rows.add(fetchedRows);
+		nanos.add(elapsedNanos);
+		byStatement.computeIfAbsent(statementId, k -> new LongAdder()).increment();
+	}
+
+	public long statements() {
+		return statements.sum();
+	}
+
+	public long rows() {
+		return rows.sum();
+	}
+
+	public long nanos() {
+		return nanos.sum();
+	}
+
+	// 文ごとの実行回数（文のID順）
+	public Map<String, Long> byStatement() {
+		Map<String, Long> counts = new TreeMap<>();
+		byStatement.forEach((id, count) -> counts.put(id, count.sum()));
+		return counts;
+	}
+
+	// threshold 回以上実行した文と、その回数（N+1の疑い）
+	public Map<String, Long> repeated(int threshold) {
+		Map<String, Long> counts = byStatement();
+		counts.values().removeIf(count -> count < threshold);
+		return counts;
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * /api/** の各リクエストで実行したSQL文の数・取得行数・DB時間を数え、メトリクス（と開発時は応答ヘッダ）に出すフィルタクラス。
+ * <ul>
+ *   <li>リクエストごとに {@link QueryStats} を作って結び付け、{@link MyBatisQueryStatsInterceptor} に加算させる</li>
+ *   <li>処理後に、メソッドとルートのパターン（例: {@code GET /api/inbox}）ごとに
+ *       {@code expense.http.query.statements}・{@code expense.http.query.rows}・{@code expense.http.query.time} へ記録する</li>
+ *   <li>同じ文を {@code app.query-stats.repeat-threshold} 回以上実行したリクエストは、N+1の疑いとして
+ *       {@code expense.http.query.repeated} を数え、警告ログを出す</li>
+ *   <li>{@code app.query-stats.headers=true}（開発用。例は application-local.properties）なら、応答に
+ *       {@code X-Query-Count}・{@code X-Query-Rows}・{@code X-Query-Time-Ms}・{@code X-Query-Statements}（文ごとの回数）を付ける。
+ *       ヘッダは処理が全部終わってから決まるので、この場合だけ応答本文をいったん溜めてから返す。
+ *       ストリーミングやファイルの応答（{@code app.query-stats.unbuffered-paths}。既定は GET /api/changes と添付ファイルのダウンロード）は
+ *       溜めずにそのまま返し、メトリクスだけを記録する</li>
+ * </ul>
+ * テストでは {@code app.query-stats.headers=true} にしてヘッダを読み、エンドポイントごとの文の数の上限を確かめる。
+ * {@code app.query-stats.enabled=false} で登録しないようにできる。
+ */
+
+package com.example.expenseworkflow.querystats;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 30)
+@ConditionalOnProperty(name = "app.query-stats.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+	public static final String COUNT_HEADER = "X-Query-Count";
+	public static final String ROWS_HEADER = "X-Query-Rows";
+	public static final String TIME_HEADER = "X-Query-Time-Ms";
+	public static final String STATEMENTS_HEADER = "X-Query-Statements"; // 「Mapper名.文ID=回数」のカンマ区切り
+
+	private static final Logger log = LoggerFactory.getLogger(QueryStatsFilter.class);
+
+	private final MeterRegistry meterRegistry;
+	private final boolean headers; // 応答ヘッダにも出す（開発用）
+	private final int repeatThreshold; // 同じ文をこの回数以上実行したらN+1の疑いとする
+	private final List<String[]> unbufferedPaths; // ヘッダのために本文を溜めないパスのセグメント（"*" は任意の1セグメント）
+
+	public QueryStatsFilter(
+			MeterRegistry meterRegistry,
+			@Value("${app.query-stats.headers:false}") boolean headers,
+			@Value("${app.query-stats.repeat-threshold:5}") int repeatThreshold,
+			@Value("${app.query-stats.unbuffered-paths:/api/changes,/api/requests/*/attachments/*}") String unbufferedPaths) {
+		this.meterRegistry = meterRegistry;
+		this.headers = headers;
+		this.repeatThreshold = repeatThreshold;
+		this.unbufferedPaths = Arrays.stream(unbufferedPaths.split(","))
+				.map(String::trim)
+				.filter(p -> !p.isEmpty())
+				.map(p -> p.split("/"))
+				.toList();
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		return !path.startsWith("/api/")
+				|| "OPTIONS".equals(request.getMethod()); // CORSプリフライトはSQLを実行しない
+	}
+
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		if (isAsyncDispatch(request)) {
+			// unbuffered-paths に無い非同期の応答（想定外）でも、溜めた本文を非同期処理の完了後に返す（数は最初のディスパッチで記録済み）
+			filterChain.doFilter(request, response);
+			ContentCachingResponseWrapper wrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+			if (wrapper != null && !request.isAsyncStarted()) {
+				wrapper.copyBodyToResponse();
+			}
+			return;
+		}
+		QueryStats stats = new QueryStats();
+		ContentCachingResponseWrapper wrapper = headers && !isUnbuffered(request) ? new ContentCachingResponseWrapper(response) : null;
+		try (QueryStats.Scope scope = QueryStats.bind(stats)) {
+			filterChain.doFilter(request, wrapper != null ? wrapper : response);
+		} finally {
+			String route = routeOf(request);
+			record(stats, request.getMethod(), route);
+			if (wrapper != null) {
+				writeHeaders(stats, wrapper);
+				if (!request.isAsyncStarted()) { // 非同期なら本文はまだ書かれていないので、完了後の再ディスパッチで返す
+					wrapper.copyBodyToResponse();
+				}
+			}
+		}
+	}
+
+	private boolean isUnbuffered(HttpServletRequest request) {
+		String[] segments = request.getRequestURI().substring(request.getContextPath().length()).split("/");
+		for (String[] pattern : unbufferedPaths) {
+			if (pattern.length != segments.length) {
+				continue;
+			}
+			boolean matches = true;
+			for (int i = 0; i < pattern.length && matches; i++) {
+				matches = "*".equals(pattern[i]) ? !segments[i].isEmpty() : pattern[i].equals(segments[i]);
+			}
+			if (matches) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void record(QueryStats stats, String method, String route) {
+		Tags tags = Tags.of("method", method, "uri", route);
+		DistributionSummary.builder("expense.http.query.statements").tags(tags).register(meterRegistry).record(stats.statements());
+		DistributionSummary.builder("expense.http.query.rows").tags(tags).register(meterRegistry).record(stats.rows());
+		Timer.builder("expense.http.query.time").tags(tags).register(meterRegistry).record(Duration.ofNanos(stats.nanos()));
+
+		Map<String, Long> repeated = stats.repeated(repeatThreshold);
+		if (!repeated.isEmpty()) {
+			repeated.forEach((statement, count) -> Counter.builder("expense.http.query.repeated")
+					.tags(tags.and("statement", statement))
+					.register(meterRegistry)
+					.increment());
+			log.warn("Possible N+1 in {} {}: {}", method, route, repeated);
+		}
+	}
+
+	private static void writeHeaders(QueryStats stats, HttpServletResponse response) {
+		response.setHeader(COUNT_HEADER, Long.toString(stats.statements()));
+		response.setHeader(ROWS_HEADER, Long.toString(stats.rows()));
+		response.setHeader(TIME_HEADER, String.format(Locale.ROOT, "%.1f", stats.nanos() / 1_000_000.0));
+		response.setHeader(STATEMENTS_HEADER, stats.byStatement().entrySet().stream()
+				.map(e -> e.getKey() + "=" + e.getValue())
+				.collect(Collectors.joining(",")));
+	}
+
+	// ルートのパターン（無ければ UNKNOWN。パスそのものをタグにすると種類が際限なく増える）
+	private static String routeOf(HttpServletRequest request) {
+		Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		return route != null ? route.toString() : "UNKNOWN";
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * GET /api/analytics の1回分の問い合わせ（絞り込み・グループ化・集計）を表すレコード。
+ * {@link AnalyticsSnapshot#query} がこの内容で列を走査する。
+ *
+ * @param groupBy    グループ化のキー
+ * @param metric     グループごとの集計方法
+ * @param measure    集計する値（金額、または提出から最終承認までの時間）
+ * @param statuses   対象のステータス（空なら全ステータス）
+ * @param from       経費発生日の下限（含む。nullなら無制限）
+ * @param to         経費発生日の上限（含む。nullなら無制限）
+ * @param applicantId 申請者で絞り込む（nullなら全員）
+ * @param approverId 承認者（current_approver_id）で絞り込む（nullなら全員）
+ * @param limit      返すグループ数の上限（値の大きい順）
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+public record AnalyticsQuery(
+		GroupBy groupBy,
+		Metric metric,
+		Measure measure,
+		Set<String> statuses,
+		LocalDate from,
+		LocalDate to,
+		Long applicantId,
+		Long approverId,
+		int limit) {
+
+	public enum GroupBy {
+		NONE, APPLICANT, APPROVER, STATUS, MONTH
+	}
+
+	public enum Metric {
+		COUNT, SUM, AVG, MIN, MAX
+	}
+
+	public enum Measure {
+		AMOUNT, // 金額（円）
+		APPROVAL_HOURS // 提出から最終承認までの時間（承認済みの申請だけが対象）
+	}
+}
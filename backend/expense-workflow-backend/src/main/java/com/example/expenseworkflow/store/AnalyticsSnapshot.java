@@ -0,0 +1,529 @@
+/**
+ * 経理向けの集計（上位の申請者・承認者ごとの承認までの平均時間など）を、OLTPのテーブルで GROUP BY せずに
+ * メモリ上の列指向のスナップショットで答えるクラス。
+ * <ul>
+ *   <li>申請を列ごとのプリミティブ配列（金額は int、経費発生日は epoch day、ステータスとユーザーIDは辞書で int/byte に符号化）で持つ</li>
+ *   <li>初回の問い合わせで expense_requests（とアーカイブ）を主キー順のページングで読み込む
+ *       （起動時にスリープ中のDBへ接続しないため、{@link OrgHierarchyCache} と同じく遅延ロード）</li>
+ *   <li>以降は {@code app.analytics.refresh-seconds} ごとに、前回以降の expense_request_actions の行と対象申請の現在の列だけを取り込む。
+ *       取り込みは問い合わせをきっかけに別スレッドで行い、問い合わせ自体は直前のスナップショットで答える（DBがスリープ中でも待たせない）。
+ *       取り込みに失敗したら警告ログを出し、直前のスナップショットを使い続けて次の間隔で取り直す</li>
+ *   <li>問い合わせは行の範囲をコア数に分けて並列に走査し、グループごとの部分集計をまとめる</li>
+ * </ul>
+ * スナップショットは作ったあと変更しない（差分の取り込みは複製に適用して差し替える）ので、走査中にロックは要らない。
+ * 操作履歴の残らない変更（下書きの作成・差戻し中の編集）は、次の提出で取り込まれる。
+ * シャーディング時は全シャードから読み、差分のカーソルはシャードごとに持つ。
+ * inmemory プロファイルではDBが無いため登録しない（{@code /api/analytics} も404になる）。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.example.expenseworkflow.domain.AnalyticsRow;
+import com.example.expenseworkflow.mapper.AnalyticsMapper;
+
+@Component
+@Profile("!inmemory")
+public class AnalyticsSnapshot {
+
+	private static final Logger log = LoggerFactory.getLogger(AnalyticsSnapshot.class);
+	private static final int MIN_CHUNK_ROWS = 16_384; // これより少ない行数は1スレッドで走査する（分割の手間の方が大きい）
+
+	private final AnalyticsMapper analyticsMapper;
+	private final ShardRouter shardRouter;
+	private final int batchSize; // 1回のSELECTで読む行数
+	private final long refreshMillis; // 差分を取り込む間隔
+	private final long settleSeconds; // 記録からこの秒数が経っていない操作履歴は次回に回す
+	private final Executor refreshExecutor; // 差分の取り込みを走らせる先（問い合わせのスレッドを待たせない）
+
+	private final Object loadLock = new Object();
+	private final AtomicBoolean refreshing = new AtomicBoolean(); // 差分の取り込みが走っている（同時に1本だけ）
+	private volatile Columns columns; // 公開中のスナップショット（未ロードならnull）
+	private long[] cursors; // シャードごとの取り込み済みの操作履歴ID（refreshing を取ったスレッドだけが触る）
+	private volatile long refreshedAt; // 最後に差分を取り込んだ時刻（System.currentTimeMillis）
+
+	/** 問い合わせの結果。groups は値の大きい順。 */
+	public record Result(List<Group> groups, int matchedRows, int totalRows, Instant snapshotAt) {
+	}
+
+	/** 1グループ分の集計結果。 */
+	public record Group(String key, long count, double value) {
+	}
+
+	@Autowired
+	public AnalyticsSnapshot(
+			AnalyticsMapper analyticsMapper,
+			ShardRouter shardRouter,
+			@Value("${app.analytics.batch-size:5000}") int batchSize,
+			@Value("${app.analytics.refresh-seconds:30}") long refreshSeconds,
+			@Value("${app.changes.settle-seconds:5}") long settleSeconds) {
+		this(analyticsMapper, shardRouter, batchSize, refreshSeconds, settleSeconds,
+				task -> Thread.ofVirtual().name("analytics-refresh").start(task));
+	}
+
+	AnalyticsSnapshot(AnalyticsMapper analyticsMapper, ShardRouter shardRouter, int batchSize, long refreshSeconds,
+			long settleSeconds, Executor refreshExecutor) {
+		this.analyticsMapper = analyticsMapper;
+		this.shardRouter = shardRouter;
+		this.batchSize = batchSize;
+		this.refreshMillis = refreshSeconds * 1000;
+		this.settleSeconds = settleSeconds;
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	// ===== 問い合わせ =====
+
+	public Result query(AnalyticsQuery q) {
+		Columns c = current();
+		int groupCount = c.cardinality(q.groupBy());
+
+		// 絞り込み条件を列の符号に直しておく（走査中は整数の比較だけにする）
+		long statusMask = 0; // 0 なら全ステータス
+		for (String s : q.statuses()) {
+			Integer code = c.statusCodes.get(s);
+			if (code == null) {
+				continue; // 一度も現れていないステータスは該当なし
+			}
+			statusMask |= 1L << code;
+		}
+		if (!q.statuses().isEmpty() && statusMask == 0) {
+			return new Result(List.of(), 0, c.size, c.builtAt);
+		}
+		int applicant = q.applicantId() != null ? c.users.codeOf(q.applicantId()) : Columns.ANY;
+		int approver = q.approverId() != null ? c.users.codeOf(q.approverId()) : Columns.ANY;
+		if (applicant == Columns.NONE || approver == Columns.NONE) {
+			return new Result(List.of(), 0, c.size, c.builtAt);
+		}
+		Filter filter = new Filter(statusMask, applicant, approver,
+				q.from() != null ? (int) q.from().toEpochDay() : Integer.MIN_VALUE,
+				q.to() != null ? (int) q.to().toEpochDay() : Integer.MAX_VALUE,
+				q.from() != null || q.to() != null);
+
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		int chunks = Math.max(1, Math.min(parallelism, c.size / MIN_CHUNK_ROWS));
+		int chunkSize = (c.size + chunks - 1) / chunks;
+		Partial total = IntStream.range(0, chunks)
+				.parallel()
+				.mapToObj(i -> scan(c, q, filter, groupCount, i * chunkSize, Math.min(c.size, (i + 1) * chunkSize)))
+				.reduce(Partial::merge)
+				.orElseGet(() -> new Partial(groupCount));
+
+		double scale = q.measure() == AnalyticsQuery.Measure.APPROVAL_HOURS ? 3600.0 : 1.0; // 秒→時間
+		List<Group> groups = new ArrayList<>();
+		int matched = 0;
+		for (int g = 0; g < groupCount; g++) {
+			long n = total.count[g];
+			if (n == 0) {
+				continue;
+			}
+			matched += (int) n;
+			double value = switch (q.metric()) {
+				case COUNT -> n;
+				case SUM -> total.sum[g] / scale;
+				case AVG -> total.sum[g] / scale / n;
+				case MIN -> total.min[g] / scale;
+				case MAX -> total.max[g] / scale;
+			};
+			groups.add(new Group(c.label(q.groupBy(), g), n, value));
+		}
+		groups.sort(Comparator.comparingDouble(Group::value).reversed().thenComparing(Group::key));
+		return new Result(groups.subList(0, Math.min(q.limit(), groups.size())), matched, c.size, c.builtAt);
+	}
+
+	// 走査中に使う、符号化済みの絞り込み条件
+	private record Filter(long statusMask, int applicant, int approver, int fromDay, int toDay, boolean byDate) {
+	}
+
+	// [start, end) の行を走査してグループごとに集計する（1スレッド分）
+	private static Partial scan(Columns c, AnalyticsQuery q, Filter f, int groupCount, int start, int end) {
+		Partial p = new Partial(groupCount);
+		boolean hours = q.measure() == AnalyticsQuery.Measure.APPROVAL_HOURS;
+		for (int r = start; r < end; r++) {
+			if (f.statusMask() != 0 && (f.statusMask() & (1L << c.status[r])) == 0) {
+				continue;
+			}
+			if (f.applicant() != Columns.ANY && c.applicant[r] != f.applicant()) {
+				continue;
+			}
+			if (f.approver() != Columns.ANY && c.approver[r] != f.approver()) {
+				continue;
+			}
+			int day = c.expenseDay[r];
+			if (f.byDate() && (day == Columns.NO_DAY || day < f.fromDay() || day > f.toDay())) {
+				continue;
+			}
+			long value;
+			if (hours) {
+				if (c.submitted[r] == Columns.NO_TIME || c.approved[r] == Columns.NO_TIME) {
+					continue;
+				}
+				value = c.approved[r] - c.submitted[r];
+			} else {
+				value = c.amount[r];
+			}
+			int g = switch (q.groupBy()) {
+				case NONE -> 0;
+				case APPLICANT -> c.applicant[r];
+				case APPROVER -> c.approver[r];
+				case STATUS -> c.status[r];
+				case MONTH -> c.expenseMonth[r] == Columns.NONE ? Columns.NONE : c.expenseMonth[r] - c.minMonth;
+			};
+			if (g < 0) {
+				continue; // 承認者・経費発生日が無い行はそのグループ化では数えない
+			}
+			p.add(g, value);
+		}
+		return p;
+	}
+
+	// グループごとの件数・合計・最小・最大
+	private static final class Partial {
+		final long[] count;
+		final long[] sum;
+		final long[] min;
+		final long[] max;
+
+		Partial(int groups) {
+			count = new long[groups];
+			sum = new long[groups];
+			min = new long[groups];
+			max = new long[groups];
+			Arrays.fill(min, Long.MAX_VALUE);
+			Arrays.fill(max, Long.MIN_VALUE);
+		}
+
+		void add(int g, long value) {
+			count[g]++;
+			sum[g] += value;
+			if (value < min[g]) {
+				min[g] = value;
+			}
+			if (value > max[g]) {
+				max[g] = value;
+			}
+		}
+
+		Partial merge(Partial o) {
+			for (int g = 0; g < count.length; g++) {
+				count[g] += o.count[g];
+				sum[g] += o.sum[g];
+				min[g] = Math.min(min[g], o.min[g]);
+				max[g] = Math.max(max[g], o.max[g]);
+			}
+			return this;
+		}
+	}
+
+	// ===== 読み込みと差分の取り込み =====
+
+	// 公開中のスナップショットを返す。初回は全件を読み込み、古ければ差分の取り込みを裏で始めて直前のものを返す
+	private Columns current() {
+		Columns c = columns;
+		if (c == null) {
+			synchronized (loadLock) {
+				if (columns == null) {
+					loadAll();
+				}
+				return columns;
+			}
+		}
+		if (System.currentTimeMillis() - refreshedAt >= refreshMillis && refreshing.compareAndSet(false, true)) {
+			try {
+				refreshExecutor.execute(this::refreshQuietly);
+			} catch (RuntimeException e) {
+				refreshing.set(false);
+				throw e;
+			}
+		}
+		return columns;
+	}
+
+	// 差分を取り込む。失敗しても直前のスナップショットを残し、次の間隔まで取り直さない
+	private void refreshQuietly() {
+		try {
+			refresh();
+		} catch (RuntimeException e) {
+			refreshedAt = System.currentTimeMillis();
+			log.warn("Failed to refresh analytics snapshot; serving the one built at {}", columns.builtAt, e);
+		} finally {
+			refreshing.set(false);
+		}
+	}
+
+	// 全シャードの申請と最終承認の日時を読み込む（loadLock の中で、公開前に1回だけ呼ぶので差分の取り込みとは重ならない）
+	private void loadAll() {
+		long[] startCursors = new long[shardRouter.shardCount()];
+		List<List<AnalyticsRow>> perShard = shardRouter.onEachShard(() -> {
+			// 読み込み中の遷移を取りこぼさないよう、先に操作履歴の位置を控えてから読む（重複して取り込んでも結果は同じ）
+			long cursor = analyticsMapper.selectMaxActionId();
+			startCursors[currentShard()] = cursor;
+			List<AnalyticsRow> rows = new ArrayList<>();
+			for (boolean archive : new boolean[] { true, false }) { // 同じIDがあれば後に読むホット側を優先する
+				readPages(rows, afterId -> analyticsMapper.selectRequestRows(archive, afterId, batchSize), AnalyticsRow::getRequestId);
+			}
+			for (boolean archive : new boolean[] { true, false }) {
+				readPages(rows, afterId -> analyticsMapper.selectApprovals(archive, afterId, batchSize), AnalyticsRow::getActionId);
+			}
+			return rows;
+		});
+		Columns c = new Columns(1024);
+		for (List<AnalyticsRow> rows : perShard) {
+			rows.forEach(c::apply);
+		}
+		c.builtAt = Instant.now();
+		cursors = startCursors;
+		refreshedAt = System.currentTimeMillis();
+		columns = c;
+	}
+
+	// 前回以降の操作履歴と対象申請の現在の列を取り込む
+	private void refresh() {
+		long[] next = cursors.clone();
+		List<List<AnalyticsRow>> perShard = shardRouter.onEachShard(() -> {
+			int shard = currentShard();
+			List<AnalyticsRow> rows = new ArrayList<>();
+			next[shard] = readPages(rows, since -> analyticsMapper.selectChangedRows(since, settleSeconds, batchSize),
+					AnalyticsRow::getActionId, cursors[shard]);
+			return rows;
+		});
+		refreshedAt = System.currentTimeMillis();
+		if (perShard.stream().allMatch(List::isEmpty)) {
+			return;
+		}
+		Columns c = columns.copy();
+		for (List<AnalyticsRow> rows : perShard) {
+			rows.forEach(c::apply); // 操作履歴ID順なので、同じ申請の複数の遷移は最後の状態になる
+		}
+		c.builtAt = Instant.now();
+		cursors = next;
+		columns = c;
+	}
+
+	private long readPages(List<AnalyticsRow> into, LongFunction<List<AnalyticsRow>> page,
+			Function<AnalyticsRow, Long> key) {
+		return readPages(into, page, key, 0);
+	}
+
+	// キーの範囲で batchSize 件ずつ読み進め、最後に読んだキーを返す
+	private long readPages(List<AnalyticsRow> into, LongFunction<List<AnalyticsRow>> page,
+			Function<AnalyticsRow, Long> key, long after) {
+		while (true) {
+			List<AnalyticsRow> rows = page.apply(after);
+			if (rows == null || rows.isEmpty()) {
+				return after;
+			}
+			into.addAll(rows);
+			after = key.apply(rows.get(rows.size() - 1));
+			if (rows.size() < batchSize) {
+				return after;
+			}
+		}
+	}
+
+	private static int currentShard() {
+		Integer shard = ShardContext.current();
+		return shard != null ? shard : 0;
+	}
+
+	// ===== 列 =====
+
+	// 申請ごとの列。公開後は変更しない（差分は copy に適用する）
+	static final class Columns {
+		static final int ANY = Integer.MIN_VALUE; // 絞り込みなし
+		static final int NONE = -1; // 値なし（承認者なし・辞書に無いIDなど）
+		static final int NO_DAY = Integer.MIN_VALUE;
+		static final long NO_TIME = Long.MIN_VALUE;
+
+		int size;
+		long[] ids;
+		int[] applicant; // users の符号
+		int[] approver; // users の符号（NONE なら承認者なし）
+		int[] amount;
+		int[] expenseDay; // epoch day
+		int[] expenseMonth; // 年*12+月-1（NONE なら経費発生日なし）
+		long[] submitted; // epoch秒（UTCとみなす。差だけを使う）
+		long[] approved;
+		byte[] status; // statuses の符号
+		int minMonth = Integer.MAX_VALUE;
+		int maxMonth = Integer.MIN_VALUE;
+		Instant builtAt;
+
+		final Map<Long, Integer> rowOf; // 申請ID→行
+		final IdDictionary users;
+		final List<String> statuses;
+		final Map<String, Integer> statusCodes;
+
+		Columns(int capacity) {
+			ids = new long[capacity];
+			applicant = new int[capacity];
+			approver = new int[capacity];
+			amount = new int[capacity];
+			expenseDay = new int[capacity];
+			expenseMonth = new int[capacity];
+			submitted = new long[capacity];
+			approved = new long[capacity];
+			status = new byte[capacity];
+			rowOf = new HashMap<>();
+			users = new IdDictionary();
+			statuses = new ArrayList<>();
+			statusCodes = new HashMap<>();
+		}
+
+		private Columns(Columns o) {
+			size = o.size;
+			ids = o.ids.clone();
+			applicant = o.applicant.clone();
+			approver = o.approver.clone();
+			amount = o.amount.clone();
+			expenseDay = o.expenseDay.clone();
+			expenseMonth = o.expenseMonth.clone();
+			submitted = o.submitted.clone();
+			approved = o.approved.clone();
+			status = o.status.clone();
+			minMonth = o.minMonth;
+			maxMonth = o.maxMonth;
+			rowOf = new HashMap<>(o.rowOf);
+			users = o.users.copy();
+			statuses = new ArrayList<>(o.statuses);
+			statusCodes = new HashMap<>(o.statusCodes);
+		}
+
+		Columns copy() {
+			return new Columns(this);
+		}
+
+		// 1行を取り込む。申請の列があれば上書きし、最終承認の日時があれば記録する
+		void apply(AnalyticsRow row) {
+			Integer r = rowOf.get(row.getRequestId());
+			if (row.getApplicantId() == null) { // 最終承認の日時だけの行
+				if (r != null && row.getApprovedAt() != null) {
+					approved[r] = row.getApprovedAt().toEpochSecond(ZoneOffset.UTC);
+				}
+				return;
+			}
+			if (r == null) {
+				r = size++;
+				ensureCapacity(size);
+				rowOf.put(row.getRequestId(), r);
+				approved[r] = NO_TIME;
+			}
+			ids[r] = row.getRequestId();
+			applicant[r] = users.encode(row.getApplicantId());
+			approver[r] = row.getApproverId() != null ? users.encode(row.getApproverId()) : NONE;
+			amount[r] = row.getAmount() != null ? row.getAmount() : 0;
+			status[r] = (byte) (int) statusCodes.computeIfAbsent(row.getStatus(), s -> {
+				statuses.add(s);
+				return statuses.size() - 1;
+			});
+			LocalDate date = row.getExpenseDate();
+			expenseDay[r] = date != null ? (int) date.toEpochDay() : NO_DAY;
+			expenseMonth[r] = date != null ? date.getYear() * 12 + date.getMonthValue() - 1 : NONE;
+			if (date != null) {
+				minMonth = Math.min(minMonth, expenseMonth[r]);
+				maxMonth = Math.max(maxMonth, expenseMonth[r]);
+			}
+			submitted[r] = row.getSubmittedAt() != null ? row.getSubmittedAt().toEpochSecond(ZoneOffset.UTC) : NO_TIME;
+			if (row.getApprovedAt() != null) {
+				approved[r] = row.getApprovedAt().toEpochSecond(ZoneOffset.UTC);
+			} else if (!"APPROVED".equals(row.getStatus())) {
+				approved[r] = NO_TIME;
+			}
+		}
+
+		int cardinality(AnalyticsQuery.GroupBy groupBy) {
+			return switch (groupBy) {
+				case NONE -> 1;
+				case APPLICANT, APPROVER -> users.size();
+				case STATUS -> statuses.size();
+				case MONTH -> maxMonth >= minMonth ? maxMonth - minMonth + 1 : 0;
+			};
+		}
+
+		String label(AnalyticsQuery.GroupBy groupBy, int g) {
+			return switch (groupBy) {
+				case NONE -> "all";
+				case APPLICANT, APPROVER -> Long.toString(users.decode(g));
+				case STATUS -> statuses.get(g);
+				case MONTH -> YearMonth.of((minMonth + g) / 12, (minMonth + g) % 12 + 1).toString();
+			};
+		}
+
+		private void ensureCapacity(int needed) {
+			if (needed <= ids.length) {
+				return;
+			}
+			int capacity = Math.max(needed, ids.length * 2);
+			ids = Arrays.copyOf(ids, capacity);
+			applicant = Arrays.copyOf(applicant, capacity);
+			approver = Arrays.copyOf(approver, capacity);
+			amount = Arrays.copyOf(amount, capacity);
+			expenseDay = Arrays.copyOf(expenseDay, capacity);
+			expenseMonth = Arrays.copyOf(expenseMonth, capacity);
+			submitted = Arrays.copyOf(submitted, capacity);
+			approved = Arrays.copyOf(approved, capacity);
+			status = Arrays.copyOf(status, capacity);
+		}
+	}
+
+	// ユーザーIDを0からの連番に符号化する辞書（グループごとの集計を配列の添字で行うため）
+	static final class IdDictionary {
+		private long[] values = new long[64];
+		private final Map<Long, Integer> codes = new HashMap<>();
+
+		int encode(long id) {
+			Integer code = codes.get(id);
+			if (code != null) {
+				return code;
+			}
+			int next = codes.size();
+			if (next == values.length) {
+				values = Arrays.copyOf(values, next * 2);
+			}
+			values[next] = id;
+			codes.put(id, next);
+			return next;
+		}
+
+		int codeOf(long id) {
+			return codes.getOrDefault(id, Columns.NONE);
+		}
+
+		long decode(int code) {
+			return values[code];
+		}
+
+		int size() {
+			return codes.size();
+		}
+
+		IdDictionary copy() {
+			IdDictionary d = new IdDictionary();
+			d.values = values.clone();
+			d.codes.putAll(codes);
+			return d;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * 承認者ごとの月次予算（承認できる金額の月間上限）を、最終承認の時点で確認・確保するクラス。
+ * 予算の残りをDBの集計行で管理すると、同じ承認者の承認がその行のロック待ちで直列になるため、次のように分担する。
+ * <ul>
+ *   <li>確認と確保：承認者×月ごとの {@link AtomicLong} をCASで加算する（上限を超える加算は行わず409を投げる）。
+ *       カウンタは承認者ごとに独立しているので、別の承認者どうしは互いに待たない</li>
+ *   <li>永続化：確保と同じトランザクションで approver_budget_ledger に1行追記する（更新ではなく追記なので行ロックを取り合わない）</li>
+ *   <li>取り消し：トランザクションがコミットされなかった場合は、完了後に確保した分をカウンタから戻す</li>
+ *   <li>突き合わせ：起動後の初回利用時と月替わりに、台帳をその月の分だけ承認者ごとに合計してカウンタを作り直す
+ *       （起動時にスリープ中のDBへ接続しないため、{@link OrgHierarchyCache} と同じく遅延ロード）</li>
+ * </ul>
+ * 上限は {@code app.approver-budget.monthly-limits}（「承認者ID:金額」のカンマ区切り）で個別に、
+ * それ以外の承認者は {@code app.approver-budget.default-monthly-limit} で指定する（0以下なら上限なし）。
+ * カウンタはこのインスタンスのメモリ上にあるため、複数台で動かす場合は台帳との突き合わせまでの間に台数分まで超過しうる。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.expenseworkflow.domain.ApproverBudgetUsage;
+import com.example.expenseworkflow.mapper.ApproverBudgetMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Component
+public class ApproverBudget {
+
+	private static final Logger log = LoggerFactory.getLogger(ApproverBudget.class);
+
+	private final ApproverBudgetMapper approverBudgetMapper;
+	private final ShardRouter shardRouter; // シャーディング時は台帳が申請と同じシャードに分かれるので、全シャード分を合計する
+	private final long defaultMonthlyLimit; // 個別指定の無い承認者の月間上限（0以下なら上限なし）
+	private final Map<Long, Long> monthlyLimits; // 承認者ID→月間上限
+
+	private final Counter rejections;
+
+	private volatile MonthUsage usage; // 対象月の消化額（未構築ならnull）
+
+	// 対象月と、承認者ID→その月の消化額カウンタ
+	private record MonthUsage(YearMonth month, Map<Long, AtomicLong> used) {
+	}
+
+	public ApproverBudget(
+			ApproverBudgetMapper approverBudgetMapper,
+			ShardRouter shardRouter,
+			@Value("${app.approver-budget.default-monthly-limit:0}") long defaultMonthlyLimit,
+			@Value("${app.approver-budget.monthly-limits:}") String monthlyLimits,
+			MeterRegistry meterRegistry) {
+		this.approverBudgetMapper = approverBudgetMapper;
+		this.shardRouter = shardRouter;
+		this.defaultMonthlyLimit = defaultMonthlyLimit;
+		this.monthlyLimits = parseLimits(monthlyLimits);
+		this.rejections = Counter.builder("expense.approver.budget.rejections").register(meterRegistry);
+	}
+
+	/**
+	 * 承認者の今月の予算から amount を確保し、台帳に記録する。呼び出し側のトランザクション内で呼ぶこと。
+	 * 上限を超える場合は何も記録せず409を投げる（呼び出し側のトランザクションはロールバックされる）。
+	 */
+	public void reserve(Long approverId, Long requestId, int amount) {
+		YearMonth month = YearMonth.now();
+		long limit = limitOf(approverId);
+		if (limit > 0) {
+			MonthUsage current = usageOf(month);
+			AtomicLong used = current.used().computeIfAbsent(approverId, k -> new AtomicLong());
+			long prev;
+			do {
+				prev = used.get();
+				if (prev + amount > limit) {
+					rejections.increment();
+					throw new ResponseStatusException(HttpStatus.CONFLICT,
+							"Approval exceeds your monthly budget (remaining " + Math.max(0, limit - prev) + ").");
+				}
+			} while (!used.compareAndSet(prev, prev + amount));
+			releaseUnlessCommitted(used, amount);
+		}
+		approverBudgetMapper.insertLedgerEntry(approverId, month.atDay(1), requestId, amount); // 上限なしの承認者も、後から上限を設けたときのために記録する
+	}
+
+	// 承認者の今月の残り予算を返す。上限なしなら null
+	public Long remaining(Long approverId) {
+		long limit = limitOf(approverId);
+		if (limit <= 0) {
+			return null;
+		}
+		AtomicLong used = usageOf(YearMonth.now()).used().get(approverId);
+		return Math.max(0, limit - (used != null ? used.get() : 0));
+	}
+
+	// メモリ上の消化額を破棄し、次回の利用時に台帳から作り直させる
+	public void invalidate() {
+		usage = null;
+	}
+
+	private long limitOf(Long approverId) {
+		return monthlyLimits.getOrDefault(approverId, defaultMonthlyLimit);
+	}
+
+	// コミットされなかったら確保した分を戻す（トランザクション外なら台帳への記録が成功した時点で確定）
+	private void releaseUnlessCommitted(AtomicLong used, int amount) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status != STATUS_COMMITTED) {
+					used.addAndGet(-amount);
+				}
+			}
+		});
+	}
+
+	// 対象月の消化額を返す。未構築または月が替わっていれば台帳から1回だけ作り直す
+	private MonthUsage usageOf(YearMonth month) {
+		MonthUsage current = usage;
+		if (current != null && current.month().equals(month)) {
+			return current;
+		}
+		synchronized (this) {
+			current = usage;
+			if (current == null || !current.month().equals(month)) {
+				current = load(month);
+				usage = current;
+			}
+			return current;
+		}
+	}
+
+	private MonthUsage load(YearMonth month) {
+		List<List<ApproverBudgetUsage>> shards = shardRouter.onEachShard(() -> approverBudgetMapper.selectUsageByMonth(month.atDay(1)));
+		Map<Long, AtomicLong> used = new ConcurrentHashMap<>();
+		for (List<ApproverBudgetUsage> rows : shards) {
+			for (ApproverBudgetUsage row : rows) {
+				used.computeIfAbsent(row.getApproverId(), k -> new AtomicLong())
+						.addAndGet(row.getUsedAmount() != null ? row.getUsedAmount() : 0);
+			}
+		}
+		log.info("Approver budget usage loaded: month={}, approvers={}", month, used.size());
+		return new MonthUsage(month, used);
+	}
+
+	private static Map<Long, Long> parseLimits(String value) {
+		Map<Long, Long> limits = new HashMap<>();
+		if (value == null || value.isBlank()) {
+			return limits;
+		}
+		Arrays.stream(value.split(","))
+				.map(String::trim)
+				.filter(v -> !v.isEmpty())
+				.forEach(v -> {
+					String[] pair = v.split(":");
+					if (pair.length != 2) {
+						throw new IllegalArgumentException("app.approver-budget.monthly-limits must be approverId:amount pairs: " + v);
+					}
+					limits.put(Long.parseLong(pair[0].trim()), Long.parseLong(pair[1].trim()));
+				});
+		return limits;
+	}
+}
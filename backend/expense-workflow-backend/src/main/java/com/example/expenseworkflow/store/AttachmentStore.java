@@ -0,0 +1,94 @@
+/**
+ * 申請の添付ファイル（領収書など）に関するアクセス制御とメタデータ登録を集約するサービスクラス。
+ * ファイル本体は {@link ContentAddressedFileStore}、メタデータは
+ * {@link com.example.expenseworkflow.mapper.AttachmentMapper} が扱う。
+ * <ul>
+ *   <li>アップロードできるのは申請者本人のみで、申請が編集できる状態（DRAFT / RETURNED）の間だけ。
+ *       提出後に証憑を差し替えられると、承認者が見た内容と承認された内容がずれるため</li>
+ *   <li>一覧・ダウンロードできるのは申請者本人と現在の承認者のみ（アーカイブ済みの申請も含む）</li>
+ *   <li>権限のない申請は存在しない場合と同じく404にし、他人の申請の有無を漏らさない</li>
+ * </ul>
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.expenseworkflow.controller.dto.RequestSummaryResponse;
+import com.example.expenseworkflow.domain.Attachment;
+import com.example.expenseworkflow.mapper.AttachmentMapper;
+import com.example.expenseworkflow.store.ContentAddressedFileStore.StoredFile;
+
+import lombok.RequiredArgsConstructor;
+
+@Component
+@RequiredArgsConstructor
+public class AttachmentStore {
+
+	private static final Set<String> UPLOADABLE_STATUSES = Set.of("DRAFT", "RETURNED"); // 申請者が内容を編集できる状態
+
+	private final AttachmentMapper attachmentMapper;
+	private final RequestStore requestStore; // 申請の所有者・担当承認者の確認に使う
+	private final ContentAddressedFileStore fileStore;
+
+	// 申請者本人の申請でなければ404、編集できない状態なら409にする（本文を読み込む前に呼び、権限のないアップロードでディスクを使わせない）
+	public void requireUploadable(Long userId, Long requestId) {
+		RequestSummaryResponse request = requestStore.findByIdForApplicant(userId, requestId);
+		if (request == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+		}
+		if (!UPLOADABLE_STATUSES.contains(request.getStatus())) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, "Attachments can only be added while the request is DRAFT or RETURNED");
+		}
+	}
+
+	// 保存済みのファイルを申請に紐づけてメタデータを登録する（権限は本文を読む前の requireUploadable で確認済み）
+	public Attachment register(Long userId, Long requestId, String fileName, String contentType, StoredFile stored) {
+		Attachment attachment = new Attachment();
+		attachment.setRequestId(requestId);
+		attachment.setUploaderId(userId);
+		attachment.setFileName(fileName);
+		attachment.setContentType(contentType);
+		attachment.setSizeBytes(stored.size());
+		attachment.setSha256(stored.sha256());
+		attachmentMapper.insertAttachment(attachment);
+		return attachment;
+	}
+
+	// 申請に紐づく添付ファイルの一覧を返す
+	public List<Attachment> list(Long userId, Long requestId) {
+		requireReadable(userId, requestId);
+		List<Attachment> items = attachmentMapper.selectAttachmentsByRequestId(requestId);
+		return items != null ? items : List.of();
+	}
+
+	// 添付ファイルを1件返す。申請に紐づいていなければ null
+	public Attachment find(Long userId, Long requestId, Long attachmentId) {
+		requireReadable(userId, requestId);
+		return attachmentMapper.selectAttachmentByIdAndRequestId(attachmentId, requestId);
+	}
+
+	// 登録できなかったアップロードのファイル本体を消す。他の添付が参照している場合と、同じ内容を登録中のアップロードがある場合は残す
+	// （参照件数の確認と削除は、同じ内容の保存と同じロックの下で行う）
+	public void discardIfUnreferenced(StoredFile stored) {
+		fileStore.releaseAndDeleteIf(stored, () -> attachmentMapper.countAttachmentsBySha256(stored.sha256()) == 0);
+	}
+
+	// 添付ファイル本体のパスを返す。メタデータはあるのに本体が無い場合は null
+	public Path contentOf(Attachment attachment) {
+		return fileStore.find(attachment.getSha256());
+	}
+
+	private void requireReadable(Long userId, Long requestId) {
+		if (requestStore.findByIdForApplicant(userId, requestId) == null
+				&& requestStore.findByIdForApprover(userId, requestId) == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+		}
+	}
+}
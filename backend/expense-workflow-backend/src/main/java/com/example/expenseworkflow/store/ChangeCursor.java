@@ -0,0 +1,82 @@
+/**
+ * 変更フィード（GET /api/changes）のカーソルを表すクラス。シャードごとに「そこまで読んだ操作履歴ID」を1つずつ持つ。
+ * 操作履歴IDはシャードごとに採番が進むため、1つのIDで全シャードの位置を表すと、採番の遅れているシャードの後続の操作を
+ * 追い越して取りこぼす。そこでシャード番号順の位置をカンマ区切りで並べた文字列（例: {@code 1203,87,455}）を X-Next-Cursor で返す。
+ * シャーディングなし（シャード数1）では従来どおり操作履歴IDそのもの（例: {@code 1203}）になる。
+ * 数値1つだけのカーソル（初回の {@code 0} や、シャーディング前に受け取ったカーソル）は、全シャードで同じ位置として扱う。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+public final class ChangeCursor {
+
+	private static final String SEPARATOR = ",";
+
+	private final long[] positions; // シャード番号順の、読み終えた操作履歴ID
+
+	private ChangeCursor(long[] positions) {
+		this.positions = positions;
+	}
+
+	// 各シャードの位置を指定して作る（引数の並び順がシャード番号）
+	public static ChangeCursor of(long... positions) {
+		return new ChangeCursor(positions.clone());
+	}
+
+	/**
+	 * X-Next-Cursor（since パラメータ）の文字列を読む。
+	 *
+	 * @param value  数値1つ、またはシャード数と同じ個数の数値のカンマ区切り
+	 * @param shards シャード数
+	 * @throws IllegalArgumentException 数値でない・負の値・個数がシャード数と合わない場合
+	 */
+	public static ChangeCursor parse(String value, int shards) {
+		String[] parts = value.split(SEPARATOR, -1);
+		if (parts.length != 1 && parts.length != shards) {
+			throw new IllegalArgumentException("cursor must have 1 or " + shards + " positions");
+		}
+		long[] positions = new long[shards];
+		for (int shard = 0; shard < shards; shard++) {
+			long position = Long.parseLong(parts[parts.length == 1 ? 0 : shard].trim()); // 1つだけなら全シャード共通
+			if (position < 0) {
+				throw new IllegalArgumentException("cursor positions must be >= 0");
+			}
+			positions[shard] = position;
+		}
+		return new ChangeCursor(positions);
+	}
+
+	public int shards() {
+		return positions.length;
+	}
+
+	// shard で読み終えた操作履歴ID
+	public long position(int shard) {
+		return positions[shard];
+	}
+
+	// shard の位置だけを actionId に進めたカーソルを返す
+	public ChangeCursor advance(int shard, long actionId) {
+		long[] next = positions.clone();
+		next[shard] = Math.max(next[shard], actionId);
+		return new ChangeCursor(next);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.stream(positions).mapToObj(Long::toString).collect(Collectors.joining(SEPARATOR));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ChangeCursor other && Arrays.equals(positions, other.positions);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(positions);
+	}
+}
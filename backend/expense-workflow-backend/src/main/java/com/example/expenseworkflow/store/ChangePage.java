@@ -0,0 +1,13 @@
+/**
+ * 変更フィードの1ページ分の結果を表すクラス。
+ * items はそのページの遷移、next は次回の取得に渡すカーソル（X-Next-Cursor）。遷移が無ければ next は渡したカーソルのまま。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.List;
+
+import com.example.expenseworkflow.controller.dto.ChangeEventResponse;
+
+public record ChangePage(List<ChangeEventResponse> items, ChangeCursor next) {
+}
@@ -0,0 +1,187 @@
+/**
+ * 添付ファイルの本体を SHA-256 をキーとしてローカルディスクに保存するファイルストアクラス。
+ * <ul>
+ *   <li>アップロードは64KBずつ読みながら一時ファイルへ書き出し、同時にハッシュを計算する
+ *       （ファイル全体をヒープに載せないので、20MBのPDFでもリクエストあたりのヒープ使用量は一定）</li>
+ *   <li>書き終えたら {@code <root>/ab/cd/<sha256>} へアトミックに移動する。同じ内容が既にあれば一時ファイルを捨てて重複排除する</li>
+ *   <li>サイズ上限（{@code app.attachments.max-bytes}）を超えた時点で読み込みを打ち切り、413を返す</li>
+ * </ul>
+ * 保存先は {@code app.attachments.dir}。保存済みファイルは内容から決まる名前のため上書きされない。
+ * {@link #store} が返したファイルは、呼び出し側がメタデータを登録して {@link #release} するまで使用中として印を付け、
+ * 登録に失敗したときは {@link #releaseAndDeleteIf} で、使用中の印が残っておらず参照も無ければ消す。
+ * 存在確認・移動と、印の確認・削除は同じ SHA-256 のロックの下で行うので、同じ内容の同時アップロードが
+ * 登録を終える前にファイルを消されることはない（ロックはプロセス内。保存先のディスクはインスタンスごと）。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+@Component
+public class ContentAddressedFileStore {
+
+	private static final int BUFFER_SIZE = 64 * 1024; // 読み書きの単位（この分だけヒープを使う）
+	private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}"); // 保存キーの形式（パス操作を防ぐため厳密に検証する）
+	private static final int LOCK_STRIPES = 256; // SHA-256 の先頭1バイトで分けるロックの数
+
+	private final Path root;
+	private final long maxBytes;
+	private final Object[] locks = new Object[LOCK_STRIPES]; // 同じ SHA-256 の保存と削除を直列にする
+	private final Map<String, Integer> inUse = new ConcurrentHashMap<>(); // SHA-256 → 登録を終えていないアップロードの数
+
+	// 保存結果。sha256 が保存キー、size がバイト数、created はこの呼び出しで新たに書いたかどうか（既存と同じ内容なら false）
+	public record StoredFile(String sha256, long size, boolean created) {
+	}
+
+	public ContentAddressedFileStore(
+			@Value("${app.attachments.dir:${java.io.tmpdir}/expense-attachments}") String dir,
+			@Value("${app.attachments.max-bytes:20971520}") long maxBytes) {
+		this.root = Path.of(dir).toAbsolutePath().normalize();
+		this.maxBytes = maxBytes;
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * ストリームの内容を最後まで読み、SHA-256 をキーとして保存する。
+	 * 同じ内容が既に保存されていれば新たには書かない。
+	 * 返したファイルは {@link #release} か {@link #releaseAndDeleteIf} を呼ぶまで削除されない。
+	 */
+	public StoredFile store(InputStream in) {
+		MessageDigest digest = sha256();
+		Path temp = null;
+		try {
+			Path tempDir = Files.createDirectories(root.resolve("tmp"));
+			temp = Files.createTempFile(tempDir, "upload-", ".part");
+			long size = 0;
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int n;
+				while ((n = in.read(buffer)) != -1) {
+					size += n;
+					if (size > maxBytes) {
+						throw new ResponseStatusException(HttpStatus.CONTENT_TOO_LARGE,
+								"Attachment exceeds " + maxBytes + " bytes");
+					}
+					digest.update(buffer, 0, n);
+					out.write(buffer, 0, n);
+				}
+			}
+			if (size == 0) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Attachment is empty");
+			}
+
+			String sha = HexFormat.of().formatHex(digest.digest());
+			Path target = pathOf(sha);
+			synchronized (lockFor(sha)) {
+				inUse.merge(sha, 1, Integer::sum); // 登録が終わるまで、他のアップロードの後始末で消させない
+				if (Files.exists(target)) { // 同じ内容は保存済み（重複排除）
+					return new StoredFile(sha, size, false);
+				}
+				try {
+					Files.createDirectories(target.getParent());
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+					temp = null; // 移動済みなので削除しない
+				} catch (FileAlreadyExistsException e) {
+					// 他のプロセスが同じ内容を先に置いた。中身は同一なのでそのまま使う
+					return new StoredFile(sha, size, false);
+				} catch (IOException e) {
+					release(sha);
+					throw e;
+				}
+				return new StoredFile(sha, size, true);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to store attachment", e);
+		} finally {
+			deleteQuietly(temp);
+		}
+	}
+
+	// 保存キーからファイルのパスを返す。ファイルが存在しなければ null
+	public Path find(String sha256) {
+		if (sha256 == null || !SHA256_HEX.matcher(sha256).matches()) {
+			return null;
+		}
+		Path path = pathOf(sha256);
+		return Files.isRegularFile(path) ? path : null;
+	}
+
+	// メタデータの登録が済んだファイルの使用中の印を外す
+	public void release(StoredFile stored) {
+		synchronized (lockFor(stored.sha256())) {
+			release(stored.sha256());
+		}
+	}
+
+	/**
+	 * 使用中の印を外し、同じ内容を登録中のアップロードが他に無く、unreferenced も true ならファイルを消す。
+	 * unreferenced（DBの参照件数の確認など）はロックの下で呼ぶので、確認から削除までの間に同じ内容が保存されることはない。
+	 */
+	public void releaseAndDeleteIf(StoredFile stored, BooleanSupplier unreferenced) {
+		String sha = stored.sha256();
+		synchronized (lockFor(sha)) {
+			release(sha);
+			if (!inUse.containsKey(sha) && unreferenced.getAsBoolean()) {
+				deleteQuietly(pathOf(sha));
+			}
+		}
+	}
+
+	// 呼び出し側で lockFor(sha) を取っていること
+	private void release(String sha) {
+		inUse.computeIfPresent(sha, (k, n) -> n > 1 ? n - 1 : null);
+	}
+
+	private Object lockFor(String sha) {
+		return locks[Integer.parseInt(sha, 0, 2, 16)];
+	}
+
+	// 1ディレクトリのファイル数が増えすぎないよう、先頭2桁・次の2桁で2階層に分ける
+	private Path pathOf(String sha) {
+		return root.resolve(sha.substring(0, 2)).resolve(sha.substring(2, 4)).resolve(sha);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void deleteQuietly(Path path) {
+		if (path == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ignored) {
+			// 一時ファイルの削除失敗は保存結果に影響しない
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * 同じ領収書の二重申請（申請者・金額・経費発生日・件名が同じ）を提出時に検出するための、メモリ上の指紋索引クラス。
+ * 提出のたびにSQLで全件を探す代わりに、次の2段で判定する。
+ * <ul>
+ *   <li>ブルームフィルタ：大半の「重複なし」をハッシュ計算とビット参照だけで即答する</li>
+ *   <li>指紋→申請ID（同じ指紋の申請すべて）の完全一致マップ：ブルームフィルタが「あるかも」と答えたときだけ引き、誤検知を除く</li>
+ * </ul>
+ * 指紋は「申請者ID・金額・経費発生日・正規化した件名」のSHA-256先頭64ビット。件名はNFKC正規化・小文字化し、
+ * 空白と記号を除いてから使う（「タクシー代 」と「ﾀｸｼｰ代」を同じとみなす）。
+ * 対象は提出済み以降（SUBMITTED / RETURNED / APPROVED）の申請で、初回の判定時にDBから作り直す
+ * （起動時にスリープ中のDBへ接続しないため、{@link OrgHierarchyCache} と同じく遅延ロード）。
+ * 提出が成功した申請は {@link #addAfterCommit} でコミット後に索引へ加える。
+ * 索引からは消さないため、却下・取り下げ・差戻し中の編集で指紋が古くなった申請も残る。
+ * そこで一致した申請はID順に、DBの現在の状態と指紋で確かめ直し、対象外になっていれば索引から外して次の申請を見る
+ * （先行申請が却下されても、その後に重複として提出された申請が残っていればそちらを返す。
+ * 一致は提出のごく一部なので、たいていは主キー検索1回の追加で済む）。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.expenseworkflow.domain.ExpenseRequest;
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+
+@Component
+public class DuplicateClaimIndex {
+
+	private static final int HASH_COUNT = 7; // 誤検知率1%前後になるハッシュ関数の数
+	private static final Set<String> INDEXED_STATUSES = Set.of("SUBMITTED", "RETURNED", "APPROVED"); // selectDuplicateCandidates と同じ対象
+
+	private final ExpenseRequestMapper expenseRequestMapper;
+	private final ShardRouter shardRouter; // シャーディング時は全シャードの申請から索引を作る
+	private final int expectedEntries; // ブルームフィルタの想定件数（超えたら次の作り直しで広げる）
+
+	private volatile Index index; // 構築済みの索引（未構築ならnull）
+
+	// ブルームフィルタ（ビット列）と指紋→申請ID（ID昇順）の完全一致マップ
+	private record Index(AtomicLongArray bits, long bitCount, Map<Long, NavigableSet<Long>> exact) {
+	}
+
+	public DuplicateClaimIndex(
+			ExpenseRequestMapper expenseRequestMapper,
+			ShardRouter shardRouter,
+			@Value("${app.duplicates.expected-entries:100000}") int expectedEntries) {
+		this.expenseRequestMapper = expenseRequestMapper;
+		this.shardRouter = shardRouter;
+		this.expectedEntries = expectedEntries;
+	}
+
+	/**
+	 * 同じ指紋を持つ別の申請IDを返す。重複の疑いがなければ null。
+	 *
+	 * @param request 提出しようとしている申請（自身のIDは重複とみなさない）
+	 */
+	public Long findDuplicate(ExpenseRequest request) {
+		long fp = fingerprint(request.getApplicantId(), request.getAmount(), request.getExpenseDate(), request.getTitle());
+		Index idx = current();
+		if (!mightContain(idx, fp)) {
+			return null; // ほとんどの提出はここで終わる
+		}
+		NavigableSet<Long> ids = idx.exact().get(fp);
+		if (ids == null) {
+			return null;
+		}
+		for (Long existing : ids) { // 先に提出された申請から
+			if (existing.equals(request.getId())) {
+				continue;
+			}
+			if (stillMatches(existing, fp)) {
+				return existing;
+			}
+			remove(idx, fp, existing); // 却下・取り下げ・編集で対象外になった古い指紋を外す
+		}
+		return null;
+	}
+
+	// 索引の申請が今も提出済み以降で、同じ指紋のままかをDBで確かめる。
+	// 指紋には申請者IDが入るので、一致した申請は提出中の申請と同じシャード（現在の接続先）にある
+	private boolean stillMatches(Long id, long fp) {
+		ExpenseRequest current = expenseRequestMapper.selectExpenseRequestById(id);
+		return current != null
+				&& INDEXED_STATUSES.contains(current.getStatus())
+				&& fingerprint(current.getApplicantId(), current.getAmount(), current.getExpenseDate(), current.getTitle()) == fp;
+	}
+
+	// 現在のトランザクションがコミットされたら索引へ加える（ロールバックなら加えない）
+	public void addAfterCommit(ExpenseRequest request) {
+		long fp = fingerprint(request.getApplicantId(), request.getAmount(), request.getExpenseDate(), request.getTitle());
+		Long id = request.getId();
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			add(fp, id);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				add(fp, id);
+			}
+		});
+	}
+
+	// 索引を破棄し、次回の判定時にDBから作り直させる
+	public void invalidate() {
+		index = null;
+	}
+
+	/**
+	 * 申請者ID・金額・経費発生日・正規化した件名から64ビットの指紋を作る。
+	 */
+	public static long fingerprint(Long applicantId, Integer amount, LocalDate expenseDate, String title) {
+		String key = applicantId + "|" + amount + "|" + expenseDate + "|" + normalizeTitle(title);
+		byte[] digest = sha256().digest(key.getBytes(StandardCharsets.UTF_8));
+		long fp = 0;
+		for (int i = 0; i < 8; i++) {
+			fp = (fp << 8) | (digest[i] & 0xFF);
+		}
+		return fp;
+	}
+
+	// 全角半角・大文字小文字・空白・記号の違いを吸収する
+	static String normalizeTitle(String title) {
+		if (title == null) {
+			return "";
+		}
+		String s = Normalizer.normalize(title, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+		return s.replaceAll("[\\s\\p{Punct}\\p{IsPunctuation}]", "");
+	}
+
+	private void add(long fp, Long id) {
+		Index idx = index;
+		if (idx == null) {
+			return; // 未構築なら次の構築時にDBから読まれる
+		}
+		setBits(idx, fp);
+		put(idx, fp, id);
+	}
+
+	// 空集合の削除と追加が行き違わないよう、指紋ごとに compute の中で更新する
+	private static void put(Index idx, long fp, Long id) {
+		idx.exact().compute(fp, (k, ids) -> {
+			NavigableSet<Long> next = ids != null ? ids : new ConcurrentSkipListSet<>();
+			next.add(id);
+			return next;
+		});
+	}
+
+	private static void remove(Index idx, long fp, Long id) {
+		idx.exact().computeIfPresent(fp, (k, ids) -> {
+			ids.remove(id);
+			return ids.isEmpty() ? null : ids;
+		});
+	}
+
+	// 構築済みの索引を返す。未構築ならDBから1回だけ作る
+	private Index current() {
+		Index idx = index;
+		if (idx != null) {
+			return idx;
+		}
+		synchronized (this) {
+			idx = index;
+			if (idx == null) {
+				List<ExpenseRequest> candidates = shardRouter.onEachShard(expenseRequestMapper::selectDuplicateCandidates).stream()
+						.flatMap(List::stream)
+						.sorted(Comparator.comparing(ExpenseRequest::getId)) // シャードをまたいでもID順
+						.toList();
+				idx = build(candidates, expectedEntries);
+				index = idx;
+			}
+			return idx;
+		}
+	}
+
+	static Index build(List<ExpenseRequest> requests, int expectedEntries) {
+		int n = Math.max(expectedEntries, requests.size() * 2); // 件数が想定を超えていたら広げて誤検知率を保つ
+		long bitCount = Math.max(1024, (long) Math.ceil(-n * Math.log(0.01) / (Math.log(2) * Math.log(2))));
+		Index idx = new Index(new AtomicLongArray((int) ((bitCount + 63) / 64)), bitCount, new ConcurrentHashMap<>(n));
+		for (ExpenseRequest r : requests) {
+			long fp = fingerprint(r.getApplicantId(), r.getAmount(), r.getExpenseDate(), r.getTitle());
+			setBits(idx, fp);
+			put(idx, fp, r.getId());
+		}
+		return idx;
+	}
+
+	// 指紋の上位・下位32ビットから k 個のビット位置を作る（ダブルハッシュ）
+	private static void setBits(Index idx, long fp) {
+		int h1 = (int) fp;
+		int h2 = (int) (fp >>> 32);
+		for (int i = 1; i <= HASH_COUNT; i++) {
+			long bit = Math.floorMod(h1 + (long) i * h2, idx.bitCount());
+			int word = (int) (bit >>> 6);
+			long mask = 1L << (bit & 63);
+			long prev;
+			do {
+				prev = idx.bits().get(word);
+			} while ((prev & mask) == 0 && !idx.bits().compareAndSet(word, prev, prev | mask));
+		}
+	}
+
+	private static boolean mightContain(Index idx, long fp) {
+		int h1 = (int) fp;
+		int h2 = (int) (fp >>> 32);
+		for (int i = 1; i <= HASH_COUNT; i++) {
+			long bit = Math.floorMod(h1 + (long) i * h2, idx.bitCount());
+			if ((idx.bits().get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * 申請エンティティ（{@link ExpenseRequest}）をIDで引くための、件数上限付きのLRUキャッシュクラス。
+ * 申請は生涯に数回しか変わらないのに、詳細表示や状態遷移のたびに {@code SELECT er.*} が走るのを減らす。
+ * <ul>
+ *   <li>読み取り時にDBから取れたエンティティを登録し、{@code app.request-cache.max-entries} を超えたら最も使われていないものを捨てる</li>
+ *   <li>更新系の操作は {@link #evictAfterCommit(Long)} でコミット後に該当IDを捨てる（ロールバック時も捨てるだけなので安全）</li>
+ *   <li>DBから読んでいる間に別の操作がコミットされた場合、読んだ古い内容は登録しない（{@link #stamp()} で判定）</li>
+ * </ul>
+ * 所有者（申請者・承認者）の確認はキャッシュではなく呼び出し側が行う。
+ * ヒット・ミス件数は Micrometer の {@code expense.request.cache.gets}（result タグ）と
+ * {@code expense.request.cache.hit.ratio}・{@code expense.request.cache.size} で確認できる。
+ * 返すエンティティは共有されるため、呼び出し側で書き換えないこと。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.expenseworkflow.domain.ExpenseRequest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Component
+public class ExpenseRequestCache {
+
+	private final Map<Long, ExpenseRequest> entries; // アクセス順のLinkedHashMap（this で同期する）
+	private long epoch; // 無効化のたびに進める世代番号（this で同期する）
+
+	private final Counter hits;
+	private final Counter misses;
+
+	public ExpenseRequestCache(
+			@Value("${app.request-cache.max-entries:1000}") int maxEntries,
+			MeterRegistry meterRegistry) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ExpenseRequest> eldest) {
+				return size() > maxEntries; // 上限を超えたら最も長く使われていないものを捨てる
+			}
+		};
+		this.hits = Counter.builder("expense.request.cache.gets").tag("result", "hit").register(meterRegistry);
+		this.misses = Counter.builder("expense.request.cache.gets").tag("result", "miss").register(meterRegistry);
+		Gauge.builder("expense.request.cache.size", this, ExpenseRequestCache::size).register(meterRegistry);
+		Gauge.builder("expense.request.cache.hit.ratio", this, ExpenseRequestCache::hitRatio).register(meterRegistry);
+	}
+
+	// キャッシュ済みのエンティティを返す。無ければ null（呼び出し側でDBから読み、put する）
+	public synchronized ExpenseRequest get(Long id) {
+		ExpenseRequest found = entries.get(id);
+		(found != null ? hits : misses).increment();
+		return found;
+	}
+
+	// DBから読む直前に呼び、読み終えた後の put に渡す世代番号
+	public synchronized long stamp() {
+		return epoch;
+	}
+
+	// stamp() 以降に無効化が無かったときだけ登録する（読んでいる間にコミットされた古い内容を残さない）
+	public synchronized void put(Long id, ExpenseRequest entity, long stamp) {
+		if (entity != null && stamp == epoch) {
+			entries.put(id, entity);
+		}
+	}
+
+	// 直ちに捨てる
+	public synchronized void evict(Long id) {
+		epoch++;
+		entries.remove(id);
+	}
+
+	// 現在のトランザクションの完了後に捨てる。トランザクション外なら直ちに捨てる
+	public void evictAfterCommit(Long id) {
+		evictAfterCommit(List.of(id));
+	}
+
+	public void evictAfterCommit(Collection<Long> ids) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			ids.forEach(this::evict);
+			return;
+		}
+		List<Long> copy = List.copyOf(ids);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				copy.forEach(ExpenseRequestCache.this::evict); // コミット・ロールバックどちらでも捨てる
+			}
+		});
+	}
+
+	private synchronized int size() {
+		return entries.size();
+	}
+
+	private double hitRatio() {
+		double total = hits.count() + misses.count();
+		return total > 0 ? hits.count() / total : 0;
+	}
+}
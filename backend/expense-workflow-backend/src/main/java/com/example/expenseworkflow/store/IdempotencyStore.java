@@ -0,0 +1,152 @@
+/**
+ * Idempotency-Key ヘッダ付きで呼ばれた更新系APIの結果を一定時間保持し、再送時に同じ結果を返すストアクラス。
+ * フロントのapiClientは500応答を最大2回自動リトライするため、DB起動待ち中の作成・提出・承認が
+ * 二重に実行されないよう「ユーザーID＋操作＋キー」単位で1回だけ実処理を走らせる。
+ * <ul>
+ *   <li>同じキーの同時実行は最初の1件だけが処理し、後続はその完了を待って同じ結果を受け取る</li>
+ *   <li>例外で終わった処理は保存しない（リトライで再実行できるようにする）</li>
+ *   <li>同じキーで異なる入力が送られた場合は422を返す</li>
+ *   <li>保存期間は {@code app.idempotency.ttl-seconds}、件数上限は {@code app.idempotency.max-entries}</li>
+ * </ul>
+ * 保存期間は一定なので登録順がそのまま期限順になる。登録順の列の先頭から、期限切れか上限超過の記録だけを捨てるので、
+ * 1回の登録あたりの掃除は（捨てた件数と、実行中で飛ばした件数を除いて）定数時間で済む。
+ * 実行中の記録は捨てずに列の末尾へ回すので、遅い処理が1件あってもその後ろの記録の掃除は止まらない。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+@Component
+public class IdempotencyStore {
+
+	public static final String HEADER = "Idempotency-Key"; // クライアントが操作ごとに発行して再送時も同じ値を送るヘッダ名
+
+	private static final int MAX_KEY_LENGTH = 128; // 異常に長いキーでメモリを使われないようにする上限
+
+	private final long ttlMillis;
+	private final int maxEntries;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>(); // 複合キー→処理結果
+	private final Queue<Registered> expiryOrder = new ArrayDeque<>(); // 登録順（＝期限順）。自身をロックにして読み書きする
+
+	// 1キー分の記録。result は処理中なら未完了、完了後は戻り値を保持する
+	private record Entry(int fingerprint, long expiresAt, CompletableFuture<Object> result) {
+	}
+
+	// 登録順の列の1要素（同じキーが置き換えられても、どの記録の分かを区別できるよう記録そのものも持つ）
+	private record Registered(String key, Entry entry) {
+	}
+
+	public IdempotencyStore(
+			@Value("${app.idempotency.ttl-seconds:600}") long ttlSeconds,
+			@Value("${app.idempotency.max-entries:10000}") int maxEntries) {
+		this.ttlMillis = ttlSeconds * 1000L;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * キーが無ければそのまま処理を実行し、キーがあれば初回だけ実行して結果を保存・再利用する。
+	 *
+	 * @param userId      操作したユーザーID（他ユーザーと同じキーでも衝突しないようにする）
+	 * @param scope       操作の種類（例: "POST /api/requests/5/approve"）
+	 * @param key         Idempotency-Key ヘッダの値（null/空なら冪等制御しない）
+	 * @param fingerprint 入力内容のハッシュ（同じキーで別内容が来たことを検出する）
+	 * @param action      実処理
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(Long userId, String scope, String key, int fingerprint, Supplier<T> action) {
+		if (key == null || key.isBlank()) {
+			return action.get();
+		}
+		if (key.length() > MAX_KEY_LENGTH) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key is too long");
+		}
+
+		String compositeKey = userId + "\n" + scope + "\n" + key;
+		long now = System.currentTimeMillis();
+		Entry mine = new Entry(fingerprint, now + ttlMillis, new CompletableFuture<>());
+		Entry existing = entries.putIfAbsent(compositeKey, mine);
+		if (existing != null && existing.expiresAt() < now) { // 期限切れの記録は新しい記録で置き換える
+			existing = entries.replace(compositeKey, existing, mine) ? null : entries.putIfAbsent(compositeKey, mine);
+		}
+
+		if (existing != null) { // 同じキーの処理が実行中または完了済み
+			if (existing.fingerprint() != fingerprint) {
+				throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_CONTENT,
+						"Idempotency-Key was already used with a different request");
+			}
+			try {
+				return (T) existing.result().join();
+			} catch (CompletionException e) {
+				throw rethrow(e.getCause());
+			}
+		}
+
+		evictIfNeeded(compositeKey, mine, now);
+		try {
+			T value = action.get();
+			mine.result().complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			entries.remove(compositeKey, mine); // 失敗は保存しない（再送で再実行させる）
+			mine.result().completeExceptionally(e); // 待っている同時リクエストにも同じ失敗を返す
+			throw e;
+		}
+	}
+
+	// 登録した記録を列の末尾に加え、先頭から期限切れ・件数上限超過の記録を捨てる
+	private void evictIfNeeded(String key, Entry added, long now) {
+		synchronized (expiryOrder) {
+			expiryOrder.add(new Registered(key, added));
+			List<Registered> inFlight = new ArrayList<>(); // 飛ばした実行中の記録（最後に末尾へ戻す）
+			Registered head;
+			while ((head = expiryOrder.peek()) != null) {
+				Entry current = entries.get(head.key());
+				if (current != head.entry()) { // 失敗して外れた、または新しい記録に置き換わった
+					expiryOrder.poll();
+					continue;
+				}
+				boolean evictable = current.expiresAt() < now || entries.size() > maxEntries;
+				if (!evictable) {
+					break;
+				}
+				expiryOrder.poll();
+				if (!current.result().isDone()) { // 実行中の記録は捨てずに後ろへ回す（完了後の登録で捨てる）
+					inFlight.add(head);
+					continue;
+				}
+				entries.remove(head.key(), current);
+			}
+			expiryOrder.addAll(inFlight);
+		}
+	}
+
+	// 保持している記録の数
+	int size() {
+		return entries.size();
+	}
+
+	private static RuntimeException rethrow(Throwable cause) {
+		if (cause instanceof RuntimeException re) {
+			return re;
+		}
+		if (cause instanceof Error err) {
+			throw err;
+		}
+		return new IllegalStateException(cause);
+	}
+}
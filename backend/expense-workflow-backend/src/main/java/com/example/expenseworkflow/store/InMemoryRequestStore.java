@@ -0,0 +1,433 @@
+/**
+ * {@link RequestStore} のメモリ実装。DBを使わずに並行マップだけで申請と操作履歴を保持する。
+ * {@code inmemory} プロファイルで有効になり、MySQLなしでのWeb層・シリアライズ層の負荷試験や、
+ * DBがスリープしている間のデモに使う（再起動すればデータは消える）。
+ * <ul>
+ *   <li>申請はID→エンティティのマップで持ち、申請者ID・承認者IDごとの索引で一覧を引く</li>
+ *   <li>1件の状態遷移は {@link ConcurrentHashMap#compute} 内で「条件確認→新しいエンティティへ置き換え」を行い、
+ *       MySQL実装の条件付きUPDATEと同じく同時操作でも1回だけ成功させる</li>
+ *   <li>遷移できる状態・版番号（412）・承認経路（{@link OrgHierarchyCache}）・操作履歴は {@link MyBatisRequestStore} と同じ規則に従う</li>
+ * </ul>
+ * アーカイブ（RequestArchiveJob）の対象外のため、アーカイブ側の参照は行わない。
+ * 承認者の月次予算（{@link ApproverBudget}）も台帳がDBにあるため確認しない。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.expenseworkflow.controller.dto.ChangeEventResponse;
+import com.example.expenseworkflow.controller.dto.InboxItemResponse;
+import com.example.expenseworkflow.controller.dto.RequestDetailResponse;
+import com.example.expenseworkflow.controller.dto.RequestHistoryItemResponse;
+import com.example.expenseworkflow.controller.dto.RequestSummaryResponse;
+import com.example.expenseworkflow.domain.ExpenseRequest;
+import com.example.expenseworkflow.domain.User;
+import com.example.expenseworkflow.jfr.WorkflowTransitionEvent;
+import com.example.expenseworkflow.mapper.UserMapper;
+
+@Component
+@Profile("inmemory")
+public class InMemoryRequestStore implements RequestStore {
+
+	private static final Set<String> EDITABLE = Set.of("DRAFT", "RETURNED"); // 申請者が提出・編集・取り下げできる状態
+	private static final Set<String> INBOX_STATUSES = Set.of("SUBMITTED", "APPROVED", "RETURNED", "REJECTED"); // selectInboxItems と同じ条件
+	private static final Set<String> DUPLICATE_CANDIDATE_STATUSES = Set.of("SUBMITTED", "RETURNED", "APPROVED"); // selectDuplicateCandidates と同じ条件
+	private static final DateTimeFormatter HISTORY_TIME = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm"); // 履歴SQLの DATE_FORMAT と同じ形式
+	private static final String SYSTEM_ACTOR_NAME = "システム"; // 履歴SQLで actor_id がNULLの行に出す操作者名
+
+	private final OrgHierarchyCache orgHierarchyCache;
+	private final UserMapper userMapper; // 履歴の操作者名の解決に使う
+
+	private final AtomicLong requestIds = new AtomicLong(); // expense_requests.id の採番
+	private final AtomicLong actionIds = new AtomicLong(); // expense_request_actions.id の採番（変更フィードのカーソル）
+	private final Map<Long, ExpenseRequest> requests = new ConcurrentHashMap<>(); // 申請ID→エンティティ（置き換えのみで、格納後の変更はしない）
+	private final Map<Long, Set<Long>> byApplicant = new ConcurrentHashMap<>(); // 申請者ID→申請IDの索引
+	private final Map<Long, Set<Long>> byApprover = new ConcurrentHashMap<>(); // 現在の承認者ID→申請IDの索引
+	private final Map<Long, List<Action>> actions = new ConcurrentHashMap<>(); // 申請ID→操作履歴（古い順）
+
+	// expense_request_actions の1行に相当する操作履歴
+	private record Action(long id, Long actorId, String action, String fromStatus, String toStatus, String comment, LocalDateTime createdAt) {
+	}
+
+	public InMemoryRequestStore(OrgHierarchyCache orgHierarchyCache, UserMapper userMapper) {
+		this.orgHierarchyCache = orgHierarchyCache;
+		this.userMapper = userMapper;
+	}
+
+	@Override
+	public List<RequestSummaryResponse> list() {
+		return summaries(requests.keySet(), null);
+	}
+
+	@Override
+	public List<RequestSummaryResponse> listByApplicant(Long applicantUserId) {
+		return listByApplicant(applicantUserId, null);
+	}
+
+	@Override
+	public List<RequestSummaryResponse> listByApplicant(Long applicantUserId, Set<String> fields) {
+		return summaries(byApplicant.getOrDefault(applicantUserId, Set.of()), fields);
+	}
+
+	@Override
+	public RequestSummaryResponse create(Long applicantUserId, String title, int amount, String note) {
+		LocalDateTime now = LocalDateTime.now();
+		ExpenseRequest entity = new ExpenseRequest();
+		entity.setId(requestIds.incrementAndGet());
+		entity.setApplicantId(applicantUserId);
+		entity.setTitle(title);
+		entity.setAmount(amount);
+		entity.setStatus("DRAFT");
+		entity.setNote(note);
+		entity.setCreatedAt(now);
+		entity.setUpdatedAt(now);
+		entity.setVersion(0L);
+
+		requests.put(entity.getId(), entity);
+		index(byApplicant, applicantUserId).add(entity.getId());
+		return new RequestSummaryResponse(entity.getId(), title, amount, "DRAFT", note, null, 0L);
+	}
+
+	@Override
+	public RequestSummaryResponse findById(Long id) {
+		ExpenseRequest found = id != null ? requests.get(id) : null;
+		return found != null ? toSummary(found) : null;
+	}
+
+	@Override
+	public RequestSummaryResponse findByIdForApplicant(Long applicantUserId, Long id) {
+		ExpenseRequest found = id != null ? requests.get(id) : null;
+		if (found == null || !found.getApplicantId().equals(applicantUserId)) { // 他人の申請は見えない
+			return null;
+		}
+		return toSummary(found);
+	}
+
+	@Override
+	public List<InboxItemResponse> inbox(Long approverUserId) {
+		List<InboxItemResponse> items = new ArrayList<>();
+		for (Long id : sorted(byApprover.getOrDefault(approverUserId, Set.of()), Comparator.naturalOrder())) {
+			ExpenseRequest r = requests.get(id);
+			if (r != null && approverUserId.equals(r.getCurrentApproverId()) && INBOX_STATUSES.contains(r.getStatus())) {
+				items.add(new InboxItemResponse(r.getId(), r.getTitle(), r.getAmount(), r.getStatus()));
+			}
+		}
+		return items;
+	}
+
+	@Override
+	public RequestDetailResponse findByIdForApprover(Long approverUserId, Long id) {
+		ExpenseRequest found = id != null ? requests.get(id) : null;
+		if (found == null || !approverUserId.equals(found.getCurrentApproverId())) { // 担当外の申請は見えない
+			return null;
+		}
+		return new RequestDetailResponse(found.getId(), found.getTitle(), found.getAmount(), found.getStatus(),
+				noteOf(found), Collections.emptyList(), found.getLastReturnComment(), found.getVersion(), found.getDuplicateOfRequestId());
+	}
+
+	@Override
+	public boolean submit(Long userId, Long id, Long expectedVersion) {
+		if (id == null || !orgHierarchyCache.contains(userId)) {
+			return false;
+		}
+		Long approverUserId = orgHierarchyCache.firstApprover(userId);
+		if (approverUserId == null) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Cannot submit because your manager_id is NULL (approver is not configured).");
+		}
+		return transition(id, userId, expectedVersion,
+				r -> userId.equals(r.getApplicantId()) && EDITABLE.contains(r.getStatus()),
+				(r, next) -> {
+					next.setStatus("SUBMITTED");
+					next.setCurrentApproverId(approverUserId);
+					next.setSubmittedAt(next.getUpdatedAt());
+					next.setDuplicateOfRequestId(findDuplicate(r));
+					return action(userId, "SUBMIT", r.getStatus(), "SUBMITTED", null, next.getUpdatedAt());
+				});
+	}
+
+	@Override
+	public boolean approve(Long userId, Long id, Long expectedVersion) {
+		if (id == null) {
+			return false;
+		}
+		return transition(id, userId, expectedVersion,
+				r -> userId.equals(r.getCurrentApproverId()) && "SUBMITTED".equals(r.getStatus()),
+				(r, next) -> {
+					int amount = r.getAmount() != null ? r.getAmount() : 0;
+					Long nextApproverUserId = orgHierarchyCache.nextApprover(r.getApplicantId(), amount, userId);
+					if (nextApproverUserId != null) { // 次段の承認者へ回す（ステータスはSUBMITTEDのまま）
+						next.setCurrentApproverId(nextApproverUserId);
+						return action(userId, "APPROVE", "SUBMITTED", "SUBMITTED", null, next.getUpdatedAt());
+					}
+					next.setStatus("APPROVED");
+					return action(userId, "APPROVE", "SUBMITTED", "APPROVED", null, next.getUpdatedAt());
+				});
+	}
+
+	@Override
+	public boolean returnRequest(Long userId, Long id, String comment, Long expectedVersion) {
+		if (id == null) {
+			return false;
+		}
+		return transition(id, userId, expectedVersion,
+				r -> userId.equals(r.getCurrentApproverId()) && "SUBMITTED".equals(r.getStatus()),
+				(r, next) -> {
+					next.setStatus("RETURNED");
+					next.setLastReturnComment(comment);
+					next.setLastReturnedAt(next.getUpdatedAt());
+					return action(userId, "RETURN", "SUBMITTED", "RETURNED", comment, next.getUpdatedAt());
+				});
+	}
+
+	@Override
+	public boolean withdraw(Long applicantUserId, Long id, Long expectedVersion) {
+		if (id == null) {
+			return false;
+		}
+		return transition(id, applicantUserId, expectedVersion,
+				r -> applicantUserId.equals(r.getApplicantId()) && EDITABLE.contains(r.getStatus()),
+				(r, next) -> {
+					next.setStatus("WITHDRAWN");
+					return action(applicantUserId, "WITHDRAW", r.getStatus(), "WITHDRAWN", null, next.getUpdatedAt());
+				});
+	}
+
+	@Override
+	public boolean reject(Long approverUserId, Long id, String comment, Long expectedVersion) {
+		if (id == null) {
+			return false;
+		}
+		return transition(id, approverUserId, expectedVersion,
+				r -> approverUserId.equals(r.getCurrentApproverId()) && "SUBMITTED".equals(r.getStatus()),
+				(r, next) -> {
+					next.setStatus("REJECTED");
+					return action(approverUserId, "REJECT", "SUBMITTED", "REJECTED", comment, next.getUpdatedAt());
+				});
+	}
+
+	@Override
+	public boolean updateReturned(Long applicantUserId, Long id, String title, int amount, String note, Long expectedVersion) {
+		if (id == null) {
+			return false;
+		}
+		return transition(id, applicantUserId, expectedVersion,
+				r -> applicantUserId.equals(r.getApplicantId()) && EDITABLE.contains(r.getStatus()),
+				(r, next) -> {
+					next.setTitle(title);
+					next.setAmount(amount);
+					next.setNote(note);
+					return null; // 内容編集は履歴に残さない（MySQL実装と同じ）
+				});
+	}
+
+	@Override
+	public List<RequestHistoryItemResponse> getHistory(Long applicantUserId, Long requestId) {
+		ExpenseRequest r = requestId != null ? requests.get(requestId) : null;
+		if (r == null || !r.getApplicantId().equals(applicantUserId)) {
+			return List.of();
+		}
+		return history(requestId);
+	}
+
+	@Override
+	public List<RequestHistoryItemResponse> getHistoryForApprover(Long approverUserId, Long requestId) {
+		ExpenseRequest r = requestId != null ? requests.get(requestId) : null;
+		if (r == null || !approverUserId.equals(r.getCurrentApproverId())) {
+			return List.of();
+		}
+		return history(requestId);
+	}
+
+	@Override
+	public ChangePage changesSince(ChangeCursor since, long settleSeconds, int limit) {
+		long sinceActionId = since.position(0);
+		LocalDateTime settledBefore = LocalDateTime.now().minusSeconds(settleSeconds); // 記録時刻と同じJVMの時計で測る
+		List<ChangeEventResponse> items = new ArrayList<>();
+		actions.forEach((requestId, list) -> {
+			ExpenseRequest r = requests.get(requestId);
+			for (Action a : list) {
+				if (a.id() > sinceActionId && a.createdAt().isBefore(settledBefore) && r != null) {
+					items.add(new ChangeEventResponse(a.id(), a.action(), a.fromStatus(), a.toStatus(), a.actorId(), a.comment(), a.createdAt(),
+							r.getId(), r.getApplicantId(), r.getCurrentApproverId(), r.getTitle(), r.getAmount(), r.getStatus(), r.getVersion()));
+				}
+			}
+		});
+		items.sort(Comparator.comparing(ChangeEventResponse::getActionId));
+		List<ChangeEventResponse> page = items.size() > limit ? new ArrayList<>(items.subList(0, limit)) : items;
+		return new ChangePage(page, page.isEmpty() ? since : since.advance(0, page.get(page.size() - 1).getActionId()));
+	}
+
+	// 遷移後の内容を next に書き込み、残す操作履歴を返す（履歴を残さないならnull）
+	@FunctionalInterface
+	private interface Change {
+		Action apply(ExpenseRequest current, ExpenseRequest next);
+	}
+
+	/**
+	 * 1件の申請を条件付きで置き換える（MySQL実装の「WHERE 条件 AND version = ?」付きUPDATEに相当）。
+	 * 条件を満たさなければ何もせずfalse。版番号の食い違いで失敗した場合は、操作者が関係する申請なら412を投げる。
+	 */
+	private boolean transition(Long id, Long userId, Long expectedVersion,
+			Predicate<ExpenseRequest> allowed, Change change) {
+		WorkflowTransitionEvent event = new WorkflowTransitionEvent(); // JFRで記録中なら、遷移にかかった時間を残す
+		event.begin();
+		Action[] recorded = new Action[1];
+		boolean[] updated = new boolean[1];
+		requests.computeIfPresent(id, (key, current) -> {
+			boolean versionMatches = expectedVersion == null || expectedVersion.equals(current.getVersion());
+			if (!versionMatches) {
+				if (userId.equals(current.getApplicantId()) || userId.equals(current.getCurrentApproverId())) {
+					throw versionConflict(); // 例外はcomputeの外へ伝わり、マップは変更されない
+				}
+				return current; // 他人の申請の存在は412で漏らさない
+			}
+			if (!allowed.test(current)) {
+				return current;
+			}
+			ExpenseRequest next = copyOf(current);
+			next.setUpdatedAt(LocalDateTime.now());
+			next.setVersion(current.getVersion() + 1);
+			recorded[0] = change.apply(current, next);
+			if (!Objects.equals(current.getCurrentApproverId(), next.getCurrentApproverId())) { // 承認者が変わったら索引を付け替える
+				if (current.getCurrentApproverId() != null) {
+					index(byApprover, current.getCurrentApproverId()).remove(id);
+				}
+				index(byApprover, next.getCurrentApproverId()).add(id);
+			}
+			if (recorded[0] != null) {
+				actions.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(recorded[0]);
+			}
+			updated[0] = true;
+			return next;
+		});
+		if (recorded[0] != null) {
+			event.record(id, userId, recorded[0].action(), recorded[0].fromStatus(), recorded[0].toStatus());
+		}
+		return updated[0];
+	}
+
+	// 申請IDの集合を新しい順のサマリに変換する。fields 指定時は id と指定列だけを埋める
+	private List<RequestSummaryResponse> summaries(Collection<Long> ids, Set<String> fields) {
+		List<RequestSummaryResponse> result = new ArrayList<>();
+		for (Long id : sorted(ids, Comparator.reverseOrder())) {
+			ExpenseRequest r = requests.get(id);
+			if (r == null) {
+				continue;
+			}
+			RequestSummaryResponse s = toSummary(r);
+			s.setVersion(null); // 一覧では版番号を返さない（MySQL実装の一覧SQLと同じ）
+			if (fields != null) {
+				if (!fields.contains("title")) s.setTitle(null);
+				if (!fields.contains("amount")) s.setAmount(null);
+				if (!fields.contains("status")) s.setStatus(null);
+				if (!fields.contains("note")) s.setNote(null);
+				if (!fields.contains("lastReturnComment")) s.setLastReturnComment(null);
+			}
+			result.add(s);
+		}
+		return result;
+	}
+
+	// 採番した操作履歴を作る
+	private Action action(Long actorId, String action, String fromStatus, String toStatus, String comment, LocalDateTime createdAt) {
+		return new Action(actionIds.incrementAndGet(), actorId, action, fromStatus, toStatus, comment, createdAt);
+	}
+
+	private List<RequestHistoryItemResponse> history(Long requestId) {
+		List<RequestHistoryItemResponse> items = new ArrayList<>();
+		for (Action a : actions.getOrDefault(requestId, List.of())) {
+			if (a.actorId() == null) { // システムの操作（エスカレーション）は履歴SQLと同じく「システム」と表示する
+				items.add(new RequestHistoryItemResponse(a.action(), SYSTEM_ACTOR_NAME, a.createdAt().format(HISTORY_TIME), a.comment()));
+				continue;
+			}
+			User actor = userMapper.findById(a.actorId());
+			if (actor == null) { // 履歴SQLと同じく、存在しないユーザーの操作は出さない
+				continue;
+			}
+			items.add(new RequestHistoryItemResponse(a.action(), actor.getName(), a.createdAt().format(HISTORY_TIME), a.comment()));
+		}
+		return items;
+	}
+
+	private static RequestSummaryResponse toSummary(ExpenseRequest r) {
+		return new RequestSummaryResponse(r.getId(), r.getTitle(), r.getAmount(), r.getStatus(), noteOf(r), r.getLastReturnComment(), r.getVersion());
+	}
+
+	private static String noteOf(ExpenseRequest r) {
+		return r.getNote() != null ? r.getNote() : "";
+	}
+
+	private static List<Long> sorted(Collection<Long> ids, Comparator<Long> order) {
+		List<Long> list = new ArrayList<>(ids);
+		list.sort(order);
+		return list;
+	}
+
+	private static Set<Long> index(Map<Long, Set<Long>> index, Long key) {
+		return index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+	}
+
+	// 申請者の提出済み以降の申請から、指紋（DuplicateClaimIndex と同じ規則）が一致する最も古いものを探す
+	private Long findDuplicate(ExpenseRequest r) {
+		long fp = DuplicateClaimIndex.fingerprint(r.getApplicantId(), r.getAmount(), r.getExpenseDate(), r.getTitle());
+		return byApplicant.getOrDefault(r.getApplicantId(), Set.of()).stream()
+				.filter(otherId -> !otherId.equals(r.getId()))
+				.map(requests::get)
+				.filter(Objects::nonNull)
+				.filter(o -> DUPLICATE_CANDIDATE_STATUSES.contains(o.getStatus()))
+				.filter(o -> DuplicateClaimIndex.fingerprint(o.getApplicantId(), o.getAmount(), o.getExpenseDate(), o.getTitle()) == fp)
+				.map(ExpenseRequest::getId)
+				.min(Comparator.naturalOrder())
+				.orElse(null);
+	}
+
+	private static ExpenseRequest copyOf(ExpenseRequest r) {
+		ExpenseRequest c = new ExpenseRequest();
+		c.setId(r.getId());
+		c.setApplicantId(r.getApplicantId());
+		c.setCurrentApproverId(r.getCurrentApproverId());
+		c.setTitle(r.getTitle());
+		c.setExpenseDate(r.getExpenseDate());
+		c.setApplyDate(r.getApplyDate());
+		c.setAmount(r.getAmount());
+		c.setPurpose(r.getPurpose());
+		c.setPaymentMethod(r.getPaymentMethod());
+		c.setStatus(r.getStatus());
+		c.setSubmittedAt(r.getSubmittedAt());
+		c.setApprovedAt(r.getApprovedAt());
+		c.setLastReturnedAt(r.getLastReturnedAt());
+		c.setLastReturnComment(r.getLastReturnComment());
+		c.setCreatedAt(r.getCreatedAt());
+		c.setUpdatedAt(r.getUpdatedAt());
+		c.setNote(r.getNote());
+		c.setVersion(r.getVersion());
+		c.setEscalatedAt(r.getEscalatedAt());
+		c.setDuplicateOfRequestId(r.getDuplicateOfRequestId());
+		return c;
+	}
+
+	private static ResponseStatusException versionConflict() {
+		return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+				"The request was modified by another operation. Reload and try again.");
+	}
+}
@@ -0,0 +1,457 @@
+/**
+ * {@link RequestStore} のMySQL実装。申請（ExpenseRequest）に関するビジネスロジックとDB操作を集約するサービスクラス。
+ * Controllerからの呼び出しを受け、{@link com.example.expenseworkflow.mapper.ExpenseRequestMapper} へSQL実行を委譲する。
+ * 申請の一覧取得・新規作成・詳細取得・状態遷移（提出/承認/差戻し/取り下げ/却下）・
+ * 内容編集・操作履歴取得などのユースケースを提供する。
+ * 状態変更を伴う操作はすべて {@code @Transactional} でトランザクション管理する。
+ * 承認者の決定は {@link OrgHierarchyCache} の組織図で行い、金額に応じた多段承認では
+ * 承認のたびに current_approver_id を次段の承認者へ進める。
+ * 更新系の操作は If-Match で受け取った版番号（expectedVersion）を条件にUPDATEし、
+ * 他の操作に先を越されていた場合は412（Precondition Failed）にする。
+ * 申請者・承認者ごとの読み取りは {@link SingleFlight} を通し、同じ内容の同時リクエストを1クエリにまとめる。
+ * IDでの申請エンティティ取得は {@link ExpenseRequestCache} を通し、所有者（申請者・承認者）の確認はJava側で行う。
+ * 更新系の操作はコミット後にキャッシュの該当IDを捨てる。
+ * {@code app.archive.enabled=true} のときは、ホットテーブルに無い申請・履歴をアーカイブテーブルから探す。
+ * 承認者に申請が回ってくる遷移（提出・次段への回付）は、同じトランザクションで {@link NotificationOutbox} に通知を積む（送信は後で別スレッドが行う）。
+ * {@code inmemory} プロファイル以外で有効（inmemory では {@link InMemoryRequestStore} を使う）。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.expenseworkflow.controller.dto.ChangeEventResponse;
+import com.example.expenseworkflow.controller.dto.InboxItemResponse;
+import com.example.expenseworkflow.controller.dto.RequestDetailResponse;
+import com.example.expenseworkflow.controller.dto.RequestHistoryItemResponse;
+import com.example.expenseworkflow.controller.dto.RequestSummaryResponse;
+import com.example.expenseworkflow.domain.ExpenseRequest;
+import com.example.expenseworkflow.jfr.WorkflowTransitionEvent;
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+import com.example.expenseworkflow.notification.NotificationOutbox;
+
+import lombok.RequiredArgsConstructor;
+
+@Component
+@Profile("!inmemory")
+@RequiredArgsConstructor
+public class MyBatisRequestStore implements RequestStore {
+	private final ExpenseRequestMapper expenseRequestMapper;
+
+	private final OrgHierarchyCache orgHierarchyCache; // 申請者→上長の承認経路をDBアクセスなしで引く組織図キャッシュ
+
+	private final SingleFlight singleFlight; // 同一内容の同時読み取りを1クエリにまとめる
+
+	private final ExpenseRequestCache requestCache; // IDで引く申請エンティティのキャッシュ（更新系はコミット後に無効化する）
+
+	private final DuplicateClaimIndex duplicateClaimIndex; // 提出時の二重申請検出に使う指紋索引
+
+	private final ApproverBudget approverBudget; // 最終承認者の月次予算の確認・確保
+
+	private final NotificationOutbox notificationOutbox; // 承認者への通知を遷移と同じトランザクションで積む
+
+	@Value("${app.archive.enabled:false}")
+	private boolean archiveEnabled; // アーカイブしていなければ *_archive テーブルは無いことがあるので、ホットに無くても探しに行かない
+	
+	@Override
+	public List<RequestSummaryResponse> list() { // 申請一覧（サマリ）を取得するメソッド。
+		return expenseRequestMapper.selectRequestSummaries();
+	}
+
+	@Override
+	public List<RequestSummaryResponse> listByApplicant(Long applicantUserId) { // 申請者本人の申請だけを一覧として取得するメソッド。
+		return listByApplicant(applicantUserId, null);
+	}
+
+	// fields で指定した列だけをSELECTして一覧を取得する（nullなら全列）。列名の妥当性はController側で検証済みの前提。
+	@Override
+	public List<RequestSummaryResponse> listByApplicant(Long applicantUserId, Set<String> fields) {
+		return singleFlight.execute("listByApplicant", applicantUserId + ":" + fields, // 列指定が違えば別クエリとして扱う
+				() -> expenseRequestMapper.selectRequestSummariesByApplicant(applicantUserId, fields));
+	}
+
+	@Transactional // このメソッド内のDB操作を1トランザクションとして扱う（途中で例外ならロールバックする）。
+	@Override
+	public RequestSummaryResponse create(Long applicantUserId, String title, int amount, String note) {
+		String status = "DRAFT";
+
+		ExpenseRequest entity = new ExpenseRequest(); // DBにINSERTするためのエンティティ（1申請）を新しく作る。
+		entity.setApplicantId(applicantUserId);
+		entity.setCurrentApproverId(null);
+		entity.setTitle(title);
+		entity.setAmount(amount);
+		entity.setStatus(status);
+		entity.setNote(note);
+
+		expenseRequestMapper.insertExpenseRequest(entity); // INSERTを実行する（MyBatisの設定により、採番されたIDがentityに反映される想定）。
+
+		Long newId = entity.getId();
+		requestCache.evictAfterCommit(newId); // 更新系の操作はすべてコミット後に該当IDを無効化する
+
+		return new RequestSummaryResponse(newId, title, amount, status, note, null, 0L); // 新規行の版番号はDB既定値の0
+	}
+
+	@Override
+	public RequestSummaryResponse findById(Long id) { // 数値IDから申請のサマリを1件取得する。
+		if (id == null) { // 引数がnullなら取得不能。
+			return null; // 見つからない扱いとしてnullを返す（Controller側で404等に変換する想定）。
+		}
+
+		ExpenseRequest found = loadById(id); // 数値IDで申請エンティティを1件取得する（キャッシュ経由）。
+		if (found == null) {
+			return null;
+		}
+
+		String note = found.getNote() != null ? found.getNote() : ""; // noteがnullなら空文字にする（レスポンス側でnullを避けたい意図）。
+
+		return new RequestSummaryResponse(found.getId(), found.getTitle(), found.getAmount(), found.getStatus(), note, found.getLastReturnComment(), found.getVersion()); // lastReturnCommentと版番号をエンティティから取り出して渡す。
+	}
+
+	@Override
+	public RequestSummaryResponse findByIdForApplicant(Long applicantUserId, Long id) { // 申請者本人の申請だけを数値IDで取得する。
+		if (id == null) {
+			return null;
+		}
+
+		ExpenseRequest found = loadById(id); // キャッシュ経由で1件取得し、申請者本人のものかをここで確認する。
+		if (found != null && !found.getApplicantId().equals(applicantUserId)) {
+			return null; // 他人の申請は見えないようにする
+		}
+		if (found == null && archiveEnabled) {
+			found = singleFlight.execute("findArchivedByIdForApplicant", applicantUserId + ":" + id,
+					() -> expenseRequestMapper.selectArchivedExpenseRequestByIdAndApplicant(id, applicantUserId)); // ホットテーブルに無ければアーカイブ済みの申請を探す。
+		}
+		if (found == null) {
+			return null;
+		}
+
+		String note = found.getNote() != null ? found.getNote() : ""; // noteがnullなら空文字にする（レスポンス側でnullを避けたい意図）。
+
+		return new RequestSummaryResponse(found.getId(), found.getTitle(), found.getAmount(), found.getStatus(), note, found.getLastReturnComment(), found.getVersion()); // lastReturnCommentと版番号をエンティティから取り出して渡す。
+	}
+
+	@Override
+	public List<InboxItemResponse> inbox(Long approverUserId) { // 承認者ユーザーIDに紐づくInbox（承認待ち一覧など）を取得する。
+		List<InboxItemResponse> items = singleFlight.execute("inbox", approverUserId, () -> expenseRequestMapper.selectInboxItems(approverUserId));
+		return items != null ? items : new ArrayList<>();
+	}
+
+	@Override
+	public RequestDetailResponse findByIdForApprover(Long approverUserId, Long id) { // 承認者本人が担当する申請を詳細取得する。
+		if (id == null) {
+			return null;
+		}
+		ExpenseRequest found = loadById(id); // キャッシュ経由で1件取得し、現在の承認者本人かをここで確認する。
+		if (found != null && !approverUserId.equals(found.getCurrentApproverId())) {
+			return null; // 他人のInbox申請は見えないようにする
+		}
+		if (found == null && archiveEnabled) {
+			found = singleFlight.execute("findArchivedByIdForApprover", approverUserId + ":" + id,
+					() -> expenseRequestMapper.selectArchivedExpenseRequestByIdAndApprover(id, approverUserId)); // ホットテーブルに無ければアーカイブ済みの申請を探す。
+		}
+		if (found == null) {
+			return null;
+		}
+		String note = found.getNote() != null ? found.getNote() : "";
+		return new RequestDetailResponse(
+			found.getId(),
+			found.getTitle(),
+			found.getAmount(),
+			found.getStatus(),
+			note,
+			java.util.Collections.emptyList(), // actionsは現フェーズでは空配列で返す
+			found.getLastReturnComment(), // lastReturnCommentをエンティティから取り出して渡す
+			found.getVersion(), // ETagにする版番号を渡す
+			found.getDuplicateOfRequestId() // 提出時に検出した重複の疑い（無ければnull）
+		);
+	}
+
+	@Transactional // 状態更新（UPDATE）を行うのでトランザクション境界を張る。
+	@Override
+	public boolean submit(Long userId, Long id, Long expectedVersion) { // 申請者が提出する（DRAFT→SUBMITTED）処理。成功ならtrue。
+		WorkflowTransitionEvent event = new WorkflowTransitionEvent(); // JFRで記録中なら、遷移にかかった時間を残す
+		event.begin();
+		if (id == null) {
+			return false;
+		}
+		if (!orgHierarchyCache.contains(userId)) { // submitした本人（申請者）が組織図に存在するかを確認します。
+			return false;
+		}
+		Long approverUserId = orgHierarchyCache.firstApprover(userId); // 申請者の上長（承認経路の1段目）を承認者として採用し、current_approver_idにセットします。
+		if (approverUserId == null) {
+			throw new org.springframework.web.server.ResponseStatusException(
+				org.springframework.http.HttpStatus.BAD_REQUEST,
+				"Cannot submit because your manager_id is NULL (approver is not configured)."
+			);
+		}
+        // 履歴INSERTのためにUPDATE前のstatusを取得する
+        ExpenseRequest current = loadById(id);
+        String fromStatus = current != null ? current.getStatus() : "DRAFT";
+        boolean own = current != null && userId.equals(current.getApplicantId());
+        Long duplicateOf = own ? duplicateClaimIndex.findDuplicate(current) : null; // 申請者・金額・経費発生日・件名が同じ提出済み申請があれば、承認者向けに記録する
+
+        int updated = expenseRequestMapper.updateStatusForApplicant(id, userId, approverUserId, "SUBMITTED", duplicateOf, expectedVersion);
+        if (updated != 1) {
+            throwIfVersionConflict(id, userId, expectedVersion);
+            return false;
+        }
+        duplicateClaimIndex.addAfterCommit(current); // コミット後に、この申請の指紋を索引へ加える
+
+        // 提出履歴をINSERTする
+        insertAction(event,
+            id, userId, "SUBMIT", fromStatus, "SUBMITTED", null);
+        notificationOutbox.enqueue(approverUserId, id, userId, NotificationOutbox.SUBMITTED); // 1段目の承認者に知らせる
+        requestCache.evictAfterCommit(id); // コミット後にキャッシュの古い内容を捨てる
+        return true;
+	}
+
+	@Transactional // 状態更新（UPDATE）を行うのでトランザクション境界を張る。
+	@Override
+	public boolean approve(Long userId, Long id, Long expectedVersion) {
+		WorkflowTransitionEvent event = new WorkflowTransitionEvent(); // JFRで記録中なら、遷移にかかった時間を残す
+		event.begin();
+		if (id == null) {
+			return false;
+		}
+        ExpenseRequest current = loadById(id); // 申請者と金額から承認経路上の次段を決めるために現在の申請を取得する。
+        if (current == null || !userId.equals(current.getCurrentApproverId())) {
+            return false;
+        }
+        if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+            throw versionConflict();
+        }
+        if (!"SUBMITTED".equals(current.getStatus())) {
+            return false;
+        }
+
+        int amount = current.getAmount() != null ? current.getAmount() : 0;
+        Long nextApproverUserId = orgHierarchyCache.nextApprover(current.getApplicantId(), amount, userId); // 金額に応じた経路で次段がいれば、その承認者IDが返る。
+        if (nextApproverUserId != null) {
+            // 次段の承認者へ回す（ステータスはSUBMITTEDのまま）
+            int forwarded = expenseRequestMapper.updateApproverForNextLevel(id, userId, nextApproverUserId, current.getVersion()); // 読んだ版のままのときだけ進める
+            if (forwarded != 1) {
+                throwIfVersionConflict(id, userId, current.getVersion());
+                return false;
+            }
+            insertAction(event,
+                id, userId, "APPROVE", "SUBMITTED", "SUBMITTED", null);
+            notificationOutbox.enqueue(nextApproverUserId, id, userId, NotificationOutbox.FORWARDED); // 次段の承認者に知らせる
+            requestCache.evictAfterCommit(id); // コミット後にキャッシュの古い内容を捨てる
+            return true;
+        }
+
+        int updated = expenseRequestMapper.updateStatusForApprover(id, userId, "APPROVED", current.getVersion()); // 最終段の承認者なのでAPPROVEDへ更新し、更新件数を受け取る。
+        if (updated != 1) {
+            throwIfVersionConflict(id, userId, current.getVersion());
+            return false;
+        }
+        approverBudget.reserve(userId, id, amount); // 最終承認者の今月の予算から確保する（超えるなら409で、このトランザクションごとロールバックする）
+
+        // 承認履歴をINSERTする
+        insertAction(event,
+            id, userId, "APPROVE", "SUBMITTED", "APPROVED", null);
+        requestCache.evictAfterCommit(id); // コミット後にキャッシュの古い内容を捨てる
+        return true;
+	}
+
+	@Transactional // 状態更新（UPDATE）と履歴INSERTを同一トランザクションにするために境界を張る。
+	@Override
+	public boolean returnRequest(Long userId, Long id, String comment, Long expectedVersion) {
+		WorkflowTransitionEvent event = new WorkflowTransitionEvent(); // JFRで記録中なら、遷移にかかった時間を残す
+		event.begin();
+		if (id == null) {
+			return false;
+		}
+
+		ExpenseRequest current = loadById(id); // 現在の申請状態を取得し、差戻し可能条件とfrom_status決定に使う。
+		if (current == null) {
+			return false;
+		}
+
+		Long currentApproverId = current.getCurrentApproverId(); // 現在の承認者IDを取り出し、操作権限の判定に使う。
+		if (currentApproverId == null || !currentApproverId.equals(userId)) {
+			return false;
+		}
+		if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) { // 画面で見た版から変わっていれば412にする。
+			throw versionConflict();
+		}
+
+		String fromStatus = current.getStatus(); // 履歴に残すfrom_statusとして、更新前のstatusを保持する。
+		if (fromStatus == null || !"SUBMITTED".equals(fromStatus)) {
+			return false;
+		}
+
+		String toStatus = "RETURNED"; // 遷移後ステータスをRETURNEDに固定する。
+		int updated = expenseRequestMapper.updateStatusForApproverWithComment(id, userId, toStatus, comment, current.getVersion()); // 読んだ版のままのときだけ更新する。
+		if (updated != 1) {
+			throwIfVersionConflict(id, userId, current.getVersion());
+			return false;
+		}
+
+		String action = "RETURN"; // actionsテーブルに残す操作名をRETURNに固定する（差戻し操作であることを判別できるようにする）。
+		insertAction(event, id, userId, action, fromStatus, toStatus, comment);
+		requestCache.evictAfterCommit(id); // コミット後にキャッシュの古い内容を捨てる
+		return true;
+	}
+	
+	@Transactional
+	@Override
+	public boolean withdraw(Long applicantUserId, Long id, Long expectedVersion) { // 申請者が申請を取り下げる（DRAFT/RETURNED→WITHDRAWN）処理。成功ならtrue。
+		WorkflowTransitionEvent event = new WorkflowTransitionEvent(); // JFRで記録中なら、遷移にかかった時間を残す
+		event.begin();
+		if (id == null) return false;
+        // 履歴INSERTのためにUPDATE前のstatusを取得する
+        ExpenseRequest current = loadById(id);
+        String fromStatus = current != null ? current.getStatus() : "DRAFT";
+
+        int updated = expenseRequestMapper
+                .updateStatusToWithdrawn(id, applicantUserId, expectedVersion);
+        if (updated != 1) {
+            throwIfVersionConflict(id, applicantUserId, expectedVersion);
+            return false;
+        }
+
+        // 取り下げ履歴をINSERTする
+        insertAction(event,
+            id, applicantUserId, "WITHDRAW", fromStatus, "WITHDRAWN", null);
+        requestCache.evictAfterCommit(id); // コミット後にキャッシュの古い内容を捨てる
+        return true;
+	}
+
+	@Transactional
+	@Override
+	public boolean reject(Long approverUserId, Long id, String comment, Long expectedVersion) { // 承認者が申請を却下する（SUBMITTED→REJECTED）処理。成功ならtrue。
+		WorkflowTransitionEvent event = new WorkflowTransitionEvent(); // JFRで記録中なら、遷移にかかった時間を残す
+		event.begin();
+		if (id == null) return false;
+        int updated = expenseRequestMapper
+                .updateStatusToRejected(id, approverUserId, expectedVersion);
+        if (updated != 1) {
+            throwIfVersionConflict(id, approverUserId, expectedVersion);
+            return false;
+        }
+
+        // 却下履歴をINSERTする
+        insertAction(event,
+            id, approverUserId, "REJECT", "SUBMITTED", "REJECTED", comment);
+        requestCache.evictAfterCommit(id); // コミット後にキャッシュの古い内容を捨てる
+        return true;
+	}
+	
+	@Transactional // 内容更新（UPDATE）を行うのでトランザクション境界を張る。
+	@Override
+	public boolean updateReturned(Long applicantUserId, Long id, String title, int amount, String note, Long expectedVersion) {
+		if (id == null) {
+			return false;
+		}
+		int updated = expenseRequestMapper.updateEditableFieldsForApplicant(id, applicantUserId, title, amount, note, expectedVersion);
+		if (updated != 1) {
+			throwIfVersionConflict(id, applicantUserId, expectedVersion);
+			return false;
+		}
+		requestCache.evictAfterCommit(id); // コミット後にキャッシュの古い内容を捨てる
+		return true;
+	}
+
+	// 操作履歴をINSERTし、遷移をJFRイベントとして記録する
+	private void insertAction(WorkflowTransitionEvent event, Long id, Long userId, String action, String fromStatus, String toStatus, String comment) {
+		expenseRequestMapper.insertExpenseRequestAction(id, userId, action, fromStatus, toStatus, comment);
+		event.record(id, userId, action, fromStatus, toStatus);
+	}
+
+	// 版番号付きUPDATEが0件だったとき、操作者が関係する申請が別の版に進んでいれば412にする（それ以外は呼び出し側で404）
+	private void throwIfVersionConflict(Long id, Long userId, Long expectedVersion) {
+		requestCache.evict(id); // 条件付きUPDATEが外れた＝キャッシュの内容が古い可能性があるので捨てる
+		if (expectedVersion == null) {
+			return;
+		}
+		ExpenseRequest latest = expenseRequestMapper.selectExpenseRequestById(id);
+		if (latest == null || !(userId.equals(latest.getApplicantId()) || userId.equals(latest.getCurrentApproverId()))) {
+			return; // 他人の申請の存在は412で漏らさない
+		}
+		if (!expectedVersion.equals(latest.getVersion())) {
+			throw versionConflict();
+		}
+	}
+
+	// 変更フィード用。アーカイブ済みの申請の遷移は含まない（退避前に取り込まれている前提）
+	@Override
+	public ChangePage changesSince(ChangeCursor since, long settleSeconds, int limit) {
+		List<ChangeEventResponse> items = expenseRequestMapper.selectChangesSince(since.position(0), settleSeconds, limit);
+		if (items == null || items.isEmpty()) {
+			return new ChangePage(List.of(), since);
+		}
+		return new ChangePage(items, since.advance(0, items.get(items.size() - 1).getActionId()));
+	}
+
+	// キャッシュから申請エンティティを返し、無ければDBから読んで登録する
+	private ExpenseRequest loadById(Long id) {
+		ExpenseRequest cached = requestCache.get(id);
+		if (cached != null) {
+			return cached;
+		}
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			// 更新トランザクション内の読み取りは自分の接続で直接読み、未コミットの状態をキャッシュに残さない
+			return expenseRequestMapper.selectExpenseRequestById(id);
+		}
+		long stamp = requestCache.stamp();
+		ExpenseRequest loaded = singleFlight.execute("selectExpenseRequestById", id, () -> expenseRequestMapper.selectExpenseRequestById(id));
+		requestCache.put(id, loaded, stamp);
+		return loaded;
+	}
+
+	private static ResponseStatusException versionConflict() {
+		return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+				"The request was modified by another operation. Reload and try again.");
+	}
+
+    // 申請者本人の申請の操作履歴を取得する
+    @Override
+    public List<RequestHistoryItemResponse>
+            getHistory(Long applicantUserId, Long requestId) {
+        if (requestId == null) return List.of();
+        return singleFlight.execute("getHistory", applicantUserId + ":" + requestId, () -> {
+            List<RequestHistoryItemResponse> result =
+                expenseRequestMapper
+                    .selectHistoryByRequestIdAndApplicant(
+                        requestId, applicantUserId);
+            if ((result == null || result.isEmpty()) && archiveEnabled) {
+                // 申請と履歴はまとめて退避されるので、ホットに無ければアーカイブ側だけを見ればよい
+                result = expenseRequestMapper
+                    .selectArchivedHistoryByRequestIdAndApplicant(
+                        requestId, applicantUserId);
+            }
+            return result != null ? result : List.<RequestHistoryItemResponse>of();
+        });
+    }
+    
+ // 承認者本人が担当する申請の操作履歴を取得する
+    @Override
+    public List<RequestHistoryItemResponse>
+            getHistoryForApprover(Long approverUserId, Long requestId) {
+        if (requestId == null) return List.of();
+        return singleFlight.execute("getHistoryForApprover", approverUserId + ":" + requestId, () -> {
+            List<RequestHistoryItemResponse> result =
+                expenseRequestMapper
+                    .selectHistoryByRequestIdAndApprover(
+                        requestId, approverUserId);
+            if ((result == null || result.isEmpty()) && archiveEnabled) {
+                result = expenseRequestMapper
+                    .selectArchivedHistoryByRequestIdAndApprover(
+                        requestId, approverUserId);
+            }
+            return result != null ? result : List.<RequestHistoryItemResponse>of();
+        });
+    }
+
+}
@@ -0,0 +1,181 @@
+/**
+ * users.manager_id から組織図をメモリ上に構築し、承認経路の解決を担うキャッシュクラス。
+ * ユーザーごとに「上長→上長の上長→…」の祖先配列を事前計算しておくことで、
+ * 提出時の承認者決定や多段承認での次承認者決定をDBアクセスなしで行う。
+ * <ul>
+ *   <li>manager_id の循環（A→B→A など）は検出した時点で経路を打ち切り、循環1つにつき1回だけ警告ログを出す</li>
+ *   <li>金額が {@code app.approval.level-thresholds} の各閾値以上になるごとに承認段数を1段ずつ増やす（既定は閾値なし＝上長1段のみ）</li>
+ *   <li>初回アクセス時に遅延ロードし（起動時にスリープ中のDBへ接続しないため）、
+ *       {@code app.org.cache-ttl-seconds} 経過後または {@link #invalidate()} 呼び出し後に再構築する</li>
+ * </ul>
+ * このアプリは users を更新しないため、DBで直接 manager_id を変えた場合は最大 {@code app.org.cache-ttl-seconds}（既定600秒）
+ * のあいだ古い承認経路で回る。新規ユーザーだけは {@link #contains(Long)} が見つからなかった時点で作り直すので即時に反映される。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.expenseworkflow.domain.User;
+import com.example.expenseworkflow.mapper.UserMapper;
+
+@Component
+public class OrgHierarchyCache {
+
+	private static final Logger log = LoggerFactory.getLogger(OrgHierarchyCache.class);
+
+	private final UserMapper userMapper;
+	private final long ttlMillis; // 組織図を作り直すまでの有効期間（ミリ秒）
+	private final int[] levelThresholds; // 承認段数を増やす金額の閾値（昇順）
+
+	private volatile Snapshot snapshot; // 構築済みの組織図（未構築・無効化後はnull）
+
+	// ユーザーID→祖先配列（[0]が直属の上長）と構築時刻を不変オブジェクトとして保持する
+	private record Snapshot(Map<Long, long[]> ancestors, long loadedAt) {
+	}
+
+	public OrgHierarchyCache(
+			UserMapper userMapper,
+			@Value("${app.org.cache-ttl-seconds:600}") long ttlSeconds,
+			@Value("${app.approval.level-thresholds:}") String levelThresholds) {
+		this.userMapper = userMapper;
+		this.ttlMillis = ttlSeconds * 1000L;
+		this.levelThresholds = parseThresholds(levelThresholds);
+	}
+
+	// 直属の上長（1段目の承認者）を返す。上長未設定なら null
+	public Long firstApprover(Long applicantUserId) {
+		long[] ancestors = ancestorsOf(applicantUserId);
+		return ancestors != null && ancestors.length > 0 ? ancestors[0] : null;
+	}
+
+	// 組織図にユーザーが存在するかを返す。見つからない場合は新規ユーザーの可能性があるので1度だけ作り直して確認する
+	public boolean contains(Long userId) {
+		if (userId == null) {
+			return false;
+		}
+		if (current().ancestors().containsKey(userId)) {
+			return true;
+		}
+		invalidate();
+		return current().ancestors().containsKey(userId);
+	}
+
+	// 金額に応じた承認経路（承認者IDの配列、[0]が1段目）を返す。上長が足りなければ辿れるところまでで打ち切る
+	public long[] approvalChain(Long applicantUserId, int amount) {
+		long[] ancestors = ancestorsOf(applicantUserId);
+		if (ancestors == null || ancestors.length == 0) {
+			return new long[0];
+		}
+		return Arrays.copyOf(ancestors, Math.min(requiredLevels(amount), ancestors.length));
+	}
+
+	// 現在の承認者が承認した後に回す次の承認者を返す。経路の最終段（または経路外）なら null＝最終承認
+	public Long nextApprover(Long applicantUserId, int amount, Long currentApproverId) {
+		if (currentApproverId == null) {
+			return null;
+		}
+		long[] chain = approvalChain(applicantUserId, amount);
+		for (int i = 0; i < chain.length - 1; i++) {
+			if (chain[i] == currentApproverId) {
+				return chain[i + 1];
+			}
+		}
+		return null;
+	}
+
+	// 金額から必要な承認段数を求める（閾値を1つ超えるごとに+1段、最低1段）
+	public int requiredLevels(int amount) {
+		int levels = 1;
+		for (int threshold : levelThresholds) {
+			if (amount >= threshold) {
+				levels++;
+			}
+		}
+		return levels;
+	}
+
+	// ユーザーの祖先配列（[0]が直属の上長）を返す。組織図に存在しないユーザーなら null
+	public long[] ancestorsOf(Long userId) {
+		if (userId == null) {
+			return null;
+		}
+		return current().ancestors().get(userId);
+	}
+
+	// 組織図を破棄し、次回アクセス時にDBから作り直させる（未知のユーザーを見つけたとき contains から呼ぶ。
+	// 将来 users を更新する処理を足すときは、更新後にここを呼べばTTLを待たずに反映できる）
+	public void invalidate() {
+		snapshot = null;
+	}
+
+	// 有効な組織図を返す。未構築・期限切れならDBから1回だけ読み直す
+	private Snapshot current() {
+		Snapshot s = snapshot;
+		if (s != null && System.currentTimeMillis() - s.loadedAt() < ttlMillis) {
+			return s;
+		}
+		synchronized (this) {
+			s = snapshot;
+			if (s == null || System.currentTimeMillis() - s.loadedAt() >= ttlMillis) {
+				s = new Snapshot(build(userMapper.findAllOrgEdges()), System.currentTimeMillis());
+				snapshot = s;
+			}
+			return s;
+		}
+	}
+
+	// id→manager_id の辺から各ユーザーの祖先配列を事前計算する
+	static Map<Long, long[]> build(List<User> users) {
+		Map<Long, Long> managerOf = new HashMap<>();
+		for (User u : users) {
+			managerOf.put(u.getId(), u.getManagerId());
+		}
+		Map<Long, long[]> ancestors = new HashMap<>(managerOf.size() * 2);
+		Set<Long> reportedCycles = new HashSet<>(); // 警告済みの循環（循環内の最小ユーザーIDで識別する）
+		for (Long userId : managerOf.keySet()) {
+			List<Long> chain = new ArrayList<>();
+			Set<Long> visited = new HashSet<>();
+			visited.add(userId);
+			Long manager = managerOf.get(userId);
+			while (manager != null) {
+				if (!visited.add(manager)) { // 既に通ったユーザーに戻った＝manager_id が循環している
+					List<Long> cycle = new ArrayList<>(chain.subList(chain.indexOf(manager) + 1, chain.size())); // 循環に入った地点から先
+					cycle.add(0, manager);
+					if (reportedCycles.add(cycle.stream().min(Long::compare).orElse(manager))) { // 同じ循環を通る他のユーザーでは繰り返さない
+						log.warn("Cycle detected in users.manager_id among users {}", cycle);
+					}
+					break;
+				}
+				chain.add(manager);
+				manager = managerOf.get(manager); // 上長がusersに存在しなければ null になりそこで経路終了
+			}
+			ancestors.put(userId, chain.stream().mapToLong(Long::longValue).toArray());
+		}
+		return ancestors;
+	}
+
+	// "100000,500000" 形式の閾値を昇順のint配列に変換する
+	private static int[] parseThresholds(String value) {
+		if (value == null || value.isBlank()) {
+			return new int[0];
+		}
+		return Arrays.stream(value.split(","))
+				.map(String::trim)
+				.filter(v -> !v.isEmpty())
+				.mapToInt(Integer::parseInt)
+				.sorted()
+				.toArray();
+	}
+}
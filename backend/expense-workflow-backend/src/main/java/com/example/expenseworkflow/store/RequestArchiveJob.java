@@ -0,0 +1,93 @@
+/**
+ * 完了済み（APPROVED/REJECTED/WITHDRAWN）の古い申請と操作履歴をアーカイブテーブルへ退避するバッチジョブ。
+ * {@code app.archive.retention-days} より前に更新された申請を {@code app.archive.batch-size} 件ずつ、
+ * 1バッチ1トランザクションで expense_requests_archive / expense_request_actions_archive へ移す。
+ * 退避後も {@link RequestStore} の詳細・履歴取得はアーカイブ側を参照して同じ結果を返す。
+ * 退避した申請はコミット後に {@link ExpenseRequestCache} から捨てる。
+ * {@code app.archive.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+
+@Component
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class RequestArchiveJob {
+
+	private static final Logger log = LoggerFactory.getLogger(RequestArchiveJob.class);
+
+	private final ExpenseRequestMapper expenseRequestMapper;
+	private final TransactionTemplate transactionTemplate;
+	private final ExpenseRequestCache requestCache; // 退避した申請をキャッシュから捨てる
+	private final ShardRouter shardRouter;
+	private final int retentionDays; // 完了後この日数を過ぎた申請を退避対象にする
+	private final int batchSize; // 1トランザクションで移す申請数（ロック保持時間を短く保つ）
+	private final int maxBatches; // 1回の実行で処理するバッチ数の上限
+
+	public RequestArchiveJob(
+			ExpenseRequestMapper expenseRequestMapper,
+			TransactionTemplate transactionTemplate,
+			ExpenseRequestCache requestCache,
+			ShardRouter shardRouter,
+			@Value("${app.archive.retention-days:180}") int retentionDays,
+			@Value("${app.archive.batch-size:500}") int batchSize,
+			@Value("${app.archive.max-batches:100}") int maxBatches) {
+		this.expenseRequestMapper = expenseRequestMapper;
+		this.transactionTemplate = transactionTemplate;
+		this.requestCache = requestCache;
+		this.shardRouter = shardRouter;
+		this.retentionDays = retentionDays;
+		this.batchSize = batchSize;
+		this.maxBatches = maxBatches;
+	}
+
+	@Scheduled(cron = "${app.archive.cron:0 30 3 * * *}") // 既定は毎日3:30（利用の少ない時間帯）に実行する
+	public void run() {
+		shardRouter.forEachShard(this::runOnShard); // シャーディング時はシャードごとに並行して処理する
+	}
+
+	private void runOnShard() {
+		LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+		int total = 0;
+		for (int i = 0; i < maxBatches; i++) {
+			int moved = archiveBatch(cutoff);
+			total += moved;
+			if (moved < batchSize) {
+				break; // 対象が残っていなければ終了する
+			}
+		}
+		if (total > 0) {
+			log.info("Archived {} closed expense requests older than {}", total, cutoff);
+		}
+	}
+
+	// 1バッチ分（最大 batchSize 件）を退避して、移した申請数を返す
+	int archiveBatch(LocalDateTime cutoff) {
+		Integer moved = transactionTemplate.execute(status -> {
+			List<Long> ids = expenseRequestMapper.selectArchivableRequestIds(cutoff, batchSize);
+			if (ids.isEmpty()) {
+				return 0;
+			}
+			// 申請と履歴をコピーしてから削除する（途中で失敗すればロールバックされ二重化も欠落も起きない）
+			expenseRequestMapper.copyRequestsToArchive(ids);
+			expenseRequestMapper.copyActionsToArchive(ids);
+			expenseRequestMapper.deleteArchivedActions(ids);
+			expenseRequestMapper.deleteArchivedRequests(ids);
+			requestCache.evictAfterCommit(ids);
+			return ids.size();
+		});
+		return moved != null ? moved : 0;
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * 承認者が一定期間処理していない提出済み（SUBMITTED）申請をエスカレーションするバッチジョブ。
+ * {@code app.escalation.sla-days} より前に提出され、その間エスカレーションもされていない申請を
+ * (status, submitted_at) のインデックスで古い順に探し、1件ずつ次のように処理する。
+ * <ul>
+ *   <li>現在の承認者に上長がいれば（{@link OrgHierarchyCache}）、その上長へ current_approver_id を付け替える</li>
+ *   <li>上長がいなければ承認者はそのままで escalated_at だけを記録する（警告フラグ）</li>
+ *   <li>どちらの場合も expense_request_actions に ESCALATE を1行残す。操作者は特定のユーザーではないので actor_id はNULL
+ *       （履歴では「システム」と表示する）</li>
+ *   <li>付け替えた場合は、同じトランザクションで新しい承認者への通知を {@link NotificationOutbox} に積む</li>
+ * </ul>
+ * 候補の検索はトランザクション外で {@code app.escalation.batch-size} 件ずつ行い、更新は1件1トランザクション・
+ * 版番号付きのUPDATEにするため、ライブのテーブルに長いロックを持たない（読んだ後に承認された申請は更新されない）。
+ * {@code app.escalation.enabled=true} のときだけ登録される。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.expenseworkflow.domain.ExpenseRequest;
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+import com.example.expenseworkflow.notification.NotificationOutbox;
+
+@Component
+@ConditionalOnProperty(name = "app.escalation.enabled", havingValue = "true")
+public class RequestEscalationJob {
+
+	private static final Logger log = LoggerFactory.getLogger(RequestEscalationJob.class);
+	static final Long SYSTEM_ACTOR_ID = null; // 期限切れによる自動処理なので、操作履歴・通知の actor_id はNULL（システム）にする
+
+	private final ExpenseRequestMapper expenseRequestMapper;
+	private final TransactionTemplate transactionTemplate;
+	private final OrgHierarchyCache orgHierarchyCache;
+	private final ExpenseRequestCache requestCache; // 付け替えた申請をキャッシュから捨てる
+	private final ShardRouter shardRouter;
+	private final NotificationOutbox notificationOutbox; // 付け替え先の承認者への通知を積む
+	private final int slaDays; // 提出（または前回のエスカレーション）からこの日数を過ぎたら対象にする
+	private final int batchSize; // 1回の検索で読む候補数
+	private final int maxBatches; // 1回の実行で処理するバッチ数の上限
+
+	public RequestEscalationJob(
+			ExpenseRequestMapper expenseRequestMapper,
+			TransactionTemplate transactionTemplate,
+			OrgHierarchyCache orgHierarchyCache,
+			ExpenseRequestCache requestCache,
+			ShardRouter shardRouter,
+			NotificationOutbox notificationOutbox,
+			@Value("${app.escalation.sla-days:14}") int slaDays,
+			@Value("${app.escalation.batch-size:100}") int batchSize,
+			@Value("${app.escalation.max-batches:10}") int maxBatches) {
+		this.expenseRequestMapper = expenseRequestMapper;
+		this.transactionTemplate = transactionTemplate;
+		this.orgHierarchyCache = orgHierarchyCache;
+		this.requestCache = requestCache;
+		this.shardRouter = shardRouter;
+		this.notificationOutbox = notificationOutbox;
+		this.slaDays = slaDays;
+		this.batchSize = batchSize;
+		this.maxBatches = maxBatches;
+	}
+
+	@Scheduled(cron = "${app.escalation.cron:0 0 * * * *}") // 既定は毎時0分に実行する
+	public void run() {
+		shardRouter.forEachShard(this::runOnShard); // シャーディング時はシャードごとに並行して処理する
+	}
+
+	private void runOnShard() {
+		LocalDateTime cutoff = LocalDateTime.now().minusDays(slaDays);
+		Set<Long> skipped = new HashSet<>(); // 今回の実行で更新できなかった申請（同じ実行内で読み直さない）
+		int escalated = 0;
+		int flagged = 0;
+		for (int i = 0; i < maxBatches; i++) {
+			List<ExpenseRequest> candidates = expenseRequestMapper.selectOverdueSubmissions(cutoff, skipped, batchSize);
+			for (ExpenseRequest candidate : candidates) {
+				switch (escalate(candidate)) {
+					case ESCALATED -> escalated++;
+					case FLAGGED -> flagged++;
+					case SKIPPED -> skipped.add(candidate.getId());
+				}
+			}
+			if (candidates.size() < batchSize) {
+				break; // 対象が残っていなければ終了する
+			}
+		}
+		if (escalated + flagged > 0) {
+			log.info("Escalated {} and flagged {} submissions overdue since {}", escalated, flagged, cutoff);
+		}
+	}
+
+	enum Outcome { ESCALATED, FLAGGED, SKIPPED }
+
+	// 1件を1トランザクションで処理する
+	Outcome escalate(ExpenseRequest candidate) {
+		Long currentApproverId = candidate.getCurrentApproverId();
+		Long nextApproverId = nextApprover(candidate.getApplicantId(), currentApproverId);
+		Long targetApproverId = nextApproverId != null ? nextApproverId : currentApproverId; // 上長がいなければ付け替えずに警告だけ残す
+		try {
+			Boolean done = transactionTemplate.execute(status -> {
+				int updated = expenseRequestMapper.escalateRequest(candidate.getId(), currentApproverId, targetApproverId, candidate.getVersion());
+				if (updated != 1) {
+					return false; // 読んだ後に承認・差戻しなどで変わっていた
+				}
+				String comment = nextApproverId != null
+						? "承認期限（" + slaDays + "日）を過ぎたため上長へ回付しました"
+						: "承認期限（" + slaDays + "日）を過ぎています（回付できる上長がいません）";
+				expenseRequestMapper.insertExpenseRequestAction(candidate.getId(), SYSTEM_ACTOR_ID, "ESCALATE", "SUBMITTED", "SUBMITTED", comment);
+				if (nextApproverId != null) {
+					notificationOutbox.enqueue(nextApproverId, candidate.getId(), SYSTEM_ACTOR_ID, NotificationOutbox.ESCALATED);
+				}
+				requestCache.evictAfterCommit(candidate.getId());
+				return true;
+			});
+			if (!Boolean.TRUE.equals(done)) {
+				return Outcome.SKIPPED;
+			}
+			return nextApproverId != null ? Outcome.ESCALATED : Outcome.FLAGGED;
+		} catch (RuntimeException e) {
+			log.warn("Failed to escalate expense request {}", candidate.getId(), e);
+			return Outcome.SKIPPED;
+		}
+	}
+
+	// 現在の承認者の上長のうち、申請者本人ではない最も近い人を返す。いなければ null
+	private Long nextApprover(Long applicantId, Long currentApproverId) {
+		long[] ancestors = orgHierarchyCache.ancestorsOf(currentApproverId);
+		if (ancestors == null) {
+			return null;
+		}
+		for (long ancestor : ancestors) {
+			if (applicantId == null || ancestor != applicantId) {
+				return ancestor;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * 現在のスレッドがどのシャード（申請データを分割して持つDB）に対して処理しているかを保持するクラス。
+ * {@link com.example.expenseworkflow.config.ShardRoutingDataSource} が接続を取り出すときにここを見て、接続先のDBを決める。
+ * 未設定（null）のときは既定のシャード（0番。users などの共通テーブルの正本）へつながる。
+ * トランザクション中は開始時に取り出した接続を使い続けるため、切り替えはトランザクションの外で行うこと。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.function.Supplier;
+
+public final class ShardContext {
+
+	private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>(); // 現在のシャード番号（未設定ならnull）
+
+	private ShardContext() {
+	}
+
+	// 現在のシャード番号を返す。未設定なら null
+	public static Integer current() {
+		return CURRENT.get();
+	}
+
+	// shard を現在のシャードにして action を実行し、終わったら元に戻す
+	public static <T> T call(int shard, Supplier<T> action) {
+		Integer previous = CURRENT.get();
+		CURRENT.set(shard);
+		try {
+			return action.get();
+		} finally {
+			if (previous != null) {
+				CURRENT.set(previous);
+			} else {
+				CURRENT.remove();
+			}
+		}
+	}
+}
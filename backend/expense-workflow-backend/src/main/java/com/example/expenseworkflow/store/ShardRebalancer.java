@@ -0,0 +1,257 @@
+/**
+ * シャード数を変えたとき（または既存の単一DBをシャードに分けるとき）に、申請データを
+ * 「申請者ID mod シャード数」のシャードへ移し替えるコマンドラインツール。Springを起動せず、JDBCで直接つなぐ。
+ * <ul>
+ *   <li>各シャードで、置き場所が違う申請を {@code --batch-size} 件ずつ選び、操作履歴・予算台帳と一緒に移し先へコピーしてから元を消す
+ *       （コピーは INSERT IGNORE なので、途中で止まっても再実行すれば続きから整合した状態になる）</li>
+ *   <li>アーカイブ済みの申請と操作履歴も同じ規則で移す</li>
+ *   <li>最後に各シャードの AUTO_INCREMENT を全シャードの最大ID+1に揃え、以降の採番（申請ID・変更フィードのカーソル）を全体で単調にする</li>
+ *   <li>{@code --sync-users} を付けると、0番シャードの users を他のシャードへ複製する（組織図は各シャードで読むため）</li>
+ * </ul>
+ * 移し替え中にアプリが書き込むと、コピー後・削除前の更新が失われるため、アプリを止めて実行する。
+ * 例:
+ * <pre>
+ * java -cp target/expense-workflow-backend-1.0.0.jar \
+ *   -Dloader.main=com.example.expenseworkflow.store.ShardRebalancer \
+ *   org.springframework.boot.loader.launch.PropertiesLauncher \
+ *   --urls=jdbc:mysql://127.0.0.1:3307/expense_workflow_db,jdbc:mysql://127.0.0.1:3308/expense_workflow_db \
+ *   --user=root --password=mydbpass --sync-users --dry-run
+ * </pre>
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class ShardRebalancer {
+
+	// 申請本体（applicant_id でシャードを決める）と、その申請IDにぶら下がるテーブル
+	private record RequestTables(String requests, List<String> children) {
+	}
+
+	private static final List<RequestTables> TABLES = List.of(
+			new RequestTables("expense_requests", List.of("expense_request_actions", "approver_budget_ledger")),
+			new RequestTables("expense_requests_archive", List.of("expense_request_actions_archive")));
+
+	// AUTO_INCREMENT を揃えるテーブルと、IDを共有するアーカイブ側のテーブル
+	private static final Map<String, String> SEQUENCES = Map.of(
+			"expense_requests", "expense_requests_archive",
+			"expense_request_actions", "expense_request_actions_archive");
+
+	private final List<String> urls;
+	private final String user;
+	private final String password;
+	private final int batchSize;
+	private final boolean dryRun;
+
+	ShardRebalancer(List<String> urls, String user, String password, int batchSize, boolean dryRun) {
+		this.urls = urls;
+		this.user = user;
+		this.password = password;
+		this.batchSize = batchSize;
+		this.dryRun = dryRun;
+	}
+
+	public static void main(String[] args) throws SQLException {
+		Map<String, String> options = parseOptions(args);
+		List<String> urls = ShardRouter.parseUrls(options.get("urls"));
+		if (urls.isEmpty()) {
+			System.err.println("Usage: ShardRebalancer --urls=<jdbc url>,<jdbc url>,... [--user=] [--password=] [--batch-size=500] [--sync-users] [--dry-run]");
+			System.exit(2);
+		}
+		ShardRebalancer rebalancer = new ShardRebalancer(urls,
+				options.getOrDefault("user", ""),
+				options.getOrDefault("password", ""),
+				Integer.parseInt(options.getOrDefault("batch-size", "500")),
+				options.containsKey("dry-run"));
+		if (options.containsKey("sync-users")) {
+			rebalancer.syncUsers();
+		}
+		rebalancer.rebalance();
+		rebalancer.alignSequences();
+	}
+
+	// 0番シャードの users を他のシャードへ上書きコピーする
+	void syncUsers() throws SQLException {
+		try (Connection source = connect(0)) {
+			List<Map<String, Object>> users = select(source, "SELECT * FROM users", List.of());
+			for (int shard = 1; shard < urls.size(); shard++) {
+				System.out.printf("users: copy %d rows from shard 0 to shard %d%n", users.size(), shard);
+				if (!dryRun) {
+					try (Connection target = connect(shard)) {
+						insert(target, "REPLACE", "users", users);
+						target.commit();
+					}
+				}
+			}
+		}
+	}
+
+	// 置き場所が違う申請を、申請者のシャードへ移す
+	void rebalance() throws SQLException {
+		int shardCount = urls.size();
+		for (int source = 0; source < shardCount; source++) {
+			for (RequestTables tables : TABLES) {
+				int moved = 0;
+				long afterId = 0;
+				while (true) {
+					List<Map<String, Object>> rows;
+					try (Connection from = connect(source)) {
+						rows = select(from, "SELECT * FROM " + tables.requests()
+								+ " WHERE MOD(applicant_id, ?) <> ? AND id > ? ORDER BY id LIMIT ?",
+								List.of(shardCount, source, afterId, batchSize));
+					}
+					if (rows.isEmpty()) {
+						break;
+					}
+					afterId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+					Map<Integer, List<Map<String, Object>>> byTarget = rows.stream().collect(Collectors.groupingBy(
+							r -> (int) Math.floorMod(((Number) r.get("applicant_id")).longValue(), (long) shardCount)));
+					for (Map.Entry<Integer, List<Map<String, Object>>> e : byTarget.entrySet()) {
+						move(source, e.getKey(), tables, e.getValue());
+						moved += e.getValue().size();
+					}
+					if (rows.size() < batchSize) {
+						break;
+					}
+				}
+				if (moved > 0) {
+					System.out.printf("%s: %s %d rows from shard %d%n", tables.requests(), dryRun ? "would move" : "moved", moved, source);
+				}
+			}
+		}
+	}
+
+	// 1バッチ分の申請を移し先にコピー（コミット）してから、移し元から消す
+	private void move(int source, int target, RequestTables tables, List<Map<String, Object>> requests) throws SQLException {
+		List<Object> ids = requests.stream().map(r -> r.get("id")).toList();
+		String in = String.join(",", Collections.nCopies(ids.size(), "?"));
+		try (Connection from = connect(source); Connection to = connect(target)) {
+			Map<String, List<Map<String, Object>>> children = new LinkedHashMap<>();
+			for (String child : tables.children()) {
+				children.put(child, select(from, "SELECT * FROM " + child + " WHERE request_id IN (" + in + ")", ids));
+			}
+			if (dryRun) {
+				return;
+			}
+			insert(to, "INSERT IGNORE", tables.requests(), requests);
+			for (Map.Entry<String, List<Map<String, Object>>> e : children.entrySet()) {
+				insert(to, "INSERT IGNORE", e.getKey(), e.getValue());
+			}
+			to.commit(); // 先に移し先を確定させる（ここで止まっても、再実行で同じ行を IGNORE して削除から続く）
+
+			for (String child : tables.children()) {
+				update(from, "DELETE FROM " + child + " WHERE request_id IN (" + in + ")", ids);
+			}
+			update(from, "DELETE FROM " + tables.requests() + " WHERE id IN (" + in + ")", ids);
+			from.commit();
+		}
+	}
+
+	// 各シャードの AUTO_INCREMENT を全シャードの最大ID+1に揃える
+	void alignSequences() throws SQLException {
+		for (Map.Entry<String, String> e : SEQUENCES.entrySet()) {
+			long max = 0;
+			for (int shard = 0; shard < urls.size(); shard++) {
+				try (Connection c = connect(shard)) {
+					for (String table : List.of(e.getKey(), e.getValue())) {
+						List<Map<String, Object>> rows = select(c, "SELECT COALESCE(MAX(id), 0) AS max_id FROM " + table, List.of());
+						max = Math.max(max, ((Number) rows.get(0).get("max_id")).longValue());
+					}
+				}
+			}
+			System.out.printf("%s: AUTO_INCREMENT = %d on all shards%n", e.getKey(), max + 1);
+			if (dryRun) {
+				continue;
+			}
+			for (int shard = 0; shard < urls.size(); shard++) {
+				try (Connection c = connect(shard); Statement st = c.createStatement()) {
+					st.execute("ALTER TABLE " + e.getKey() + " AUTO_INCREMENT = " + (max + 1));
+				}
+			}
+		}
+	}
+
+	private Connection connect(int shard) throws SQLException {
+		Connection c = DriverManager.getConnection(urls.get(shard), user, password);
+		c.setAutoCommit(false);
+		return c;
+	}
+
+	private static List<Map<String, Object>> select(Connection c, String sql, List<?> params) throws SQLException {
+		try (PreparedStatement ps = c.prepareStatement(sql)) {
+			bind(ps, params);
+			try (ResultSet rs = ps.executeQuery()) {
+				ResultSetMetaData meta = rs.getMetaData();
+				List<Map<String, Object>> rows = new ArrayList<>();
+				while (rs.next()) {
+					Map<String, Object> row = new LinkedHashMap<>(); // 列順を保って、そのままINSERTの列リストにする
+					for (int i = 1; i <= meta.getColumnCount(); i++) {
+						row.put(meta.getColumnLabel(i), rs.getObject(i));
+					}
+					rows.add(row);
+				}
+				return rows;
+			}
+		}
+	}
+
+	private static void insert(Connection c, String verb, String table, List<Map<String, Object>> rows) throws SQLException {
+		if (rows.isEmpty()) {
+			return;
+		}
+		List<String> columns = new ArrayList<>(rows.get(0).keySet());
+		String sql = verb + " INTO " + table + " (" + String.join(",", columns) + ") VALUES ("
+				+ String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+		try (PreparedStatement ps = c.prepareStatement(sql)) {
+			for (Map<String, Object> row : rows) {
+				bind(ps, columns.stream().map(row::get).toList());
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		}
+	}
+
+	private static void update(Connection c, String sql, List<?> params) throws SQLException {
+		try (PreparedStatement ps = c.prepareStatement(sql)) {
+			bind(ps, params);
+			ps.executeUpdate();
+		}
+	}
+
+	private static void bind(PreparedStatement ps, List<?> params) throws SQLException {
+		for (int i = 0; i < params.size(); i++) {
+			ps.setObject(i + 1, params.get(i));
+		}
+	}
+
+	// --key=value / --flag 形式の引数を読む
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--")) {
+				continue;
+			}
+			int eq = arg.indexOf('=');
+			if (eq < 0) {
+				options.put(arg.substring(2), "true");
+			} else {
+				options.put(arg.substring(2, eq), arg.substring(eq + 1));
+			}
+		}
+		return options;
+	}
+}
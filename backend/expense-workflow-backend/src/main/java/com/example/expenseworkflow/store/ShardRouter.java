@@ -0,0 +1,119 @@
+/**
+ * 申請データを申請者IDでN台のDB（シャード）に分けたときの、振り分け先の決定と全シャードへの一斉実行を担うクラス。
+ * <ul>
+ *   <li>申請者のシャード：{@code applicant_id mod N}。申請とその操作履歴・アーカイブ・予算台帳は申請者と同じシャードに置く</li>
+ *   <li>{@link #onShard}：指定したシャードを {@link ShardContext} に設定して処理を実行する</li>
+ *   <li>{@link #onEachShard}：全シャードで同じ処理を並行に実行し、シャード番号順に結果を返す（scatter-gather）。
+ *       各シャードは別スレッドで実行するため、呼び出し元のトランザクションの接続には相乗りしない。
+ *       呼び出し元のリクエストの {@link QueryStats} は各スレッドに引き継ぐ</li>
+ * </ul>
+ * {@code app.sharding.enabled=false}（既定）のときはシャード数1として振る舞い、{@link ShardContext} も設定しない。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import com.example.expenseworkflow.querystats.QueryStats;
+
+@Component
+public class ShardRouter {
+
+	private final int shardCount; // シャード数（無効なら1）
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor(); // scatter-gather 用（シャードごとに1スレッド）
+
+	public ShardRouter(
+			@Value("${app.sharding.enabled:false}") boolean enabled,
+			@Value("${app.sharding.urls:}") String urls) {
+		int configured = parseUrls(urls).size();
+		if (enabled && configured == 0) {
+			throw new IllegalStateException("app.sharding.urls must list at least one JDBC URL when app.sharding.enabled=true");
+		}
+		this.shardCount = enabled ? configured : 1;
+	}
+
+	public int shardCount() {
+		return shardCount;
+	}
+
+	public boolean isSharded() {
+		return shardCount > 1;
+	}
+
+	// 申請者の申請を置くシャード番号を返す
+	public int shardOfApplicant(Long applicantUserId) {
+		return isSharded() ? (int) Math.floorMod(applicantUserId, (long) shardCount) : 0;
+	}
+
+	// shard を現在のシャードにして action を実行する
+	public <T> T onShard(int shard, Supplier<T> action) {
+		return isSharded() ? ShardContext.call(shard, action) : action.get();
+	}
+
+	// 申請者のシャードで action を実行する
+	public <T> T onApplicantShard(Long applicantUserId, Supplier<T> action) {
+		return onShard(shardOfApplicant(applicantUserId), action);
+	}
+
+	// 全シャードで action を並行に実行し、シャード番号順の結果を返す。どれかが失敗したらその例外を投げる
+	public <T> List<T> onEachShard(Supplier<T> action) {
+		if (!isSharded()) {
+			return Collections.singletonList(action.get());
+		}
+		QueryStats stats = QueryStats.current(); // 呼び出し元のリクエストのSQL文の数に、各シャードの分も加える
+		List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+		for (int i = 0; i < shardCount; i++) {
+			int shard = i;
+			futures.add(CompletableFuture.supplyAsync(() -> QueryStats.call(stats, () -> ShardContext.call(shard, action)), executor));
+		}
+		List<T> results = new ArrayList<>(shardCount);
+		for (CompletableFuture<T> future : futures) {
+			try {
+				results.add(future.join());
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException re) {
+					throw re;
+				}
+				throw e;
+			}
+		}
+		return results;
+	}
+
+	// 全シャードで action を並行に実行する（結果を返さない処理用）
+	public void forEachShard(Runnable action) {
+		onEachShard(() -> {
+			action.run();
+			return null;
+		});
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdown();
+	}
+
+	// カンマ区切りのJDBC URLを分解する（並び順がシャード番号）
+	public static List<String> parseUrls(String value) {
+		if (value == null || value.isBlank()) {
+			return List.of();
+		}
+		return Arrays.stream(value.split(","))
+				.map(String::trim)
+				.filter(v -> !v.isEmpty())
+				.toList();
+	}
+}
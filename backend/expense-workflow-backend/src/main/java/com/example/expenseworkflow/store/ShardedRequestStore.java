@@ -0,0 +1,220 @@
+/**
+ * 申請データを申請者IDで複数のDB（シャード）に分けたときの {@link RequestStore} 実装。
+ * SQLとトランザクションは {@link MyBatisRequestStore} に任せ、呼び出しの前に {@link ShardContext} で接続先のシャードを決める。
+ * <ul>
+ *   <li>申請者の操作（作成・一覧・提出・編集・取り下げ・履歴）：申請者のシャードだけで実行する</li>
+ *   <li>申請IDだけで決まる承認者の操作（詳細・承認・差戻し・却下・履歴）：キャッシュ済みなら申請者から、
+ *       無ければ全シャードへ主キー検索を投げて、申請のあるシャードを特定してから実行する</li>
+ *   <li>承認者のInbox・全件一覧：全シャードへ並行に問い合わせ（scatter-gather）、IDの順に並べ直して返す</li>
+ *   <li>変更フィード：各シャードへそのシャードのカーソル位置から問い合わせ、操作日時の順にまとめる。
+ *       操作履歴IDはシャードごとに採番が進むので、カーソルは {@link ChangeCursor} でシャードごとの位置を持ち、
+ *       ページに入れた遷移の分だけ各シャードの位置を進める（採番の遅れているシャードの遷移も取りこぼさない）</li>
+ * </ul>
+ * {@code app.sharding.enabled=true} のときだけ登録され、{@link MyBatisRequestStore} より優先して注入される。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.example.expenseworkflow.controller.dto.ChangeEventResponse;
+import com.example.expenseworkflow.controller.dto.InboxItemResponse;
+import com.example.expenseworkflow.controller.dto.RequestDetailResponse;
+import com.example.expenseworkflow.controller.dto.RequestHistoryItemResponse;
+import com.example.expenseworkflow.controller.dto.RequestSummaryResponse;
+import com.example.expenseworkflow.domain.ExpenseRequest;
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+
+import lombok.RequiredArgsConstructor;
+
+@Component
+@Primary
+@Profile("!inmemory")
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ShardedRequestStore implements RequestStore {
+
+	// 変更フィードをまとめる順（操作日時、同時刻なら操作履歴ID）
+	private static final Comparator<ChangeEventResponse> ACTED_ORDER = Comparator
+			.comparing(ChangeEventResponse::getActedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparing(ChangeEventResponse::getActionId);
+
+	private final MyBatisRequestStore delegate; // シャードを決めた後の実処理
+
+	private final ShardRouter shardRouter;
+
+	private final ExpenseRequestMapper expenseRequestMapper; // 申請IDからシャードを探す主キー検索に使う
+
+	private final ExpenseRequestCache requestCache; // キャッシュ済みの申請なら申請者からシャードが分かる
+
+	@Override
+	public List<RequestSummaryResponse> list() {
+		return gather(delegate::list).stream()
+				.sorted(Comparator.comparing(RequestSummaryResponse::getId).reversed()) // 単一DBのときと同じく新しい順
+				.toList();
+	}
+
+	@Override
+	public List<RequestSummaryResponse> listByApplicant(Long applicantUserId) {
+		return shardRouter.onApplicantShard(applicantUserId, () -> delegate.listByApplicant(applicantUserId));
+	}
+
+	@Override
+	public List<RequestSummaryResponse> listByApplicant(Long applicantUserId, Set<String> fields) {
+		return shardRouter.onApplicantShard(applicantUserId, () -> delegate.listByApplicant(applicantUserId, fields));
+	}
+
+	@Override
+	public RequestSummaryResponse create(Long applicantUserId, String title, int amount, String note) {
+		return shardRouter.onApplicantShard(applicantUserId, () -> delegate.create(applicantUserId, title, amount, note));
+	}
+
+	@Override
+	public RequestSummaryResponse findById(Long id) {
+		return onRequestShard(id, () -> delegate.findById(id), Objects::nonNull);
+	}
+
+	@Override
+	public RequestSummaryResponse findByIdForApplicant(Long applicantUserId, Long id) {
+		return shardRouter.onApplicantShard(applicantUserId, () -> delegate.findByIdForApplicant(applicantUserId, id));
+	}
+
+	@Override
+	public List<InboxItemResponse> inbox(Long approverUserId) {
+		return gather(() -> delegate.inbox(approverUserId)).stream()
+				.sorted(Comparator.comparing(InboxItemResponse::getId)) // 各シャードのID順の結果をID順にまとめる
+				.toList();
+	}
+
+	@Override
+	public RequestDetailResponse findByIdForApprover(Long approverUserId, Long id) {
+		return onRequestShard(id, () -> delegate.findByIdForApprover(approverUserId, id), Objects::nonNull);
+	}
+
+	@Override
+	public boolean submit(Long userId, Long id, Long expectedVersion) {
+		return shardRouter.onApplicantShard(userId, () -> delegate.submit(userId, id, expectedVersion));
+	}
+
+	@Override
+	public boolean approve(Long userId, Long id, Long expectedVersion) {
+		Integer shard = shardOfRequest(id);
+		return shard != null && shardRouter.onShard(shard, () -> delegate.approve(userId, id, expectedVersion));
+	}
+
+	@Override
+	public boolean returnRequest(Long userId, Long id, String comment, Long expectedVersion) {
+		Integer shard = shardOfRequest(id);
+		return shard != null && shardRouter.onShard(shard, () -> delegate.returnRequest(userId, id, comment, expectedVersion));
+	}
+
+	@Override
+	public boolean withdraw(Long applicantUserId, Long id, Long expectedVersion) {
+		return shardRouter.onApplicantShard(applicantUserId, () -> delegate.withdraw(applicantUserId, id, expectedVersion));
+	}
+
+	@Override
+	public boolean reject(Long approverUserId, Long id, String comment, Long expectedVersion) {
+		Integer shard = shardOfRequest(id);
+		return shard != null && shardRouter.onShard(shard, () -> delegate.reject(approverUserId, id, comment, expectedVersion));
+	}
+
+	@Override
+	public boolean updateReturned(Long applicantUserId, Long id, String title, int amount, String note, Long expectedVersion) {
+		return shardRouter.onApplicantShard(applicantUserId,
+				() -> delegate.updateReturned(applicantUserId, id, title, amount, note, expectedVersion));
+	}
+
+	@Override
+	public List<RequestHistoryItemResponse> getHistory(Long applicantUserId, Long requestId) {
+		return shardRouter.onApplicantShard(applicantUserId, () -> delegate.getHistory(applicantUserId, requestId));
+	}
+
+	@Override
+	public List<RequestHistoryItemResponse> getHistoryForApprover(Long approverUserId, Long requestId) {
+		List<RequestHistoryItemResponse> found = onRequestShard(requestId,
+				() -> delegate.getHistoryForApprover(approverUserId, requestId), items -> items != null && !items.isEmpty());
+		return found != null ? found : List.of();
+	}
+
+	@Override
+	public ChangePage changesSince(ChangeCursor since, long settleSeconds, int limit) {
+		List<ChangePage> pages = shardRouter.onEachShard(() -> {
+			Integer shard = ShardContext.current(); // シャード数1なら未設定
+			return delegate.changesSince(ChangeCursor.of(since.position(shard != null ? shard : 0)), settleSeconds, limit);
+		});
+
+		// 各シャードのID順の結果の先頭から、操作日時（同時刻ならID）の早いものを1件ずつ取る。
+		// シャードごとに先頭から連続して取るので、そのシャードの位置を取った最後のIDまで進めても飛ばす行は無い
+		int[] taken = new int[pages.size()];
+		List<ChangeEventResponse> items = new ArrayList<>();
+		ChangeCursor next = since;
+		while (items.size() < limit) {
+			int earliest = -1;
+			for (int shard = 0; shard < pages.size(); shard++) {
+				List<ChangeEventResponse> shardItems = pages.get(shard).items();
+				if (taken[shard] < shardItems.size()
+						&& (earliest < 0 || ACTED_ORDER.compare(shardItems.get(taken[shard]), pages.get(earliest).items().get(taken[earliest])) < 0)) {
+					earliest = shard;
+				}
+			}
+			if (earliest < 0) {
+				break; // 全シャードの結果を使い切った
+			}
+			ChangeEventResponse item = pages.get(earliest).items().get(taken[earliest]++);
+			items.add(item);
+			next = next.advance(earliest, item.getActionId());
+		}
+		return new ChangePage(items, next);
+	}
+
+	// 申請が置かれているシャード番号を返す。どのシャードのホットテーブルにも無ければ null
+	Integer shardOfRequest(Long id) {
+		if (id == null) {
+			return null;
+		}
+		ExpenseRequest cached = requestCache.get(id);
+		if (cached != null) {
+			return shardRouter.shardOfApplicant(cached.getApplicantId());
+		}
+		List<ExpenseRequest> found = shardRouter.onEachShard(() -> expenseRequestMapper.selectExpenseRequestById(id));
+		for (int shard = 0; shard < found.size(); shard++) {
+			if (found.get(shard) != null) {
+				return shard;
+			}
+		}
+		return null;
+	}
+
+	// 申請のあるシャードで action を実行する。ホットテーブルに無ければ（アーカイブ済みなど）全シャードで実行し、最初に見つかった結果を返す
+	private <T> T onRequestShard(Long id, Supplier<T> action, Predicate<T> found) {
+		Integer shard = shardOfRequest(id);
+		if (shard != null) {
+			return shardRouter.onShard(shard, action);
+		}
+		if (id == null) {
+			return action.get();
+		}
+		return shardRouter.onEachShard(action).stream().filter(found).findFirst().orElse(null);
+	}
+
+	// 全シャードの結果を1つのリストにまとめる
+	private <T> List<T> gather(Supplier<? extends Collection<T>> action) {
+		return shardRouter.onEachShard(action).stream()
+				.filter(Objects::nonNull)
+				.<T> flatMap(Collection::stream)
+				.toList();
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * 同じ内容の読み取りが同時に来たとき、DBへのクエリを1本にまとめる（single-flight）ためのクラス。
+ * DB起動直後や複数タブの同時リロードで、同一ユーザーの /api/me・/api/inbox・/api/requests が
+ * 一斉に届いても、最初の1件だけが実際にクエリを投げ、残りはその結果を共有する。
+ * 結果は実行中の呼び出し同士でだけ共有し、完了後は保持しない（キャッシュではない）。
+ * シャーディング時は {@link ShardContext} のシャード番号もキーに含め、同じ問い合わせでもシャードごとに実行する。
+ * まとめた件数は Micrometer の {@code expense.singleflight.calls}（op・result タグ付き）で確認できる。
+ */
+
+package com.example.expenseworkflow.store;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Component
+public class SingleFlight {
+
+	private final MeterRegistry meterRegistry;
+	private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>(); // 実行中のキー→結果
+	private final Map<String, Counter> counters = new ConcurrentHashMap<>(); // op×result ごとのカウンタ
+
+	public SingleFlight(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * 同じ op・key の呼び出しが実行中ならその結果を待って返し、なければ自分で loader を実行する。
+	 *
+	 * @param op     操作名（例: "inbox"）。メトリクスのタグにも使う
+	 * @param key    対象を特定する値（ユーザーID・申請IDなど）
+	 * @param loader 実際にDBへ問い合わせる処理
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String op, Object key, Supplier<T> loader) {
+		Integer shard = ShardContext.current();
+		String flightKey = shard != null ? op + ":" + key + "@" + shard : op + ":" + key; // 別シャードへの同じ問い合わせはまとめない
+		CompletableFuture<Object> mine = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, mine);
+		if (existing != null) {
+			counter(op, "collapsed").increment(); // 先行するクエリに相乗りした
+			try {
+				return (T) existing.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException re) {
+					throw re;
+				}
+				throw e;
+			}
+		}
+
+		counter(op, "executed").increment();
+		try {
+			T value = loader.get();
+			mine.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			mine.completeExceptionally(e); // 相乗りした呼び出しにも同じ例外を返す
+			throw e;
+		} finally {
+			inFlight.remove(flightKey, mine); // 完了後に来た呼び出しは新しくクエリを投げる
+		}
+	}
+
+	private Counter counter(String op, String result) {
+		return counters.computeIfAbsent(op + "/" + result, k -> Counter.builder("expense.singleflight.calls")
+				.description("Reads that ran a DB query (executed) or joined an identical in-flight query (collapsed)")
+				.tag("op", op)
+				.tag("result", result)
+				.register(meterRegistry));
+	}
+}
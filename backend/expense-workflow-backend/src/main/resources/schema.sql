@@ -37,18 +37,120 @@ CREATE TABLE IF NOT EXISTS `expense_requests` (
   `created_at`           DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
   `updated_at`           DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   `note`                 TEXT         NULL DEFAULT NULL      COMMENT '備考',
-  PRIMARY KEY (`id`)
+  `version`              BIGINT       NOT NULL DEFAULT 0     COMMENT '楽観ロック用の版番号（更新のたびに+1）',
+  `escalated_at`         DATETIME     NULL DEFAULT NULL      COMMENT '最終エスカレーション日時（承認期限超過で上長へ回付・警告した日時）',
+  `duplicate_of_request_id` BIGINT   NULL DEFAULT NULL      COMMENT '重複の疑いがある先行申請ID（提出時に申請者・金額・経費発生日・件名が一致した申請）',
+  PRIMARY KEY (`id`),
+  KEY `idx_er_status_submitted` (`status`, `submitted_at`),
+  KEY `idx_er_status_updated` (`status`, `updated_at`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='経費申請';
 
 
 CREATE TABLE IF NOT EXISTS `expense_request_actions` (
   `id`          BIGINT      NOT NULL AUTO_INCREMENT COMMENT 'アクションID',
   `request_id`  BIGINT      NOT NULL               COMMENT '対象申請ID',
-  `actor_id`    BIGINT      NOT NULL               COMMENT '操作したユーザーID',
+  `actor_id`    BIGINT      NULL DEFAULT NULL      COMMENT '操作したユーザーID（エスカレーションなどシステムの操作はNULL）',
   `action`      VARCHAR(30) NOT NULL               COMMENT '操作種別（SUBMIT / APPROVE / REJECT など）',
   `from_status` VARCHAR(20) NULL DEFAULT NULL      COMMENT '操作前ステータス',
   `to_status`   VARCHAR(20) NULL DEFAULT NULL      COMMENT '操作後ステータス',
   `comment`     TEXT        NULL DEFAULT NULL      COMMENT 'コメント',
   `created_at`  DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP,
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `idx_erac_request` (`request_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='経費申請アクション履歴';
+
+
+-- 完了済み（APPROVED / REJECTED / WITHDRAWN）の古い申請の退避先。
+-- RequestArchiveJob が expense_requests から行ごと移し、ホットなテーブルとインデックスを小さく保つ。
+CREATE TABLE IF NOT EXISTS `expense_requests_archive` (
+  `id`                   BIGINT       NOT NULL               COMMENT '申請ID（元テーブルのIDをそのまま保持）',
+  `applicant_id`         BIGINT       NOT NULL               COMMENT '申請者ユーザーID',
+  `current_approver_id`  BIGINT       NULL DEFAULT NULL      COMMENT '現在の承認者ユーザーID',
+  `title`                VARCHAR(200) NOT NULL               COMMENT '申請タイトル',
+  `expense_date`         DATE         NULL DEFAULT NULL      COMMENT '経費発生日',
+  `apply_date`           DATE         NULL DEFAULT NULL      COMMENT '申請日',
+  `amount`               INT          NOT NULL               COMMENT '金額',
+  `purpose`              TEXT         NULL DEFAULT NULL      COMMENT '目的・用途',
+  `payment_method`       VARCHAR(30)  NULL DEFAULT NULL      COMMENT '支払方法',
+  `status`               VARCHAR(20)  NOT NULL               COMMENT '申請ステータス',
+  `submitted_at`         DATETIME     NULL DEFAULT NULL      COMMENT '提出日時',
+  `approved_at`          DATETIME     NULL DEFAULT NULL      COMMENT '承認日時',
+  `last_returned_at`     DATETIME     NULL DEFAULT NULL      COMMENT '最終差戻日時',
+  `last_return_comment`  TEXT         NULL DEFAULT NULL      COMMENT '最終差戻コメント',
+  `created_at`           DATETIME     NOT NULL,
+  `updated_at`           DATETIME     NOT NULL,
+  `note`                 TEXT         NULL DEFAULT NULL      COMMENT '備考',
+  `version`              BIGINT       NOT NULL DEFAULT 0     COMMENT '楽観ロック用の版番号',
+  `escalated_at`         DATETIME     NULL DEFAULT NULL      COMMENT '最終エスカレーション日時',
+  `duplicate_of_request_id` BIGINT   NULL DEFAULT NULL      COMMENT '重複の疑いがある先行申請ID',
+  `archived_at`          DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT 'アーカイブ日時',
+  PRIMARY KEY (`id`),
+  KEY `idx_era_applicant` (`applicant_id`),
+  KEY `idx_era_approver` (`current_approver_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='経費申請（アーカイブ）';
+
+
+CREATE TABLE IF NOT EXISTS `expense_request_actions_archive` (
+  `id`          BIGINT      NOT NULL               COMMENT 'アクションID（元テーブルのIDをそのまま保持）',
+  `request_id`  BIGINT      NOT NULL               COMMENT '対象申請ID',
+  `actor_id`    BIGINT      NULL DEFAULT NULL      COMMENT '操作したユーザーID（エスカレーションなどシステムの操作はNULL）',
+  `action`      VARCHAR(30) NOT NULL               COMMENT '操作種別',
+  `from_status` VARCHAR(20) NULL DEFAULT NULL      COMMENT '操作前ステータス',
+  `to_status`   VARCHAR(20) NULL DEFAULT NULL      COMMENT '操作後ステータス',
+  `comment`     TEXT        NULL DEFAULT NULL      COMMENT 'コメント',
+  `created_at`  DATETIME    NOT NULL,
+  PRIMARY KEY (`id`),
+  KEY `idx_eraa_request` (`request_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='経費申請アクション履歴（アーカイブ）';
+
+
+-- 領収書などの添付ファイルのメタデータ。ファイル本体は ContentAddressedFileStore に SHA-256 をキーとして保存する
+-- （同じ内容のファイルは1つだけ保存され、複数の行から参照される）。
+CREATE TABLE IF NOT EXISTS `expense_request_attachments` (
+  `id`            BIGINT       NOT NULL AUTO_INCREMENT COMMENT '添付ファイルID',
+  `request_id`    BIGINT       NOT NULL               COMMENT '対象申請ID（expense_requests.id。アーカイブ後も同じIDで参照する）',
+  `uploader_id`   BIGINT       NOT NULL               COMMENT 'アップロードしたユーザーID',
+  `file_name`     VARCHAR(255) NOT NULL               COMMENT '元のファイル名',
+  `content_type`  VARCHAR(100) NOT NULL               COMMENT 'MIMEタイプ',
+  `size_bytes`    BIGINT       NOT NULL               COMMENT 'ファイルサイズ（バイト）',
+  `sha256`        CHAR(64)     NOT NULL               COMMENT '内容のSHA-256（16進）。ファイルストア上の保存キーを兼ねる',
+  `created_at`    DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `idx_eratt_request` (`request_id`),
+  KEY `idx_eratt_sha256` (`sha256`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='経費申請の添付ファイル（領収書など）';
+
+
+-- 承認者の月次予算（ApproverBudget）の消化台帳。最終承認のたびに同じトランザクションで1行INSERTする。
+-- 集計行を更新しないので、同じ承認者の承認どうしでも行ロック待ちにならない（起動後の初回利用時に月ごとに合計して読み直す）。
+CREATE TABLE IF NOT EXISTS `approver_budget_ledger` (
+  `id`           BIGINT   NOT NULL AUTO_INCREMENT COMMENT '台帳ID',
+  `approver_id`  BIGINT   NOT NULL               COMMENT '最終承認したユーザーID',
+  `usage_month`  DATE     NOT NULL               COMMENT '消化した月（月初日）',
+  `request_id`   BIGINT   NOT NULL               COMMENT '承認した申請ID',
+  `amount`       BIGINT   NOT NULL               COMMENT '消化した金額',
+  `created_at`   DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `idx_abl_month_approver` (`usage_month`, `approver_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='承認者の月次予算の消化台帳';
+
+
+-- 承認者への通知（NotificationOutbox）の送信待ち。状態遷移と同じトランザクションで1行INSERTし、
+-- NotificationDispatcher がバックグラウンドで取り出して通知先ごとに1通のダイジェストにまとめて送る（SMTPの待ち時間を遷移に含めない）。
+CREATE TABLE IF NOT EXISTS `notification_outbox` (
+  `id`               BIGINT       NOT NULL AUTO_INCREMENT COMMENT '通知ID',
+  `recipient_id`     BIGINT       NOT NULL               COMMENT '通知先ユーザーID',
+  `request_id`       BIGINT       NOT NULL               COMMENT '対象申請ID',
+  `actor_id`         BIGINT       NULL DEFAULT NULL      COMMENT '操作したユーザーID（エスカレーションなどシステムの操作はNULL）',
+  `event_type`       VARCHAR(30)  NOT NULL               COMMENT '通知の種類（SUBMITTED / FORWARDED / ESCALATED）',
+  `status`           VARCHAR(10)  NOT NULL DEFAULT 'PENDING' COMMENT '送信状態（PENDING / SENT / FAILED）',
+  `attempts`         INT          NOT NULL DEFAULT 0     COMMENT '送信を試みた回数',
+  `next_attempt_at`  DATETIME     NOT NULL               COMMENT 'この日時以降に送信する（まとめ待ち・再送待ち・送信中の予約）',
+  `last_error`       VARCHAR(500) NULL DEFAULT NULL      COMMENT '直近の送信エラー',
+  `sent_at`          DATETIME     NULL DEFAULT NULL      COMMENT '送信日時',
+  `created_at`       DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `idx_no_status_next` (`status`, `next_attempt_at`),
+  KEY `idx_no_recipient_status` (`recipient_id`, `status`),
+  KEY `idx_no_status_sent` (`status`, `sent_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='承認者への通知の送信待ち（トランザクショナルアウトボックス）';
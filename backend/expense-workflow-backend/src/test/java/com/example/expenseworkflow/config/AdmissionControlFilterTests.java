@@ -0,0 +1,59 @@
+package com.example.expenseworkflow.config;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class AdmissionControlFilterTests {
+
+	@SuppressWarnings("unchecked")
+	private final AdmissionControlFilter filter = new AdmissionControlFilter(1, 1, 4, mock(ObjectProvider.class),
+			new CorsConfig().apiCorsConfigurationSource());
+
+	private static MockHttpServletRequest request(String origin) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/inbox");
+		request.setRemoteAddr("10.0.0.1");
+		request.addHeader(HttpHeaders.ORIGIN, origin);
+		return request;
+	}
+
+	@Test
+	void rateLimited_respondsWithCorsHeadersAndRetryAfter() throws Exception {
+
+		//目的: 429 の応答にもCORSヘッダが付き、フロントのJSから Retry-After を読めること
+
+		filter.doFilter(request("http://localhost:5173"), new MockHttpServletResponse(), new MockFilterChain()); // 容量1を使い切る
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		filter.doFilter(request("http://localhost:5173"), response, chain);
+
+		assertThat(response.getStatus()).isEqualTo(429);
+		assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+		assertThat(response.getHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN)).isEqualTo("http://localhost:5173");
+		assertThat(response.getHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS)).contains(HttpHeaders.RETRY_AFTER);
+		assertThat(chain.getRequest()).isNull(); // Controllerへは流さない
+	}
+
+	@Test
+	void rateLimited_fromUnknownOrigin_isForbidden() throws Exception {
+
+		//目的: 許可していないオリジンには、拒否の応答でもCORSヘッダを付けないこと（403）
+
+		filter.doFilter(request("https://evil.example"), new MockHttpServletResponse(), new MockFilterChain());
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request("https://evil.example"), response, new MockFilterChain());
+
+		assertThat(response.getStatus()).isEqualTo(403);
+		assertThat(response.getHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN)).isNull();
+	}
+}
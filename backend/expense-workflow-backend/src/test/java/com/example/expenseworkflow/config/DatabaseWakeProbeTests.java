@@ -0,0 +1,77 @@
+package com.example.expenseworkflow.config;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.net.ConnectException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CountDownLatch;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+class DatabaseWakeProbeTests {
+
+	private final HikariPoolMXBean pool = mock(HikariPoolMXBean.class);
+	private final HikariDataSource dataSource = mock(HikariDataSource.class);
+
+	@SuppressWarnings("unchecked")
+	private DatabaseWakeProbe probe() throws Exception {
+		when(dataSource.isWrapperFor(HikariDataSource.class)).thenReturn(true);
+		when(dataSource.unwrap(HikariDataSource.class)).thenReturn(dataSource);
+		when(dataSource.getHikariPoolMXBean()).thenReturn(pool);
+		ObjectProvider<DataSource> provider = mock(ObjectProvider.class);
+		when(provider.getIfAvailable()).thenReturn(dataSource);
+		return new DatabaseWakeProbe(provider, 100, 60);
+	}
+
+	@Test
+	void isReachable_saturatedPool_isNotAsleep() throws Exception {
+
+		//目的: 空きの接続が無くても、確立済みの接続がある（プールが混雑しているだけの）ときはスリープ中と判断しないこと
+
+		when(pool.getIdleConnections()).thenReturn(0);
+		when(pool.getTotalConnections()).thenReturn(10);
+
+		assertThat(probe().isReachable()).isTrue();
+		verify(dataSource, never()).getConnection();
+	}
+
+	@Test
+	void isReachable_noConnectionAndPendingCreate_isAsleep() throws Exception {
+
+		//目的: プールに接続が1本も無く、接続の作成が probe-millis 内に終わらないときはスリープ中と判断すること
+
+		CountDownLatch release = new CountDownLatch(1);
+		when(pool.getTotalConnections()).thenReturn(0);
+		when(dataSource.getConnection()).thenAnswer(inv -> {
+			release.await(); // スリープ中のDBが起きるのを待っている
+			throw new SQLTransientConnectionException("timeout", "08S01");
+		});
+		DatabaseWakeProbe probe = probe();
+
+		try {
+			assertThat(probe.isReachable()).isFalse();
+			assertThat(probe.isReachable()).isFalse(); // 以降は待たずに false
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	void isConnectionFailure_onlyForConnectionEstablishment() {
+
+		//目的: 接続の確立の失敗（ConnectException・SQLState 08xx）だけを接続エラーとし、プールの待ち時間切れは含めないこと
+
+		assertThat(DatabaseWakeProbe.isConnectionFailure(new CannotGetJdbcConnectionException("x", new SQLTransientConnectionException("comm", "08S01")))).isTrue();
+		assertThat(DatabaseWakeProbe.isConnectionFailure(new IllegalStateException(new ConnectException("refused")))).isTrue();
+		assertThat(DatabaseWakeProbe.isConnectionFailure(new CannotGetJdbcConnectionException("x",
+				new SQLTransientConnectionException("HikariPool-1 - Connection is not available, request timed out after 30000ms.")))).isFalse();
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.expenseworkflow.config;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class FrontendResourceConfigTests {
+
+	@TempDir
+	static Path dist;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@DynamicPropertySource
+	static void frontend(DynamicPropertyRegistry registry) throws Exception {
+		Files.createDirectories(dist.resolve("assets"));
+		Files.writeString(dist.resolve("index.html"), "<html>app</html>");
+		Files.writeString(dist.resolve("assets/index-abc123.js"), "console.log(1)");
+		Files.write(dist.resolve("assets/index-abc123.js.br"), new byte[] { 1, 2, 3 }); // 中身は問わない（選ばれることだけ確認する）
+		registry.add("app.frontend.enabled", () -> "true");
+		registry.add("app.frontend.location", () -> dist.toUri().toString());
+	}
+
+	@Test
+	void hashedAsset_isServedPrecompressedAndImmutable() throws Exception {
+
+		//目的: ハッシュ付きのファイルは Accept-Encoding に応じて .br を返し、immutable と強いETagが付くこと
+
+		MvcResult result = mockMvc.perform(get("/assets/index-abc123.js").header("Accept-Encoding", "gzip, br"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Content-Encoding", "br"))
+				.andExpect(header().string("Vary", "Accept-Encoding"))
+				.andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"))
+				.andReturn();
+		String etag = result.getResponse().getHeader("ETag");
+		assertThat(etag).startsWith("\"").doesNotStartWith("W/");
+
+		mockMvc.perform(get("/assets/index-abc123.js").header("Accept-Encoding", "gzip, br").header("If-None-Match", etag))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get("/assets/index-abc123.js")) // 圧縮を受け付けなければ元のファイル
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist("Content-Encoding"))
+				.andExpect(content().string("console.log(1)"));
+	}
+
+	@Test
+	void pagePath_fallsBackToIndexHtmlButMissingFilesAndApiDoNot() throws Exception {
+
+		//目的: 画面のパスは no-cache の index.html を返し、拡張子付きの欠落ファイルと /api は404のままであること
+
+		mockMvc.perform(get("/requests/12"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Cache-Control", "no-cache"))
+				.andExpect(content().string("<html>app</html>"));
+		mockMvc.perform(get("/assets/missing-000.js")).andExpect(status().isNotFound());
+		mockMvc.perform(get("/api/no-such-endpoint")).andExpect(status().isNotFound());
+		mockMvc.perform(get("/robots.txt")).andExpect(status().isOk()); // 既存の静的ファイルも返る
+	}
+}
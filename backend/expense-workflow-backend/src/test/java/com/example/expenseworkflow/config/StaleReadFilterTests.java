@@ -0,0 +1,131 @@
+package com.example.expenseworkflow.config;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLTransientConnectionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+class StaleReadFilterTests {
+
+	private static final String PATHS = "/api/me,/api/requests,/api/requests/*/history";
+
+	@TempDir
+	Path dir;
+
+	private StaleReadFilter filter(ReadSnapshotStore store, DatabaseWakeProbe probe) {
+		return new StaleReadFilter(store, probe, new CorsConfig().apiCorsConfigurationSource(), PATHS);
+	}
+
+	private static MockHttpServletRequest get(String uri, long userId) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+		request.getSession().setAttribute("SESSION_KEY_USER_ID", userId);
+		return request;
+	}
+
+	// 200でJSONを返すだけのコントローラの代わり
+	private static MockFilterChain okChain(String body) {
+		return new MockFilterChain(new HttpServlet() {
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+				resp.setContentType("application/json");
+				resp.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		});
+	}
+
+	@Test
+	void asleep_servesLastSnapshotWithoutCallingController() throws Exception {
+
+		//目的: 接続できる間は応答を保存し、DBがスリープ中と判断されたら保存した応答を X-Served-From / Age 付きで返すこと
+
+		ReadSnapshotStore store = new ReadSnapshotStore(dir.toString(), 32, 262144);
+		DatabaseWakeProbe probe = mock(DatabaseWakeProbe.class);
+		StaleReadFilter filter = filter(store, probe);
+
+		when(probe.isReachable()).thenReturn(true);
+		MockHttpServletResponse live = new MockHttpServletResponse();
+		filter.doFilter(get("/api/requests", 1L), live, okChain("[{\"id\":1}]"));
+		assertThat(live.getContentAsString()).isEqualTo("[{\"id\":1}]");
+		assertThat(live.getHeader(StaleReadFilter.SERVED_FROM_HEADER)).isNull();
+
+		when(probe.isReachable()).thenReturn(false);
+		MockFilterChain chain = okChain("[]");
+		MockHttpServletResponse stale = new MockHttpServletResponse();
+		filter.doFilter(get("/api/requests", 1L), stale, chain);
+		assertThat(chain.getRequest()).isNull(); // コントローラまで進まない
+		assertThat(stale.getStatus()).isEqualTo(200);
+		assertThat(stale.getContentAsString()).isEqualTo("[{\"id\":1}]");
+		assertThat(stale.getContentType()).startsWith("application/json");
+		assertThat(stale.getHeader(StaleReadFilter.SERVED_FROM_HEADER)).isEqualTo("snapshot");
+		assertThat(stale.getHeader("Age")).isNotNull();
+
+		MockFilterChain otherUser = okChain("[]"); // 別のユーザーには返さない
+		filter.doFilter(get("/api/requests", 2L), new MockHttpServletResponse(), otherUser);
+		assertThat(otherUser.getRequest()).isNotNull();
+		MockFilterChain otherPath = okChain("[]"); // 対象外のパスは通す
+		filter.doFilter(get("/api/analytics", 1L), new MockHttpServletResponse(), otherPath);
+		assertThat(otherPath.getRequest()).isNotNull();
+	}
+
+	@Test
+	void connectionFailure_fallsBackToSnapshotAndMarksAsleep() throws Exception {
+
+		//目的: 処理中に接続の取得に失敗したら、500の代わりに保存済みの応答を（CORSヘッダ付きで）返し、以降はスリープ中として扱うこと
+
+		ReadSnapshotStore store = new ReadSnapshotStore(dir.toString(), 32, 262144);
+		store.put(1L, "/api/requests/5/history|*/*", new ReadSnapshotStore.Snapshot("application/json", "[\"h\"]".getBytes(), 0L));
+		DatabaseWakeProbe probe = mock(DatabaseWakeProbe.class);
+		when(probe.isReachable()).thenReturn(true);
+
+		MockHttpServletRequest request = get("/api/requests/5/history", 1L);
+		request.addHeader(HttpHeaders.ORIGIN, "http://localhost:5173");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter(store, probe).doFilter(request, response, (req, res) -> {
+			throw new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection",
+					new SQLTransientConnectionException("HikariPool-1 - Connection is not available", "08S01")); // CommunicationsException の SQLState
+		});
+
+		assertThat(response.getContentAsString()).isEqualTo("[\"h\"]");
+		assertThat(response.getHeader(StaleReadFilter.SERVED_FROM_HEADER)).isEqualTo("snapshot");
+		assertThat(response.getHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN)).isEqualTo("http://localhost:5173");
+		verify(probe).markAsleep();
+		assertThat(DatabaseWakeProbe.isConnectionFailure(new IllegalStateException("bad sql"))).isFalse();
+	}
+
+	@Test
+	void snapshots_surviveRestartThroughFile() {
+
+		//目的: 書き出したスナップショットを、新しいインスタンス（再起動後）がファイルから読み戻せること
+
+		ReadSnapshotStore store = new ReadSnapshotStore(dir.toString(), 2, 16);
+		store.put(7L, "/api/me|*/*", new ReadSnapshotStore.Snapshot("application/json", "{\"id\":7}".getBytes(), 1_000L));
+		store.put(7L, "/api/inbox|*/*", new ReadSnapshotStore.Snapshot("application/json", "[]".getBytes(), 2_000L));
+		store.put(7L, "/api/requests|*/*", new ReadSnapshotStore.Snapshot("application/json", "[1]".getBytes(), 3_000L)); // 上限2件なので最古が消える
+		store.put(7L, "/api/requests/1/history|*/*", new ReadSnapshotStore.Snapshot("application/json", new byte[17], 4_000L)); // 大きすぎて保存しない
+		store.flush();
+
+		ReadSnapshotStore restarted = new ReadSnapshotStore(dir.toString(), 2, 16);
+		assertThat(restarted.get(7L, "/api/me|*/*")).isNull();
+		assertThat(restarted.get(7L, "/api/requests/1/history|*/*")).isNull();
+		ReadSnapshotStore.Snapshot requests = restarted.get(7L, "/api/requests|*/*");
+		assertThat(requests.body()).isEqualTo("[1]".getBytes());
+		assertThat(requests.savedAtMillis()).isEqualTo(3_000L);
+		assertThat(restarted.get(7L, "/api/inbox|*/*").contentType()).isEqualTo("application/json");
+		assertThat(restarted.get(8L, "/api/me|*/*")).isNull();
+	}
+}
@@ -0,0 +1,36 @@
+package com.example.expenseworkflow.config;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTests {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	@Test
+	void tryAcquire_allowsBurstThenRejectsWithWaitTime() {
+
+		//目的: 容量（burst）分は連続で許可され、超えた分は次の補充までの待ち時間つきで拒否されること
+
+		TokenBucket bucket = new TokenBucket(10, 3, 0);
+
+		assertThat(bucket.tryAcquire(0)).isZero();
+		assertThat(bucket.tryAcquire(0)).isZero();
+		assertThat(bucket.tryAcquire(0)).isZero();
+		assertThat(bucket.tryAcquire(0)).isEqualTo(SECOND / 10); // 4個目は0.1秒後まで待つ
+	}
+
+	@Test
+	void tryAcquire_refillsOverTime() {
+
+		//目的: 時間が経てば補充され、十分経てば満杯（アイドル）に戻ること
+
+		TokenBucket bucket = new TokenBucket(10, 1, 0);
+
+		assertThat(bucket.tryAcquire(0)).isZero();
+		assertThat(bucket.tryAcquire(SECOND / 20)).isPositive(); // 0.05秒後はまだ補充されていない
+		assertThat(bucket.tryAcquire(SECOND / 10)).isZero(); // 0.1秒後には1個補充されている
+		assertThat(bucket.isIdle(SECOND)).isTrue();
+	}
+}
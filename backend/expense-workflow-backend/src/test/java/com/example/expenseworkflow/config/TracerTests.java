@@ -0,0 +1,69 @@
+package com.example.expenseworkflow.config;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+class TracerTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void serverSpan_continuesIncomingTraceparentAndNestsChildren() throws Exception {
+
+		//目的: フロントの traceparent のトレースIDと親を引き継ぎ、子スパンが同じトレースの子として OTLP/JSON で書き出されること
+
+		Path file = dir.resolve("spans.jsonl");
+		OtlpFileSpanExporter exporter = new OtlpFileSpanExporter(file.toString(), "test", JsonMapper.builder().build(), new SimpleMeterRegistry());
+		Tracer tracer = new Tracer(exporter, 1.0);
+
+		String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+		try (Span root = tracer.startServerSpan("GET", "00-" + traceId + "-00f067aa0ba902b7-01")) {
+			try (Span sql = tracer.startChild("SQL ExpenseRequestMapper.selectInbox", Span.KIND_CLIENT)) {
+				sql.attribute("db.response.returned_rows", 3);
+			}
+			root.rename("GET /api/inbox");
+		}
+		assertThat(tracer.current()).isNull(); // ルートを閉じたら現在のスパンは無くなる
+		assertThat(tracer.startChild("outside", Span.KIND_INTERNAL)).isNull(); // リクエスト外では記録しない
+		exporter.flush();
+
+		List<String> lines = Files.readAllLines(file);
+		assertThat(lines).hasSize(1);
+		JsonNode spans = JsonMapper.builder().build().readTree(lines.get(0))
+				.at("/resourceSpans/0/scopeSpans/0/spans");
+		assertThat(spans).hasSize(2);
+		JsonNode sql = spans.get(0);
+		JsonNode root = spans.get(1);
+		assertThat(root.get("traceId").asString()).isEqualTo(traceId);
+		assertThat(root.get("parentSpanId").asString()).isEqualTo("00f067aa0ba902b7");
+		assertThat(root.get("name").asString()).isEqualTo("GET /api/inbox");
+		assertThat(sql.get("traceId").asString()).isEqualTo(traceId);
+		assertThat(sql.get("parentSpanId").asString()).isEqualTo(root.get("spanId").asString());
+		assertThat(sql.at("/attributes/0/value/intValue").asString()).isEqualTo("3");
+	}
+
+	@Test
+	void serverSpan_honoursUnsampledFlagAndSampleRatio() {
+
+		//目的: traceparent の sampled フラグが 00 なら記録せず、traceparent が無ければ sample-ratio に従うこと
+
+		OtlpFileSpanExporter exporter = new OtlpFileSpanExporter(dir.resolve("x.jsonl").toString(), "test", JsonMapper.builder().build(), new SimpleMeterRegistry());
+
+		assertThat(new Tracer(exporter, 1.0).startServerSpan("GET", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00")).isNull();
+		assertThat(new Tracer(exporter, 0.0).startServerSpan("GET", null)).isNull();
+		try (Span span = new Tracer(exporter, 0.0).startServerSpan("GET", "garbage")) {
+			assertThat(span).isNull(); // 不正なヘッダは無いものとして扱う
+		}
+	}
+}
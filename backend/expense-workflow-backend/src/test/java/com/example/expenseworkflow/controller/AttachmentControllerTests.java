@@ -0,0 +1,166 @@
+package com.example.expenseworkflow.controller;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.expenseworkflow.controller.dto.RequestDetailResponse;
+import com.example.expenseworkflow.controller.dto.RequestSummaryResponse;
+import com.example.expenseworkflow.domain.Attachment;
+import com.example.expenseworkflow.mapper.AttachmentMapper;
+import com.example.expenseworkflow.store.AttachmentStore;
+import com.example.expenseworkflow.store.ContentAddressedFileStore;
+import com.example.expenseworkflow.store.IdempotencyStore;
+import com.example.expenseworkflow.store.RequestStore;
+
+class AttachmentControllerTests {
+
+	private static final byte[] PDF = "%PDF-1.7 receipt".getBytes(StandardCharsets.US_ASCII);
+	private static final long APPLICANT = 1L;
+	private static final long APPROVER = 2L;
+	private static final long OTHER = 3L;
+
+	@TempDir
+	Path dir;
+
+	private final AttachmentMapper mapper = mock(AttachmentMapper.class);
+	private final RequestStore requestStore = mock(RequestStore.class);
+	private final AtomicReference<Attachment> saved = new AtomicReference<>(); // insertAttachment で登録された行
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		ContentAddressedFileStore fileStore = new ContentAddressedFileStore(dir.toString(), 1024);
+		AttachmentController controller = new AttachmentController(new AttachmentStore(mapper, requestStore, fileStore), fileStore,
+				new IdempotencyStore(600, 100), "application/pdf,image/png");
+		mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+		when(requestStore.findByIdForApplicant(APPLICANT, 5L)).thenReturn(summary(5L, "DRAFT"));
+		when(requestStore.findByIdForApplicant(APPLICANT, 6L)).thenReturn(summary(6L, "SUBMITTED"));
+		when(requestStore.findByIdForApprover(APPROVER, 5L)).thenReturn(mock(RequestDetailResponse.class));
+		when(mapper.insertAttachment(any())).thenAnswer(inv -> {
+			Attachment a = inv.getArgument(0);
+			a.setId(10L);
+			saved.set(a);
+			return 1;
+		});
+		when(mapper.selectAttachmentByIdAndRequestId(eq(10L), eq(5L))).thenAnswer(inv -> saved.get());
+	}
+
+	private static RequestSummaryResponse summary(long id, String status) {
+		return new RequestSummaryResponse(id, "t", 1000, status, "", null, 0L);
+	}
+
+	private static MockHttpSession loggedIn(long userId) {
+		MockHttpSession session = new MockHttpSession();
+		session.setAttribute("SESSION_KEY_USER_ID", userId);
+		return session;
+	}
+
+	private long storedFiles() throws Exception {
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files.filter(Files::isRegularFile).count();
+		}
+	}
+
+	@Test
+	void upload_thenDownloadWholeAndRanges() throws Exception {
+
+		//目的: 申請者がアップロードした本文が201＋Locationで登録され、全体・Range（206）・If-None-Match（304）で取得できること
+
+		String sha = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(PDF));
+		mockMvc.perform(post("/api/requests/5/attachments").session(loggedIn(APPLICANT))
+				.param("fileName", "../領収書.pdf").contentType("application/pdf").content(PDF))
+				.andExpect(status().isCreated())
+				.andExpect(header().string(HttpHeaders.LOCATION, "/api/requests/5/attachments/10"))
+				.andExpect(jsonPath("$.fileName").value("領収書.pdf")) // パス区切りは落とす
+				.andExpect(jsonPath("$.sha256").value(sha));
+		assertThat(saved.get().getSizeBytes()).isEqualTo(PDF.length);
+
+		mockMvc.perform(get("/api/requests/5/attachments/10").session(loggedIn(APPROVER))) // 担当の承認者も読める
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"" + sha + "\""))
+				.andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+				.andExpect(content().contentType("application/pdf"))
+				.andExpect(content().bytes(PDF));
+
+		mockMvc.perform(get("/api/requests/5/attachments/10").session(loggedIn(APPLICANT)).header(HttpHeaders.RANGE, "bytes=0-3"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-3/" + PDF.length))
+				.andExpect(content().bytes("%PDF".getBytes(StandardCharsets.US_ASCII)));
+
+		mockMvc.perform(get("/api/requests/5/attachments/10").session(loggedIn(APPLICANT)).header(HttpHeaders.RANGE, "bytes=500-"))
+				.andExpect(status().isRequestedRangeNotSatisfiable())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + PDF.length));
+
+		mockMvc.perform(get("/api/requests/5/attachments/10").session(loggedIn(APPLICANT)).header(HttpHeaders.IF_NONE_MATCH, "\"" + sha + "\""))
+				.andExpect(status().isNotModified());
+	}
+
+	@Test
+	void upload_rejectsOthersSubmittedRequestsAndAnonymous_beforeReadingBody() throws Exception {
+
+		//目的: 未ログインは401、他人の申請は404、提出済みの申請は409になり、どの場合もファイルを保存しないこと
+
+		mockMvc.perform(post("/api/requests/5/attachments").param("fileName", "a.pdf").contentType("application/pdf").content(PDF))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(post("/api/requests/5/attachments").session(loggedIn(OTHER))
+				.param("fileName", "a.pdf").contentType("application/pdf").content(PDF))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(post("/api/requests/6/attachments").session(loggedIn(APPLICANT))
+				.param("fileName", "a.pdf").contentType("application/pdf").content(PDF))
+				.andExpect(status().isConflict());
+		mockMvc.perform(post("/api/requests/5/attachments").session(loggedIn(APPLICANT))
+				.param("fileName", "a.html").contentType("text/html").content(PDF))
+				.andExpect(status().isUnsupportedMediaType());
+
+		assertThat(storedFiles()).isZero();
+		verify(mapper, never()).insertAttachment(any());
+		verify(requestStore, times(1)).findByIdForApplicant(APPLICANT, 6L); // 権限と状態の確認は1回だけ
+	}
+
+	@Test
+	void download_byUnrelatedUser_isNotFound() throws Exception {
+
+		//目的: 申請者でも担当の承認者でもないユーザーには、添付の有無を漏らさず404を返すこと
+
+		saved.set(new Attachment());
+		mockMvc.perform(get("/api/requests/5/attachments/10").session(loggedIn(OTHER)))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(get("/api/requests/5/attachments").session(loggedIn(OTHER)))
+				.andExpect(status().isNotFound());
+		verify(mapper, never()).selectAttachmentByIdAndRequestId(any(), any());
+	}
+
+	@Test
+	void upload_whenRegistrationFails_deletesNewlyStoredFile() throws Exception {
+
+		//目的: メタデータの登録に失敗したら、新たに書いたファイル本体を消して孤立させないこと
+
+		doThrow(new IllegalStateException("db down")).when(mapper).insertAttachment(any());
+
+		assertThatThrownBy(() -> mockMvc.perform(post("/api/requests/5/attachments").session(loggedIn(APPLICANT))
+				.param("fileName", "a.pdf").contentType("application/pdf").content(PDF)))
+				.hasRootCauseInstanceOf(IllegalStateException.class);
+
+		assertThat(storedFiles()).isZero();
+	}
+}
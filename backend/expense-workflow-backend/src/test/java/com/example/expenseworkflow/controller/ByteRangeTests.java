@@ -0,0 +1,30 @@
+package com.example.expenseworkflow.controller;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class ByteRangeTests {
+
+	@Test
+	void parse_supportsFirstLastAndSuffixForms() {
+
+		//目的: bytes=a-b / bytes=a- / bytes=-n の各形式がファイルサイズに合わせて解釈されること
+
+		assertThat(ByteRange.parse("bytes=0-99", 1000)).isEqualTo(new ByteRange(0, 99));
+		assertThat(ByteRange.parse("bytes=900-", 1000)).isEqualTo(new ByteRange(900, 999));
+		assertThat(ByteRange.parse("bytes=-100", 1000)).isEqualTo(new ByteRange(900, 999));
+		assertThat(ByteRange.parse("bytes=500-5000", 1000)).isEqualTo(new ByteRange(500, 999)); // 末尾超えは切り詰める
+	}
+
+	@Test
+	void parse_ignoresInvalidAndRejectsOutOfRange() {
+
+		//目的: 解釈できない・複数範囲の指定は全体扱い（null）、ファイル外の開始位置は416扱いになること
+
+		assertThat(ByteRange.parse(null, 1000)).isNull();
+		assertThat(ByteRange.parse("bytes=0-1,5-9", 1000)).isNull();
+		assertThat(ByteRange.parse("bytes=abc", 1000)).isNull();
+		assertThat(ByteRange.parse("bytes=1000-", 1000)).isSameAs(ByteRange.UNSATISFIABLE);
+	}
+}
@@ -0,0 +1,41 @@
+package com.example.expenseworkflow.controller;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+class RequestETagsTests {
+
+	@Test
+	void parseIfMatch_acceptsStrongWeakAndBareVersions() {
+
+		//目的: 強いETag・弱いETag（W/）・クォートなしの数値を、いずれも同じ版番号として読めること
+
+		assertThat(RequestETags.parseIfMatch("\"3\"")).isEqualTo(3L);
+		assertThat(RequestETags.parseIfMatch("W/\"3\"")).isEqualTo(3L);
+		assertThat(RequestETags.parseIfMatch(" 3 ")).isEqualTo(3L);
+		assertThat(RequestETags.parseIfMatch(RequestETags.format(7L))).isEqualTo(7L); // 返したETagをそのまま送り返せる
+	}
+
+	@Test
+	void parseIfMatch_missingOrWildcard_meansAnyVersion() {
+
+		//目的: 未指定・空・"*" は版を問わない（null）として扱うこと
+
+		assertThat(RequestETags.parseIfMatch(null)).isNull();
+		assertThat(RequestETags.parseIfMatch("")).isNull();
+		assertThat(RequestETags.parseIfMatch("*")).isNull();
+	}
+
+	@Test
+	void parseIfMatch_unparsableValue_isPreconditionFailed() {
+
+		//目的: 版番号として読めない値（他リソースのETagや複数指定）は、どの版にも一致しないとして412になること
+
+		for (String value : new String[] { "\"abc\"", "\"3\", \"4\"", "\"" }) {
+			assertThatThrownBy(() -> RequestETags.parseIfMatch(value))
+					.isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode().value()).isEqualTo(412));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.example.expenseworkflow.controller;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.expenseworkflow.mapper.InMemoryUserMapper;
+import com.example.expenseworkflow.store.IdempotencyStore;
+import com.example.expenseworkflow.store.InMemoryRequestStore;
+import com.example.expenseworkflow.store.OrgHierarchyCache;
+
+class WorkflowControllerTests {
+
+	private static final long APPLICANT = 1L;
+	private static final long APPROVER = 2L;
+	private static final long OTHER = 3L;
+
+	private final InMemoryUserMapper userMapper = new InMemoryUserMapper();
+	private final InMemoryRequestStore requestStore = new InMemoryRequestStore(new OrgHierarchyCache(userMapper, 600, ""), userMapper);
+	private MockMvc mockMvc;
+	private long requestId;
+
+	@BeforeEach
+	void setUp() {
+		mockMvc = MockMvcBuilders.standaloneSetup(new WorkflowController(requestStore, new IdempotencyStore(600, 100))).build();
+		requestId = requestStore.create(APPLICANT, "交通費", 1200, null).getId();
+		requestStore.submit(APPLICANT, requestId, null); // 版1・承認者2のInboxへ
+	}
+
+	private static MockHttpSession loggedIn(long userId) {
+		MockHttpSession session = new MockHttpSession();
+		session.setAttribute("SESSION_KEY_USER_ID", userId);
+		return session;
+	}
+
+	@Test
+	void approve_withETagFromInboxDetail_succeeds() throws Exception {
+
+		//目的: GET /api/inbox/{id} のETagをそのまま If-Match に付ければ承認でき、版が進むこと
+
+		String etag = mockMvc.perform(get("/api/inbox/" + requestId).session(loggedIn(APPROVER)))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(post("/api/requests/" + requestId + "/approve").session(loggedIn(APPROVER)).header(HttpHeaders.IF_MATCH, etag))
+				.andExpect(status().isOk());
+		assertThat(requestStore.findById(requestId).getStatus()).isEqualTo("APPROVED");
+		assertThat(requestStore.findById(requestId).getVersion()).isEqualTo(2L);
+	}
+
+	@Test
+	void approve_withStaleVersion_isPreconditionFailedAndKeepsState() throws Exception {
+
+		//目的: If-Match の版が古ければ412を返し、申請の状態も版も変えないこと（弱いETagでも同じ）
+
+		mockMvc.perform(post("/api/requests/" + requestId + "/approve").session(loggedIn(APPROVER)).header(HttpHeaders.IF_MATCH, "\"0\""))
+				.andExpect(status().isPreconditionFailed());
+		mockMvc.perform(post("/api/requests/" + requestId + "/return").session(loggedIn(APPROVER)).header(HttpHeaders.IF_MATCH, "W/\"0\"")
+				.contentType("application/json").content("{\"comment\":\"領収書を添付してください\"}"))
+				.andExpect(status().isPreconditionFailed());
+		mockMvc.perform(post("/api/requests/" + requestId + "/approve").session(loggedIn(APPROVER)).header(HttpHeaders.IF_MATCH, "\"abc\""))
+				.andExpect(status().isPreconditionFailed());
+
+		assertThat(requestStore.findById(requestId).getStatus()).isEqualTo("SUBMITTED");
+		assertThat(requestStore.findById(requestId).getVersion()).isEqualTo(1L);
+	}
+
+	@Test
+	void transitionOnOthersRequest_withStaleVersion_isNotFoundRatherThanPreconditionFailed() throws Exception {
+
+		//目的: 無関係なユーザーが古い版を付けて操作しても412にせず404を返し、申請の存在を漏らさないこと
+
+		mockMvc.perform(post("/api/requests/" + requestId + "/approve").session(loggedIn(OTHER)).header(HttpHeaders.IF_MATCH, "\"0\""))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(post("/api/requests/" + requestId + "/withdraw").session(loggedIn(OTHER)).header(HttpHeaders.IF_MATCH, "\"0\""))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(post("/api/requests/" + requestId + "/approve").session(loggedIn(OTHER)).header(HttpHeaders.IF_MATCH, "\"1\""))
+				.andExpect(status().isNotFound()); // 版が合っていても結果は同じ
+
+		assertThat(requestStore.findById(requestId).getStatus()).isEqualTo("SUBMITTED");
+	}
+
+	@Test
+	void approve_withoutIfMatch_ignoresVersion() throws Exception {
+
+		//目的: If-Match を付けない（または "*"）場合は従来どおり版を問わずに遷移できること
+
+		mockMvc.perform(post("/api/requests/" + requestId + "/approve").session(loggedIn(APPROVER)).header(HttpHeaders.IF_MATCH, "*"))
+				.andExpect(status().isOk());
+		assertThat(requestStore.findById(requestId).getStatus()).isEqualTo("APPROVED");
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.expenseworkflow.controller.dto;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.expenseworkflow.mapper.InMemoryUserMapper;
+import com.example.expenseworkflow.store.IdempotencyStore;
+import com.example.expenseworkflow.store.InMemoryRequestStore;
+import com.example.expenseworkflow.store.OrgHierarchyCache;
+
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+class RequestsControllerTests {
+
+	private static final long APPLICANT = 1L;
+
+	private final InMemoryUserMapper userMapper = new InMemoryUserMapper();
+	private final InMemoryRequestStore requestStore = new InMemoryRequestStore(new OrgHierarchyCache(userMapper, 600, ""), userMapper);
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		mockMvc = MockMvcBuilders.standaloneSetup(new RequestsController(requestStore, new IdempotencyStore(600, 100))).build();
+		requestStore.create(APPLICANT, "交通費", 1200, null); // 備考・差戻しコメントはnull
+	}
+
+	private static MockHttpSession loggedIn(long userId) {
+		MockHttpSession session = new MockHttpSession();
+		session.setAttribute("SESSION_KEY_USER_ID", userId);
+		return session;
+	}
+
+	@Test
+	void listRequests_withoutFields_keepsNullColumns() throws Exception {
+
+		//目的: fields 未指定の一覧は従来どおり全列を返し、値がnullの列もキーごと省かないこと
+
+		mockMvc.perform(get("/api/requests").session(loggedIn(APPLICANT)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].title").value("交通費"))
+				.andExpect(jsonPath("$[0].amount").value(1200))
+				.andExpect(jsonPath("$[0]", hasKey("lastReturnComment"))) // nullでもキーは出る
+				.andExpect(jsonPath("$[0].lastReturnComment").isEmpty());
+	}
+
+	@Test
+	void listRequests_withFields_returnsOnlyIdAndRequestedColumns() throws Exception {
+
+		//目的: ?fields= を指定したら id と指定列だけを返し、指定列は値がnullでもキーを残すこと。未知の列名は400
+
+		mockMvc.perform(get("/api/requests").session(loggedIn(APPLICANT)).param("fields", "title,lastReturnComment"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].id").isNumber())
+				.andExpect(jsonPath("$[0].title").value("交通費"))
+				.andExpect(jsonPath("$[0]", hasKey("lastReturnComment")))
+				.andExpect(jsonPath("$[0].amount").doesNotExist())
+				.andExpect(jsonPath("$[0].status").doesNotExist())
+				.andExpect(jsonPath("$[0].version").doesNotExist());
+
+		mockMvc.perform(get("/api/requests").session(loggedIn(APPLICANT)).param("fields", "title,passwordHash"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void listRequests_withCborAccept_returnsSparseCbor() throws Exception {
+
+		//目的: Accept: application/cbor のときは一覧がCBORで返り、fields の絞り込みもJSONと同じく効くこと
+
+		byte[] body = mockMvc.perform(get("/api/requests").session(loggedIn(APPLICANT)).param("fields", "title,amount").accept("application/cbor"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType("application/cbor"))
+				.andReturn().getResponse().getContentAsByteArray();
+
+		List<Map<String, Object>> items = new CBORMapper().readValue(body, new TypeReference<List<Map<String, Object>>>() {
+		});
+		assertThat(items).singleElement().satisfies(item -> {
+			assertThat(item).containsOnlyKeys("id", "title", "amount");
+			assertThat(item).containsEntry("title", "交通費").containsEntry("amount", 1200);
+		});
+	}
+}
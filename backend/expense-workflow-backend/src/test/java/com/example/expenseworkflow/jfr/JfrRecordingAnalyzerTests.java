@@ -0,0 +1,57 @@
+package com.example.expenseworkflow.jfr;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+
+class JfrRecordingAnalyzerTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void summarize_groupsCustomEventsRecordedWithBundledSettings() throws Exception {
+
+		//目的: 同梱の .jfc で記録した独自イベントが、遷移・ログインの種類ごとに件数つきで集計されること
+
+		Path file = dir.resolve("test.jfr");
+		try (Recording recording = new Recording(JfrRecording.loadSettings())) {
+			recording.start();
+			for (int i = 0; i < 2; i++) {
+				WorkflowTransitionEvent approve = new WorkflowTransitionEvent();
+				approve.begin();
+				approve.record(10L + i, 2L, "APPROVE", "SUBMITTED", "APPROVED");
+			}
+			WorkflowTransitionEvent submit = new WorkflowTransitionEvent();
+			submit.begin();
+			submit.record(12L, 1L, "SUBMIT", "DRAFT", "SUBMITTED");
+			LoginVerificationEvent login = new LoginVerificationEvent();
+			login.begin();
+			login.record(1L, true, "$2a$10$abcdefghijklmnopqrstuv");
+			recording.stop();
+			recording.dump(file);
+		}
+
+		String summary = JfrRecordingAnalyzer.summarize(file, 10);
+
+		assertThat(summary).containsPattern("\\s2 .*APPROVE SUBMITTED -> APPROVED");
+		assertThat(summary).containsPattern("\\s1 .*SUBMIT DRAFT -> SUBMITTED");
+		assertThat(summary).containsPattern("\\s1 .*success cost=10");
+		assertThat(summary).contains("== Connection waits ==\n(no events)");
+	}
+
+	@Test
+	void costOf_readsBcryptCostFactor() {
+
+		//目的: BCryptハッシュからコスト係数を読み、形式が違えば0にすること
+
+		assertThat(LoginVerificationEvent.costOf("$2a$12$abcdefghijklmnopqrstuv")).isEqualTo(12);
+		assertThat(LoginVerificationEvent.costOf("plain")).isZero();
+		assertThat(LoginVerificationEvent.costOf(null)).isZero();
+	}
+}
@@ -0,0 +1,97 @@
+package com.example.expenseworkflow.notification;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.expenseworkflow.domain.NotificationOutboxEntry;
+import com.example.expenseworkflow.mapper.NotificationOutboxMapper;
+import com.example.expenseworkflow.store.ShardRouter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class NotificationDispatcherTests {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2026, 4, 1, 9, 0);
+
+	// 予約済みの通知1件を作る
+	private static NotificationOutboxEntry entry(long id, long recipientId, long requestId, int attempts) {
+		NotificationOutboxEntry e = new NotificationOutboxEntry();
+		e.setId(id);
+		e.setRecipientId(recipientId);
+		e.setRecipientEmail("user" + recipientId + "@example.com");
+		e.setRequestId(requestId);
+		e.setEventType(NotificationOutbox.SUBMITTED);
+		e.setActorId(1L);
+		e.setAttempts(attempts);
+		return e;
+	}
+
+	private static NotificationDispatcher dispatcherOf(NotificationOutboxMapper mapper, NotificationSender sender) {
+		return new NotificationDispatcher(mapper, new TransactionTemplate(mock(PlatformTransactionManager.class)), sender,
+				new ShardRouter(false, ""), 50, 20, 300, 60, 3600, 3, 7, new SimpleMeterRegistry());
+	}
+
+	// 通知先 recipients の通知 entries が予約される Mapper を作る
+	private static NotificationOutboxMapper mapperWith(List<Long> recipients, List<NotificationOutboxEntry> entries) {
+		NotificationOutboxMapper mapper = mock(NotificationOutboxMapper.class);
+		List<Long> ids = entries.stream().map(NotificationOutboxEntry::getId).toList();
+		when(mapper.selectDueRecipients(any(), anyInt())).thenReturn(recipients);
+		when(mapper.lockPendingIds(eq(recipients), any(), anyInt())).thenReturn(ids);
+		when(mapper.selectEntries(ids)).thenReturn(entries);
+		return mapper;
+	}
+
+	@Test
+	void dispatchBatch_sendsOneDigestPerRecipient() throws IOException {
+
+		//目的: 予約した通知を通知先ごとに1通へまとめて送り、送れたものだけを送信済みにすること
+
+		NotificationOutboxMapper mapper = mapperWith(List.of(10L, 20L),
+				List.of(entry(1, 10, 100, 1), entry(2, 20, 101, 1), entry(3, 10, 102, 1)));
+		List<NotificationDigest> digests = new ArrayList<>();
+		NotificationSender sender = digests::add;
+
+		int recipients = dispatcherOf(mapper, sender).dispatchBatch(NOW);
+
+		assertThat(recipients).isEqualTo(2);
+		assertThat(digests).extracting(NotificationDigest::recipientId).containsExactly(10L, 20L);
+		assertThat(digests.get(0).entries()).extracting(NotificationOutboxEntry::getRequestId).containsExactly(100L, 102L);
+		verify(mapper).reserve(List.of(1L, 2L, 3L), NOW.plusSeconds(300)); // 送る前に予約する
+		verify(mapper).markSent(eq(List.of(1L, 3L)), any());
+		verify(mapper).markSent(eq(List.of(2L)), any());
+	}
+
+	@Test
+	void dispatchBatch_backsOffThenGivesUp() throws IOException {
+
+		//目的: 送信に失敗したら試行回数に応じて倍々の間隔で再送を予約し、上限回数で FAILED にすること
+
+		NotificationSender failing = digest -> {
+			throw new IOException("451 try again later");
+		};
+
+		NotificationOutboxMapper retrying = mapperWith(List.of(10L), List.of(entry(1, 10, 100, 2)));
+		dispatcherOf(retrying, failing).dispatchBatch(NOW);
+		verify(retrying).markRetry(eq(List.of(1L)), eq(NOW.plusSeconds(120)), contains("451"));
+		verify(retrying, never()).markSent(any(), any());
+
+		NotificationOutboxMapper exhausted = mapperWith(List.of(10L), List.of(entry(1, 10, 100, 3)));
+		dispatcherOf(exhausted, failing).dispatchBatch(NOW);
+		verify(exhausted).markFailed(eq(List.of(1L)), contains("451"));
+		verify(exhausted, never()).markRetry(any(), any(), any());
+
+		NotificationDispatcher dispatcher = dispatcherOf(mock(NotificationOutboxMapper.class), failing);
+		assertThat(dispatcher.backoffSeconds(1)).isEqualTo(60);
+		assertThat(dispatcher.backoffSeconds(20)).isEqualTo(3600); // 上限で止まる
+	}
+}
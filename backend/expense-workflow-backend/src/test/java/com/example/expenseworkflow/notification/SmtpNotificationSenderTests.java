@@ -0,0 +1,157 @@
+package com.example.expenseworkflow.notification;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.example.expenseworkflow.domain.NotificationOutboxEntry;
+
+class SmtpNotificationSenderTests {
+
+	// 1回の接続だけを受け付け、rcptReply を RCPT TO への応答にするSMTPのスタンドイン。受け取った行を返す
+	private static CompletableFuture<List<String>> serveOnce(ServerSocket server, String rcptReply) {
+		return CompletableFuture.supplyAsync(() -> {
+			List<String> received = new ArrayList<>();
+			try (Socket socket = server.accept()) {
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				OutputStream out = socket.getOutputStream();
+				reply(out, "220 stand-in ESMTP");
+				boolean data = false;
+				for (String line; (line = in.readLine()) != null;) {
+					received.add(line);
+					if (data) {
+						if (line.equals(".")) {
+							data = false;
+							reply(out, "250 queued");
+						}
+					} else if (line.startsWith("EHLO")) {
+						reply(out, "250-stand-in\r\n250 8BITMIME");
+					} else if (line.startsWith("RCPT")) {
+						reply(out, rcptReply);
+					} else if (line.equals("DATA")) {
+						data = true;
+						reply(out, "354 go ahead");
+					} else if (line.equals("QUIT")) {
+						reply(out, "221 bye");
+						break;
+					} else {
+						reply(out, "250 ok");
+					}
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return received;
+		});
+	}
+
+	private static void reply(OutputStream out, String line) throws IOException {
+		out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+
+	private static NotificationDigest digest() {
+		NotificationOutboxEntry e = new NotificationOutboxEntry();
+		e.setId(1L);
+		e.setRecipientId(2L);
+		e.setRequestId(42L);
+		e.setEventType(NotificationOutbox.SUBMITTED);
+		e.setActorId(1L);
+		e.setActorName("山田 太郎");
+		e.setTitle("出張交通費");
+		e.setAmount(12_000);
+		return new NotificationDigest(2L, "approver@example.com", "佐藤 花子", List.of(e));
+	}
+
+	// STARTTLS を必須にしない（スタンドインは平文）JavaMailSender を、server へ向けて作る
+	private static JavaMailSenderImpl mailSenderFor(int port) {
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(port);
+		Properties props = new Properties();
+		props.setProperty("mail.smtp.timeout", "5000");
+		mailSender.setJavaMailProperties(props);
+		return mailSender;
+	}
+
+	private static SmtpNotificationSender senderFor(ServerSocket server) {
+		return new SmtpNotificationSender(mailSenderFor(server.getLocalPort()), "no-reply@example.com", "https://expense.example.com/");
+	}
+
+	@Test
+	void send_deliversDigestAsUtf8Mail() throws Exception {
+
+		//目的: ローカルのSMTPサーバーへ封筒（MAIL FROM / RCPT TO）と、件名・表示名・本文をUTF-8で符号化したメールを送ること
+
+		try (ServerSocket server = new ServerSocket(0)) {
+			CompletableFuture<List<String>> received = serveOnce(server, "250 ok");
+
+			senderFor(server).send(digest());
+
+			List<String> lines = received.get(5, TimeUnit.SECONDS);
+			assertThat(lines).anyMatch(l -> l.startsWith("MAIL FROM:<no-reply@example.com>"));
+			assertThat(lines).anyMatch(l -> l.startsWith("RCPT TO:<approver@example.com>"));
+			assertThat(lines).contains("DATA", "QUIT");
+			String data = String.join("\r\n", lines.subList(lines.indexOf("DATA") + 1, lines.indexOf(".")));
+			MimeMessage mail = new MimeMessage(Session.getInstance(new Properties()), new ByteArrayInputStream(data.getBytes(StandardCharsets.US_ASCII)));
+			assertThat(mail.getSubject()).isEqualTo("【経費精算】承認待ちの申請があります（1件）");
+			assertThat(((InternetAddress) mail.getRecipients(MimeMessage.RecipientType.TO)[0]).getPersonal()).isEqualTo("佐藤 花子");
+			assertThat((String) mail.getContent()).contains("佐藤 花子 さん", "#42 出張交通費（12,000円）", "山田 太郎 さんが提出しました",
+					"https://expense.example.com/requests/42");
+		}
+	}
+
+	@Test
+	void send_failsOnRejectedRecipient() throws Exception {
+
+		//目的: RCPT TO が拒否されたら IOException にして、呼び出し側（NotificationDispatcher）の再送に任せること
+
+		try (ServerSocket server = new ServerSocket(0)) {
+			serveOnce(server, "450 mailbox busy");
+
+			assertThatThrownBy(() -> senderFor(server).send(digest()))
+					.isInstanceOf(IOException.class)
+					.hasMessageContaining("450 mailbox busy");
+		}
+	}
+
+	@Test
+	void constructor_refusesCredentialsOverPlainConnection() {
+
+		//目的: 認証情報があるのに STARTTLS 必須でも SMTPS でもない設定では、平文で AUTH を送らないよう起動時に失敗すること
+
+		JavaMailSenderImpl plain = mailSenderFor(25);
+		plain.setUsername("mailer");
+		assertThatThrownBy(() -> new SmtpNotificationSender(plain, "no-reply@example.com", ""))
+				.isInstanceOf(IllegalStateException.class);
+
+		JavaMailSenderImpl startTls = mailSenderFor(587);
+		startTls.setUsername("mailer");
+		startTls.getJavaMailProperties().setProperty("mail.smtp.starttls.required", "true");
+		assertThatNoException().isThrownBy(() -> new SmtpNotificationSender(startTls, "no-reply@example.com", ""));
+
+		JavaMailSenderImpl smtps = mailSenderFor(465);
+		smtps.setUsername("mailer");
+		smtps.setProtocol("smtps");
+		assertThatNoException().isThrownBy(() -> new SmtpNotificationSender(smtps, "no-reply@example.com", ""));
+	}
+}
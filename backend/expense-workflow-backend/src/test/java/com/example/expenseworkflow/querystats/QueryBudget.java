@@ -0,0 +1,70 @@
+/**
+ * テストで、1リクエスト（または1回の処理）で実行するSQL文の数に上限（予算）を設けるためのヘルパ。
+ * MockMvc では {@code app.query-stats.headers=true} にして、{@link QueryStatsFilter} が付ける応答ヘッダを読む。
+ * <pre>
+ * mockMvc.perform(get("/api/inbox").session(session))
+ *     .andExpect(QueryBudget.atMost(1))
+ *     .andExpect(QueryBudget.noRepeatedStatements());
+ * </pre>
+ * MockMvc を通さない処理は {@link #measure} で数える。
+ */
+
+package com.example.expenseworkflow.querystats;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+public final class QueryBudget {
+
+	private QueryBudget() {
+	}
+
+	// 実行した文が max 以下であること
+	public static ResultMatcher atMost(int max) {
+		return result -> {
+			long count = Long.parseLong(header(result, QueryStatsFilter.COUNT_HEADER));
+			assertThat(count)
+					.as("%s ran %d statements (budget %d): %s", describe(result), count, max, header(result, QueryStatsFilter.STATEMENTS_HEADER))
+					.isLessThanOrEqualTo(max);
+		};
+	}
+
+	// 同じ文を2回以上実行していないこと（N+1になっていない）
+	public static ResultMatcher noRepeatedStatements() {
+		return result -> {
+			String statements = header(result, QueryStatsFilter.STATEMENTS_HEADER);
+			assertThat(Arrays.stream(statements.split(",")).filter(s -> !s.isEmpty() && !s.endsWith("=1")))
+					.as("%s repeated statements: %s", describe(result), statements)
+					.isEmpty();
+		};
+	}
+
+	// action の中でこのスレッド（とシャードごとのスレッド）が実行した文を数える
+	public static QueryStats measure(Runnable action) {
+		QueryStats stats = new QueryStats();
+		QueryStats.call(stats, () -> {
+			action.run();
+			return null;
+		});
+		return stats;
+	}
+
+	private static String header(MvcResult result, String name) {
+		MockHttpServletResponse response = result.getResponse();
+		assertThat(response.getHeader(name))
+				.as("%s header is missing (set app.query-stats.headers=true)", name)
+				.isNotNull();
+		return response.getHeader(name);
+	}
+
+	private static String describe(MvcResult result) {
+		MockHttpServletRequest request = result.getRequest();
+		return request.getMethod() + " " + request.getRequestURI();
+	}
+}
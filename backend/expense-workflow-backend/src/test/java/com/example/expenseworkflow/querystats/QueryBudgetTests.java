@@ -0,0 +1,57 @@
+package com.example.expenseworkflow.querystats;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+// 実際のMyBatisとマッパーXMLを通し、JDBCだけを空の結果を返すスタブにして、エンドポイントごとのSQL文の数を確かめる
+@SpringBootTest(properties = "app.query-stats.headers=true")
+@AutoConfigureMockMvc
+class QueryBudgetTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockitoBean(answers = Answers.RETURNS_DEEP_STUBS)
+	private DataSource dataSource; // どの文も0行・0件更新を返す
+
+	private static MockHttpSession loggedIn(long userId) {
+		MockHttpSession session = new MockHttpSession();
+		session.setAttribute("SESSION_KEY_USER_ID", userId);
+		return session;
+	}
+
+	@Test
+	void inbox_runsAtMostOneStatement() throws Exception {
+
+		//目的: GET /api/inbox は承認待ち一覧を1文で取得すること（行ごとに追加の文を実行しない）
+
+		mockMvc.perform(get("/api/inbox").session(loggedIn(2L)))
+				.andExpect(status().isOk())
+				.andExpect(header().string(QueryStatsFilter.STATEMENTS_HEADER, "ExpenseRequestMapper.selectInboxItems=1"))
+				.andExpect(QueryBudget.atMost(1))
+				.andExpect(QueryBudget.noRepeatedStatements());
+	}
+
+	@Test
+	void me_runsAtMostOneStatement() throws Exception {
+
+		//目的: GET /api/me はユーザーを1文で取得し、未ログインならSQLを実行しないこと
+
+		mockMvc.perform(get("/api/me").session(loggedIn(1L)))
+				.andExpect(QueryBudget.atMost(1));
+		mockMvc.perform(get("/api/me"))
+				.andExpect(status().isUnauthorized())
+				.andExpect(QueryBudget.atMost(0));
+	}
+}
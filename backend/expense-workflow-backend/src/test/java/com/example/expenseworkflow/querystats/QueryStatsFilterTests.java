@@ -0,0 +1,65 @@
+package com.example.expenseworkflow.querystats;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class QueryStatsFilterTests {
+
+	@RestController
+	static class StreamingController {
+
+		@GetMapping("/api/changes")
+		StreamingResponseBody changes() {
+			return out -> out.write("{\"a\":1}\n{\"a\":2}\n".getBytes(StandardCharsets.UTF_8));
+		}
+
+		@GetMapping("/api/other-stream")
+		StreamingResponseBody other() {
+			return out -> out.write("late".getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new StreamingController())
+			.addFilters(new QueryStatsFilter(new SimpleMeterRegistry(), true, 5, "/api/changes,/api/requests/*/attachments/*"))
+			.build();
+
+	@Test
+	void unbufferedPath_streamsBodyWithoutQueryHeaders() throws Exception {
+
+		//目的: ヘッダ付きの開発設定でも、GET /api/changes の本文は溜めずにそのまま届くこと（ヘッダは付けない）
+
+		MvcResult started = mockMvc.perform(get("/api/changes"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andExpect(content().string("{\"a\":1}\n{\"a\":2}\n"))
+				.andExpect(header().doesNotExist(QueryStatsFilter.COUNT_HEADER));
+	}
+
+	@Test
+	void unexpectedAsyncResponse_bodyIsCopiedAfterCompletion() throws Exception {
+
+		//目的: unbuffered-paths に無い非同期の応答でも、溜めた本文が非同期処理の完了後に書き出されること
+
+		MvcResult started = mockMvc.perform(get("/api/other-stream"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andExpect(content().string("late"))
+				.andExpect(header().string(QueryStatsFilter.COUNT_HEADER, "0"));
+	}
+}
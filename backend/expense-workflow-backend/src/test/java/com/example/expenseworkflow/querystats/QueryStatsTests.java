@@ -0,0 +1,74 @@
+package com.example.expenseworkflow.querystats;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+
+class QueryStatsTests {
+
+	private final MyBatisQueryStatsInterceptor interceptor = new MyBatisQueryStatsInterceptor();
+	private final Configuration configuration = new Configuration();
+
+	// Executor.query(ms, parameter, rowBounds, resultHandler) の呼び出しを1つ作る
+	private Invocation query(String statementId, SqlCommandType type, Executor executor) throws Exception {
+		MappedStatement ms = new MappedStatement.Builder(configuration, statementId, mock(SqlSource.class), type).build();
+		return new Invocation(executor, Executor.class.getMethod("query", MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class),
+				new Object[] { ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER });
+	}
+
+	@Test
+	void interceptor_countsStatementsAndFetchedRowsPerStatement() throws Throwable {
+
+		//目的: 結び付けた QueryStats に、文の数・取得行数・文ごとの回数が加算され、同じ文の繰り返し（N+1）が分かること
+
+		Executor executor = mock(Executor.class);
+		when(executor.query(any(), any(), any(), any())).thenReturn(List.of("a", "b"));
+
+		QueryStats stats = QueryBudget.measure(() -> {
+			try {
+				interceptor.intercept(query("com.example.expenseworkflow.mapper.ExpenseRequestMapper.selectInboxItems", SqlCommandType.SELECT, executor));
+				for (int i = 0; i < 5; i++) {
+					interceptor.intercept(query("com.example.expenseworkflow.mapper.UserMapper.findById", SqlCommandType.SELECT, executor));
+				}
+			} catch (Throwable e) {
+				throw new AssertionError(e);
+			}
+		});
+
+		assertThat(stats.statements()).isEqualTo(6);
+		assertThat(stats.rows()).isEqualTo(12);
+		assertThat(stats.nanos()).isPositive();
+		assertThat(stats.byStatement()).containsExactly(
+				Map.entry("ExpenseRequestMapper.selectInboxItems", 1L),
+				Map.entry("UserMapper.findById", 5L));
+		assertThat(stats.repeated(5)).containsOnlyKeys("UserMapper.findById");
+		assertThat(QueryStats.current()).isNull(); // 数え終わったら外れる
+	}
+
+	@Test
+	void interceptor_outsideRequest_doesNotCount() throws Throwable {
+
+		//目的: QueryStats が結び付いていない（バッチジョブなど）ときは、そのまま実行して何も数えないこと
+
+		Executor executor = mock(Executor.class);
+		when(executor.query(any(), any(), any(), any())).thenReturn(List.of("a"));
+
+		Object result = interceptor.intercept(query("x.UserMapper.findById", SqlCommandType.SELECT, executor));
+
+		assertThat(result).isEqualTo(List.of("a"));
+		assertThat(QueryStats.current()).isNull();
+		assertThat(MyBatisQueryStatsInterceptor.shortId("com.example.expenseworkflow.mapper.UserMapper.findById")).isEqualTo("UserMapper.findById");
+	}
+}
@@ -0,0 +1,170 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.expenseworkflow.domain.AnalyticsRow;
+import com.example.expenseworkflow.mapper.AnalyticsMapper;
+import com.example.expenseworkflow.store.AnalyticsQuery.GroupBy;
+import com.example.expenseworkflow.store.AnalyticsQuery.Measure;
+import com.example.expenseworkflow.store.AnalyticsQuery.Metric;
+
+class AnalyticsSnapshotTests {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 9, 0);
+
+	// 申請の列を持つ行を作る
+	private static AnalyticsRow request(long id, long applicantId, Long approverId, int amount, String status, LocalDate expenseDate) {
+		AnalyticsRow row = new AnalyticsRow();
+		row.setRequestId(id);
+		row.setApplicantId(applicantId);
+		row.setApproverId(approverId);
+		row.setAmount(amount);
+		row.setStatus(status);
+		row.setExpenseDate(expenseDate);
+		row.setSubmittedAt(T0);
+		return row;
+	}
+
+	// 最終承認の日時だけを持つ行を作る
+	private static AnalyticsRow approval(long actionId, long requestId, LocalDateTime approvedAt) {
+		AnalyticsRow row = new AnalyticsRow();
+		row.setActionId(actionId);
+		row.setRequestId(requestId);
+		row.setApprovedAt(approvedAt);
+		return row;
+	}
+
+	private static AnalyticsQuery query(GroupBy groupBy, Metric metric, Measure measure, Set<String> statuses, int limit) {
+		return new AnalyticsQuery(groupBy, metric, measure, statuses, null, null, null, null, limit);
+	}
+
+	private static AnalyticsMapper mapperWith(List<AnalyticsRow> requests, List<AnalyticsRow> approvals) {
+		AnalyticsMapper mapper = mock(AnalyticsMapper.class);
+		when(mapper.selectMaxActionId()).thenReturn(10L);
+		when(mapper.selectRequestRows(anyBoolean(), anyLong(), anyInt())).thenReturn(List.of());
+		when(mapper.selectRequestRows(false, 0L, 5000)).thenReturn(requests);
+		when(mapper.selectApprovals(anyBoolean(), anyLong(), anyInt())).thenReturn(List.of());
+		when(mapper.selectApprovals(false, 0L, 5000)).thenReturn(approvals);
+		when(mapper.selectChangedRows(anyLong(), anyLong(), anyInt())).thenReturn(List.of());
+		return mapper;
+	}
+
+	@Test
+	void query_groupsByApplicantAndReturnsTopN() {
+
+		//目的: 申請者ごとの金額の合計が大きい順に limit 件だけ返り、ステータスと経費発生日で絞り込めること
+
+		AnalyticsMapper mapper = mapperWith(List.of(
+				request(1, 100, 200L, 1_000, "APPROVED", LocalDate.of(2026, 3, 1)),
+				request(2, 100, 200L, 2_000, "APPROVED", LocalDate.of(2026, 3, 2)),
+				request(3, 101, 200L, 5_000, "APPROVED", LocalDate.of(2026, 3, 3)),
+				request(4, 102, 200L, 500, "APPROVED", LocalDate.of(2026, 4, 1)),
+				request(5, 102, null, 9_000, "DRAFT", LocalDate.of(2026, 3, 1))), List.of());
+		AnalyticsSnapshot snapshot = new AnalyticsSnapshot(mapper, new ShardRouter(false, ""), 5000, 30, 5, Runnable::run);
+
+		AnalyticsSnapshot.Result result = snapshot.query(query(GroupBy.APPLICANT, Metric.SUM, Measure.AMOUNT, Set.of("APPROVED"), 2));
+
+		assertThat(result.groups()).extracting(AnalyticsSnapshot.Group::key).containsExactly("101", "100");
+		assertThat(result.groups()).extracting(AnalyticsSnapshot.Group::value).containsExactly(5_000.0, 3_000.0);
+		assertThat(result.matchedRows()).isEqualTo(4);
+		assertThat(result.totalRows()).isEqualTo(5);
+
+		AnalyticsSnapshot.Result march = snapshot.query(new AnalyticsQuery(GroupBy.MONTH, Metric.COUNT, Measure.AMOUNT, Set.of(),
+				LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 31), null, null, 10));
+		assertThat(march.groups()).extracting(AnalyticsSnapshot.Group::key).containsExactly("2026-03");
+		assertThat(march.groups().get(0).count()).isEqualTo(4);
+	}
+
+	@Test
+	void query_averagesApprovalHoursPerApprover() {
+
+		//目的: 提出から最終承認までの時間を承認者ごとに平均でき、未承認の申請は対象外になること
+
+		AnalyticsMapper mapper = mapperWith(List.of(
+				request(1, 100, 200L, 1_000, "APPROVED", null),
+				request(2, 100, 200L, 1_000, "APPROVED", null),
+				request(3, 101, 201L, 1_000, "SUBMITTED", null)),
+				List.of(approval(1, 1, T0.plusHours(2)), approval(2, 2, T0.plusHours(4))));
+		AnalyticsSnapshot snapshot = new AnalyticsSnapshot(mapper, new ShardRouter(false, ""), 5000, 30, 5, Runnable::run);
+
+		AnalyticsSnapshot.Result result = snapshot.query(query(GroupBy.APPROVER, Metric.AVG, Measure.APPROVAL_HOURS, Set.of(), 10));
+
+		assertThat(result.groups()).hasSize(1);
+		assertThat(result.groups().get(0).key()).isEqualTo("200");
+		assertThat(result.groups().get(0).value()).isEqualTo(3.0);
+	}
+
+	@Test
+	void query_appliesNewActionsIncrementally() {
+
+		//目的: 初回の全件読み込みの後は、控えた操作履歴の位置より後の変更だけを取り込んで結果に反映すること
+
+		AnalyticsMapper mapper = mapperWith(List.of(request(1, 100, 200L, 1_000, "SUBMITTED", null)), List.of());
+		AnalyticsSnapshot snapshot = new AnalyticsSnapshot(mapper, new ShardRouter(false, ""), 5000, 0, 5, Runnable::run);
+
+		assertThat(snapshot.query(query(GroupBy.STATUS, Metric.COUNT, Measure.AMOUNT, Set.of(), 10)).groups())
+				.extracting(AnalyticsSnapshot.Group::key).containsExactly("SUBMITTED");
+
+		AnalyticsRow approved = request(1, 100, 200L, 1_000, "APPROVED", null);
+		approved.setActionId(11L);
+		approved.setApprovedAt(T0.plusHours(1));
+		AnalyticsRow added = request(2, 101, 200L, 3_000, "SUBMITTED", null);
+		added.setActionId(12L);
+		when(mapper.selectChangedRows(eq(10L), anyLong(), anyInt())).thenReturn(List.of(approved, added));
+
+		AnalyticsSnapshot.Result result = snapshot.query(query(GroupBy.STATUS, Metric.SUM, Measure.AMOUNT, Set.of(), 10));
+
+		assertThat(result.groups()).extracting(AnalyticsSnapshot.Group::key).containsExactly("SUBMITTED", "APPROVED");
+		assertThat(result.totalRows()).isEqualTo(2);
+		verify(mapper, times(1)).selectRequestRows(false, 0L, 5000); // 全件の読み込みは初回だけ
+		verify(mapper).selectChangedRows(eq(10L), anyLong(), anyInt());
+
+		snapshot.query(query(GroupBy.NONE, Metric.COUNT, Measure.AMOUNT, Set.of(), 10));
+		verify(mapper).selectChangedRows(eq(12L), anyLong(), anyInt()); // 次回は取り込んだ位置から
+	}
+
+	@Test
+	void query_whenRefreshFails_keepsServingLastSnapshot() {
+
+		//目的: 差分の取り込みに失敗しても例外にせず、直前のスナップショットで答え続けること
+
+		AnalyticsMapper mapper = mapperWith(List.of(request(1, 100, 200L, 1_000, "SUBMITTED", null)), List.of());
+		AnalyticsSnapshot snapshot = new AnalyticsSnapshot(mapper, new ShardRouter(false, ""), 5000, 0, 5, Runnable::run);
+		snapshot.query(query(GroupBy.NONE, Metric.COUNT, Measure.AMOUNT, Set.of(), 10));
+
+		when(mapper.selectChangedRows(anyLong(), anyLong(), anyInt())).thenThrow(new IllegalStateException("Communications link failure"));
+
+		AnalyticsSnapshot.Result result = snapshot.query(query(GroupBy.NONE, Metric.COUNT, Measure.AMOUNT, Set.of(), 10));
+		assertThat(result.totalRows()).isEqualTo(1);
+		assertThat(result.groups()).extracting(AnalyticsSnapshot.Group::count).containsExactly(1L);
+	}
+
+	@Test
+	void query_refreshesInBackground() {
+
+		//目的: 取り込みの時期が来ても、問い合わせのスレッドではDBを読まずに直前のスナップショットで答えること
+
+		AnalyticsMapper mapper = mapperWith(List.of(request(1, 100, 200L, 1_000, "SUBMITTED", null)), List.of());
+		List<Runnable> scheduled = new ArrayList<>();
+		AnalyticsSnapshot snapshot = new AnalyticsSnapshot(mapper, new ShardRouter(false, ""), 5000, 0, 5, scheduled::add);
+		snapshot.query(query(GroupBy.NONE, Metric.COUNT, Measure.AMOUNT, Set.of(), 10));
+
+		snapshot.query(query(GroupBy.NONE, Metric.COUNT, Measure.AMOUNT, Set.of(), 10));
+		snapshot.query(query(GroupBy.NONE, Metric.COUNT, Measure.AMOUNT, Set.of(), 10));
+
+		verify(mapper, never()).selectChangedRows(anyLong(), anyLong(), anyInt());
+		assertThat(scheduled).hasSize(1); // 取り込みは同時に1本だけ
+		scheduled.get(0).run();
+		verify(mapper).selectChangedRows(eq(10L), anyLong(), anyInt());
+	}
+}
@@ -0,0 +1,96 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.expenseworkflow.domain.ApproverBudgetUsage;
+import com.example.expenseworkflow.mapper.ApproverBudgetMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ApproverBudgetTests {
+
+	// 承認者2の今月の消化額が usedAmount の台帳を返す Mapper で作る
+	private static ApproverBudget budgetOf(ApproverBudgetMapper mapper, long usedAmount, String limits) {
+		ApproverBudgetUsage row = new ApproverBudgetUsage();
+		row.setApproverId(2L);
+		row.setUsedAmount(usedAmount);
+		when(mapper.selectUsageByMonth(any())).thenReturn(List.of(row));
+		return new ApproverBudget(mapper, new ShardRouter(false, ""), 0, limits, new SimpleMeterRegistry());
+	}
+
+	@Test
+	void reserve_rejectsBeyondLimitReconciledFromLedger() {
+
+		//目的: 台帳の今月分から残りを求め、超える承認は409で台帳にも記録しないこと
+
+		ApproverBudgetMapper mapper = mock(ApproverBudgetMapper.class);
+		ApproverBudget budget = budgetOf(mapper, 90_000, "2:100000");
+
+		budget.reserve(2L, 10L, 10_000);
+		assertThat(budget.remaining(2L)).isZero();
+		assertThatThrownBy(() -> budget.reserve(2L, 11L, 1))
+				.isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode().value()).isEqualTo(409));
+		verify(mapper, times(1)).insertLedgerEntry(eq(2L), any(), eq(10L), eq(10_000L));
+		verify(mapper, never()).insertLedgerEntry(any(), any(), eq(11L), anyLong());
+		assertThat(budget.remaining(3L)).isNull(); // 上限を指定していない承認者は上限なし
+	}
+
+	@Test
+	void reserve_isReleasedWhenTransactionRollsBack() {
+
+		//目的: 確保後にトランザクションがロールバックされたら、確保した分が残りに戻ること
+
+		ApproverBudget budget = budgetOf(mock(ApproverBudgetMapper.class), 0, "2:100000");
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			budget.reserve(2L, 10L, 60_000);
+			assertThat(budget.remaining(2L)).isEqualTo(40_000L);
+			List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+			TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_ROLLED_BACK);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertThat(budget.remaining(2L)).isEqualTo(100_000L);
+	}
+
+	@Test
+	void reserve_neverOvercommitsUnderConcurrency() throws Exception {
+
+		//目的: 同じ承認者への同時承認でも、上限ちょうどの件数だけが成功すること
+
+		ApproverBudget budget = budgetOf(mock(ApproverBudgetMapper.class), 0, "2:100");
+		AtomicInteger accepted = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 500; i++) {
+			long requestId = i;
+			pool.execute(() -> {
+				try {
+					budget.reserve(2L, requestId, 1);
+					accepted.incrementAndGet();
+				} catch (ResponseStatusException e) {
+					// 上限超過
+				}
+			});
+		}
+		pool.shutdown();
+		assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(accepted.get()).isEqualTo(100);
+		assertThat(budget.remaining(2L)).isZero();
+	}
+}
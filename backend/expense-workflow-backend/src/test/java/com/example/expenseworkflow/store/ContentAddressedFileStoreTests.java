@@ -0,0 +1,52 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.expenseworkflow.store.ContentAddressedFileStore.StoredFile;
+
+class ContentAddressedFileStoreTests {
+
+	private static final byte[] PDF = "%PDF-1.7 receipt".getBytes(StandardCharsets.US_ASCII);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void releaseAndDeleteIf_keepsFileWhileSameContentIsBeingRegistered() {
+
+		//目的: 新たに書いたアップロードの登録が失敗しても、同じ内容を登録中の別のアップロードがあればファイルを消さないこと
+
+		ContentAddressedFileStore store = new ContentAddressedFileStore(dir.toString(), 1024);
+		StoredFile first = store.store(new ByteArrayInputStream(PDF));
+		StoredFile second = store.store(new ByteArrayInputStream(PDF)); // first の登録が終わる前に同じ内容が届く
+		assertThat(first.created()).isTrue();
+		assertThat(second.created()).isFalse();
+
+		store.releaseAndDeleteIf(first, () -> true); // DBにはまだどちらの行も無い
+		assertThat(store.find(first.sha256())).isNotNull();
+
+		store.releaseAndDeleteIf(second, () -> true); // second も登録に失敗すれば、誰も使っていないので消す
+		assertThat(store.find(first.sha256())).isNull();
+	}
+
+	@Test
+	void releaseAndDeleteIf_keepsFileReferencedByRegisteredAttachment() {
+
+		//目的: 登録を終えて release したファイルは、後のアップロードが失敗してもDBの参照があれば消さないこと
+
+		ContentAddressedFileStore store = new ContentAddressedFileStore(dir.toString(), 1024);
+		StoredFile registered = store.store(new ByteArrayInputStream(PDF));
+		store.release(registered);
+
+		StoredFile failed = store.store(new ByteArrayInputStream(PDF));
+		store.releaseAndDeleteIf(failed, () -> false); // 参照件数は1
+		assertThat(store.find(registered.sha256())).isNotNull();
+	}
+}
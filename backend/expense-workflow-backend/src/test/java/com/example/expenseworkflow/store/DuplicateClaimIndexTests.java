@@ -0,0 +1,112 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.expenseworkflow.domain.ExpenseRequest;
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+
+class DuplicateClaimIndexTests {
+
+	private static final LocalDate DAY = LocalDate.of(2026, 4, 1);
+
+	private final ExpenseRequestMapper mapper = mock(ExpenseRequestMapper.class);
+
+	// 指紋の材料とステータス（提出済み）だけを持つ ExpenseRequest を作る
+	private static ExpenseRequest request(long id, long applicantId, int amount, LocalDate expenseDate, String title) {
+		ExpenseRequest r = new ExpenseRequest();
+		r.setStatus("SUBMITTED");
+		r.setId(id);
+		r.setApplicantId(applicantId);
+		r.setAmount(amount);
+		r.setExpenseDate(expenseDate);
+		r.setTitle(title);
+		return r;
+	}
+
+	// existing を索引の元データにし、主キー検索でも同じ申請を返す
+	private DuplicateClaimIndex indexOf(List<ExpenseRequest> existing) {
+		when(mapper.selectDuplicateCandidates()).thenReturn(existing);
+		existing.forEach(r -> when(mapper.selectExpenseRequestById(r.getId())).thenReturn(r));
+		return new DuplicateClaimIndex(mapper, new ShardRouter(false, ""), 1000);
+	}
+
+	@Test
+	void findDuplicate_matchesNormalizedTitle() {
+
+		//目的: 全角半角・大文字小文字・空白・記号だけが違う件名は同じ申請とみなし、先行申請のIDを返すこと
+
+		DuplicateClaimIndex index = indexOf(List.of(request(1, 10, 3_200, DAY, "ﾀｸｼｰ代（客先訪問）")));
+
+		assertThat(index.findDuplicate(request(2, 10, 3_200, DAY, "タクシー代 客先訪問"))).isEqualTo(1L);
+		assertThat(index.findDuplicate(request(1, 10, 3_200, DAY, "タクシー代 客先訪問"))).isNull(); // 自分自身は重複ではない
+	}
+
+	@Test
+	void findDuplicate_ignoresDifferentApplicantAmountOrDate() {
+
+		//目的: 申請者・金額・経費発生日のどれかが違えば重複とみなさないこと
+
+		DuplicateClaimIndex index = indexOf(List.of(request(1, 10, 3_200, DAY, "タクシー代")));
+
+		assertThat(index.findDuplicate(request(2, 11, 3_200, DAY, "タクシー代"))).isNull();
+		assertThat(index.findDuplicate(request(2, 10, 3_300, DAY, "タクシー代"))).isNull();
+		assertThat(index.findDuplicate(request(2, 10, 3_200, DAY.plusDays(1), "タクシー代"))).isNull();
+	}
+
+	@Test
+	void addAfterCommit_outsideTransactionIsVisibleImmediately() {
+
+		//目的: トランザクション外で追加した申請は、次の判定から重複として見つかること
+
+		DuplicateClaimIndex index = indexOf(List.of());
+		ExpenseRequest first = request(5, 10, 800, DAY, "会議費");
+
+		assertThat(index.findDuplicate(first)).isNull();
+		when(mapper.selectExpenseRequestById(5L)).thenReturn(first);
+		index.addAfterCommit(first);
+		assertThat(index.findDuplicate(request(6, 10, 800, DAY, "会議費"))).isEqualTo(5L);
+	}
+
+	@Test
+	void findDuplicate_ignoresRequestsRejectedOrEditedSinceIndexed() {
+
+		//目的: 索引に載った後で却下された申請や、差戻し中に内容を直した申請は重複とみなさず、索引からも外すこと
+
+		ExpenseRequest rejected = request(1, 10, 3_200, DAY, "タクシー代");
+		ExpenseRequest edited = request(2, 10, 5_000, DAY, "宿泊費");
+		DuplicateClaimIndex index = indexOf(List.of(rejected, edited));
+		rejected.setStatus("REJECTED");
+		edited.setStatus("RETURNED");
+		edited.setAmount(4_800); // 差戻し中に金額を修正
+
+		assertThat(index.findDuplicate(request(3, 10, 3_200, DAY, "タクシー代"))).isNull();
+		assertThat(index.findDuplicate(request(4, 10, 5_000, DAY, "宿泊費"))).isNull();
+		assertThat(index.findDuplicate(request(5, 10, 3_200, DAY, "タクシー代"))).isNull();
+		verify(mapper, times(1)).selectExpenseRequestById(1L); // 外した後はDBを引かない
+	}
+
+	@Test
+	void findDuplicate_fallsBackToLaterDuplicateWhenFirstIsRejected() {
+
+		//目的: 先行申請Aが却下されても、Aの重複として提出済みのBが残っていれば、同じ内容の新しい提出CをBの重複とみなすこと
+
+		ExpenseRequest a = request(1, 10, 3_200, DAY, "タクシー代");
+		DuplicateClaimIndex index = indexOf(List.of(a));
+		ExpenseRequest b = request(2, 10, 3_200, DAY, "タクシー代");
+		when(mapper.selectExpenseRequestById(2L)).thenReturn(b);
+
+		assertThat(index.findDuplicate(b)).isEqualTo(1L);
+		index.addAfterCommit(b);
+		a.setStatus("REJECTED");
+
+		assertThat(index.findDuplicate(request(3, 10, 3_200, DAY, "タクシー代"))).isEqualTo(2L);
+		assertThat(index.findDuplicate(request(4, 10, 3_200, DAY, "タクシー代"))).isEqualTo(2L);
+		verify(mapper, times(2)).selectExpenseRequestById(1L); // Bの提出時と却下後の1回ずつ。外した後はDBを引かない
+	}
+}
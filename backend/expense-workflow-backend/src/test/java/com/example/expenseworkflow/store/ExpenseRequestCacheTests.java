@@ -0,0 +1,47 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.expenseworkflow.domain.ExpenseRequest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ExpenseRequestCacheTests {
+
+	@Test
+	void put_evictsLeastRecentlyUsedWhenFull() {
+
+		//目的: 上限を超えたら最も長く使われていないエントリから捨てられること
+
+		ExpenseRequestCache cache = new ExpenseRequestCache(2, new SimpleMeterRegistry());
+		cache.put(1L, request(1L), cache.stamp());
+		cache.put(2L, request(2L), cache.stamp());
+		cache.get(1L); // 1を最近使ったことにする
+		cache.put(3L, request(3L), cache.stamp());
+
+		assertThat(cache.get(1L)).isNotNull();
+		assertThat(cache.get(2L)).isNull();
+		assertThat(cache.get(3L)).isNotNull();
+	}
+
+	@Test
+	void put_afterEviction_ignoresValueReadBeforeIt() {
+
+		//目的: DBから読んでいる間に無効化が起きた場合、読んだ古い内容は登録されないこと
+
+		ExpenseRequestCache cache = new ExpenseRequestCache(10, new SimpleMeterRegistry());
+		long stamp = cache.stamp(); // 読み取り開始
+		cache.evictAfterCommit(1L); // 読み取り中に別の操作がコミットされた（トランザクション外なので即時）
+		cache.put(1L, request(1L), stamp);
+
+		assertThat(cache.get(1L)).isNull();
+	}
+
+	private static ExpenseRequest request(Long id) {
+		ExpenseRequest r = new ExpenseRequest();
+		r.setId(id);
+		return r;
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+class IdempotencyStoreTests {
+
+	private static final String SCOPE = "POST /api/requests";
+
+	@Test
+	void execute_replaysStoredResultForSameKey() {
+
+		//目的: 同じユーザー・操作・キーの再送は実処理を走らせず、初回の結果を返すこと（キーなし・別ユーザーは毎回実行）
+
+		IdempotencyStore store = new IdempotencyStore(600, 100);
+		AtomicInteger calls = new AtomicInteger();
+
+		assertThat(store.execute(1L, SCOPE, "k1", 7, calls::incrementAndGet)).isEqualTo(1);
+		assertThat(store.execute(1L, SCOPE, "k1", 7, calls::incrementAndGet)).isEqualTo(1);
+		assertThat(store.execute(2L, SCOPE, "k1", 7, calls::incrementAndGet)).isEqualTo(2); // 別ユーザーは別のキー
+		assertThat(store.execute(1L, SCOPE, null, 7, calls::incrementAndGet)).isEqualTo(3); // キーなしは冪等制御しない
+		assertThat(calls).hasValue(3);
+	}
+
+	@Test
+	void execute_sameKeyWithDifferentInput_isRejected() {
+
+		//目的: 同じキーで別の入力が送られたら422を返し、実処理は走らせないこと
+
+		IdempotencyStore store = new IdempotencyStore(600, 100);
+		store.execute(1L, SCOPE, "k1", 7, () -> "created");
+
+		assertThatThrownBy(() -> store.execute(1L, SCOPE, "k1", 8, () -> "again"))
+				.isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode().value()).isEqualTo(422));
+	}
+
+	@Test
+	void execute_concurrentSameKey_waitsForInFlightResult() throws Exception {
+
+		//目的: 実行中のキーに再送が来たら、2本目は実処理を走らせずに1本目の完了を待って同じ結果を受け取ること
+
+		IdempotencyStore store = new IdempotencyStore(600, 100);
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> store.execute(1L, SCOPE, "k1", 7, () -> {
+			started.countDown();
+			await(release);
+			return calls.incrementAndGet();
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> store.execute(1L, SCOPE, "k1", 7, calls::incrementAndGet));
+
+		assertThat(second).isNotDone();
+		release.countDown();
+		assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+		assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+		assertThat(calls).hasValue(1);
+	}
+
+	@Test
+	void execute_failureIsNotStored() {
+
+		//目的: 例外で終わった処理は保存せず、同じキーの再送で再実行できること
+
+		IdempotencyStore store = new IdempotencyStore(600, 100);
+
+		assertThatThrownBy(() -> store.execute(1L, SCOPE, "k1", 7, () -> {
+			throw new IllegalStateException("db down");
+		})).isInstanceOf(IllegalStateException.class);
+		assertThat(store.execute(1L, SCOPE, "k1", 7, () -> "ok")).isEqualTo("ok");
+	}
+
+	@Test
+	void execute_atCapacity_evictsOldestCompletedEntries() {
+
+		//目的: 件数上限を超えたら古い順に記録を捨て、新しい記録の再送は引き続き初回の結果を返すこと
+
+		IdempotencyStore store = new IdempotencyStore(600, 2);
+		AtomicInteger calls = new AtomicInteger();
+		for (int i = 1; i <= 3; i++) {
+			store.execute(1L, SCOPE, "k" + i, i, calls::incrementAndGet);
+		}
+
+		assertThat(store.execute(1L, SCOPE, "k3", 3, calls::incrementAndGet)).isEqualTo(3); // 新しい記録は残る
+		assertThat(store.execute(1L, SCOPE, "k1", 1, calls::incrementAndGet)).isEqualTo(4); // 最古の記録は捨てられて再実行
+	}
+
+	@Test
+	void execute_atCapacity_skipsInFlightEntryAndKeepsEvicting() throws Exception {
+
+		//目的: 最古の記録が実行中のままでも、それを飛ばして後ろの完了済みの記録を捨て、件数が上限を超えて増え続けないこと
+
+		IdempotencyStore store = new IdempotencyStore(600, 2);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> store.execute(1L, SCOPE, "slow", 0, () -> {
+			started.countDown();
+			await(release);
+			return "done";
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		AtomicInteger calls = new AtomicInteger();
+		for (int i = 1; i <= 10; i++) {
+			store.execute(1L, SCOPE, "k" + i, i, calls::incrementAndGet);
+		}
+		assertThat(store.size()).isLessThanOrEqualTo(2);
+		assertThat(store.execute(1L, SCOPE, "k10", 10, calls::incrementAndGet)).isEqualTo(10); // 新しい記録は残る
+
+		release.countDown();
+		assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.expenseworkflow.controller.dto.ChangeEventResponse;
+import com.example.expenseworkflow.controller.dto.RequestSummaryResponse;
+import com.example.expenseworkflow.mapper.InMemoryUserMapper;
+
+class InMemoryRequestStoreTests {
+
+	private final InMemoryUserMapper userMapper = new InMemoryUserMapper();
+	private final InMemoryRequestStore store = new InMemoryRequestStore(new OrgHierarchyCache(userMapper, 600, ""), userMapper);
+
+	@Test
+	void submitAndApprove_followsWorkflowAndRecordsHistory() {
+
+		//目的: 作成→提出→承認で状態・承認者Inbox・操作履歴がMySQL実装と同じ規則で更新されること
+
+		RequestSummaryResponse created = store.create(1L, "交通費", 1200, null);
+
+		assertThat(store.submit(1L, created.getId(), 0L)).isTrue();
+		assertThat(store.inbox(2L)).extracting("id").containsExactly(created.getId());
+		assertThat(store.approve(1L, created.getId(), null)).isFalse(); // 申請者本人は承認できない
+
+		assertThat(store.approve(2L, created.getId(), 1L)).isTrue();
+		assertThat(store.findByIdForApplicant(1L, created.getId()).getStatus()).isEqualTo("APPROVED");
+		assertThat(store.getHistory(1L, created.getId())).extracting("action").containsExactly("SUBMIT", "APPROVE");
+		assertThat(store.findByIdForApplicant(2L, created.getId())).isNull(); // 他人の申請は見えない
+	}
+
+	@Test
+	void withdraw_withStaleVersion_throwsPreconditionFailed() {
+
+		//目的: If-Match の版が古い場合は更新せず412になること
+
+		RequestSummaryResponse created = store.create(1L, "書籍代", 3000, "");
+		store.updateReturned(1L, created.getId(), "書籍代（修正）", 3000, "", 0L);
+
+		assertThatThrownBy(() -> store.withdraw(1L, created.getId(), 0L))
+				.isInstanceOf(ResponseStatusException.class)
+				.hasMessageContaining("412");
+		assertThat(store.findById(created.getId()).getStatus()).isEqualTo("DRAFT");
+	}
+
+	@Test
+	void transition_withStaleVersion_onOthersRequest_returnsFalseWithout412() {
+
+		//目的: 申請者でも担当承認者でもないユーザーには、版の食い違いでも412を投げずfalse（404扱い）を返すこと
+
+		RequestSummaryResponse created = store.create(1L, "書籍代", 3000, "");
+		store.submit(1L, created.getId(), 0L);
+
+		assertThat(store.approve(3L, created.getId(), 0L)).isFalse();
+		assertThat(store.withdraw(3L, created.getId(), 0L)).isFalse();
+		assertThat(store.reject(3L, created.getId(), "x", 0L)).isFalse();
+		assertThatThrownBy(() -> store.approve(2L, created.getId(), 0L)) // 担当承認者には412で知らせる
+				.isInstanceOf(ResponseStatusException.class)
+				.hasMessageContaining("412");
+		assertThat(store.findById(created.getId()).getStatus()).isEqualTo("SUBMITTED");
+		assertThat(store.findById(created.getId()).getVersion()).isEqualTo(1L);
+	}
+
+	@Test
+	void changesSince_returnsTransitionsAfterCursorInIdOrder() {
+
+		//目的: カーソルより後の遷移だけが、対象申請の現在の内容と合わせてID順に返ること
+
+		RequestSummaryResponse created = store.create(1L, "出張費", 50000, "");
+		store.submit(1L, created.getId(), null);
+		store.approve(2L, created.getId(), null);
+		List<ChangeEventResponse> all = store.changesSince(ChangeCursor.of(0), 0, 10).items();
+		assertThat(all).extracting("action").containsExactly("SUBMIT", "APPROVE");
+		assertThat(all).extracting("status").containsOnly("APPROVED"); // 申請の内容は現在の値
+
+		ChangePage rest = store.changesSince(ChangeCursor.of(all.get(0).getActionId()), 0, 10);
+		assertThat(rest.items()).extracting("action").containsExactly("APPROVE");
+		assertThat(rest.next()).hasToString(Long.toString(all.get(1).getActionId())); // 単一DBのカーソルは操作履歴IDそのもの
+	}
+}
@@ -0,0 +1,67 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.expenseworkflow.controller.dto.RequestHistoryItemResponse;
+import com.example.expenseworkflow.domain.ExpenseRequest;
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+import com.example.expenseworkflow.notification.NotificationOutbox;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MyBatisRequestStoreTests {
+
+	private final ExpenseRequestMapper mapper = mock(ExpenseRequestMapper.class);
+
+	private MyBatisRequestStore store(boolean archiveEnabled) {
+		MyBatisRequestStore store = new MyBatisRequestStore(mapper, mock(OrgHierarchyCache.class),
+				new SingleFlight(new SimpleMeterRegistry()), new ExpenseRequestCache(10, new SimpleMeterRegistry()),
+				mock(DuplicateClaimIndex.class), mock(ApproverBudget.class), mock(NotificationOutbox.class));
+		ReflectionTestUtils.setField(store, "archiveEnabled", archiveEnabled); // @Value で入る app.archive.enabled
+		return store;
+	}
+
+	@Test
+	void archiveDisabled_missDoesNotQueryArchiveTables() {
+
+		//目的: アーカイブを無効にしている（*_archive テーブルが無いことがある）ときは、ホットに無い申請・履歴でアーカイブ側を引かず、見つからない扱いにすること
+
+		MyBatisRequestStore store = store(false);
+
+		assertThat(store.findByIdForApplicant(1L, 99L)).isNull();
+		assertThat(store.findByIdForApprover(2L, 99L)).isNull();
+		assertThat(store.getHistory(1L, 99L)).isEmpty();
+		assertThat(store.getHistoryForApprover(2L, 99L)).isEmpty();
+		verify(mapper, never()).selectArchivedExpenseRequestByIdAndApplicant(any(), any());
+		verify(mapper, never()).selectArchivedExpenseRequestByIdAndApprover(any(), any());
+		verify(mapper, never()).selectArchivedHistoryByRequestIdAndApplicant(any(), any());
+		verify(mapper, never()).selectArchivedHistoryByRequestIdAndApprover(any(), any());
+	}
+
+	@Test
+	void archiveEnabled_missFallsBackToArchive() {
+
+		//目的: アーカイブが有効なら、ホットに無い申請と履歴をアーカイブ側から返すこと
+
+		ExpenseRequest archived = new ExpenseRequest();
+		archived.setId(99L);
+		archived.setApplicantId(1L);
+		archived.setTitle("出張");
+		archived.setAmount(1000);
+		archived.setStatus("APPROVED");
+		when(mapper.selectArchivedExpenseRequestByIdAndApplicant(99L, 1L)).thenReturn(archived);
+		RequestHistoryItemResponse item = new RequestHistoryItemResponse("APPROVE", "承認者", "2025/01/10 09:00", null);
+		when(mapper.selectArchivedHistoryByRequestIdAndApplicant(99L, 1L)).thenReturn(List.of(item));
+		MyBatisRequestStore store = store(true);
+
+		assertThat(store.findByIdForApplicant(1L, 99L).getStatus()).isEqualTo("APPROVED");
+		assertThat(store.getHistory(1L, 99L)).extracting(RequestHistoryItemResponse::getAction).containsExactly("APPROVE");
+	}
+}
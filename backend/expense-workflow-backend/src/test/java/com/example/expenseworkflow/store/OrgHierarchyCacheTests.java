@@ -0,0 +1,94 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import com.example.expenseworkflow.domain.User;
+import com.example.expenseworkflow.mapper.UserMapper;
+
+@ExtendWith(OutputCaptureExtension.class)
+class OrgHierarchyCacheTests {
+
+	// id と managerId だけを持つ User を作る
+	private static User user(long id, Long managerId) {
+		User u = new User();
+		u.setId(id);
+		u.setManagerId(managerId);
+		return u;
+	}
+
+	private static OrgHierarchyCache cacheOf(List<User> users) {
+		UserMapper userMapper = mock(UserMapper.class);
+		when(userMapper.findAllOrgEdges()).thenReturn(users);
+		return new OrgHierarchyCache(userMapper, 600, "100000,500000");
+	}
+
+	@Test
+	void approvalChain_growsWithAmountThresholds() {
+
+		//目的: 1→2→3→4 の組織で、金額の閾値ごとに承認段数が増えること
+
+		OrgHierarchyCache cache = cacheOf(List.of(user(1, 2L), user(2, 3L), user(3, 4L), user(4, null)));
+
+		assertThat(cache.approvalChain(1L, 5_000)).containsExactly(2L);
+		assertThat(cache.approvalChain(1L, 100_000)).containsExactly(2L, 3L);
+		assertThat(cache.approvalChain(1L, 900_000)).containsExactly(2L, 3L, 4L);
+		assertThat(cache.nextApprover(1L, 900_000, 2L)).isEqualTo(3L);
+		assertThat(cache.nextApprover(1L, 900_000, 4L)).isNull(); // 最終段
+		assertThat(cache.nextApprover(1L, 5_000, 2L)).isNull(); // 少額は1段で終わり
+	}
+
+	@Test
+	void ancestors_stopAtManagerCycle() {
+
+		//目的: manager_id が循環していても無限ループせず、循環点で経路を打ち切ること
+
+		OrgHierarchyCache cache = cacheOf(List.of(user(1, 2L), user(2, 3L), user(3, 2L)));
+
+		assertThat(cache.ancestorsOf(1L)).containsExactly(2L, 3L);
+		assertThat(cache.ancestorsOf(2L)).containsExactly(3L);
+	}
+
+	@Test
+	void build_warnsOncePerCycle(CapturedOutput output) {
+
+		//目的: 同じ循環（2→3→2）を通るユーザーが何人いても、警告ログは循環1つにつき1回だけ出ること
+
+		OrgHierarchyCache.build(List.of(user(1, 2L), user(2, 3L), user(3, 2L), user(4, 3L), user(5, 5L)));
+
+		assertThat(output.getOut().split("Cycle detected", -1)).hasSize(3); // 2↔3 と 5→5 の2件
+		assertThat(output.getOut()).contains("among users [2, 3]", "among users [5]");
+	}
+
+	@Test
+	void approvalChain_withoutThresholds_isSingleLevel() {
+
+		//目的: 閾値を設定しない既定では、金額によらず直属の上長1段で承認が完了すること
+
+		UserMapper userMapper = mock(UserMapper.class);
+		when(userMapper.findAllOrgEdges()).thenReturn(List.of(user(1, 2L), user(2, 3L), user(3, null)));
+		OrgHierarchyCache cache = new OrgHierarchyCache(userMapper, 600, "");
+
+		assertThat(cache.approvalChain(1L, 9_000_000)).containsExactly(2L);
+		assertThat(cache.nextApprover(1L, 9_000_000, 2L)).isNull();
+	}
+
+	@Test
+	void firstApprover_returnsNullWithoutManager() {
+
+		//目的: 上長未設定のユーザーは承認者が決まらないこと、未知のユーザーは contains=false になること
+
+		OrgHierarchyCache cache = cacheOf(List.of(user(1, null)));
+
+		assertThat(cache.contains(1L)).isTrue();
+		assertThat(cache.firstApprover(1L)).isNull();
+		assertThat(cache.contains(99L)).isFalse();
+	}
+}
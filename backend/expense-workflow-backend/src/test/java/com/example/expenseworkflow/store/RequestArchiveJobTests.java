@@ -0,0 +1,60 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RequestArchiveJobTests {
+
+	private final ExpenseRequestMapper mapper = mock(ExpenseRequestMapper.class);
+	private final ExpenseRequestCache cache = new ExpenseRequestCache(10, new SimpleMeterRegistry());
+
+	private RequestArchiveJob job(int batchSize) {
+		return new RequestArchiveJob(mapper, new TransactionTemplate(mock(PlatformTransactionManager.class)), cache,
+				new ShardRouter(false, ""), 180, batchSize, 100);
+	}
+
+	@Test
+	void run_movesBatchesUntilFewerThanBatchSizeRemain() {
+
+		//目的: 保持期間より前の完了済み申請を batch-size 件ずつ、申請・履歴のコピー→削除の順で移し、最後の半端なバッチで止まること
+
+		when(mapper.selectArchivableRequestIds(any(), eq(2)))
+				.thenReturn(List.of(1L, 2L))
+				.thenReturn(List.of(3L));
+
+		job(2).run();
+
+		InOrder order = inOrder(mapper);
+		order.verify(mapper).copyRequestsToArchive(List.of(1L, 2L));
+		order.verify(mapper).copyActionsToArchive(List.of(1L, 2L));
+		order.verify(mapper).deleteArchivedActions(List.of(1L, 2L));
+		order.verify(mapper).deleteArchivedRequests(List.of(1L, 2L));
+		order.verify(mapper).copyRequestsToArchive(List.of(3L));
+		verify(mapper, times(2)).selectArchivableRequestIds(any(), eq(2)); // 3回目は問い合わせない
+	}
+
+	@Test
+	void archiveBatch_nothingToMove_doesNotTouchTables() {
+
+		//目的: 対象が無ければコピーも削除もせず0を返すこと
+
+		when(mapper.selectArchivableRequestIds(any(), anyInt())).thenReturn(List.of());
+
+		assertThat(job(500).archiveBatch(LocalDateTime.now())).isZero();
+		verify(mapper, never()).copyRequestsToArchive(any());
+		verify(mapper, never()).deleteArchivedRequests(any());
+	}
+}
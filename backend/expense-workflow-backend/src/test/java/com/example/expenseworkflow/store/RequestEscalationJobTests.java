@@ -0,0 +1,129 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.expenseworkflow.domain.ExpenseRequest;
+import com.example.expenseworkflow.domain.User;
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+import com.example.expenseworkflow.mapper.UserMapper;
+import com.example.expenseworkflow.notification.NotificationOutbox;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RequestEscalationJobTests {
+
+	private static final int SLA_DAYS = 14;
+
+	private final ExpenseRequestMapper mapper = mock(ExpenseRequestMapper.class);
+	private final NotificationOutbox notificationOutbox = mock(NotificationOutbox.class);
+
+	// 申請者1 → 承認者2 → 上長3（最上位）の組織
+	private RequestEscalationJob job(int batchSize) {
+		UserMapper userMapper = mock(UserMapper.class);
+		when(userMapper.findAllOrgEdges()).thenReturn(List.of(user(1, 2L), user(2, 3L), user(3, null)));
+		return new RequestEscalationJob(mapper, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+				new OrgHierarchyCache(userMapper, 600, ""), new ExpenseRequestCache(10, new SimpleMeterRegistry()),
+				new ShardRouter(false, ""), notificationOutbox, SLA_DAYS, batchSize, 10);
+	}
+
+	private static User user(long id, Long managerId) {
+		User u = new User();
+		u.setId(id);
+		u.setManagerId(managerId);
+		return u;
+	}
+
+	private static ExpenseRequest submitted(long id, long approverId) {
+		ExpenseRequest r = new ExpenseRequest();
+		r.setId(id);
+		r.setApplicantId(1L);
+		r.setCurrentApproverId(approverId);
+		r.setStatus("SUBMITTED");
+		r.setVersion(4L);
+		return r;
+	}
+
+	@Test
+	void run_searchesSubmissionsOlderThanSlaDays() {
+
+		//目的: 実行時刻から sla-days を引いた時刻を期限として候補を検索すること
+
+		when(mapper.selectOverdueSubmissions(any(), any(), anyInt())).thenReturn(List.of());
+
+		LocalDateTime before = LocalDateTime.now().minusDays(SLA_DAYS);
+		job(100).run();
+		LocalDateTime after = LocalDateTime.now().minusDays(SLA_DAYS);
+
+		ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+		verify(mapper).selectOverdueSubmissions(cutoff.capture(), any(), eq(100));
+		assertThat(cutoff.getValue()).isBetween(before, after);
+	}
+
+	@Test
+	void escalate_withManager_forwardsAndNotifiesAsSystem() {
+
+		//目的: 承認者に上長がいれば上長へ付け替え、ESCALATE の履歴と通知を操作者なし（システム）で残すこと
+
+		assertThat(job(100).escalate(submittedWithUpdate(10L, 2L, 3L))).isEqualTo(RequestEscalationJob.Outcome.ESCALATED);
+
+		verify(mapper).escalateRequest(10L, 2L, 3L, 4L);
+		verify(mapper).insertExpenseRequestAction(eq(10L), isNull(), eq("ESCALATE"), eq("SUBMITTED"), eq("SUBMITTED"), contains("上長へ回付"));
+		verify(notificationOutbox).enqueue(eq(3L), eq(10L), isNull(), eq(NotificationOutbox.ESCALATED));
+	}
+
+	@Test
+	void escalate_withoutManager_flagsInPlaceWithoutNotification() {
+
+		//目的: 承認者に上長がいなければ承認者はそのままで警告の履歴だけを残し、通知は積まないこと
+
+		assertThat(job(100).escalate(submittedWithUpdate(11L, 3L, 3L))).isEqualTo(RequestEscalationJob.Outcome.FLAGGED);
+
+		verify(mapper).escalateRequest(11L, 3L, 3L, 4L);
+		verify(mapper).insertExpenseRequestAction(eq(11L), isNull(), eq("ESCALATE"), eq("SUBMITTED"), eq("SUBMITTED"), contains("回付できる上長がいません"));
+		verifyNoInteractions(notificationOutbox);
+	}
+
+	@Test
+	void run_excludesRequestsThatChangedSinceRead_inLaterBatches() {
+
+		//目的: 読んだ後に承認などで変わって更新できなかった申請は、同じ実行の次のバッチの検索から除外すること
+
+		List<Set<Long>> excluded = new ArrayList<>(); // 検索ごとの除外リスト（呼び出し時点のコピー）
+		when(mapper.selectOverdueSubmissions(any(), any(), eq(1))).thenAnswer(inv -> {
+			excluded.add(new HashSet<>(inv.<Collection<Long>> getArgument(1)));
+			return switch (excluded.size()) {
+				case 1 -> List.of(submitted(20L, 2L));
+				case 2 -> List.of(submitted(21L, 2L));
+				default -> List.of();
+			};
+		});
+		when(mapper.escalateRequest(eq(20L), any(), any(), any())).thenReturn(0); // 版が進んでいて更新できない
+		when(mapper.escalateRequest(eq(21L), any(), any(), any())).thenReturn(1);
+
+		job(1).run();
+
+		assertThat(excluded).containsExactly(Set.of(), Set.of(20L), Set.of(20L));
+		verify(mapper, never()).insertExpenseRequestAction(eq(20L), any(), any(), any(), any(), any());
+		verify(notificationOutbox).enqueue(eq(3L), eq(21L), isNull(), eq(NotificationOutbox.ESCALATED));
+	}
+
+	// 版番号付きUPDATEが1件更新する提出済み申請を作る
+	private ExpenseRequest submittedWithUpdate(long id, long approverId, long expectedTarget) {
+		when(mapper.escalateRequest(id, approverId, expectedTarget, 4L)).thenReturn(1);
+		return submitted(id, approverId);
+	}
+}
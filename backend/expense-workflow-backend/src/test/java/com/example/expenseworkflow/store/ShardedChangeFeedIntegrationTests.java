@@ -0,0 +1,94 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.expenseworkflow.controller.dto.ChangeEventResponse;
+
+// docker-compose.sharded.yml のMySQL 3台に対して、シャードをまたぐ変更フィードを通しで確かめる（-Dit.sharded=true のときだけ実行）
+@SpringBootTest
+@ActiveProfiles({ "local", "sharded" })
+@EnabledIfSystemProperty(named = "it.sharded", matches = "true")
+class ShardedChangeFeedIntegrationTests {
+
+	@Autowired
+	private RequestStore requestStore;
+
+	@Autowired
+	private ShardRouter shardRouter;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate; // ShardContext の向き先のシャードへつながる
+
+	@Test
+	void changesSince_pagesThroughLaggingShardWithoutSkipping() {
+
+		//目的: 採番の進んだシャードと遅れたシャードに遷移があっても、小さいページで読み進めて全ての遷移を1回ずつ受け取れること
+
+		ChangeCursor start = drain(ChangeCursor.parse("0", shardRouter.shardCount()), 500, new ArrayList<>()); // 既存の遷移は読み飛ばす
+
+		LocalDateTime actedAt = LocalDateTime.now().minusMinutes(1); // settle-seconds より前
+		List<Long> inserted = new ArrayList<>();
+		inserted.addAll(insertActions(0, 20, actedAt)); // シャード0の採番を先に進める
+		inserted.addAll(insertActions(1, 2, actedAt.plusSeconds(1))); // シャード1は採番が遅れている
+
+		List<Long> seen = new ArrayList<>();
+		drain(start, 3, seen);
+
+		assertThat(seen).containsExactlyInAnyOrderElementsOf(inserted);
+	}
+
+	// 遷移が無くなるまで limit 件ずつ読み、受け取った操作履歴IDを seen に足して最後のカーソルを返す
+	private ChangeCursor drain(ChangeCursor cursor, int limit, List<Long> seen) {
+		while (true) {
+			ChangePage page = requestStore.changesSince(ChangeCursor.parse(cursor.toString(), shardRouter.shardCount()),
+					0, limit); // X-Next-Cursor の文字列を経由して受け渡す
+			page.items().stream().map(ChangeEventResponse::getActionId).forEach(seen::add);
+			cursor = page.next();
+			if (page.items().size() < limit) {
+				return cursor;
+			}
+		}
+	}
+
+	// shard に申請を1件作り、その操作履歴を count 件書き込んで、採番された操作履歴IDを返す
+	private List<Long> insertActions(int shard, int count, LocalDateTime actedAt) {
+		return shardRouter.onShard(shard, () -> {
+			long requestId = insert("INSERT INTO expense_requests (applicant_id, title, amount, status) VALUES (?, 'sharded-feed', 1000, 'SUBMITTED')",
+					(long) shard);
+			List<Long> ids = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				ids.add(insert("INSERT INTO expense_request_actions (request_id, actor_id, action, from_status, to_status, created_at)"
+						+ " VALUES (?, 1, 'SUBMIT', 'DRAFT', 'SUBMITTED', ?)", requestId, Timestamp.valueOf(actedAt)));
+			}
+			return ids;
+		});
+	}
+
+	private long insert(String sql, Object... args) {
+		KeyHolder keys = new GeneratedKeyHolder();
+		jdbcTemplate.update(con -> {
+			PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			for (int i = 0; i < args.length; i++) {
+				ps.setObject(i + 1, args[i]);
+			}
+			return ps;
+		}, keys);
+		return keys.getKey().longValue();
+	}
+}
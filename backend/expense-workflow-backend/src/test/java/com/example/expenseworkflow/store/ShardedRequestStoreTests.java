@@ -0,0 +1,115 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.expenseworkflow.controller.dto.ChangeEventResponse;
+import com.example.expenseworkflow.controller.dto.InboxItemResponse;
+import com.example.expenseworkflow.domain.ExpenseRequest;
+import com.example.expenseworkflow.mapper.ExpenseRequestMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ShardedRequestStoreTests {
+
+	private final MyBatisRequestStore delegate = mock(MyBatisRequestStore.class);
+	private final ExpenseRequestMapper mapper = mock(ExpenseRequestMapper.class);
+	private final ShardedRequestStore store = new ShardedRequestStore(delegate,
+			new ShardRouter(true, "jdbc:a,jdbc:b,jdbc:c"), mapper, new ExpenseRequestCache(100, new SimpleMeterRegistry()));
+
+	@Test
+	void submit_runsOnApplicantShard() {
+
+		//目的: 申請者の操作は applicant_id mod シャード数 のシャードだけで実行されること
+
+		AtomicReference<Integer> shard = new AtomicReference<>();
+		when(delegate.submit(eq(7L), eq(70L), any())).thenAnswer(inv -> {
+			shard.set(ShardContext.current());
+			return true;
+		});
+
+		assertThat(store.submit(7L, 70L, null)).isTrue();
+		assertThat(shard.get()).isEqualTo(1); // 7 mod 3
+		assertThat(ShardContext.current()).isNull(); // 呼び出し後は元に戻る
+	}
+
+	@Test
+	void inbox_gathersAllShardsInIdOrder() {
+
+		//目的: Inbox は全シャードの結果をID順にまとめて返すこと
+
+		when(delegate.inbox(2L)).thenAnswer(inv -> switch (ShardContext.current()) {
+			case 0 -> List.of(item(3), item(9));
+			case 1 -> List.of(item(1));
+			default -> List.of(item(5));
+		});
+
+		assertThat(store.inbox(2L)).extracting(InboxItemResponse::getId).containsExactly(1L, 3L, 5L, 9L);
+	}
+
+	@Test
+	void approve_locatesRequestShardByPrimaryKey() {
+
+		//目的: 申請IDだけで決まる操作は、主キー検索で見つかったシャードで実行されること（どこにも無ければ false）
+
+		ExpenseRequest found = new ExpenseRequest();
+		found.setId(42L);
+		when(mapper.selectExpenseRequestById(42L)).thenAnswer(inv -> ShardContext.current() == 2 ? found : null);
+		AtomicReference<Integer> shard = new AtomicReference<>();
+		when(delegate.approve(eq(2L), eq(42L), any())).thenAnswer(inv -> {
+			shard.set(ShardContext.current());
+			return true;
+		});
+
+		assertThat(store.approve(2L, 42L, null)).isTrue();
+		assertThat(shard.get()).isEqualTo(2);
+		assertThat(store.approve(2L, 43L, null)).isFalse();
+		verify(delegate, never()).approve(eq(2L), eq(43L), any());
+	}
+
+	@Test
+	void changesSince_advancesEachShardCursorSeparately() {
+
+		//目的: 採番の遅れているシャードの遷移も、他のシャードのIDに追い越されずに次回以降のページで返ること
+
+		LocalDateTime t0 = LocalDateTime.of(2026, 4, 1, 9, 0);
+		// シャード0は採番が進んでいる（1000番台）、シャード1は遅れている（10番台）、シャード2は遷移なし
+		when(delegate.changesSince(any(), anyLong(), anyInt())).thenAnswer(inv -> {
+			long since = inv.<ChangeCursor> getArgument(0).position(0);
+			List<ChangeEventResponse> rows = switch (ShardContext.current()) {
+				case 0 -> List.of(change(1000, t0), change(1003, t0.plusMinutes(2)));
+				case 1 -> List.of(change(10, t0.plusMinutes(1)), change(13, t0.plusMinutes(3)));
+				default -> List.<ChangeEventResponse> of();
+			};
+			return new ChangePage(rows.stream().filter(c -> c.getActionId() > since).limit(inv.<Integer> getArgument(2)).toList(), null);
+		});
+
+		ChangePage first = store.changesSince(ChangeCursor.parse("0", 3), 5, 3);
+		assertThat(first.items()).extracting(ChangeEventResponse::getActionId).containsExactly(1000L, 10L, 1003L); // 操作日時の順
+		assertThat(first.next()).hasToString("1003,10,0");
+
+		ChangePage second = store.changesSince(ChangeCursor.parse(first.next().toString(), 3), 5, 3);
+		assertThat(second.items()).extracting(ChangeEventResponse::getActionId).containsExactly(13L); // 1003 より小さいIDでも取りこぼさない
+		assertThat(second.next()).hasToString("1003,13,0");
+
+		assertThatThrownBy(() -> ChangeCursor.parse("1,2", 3)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static ChangeEventResponse change(long actionId, LocalDateTime actedAt) {
+		ChangeEventResponse change = new ChangeEventResponse();
+		change.setActionId(actionId);
+		change.setActedAt(actedAt);
+		return change;
+	}
+
+	private static InboxItemResponse item(long id) {
+		return new InboxItemResponse(id, "t" + id, 1000, "SUBMITTED");
+	}
+}
@@ -0,0 +1,76 @@
+package com.example.expenseworkflow.store;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SingleFlightTests {
+
+	@Test
+	void execute_concurrentSameKey_runsLoaderOnce() throws Exception {
+
+		//目的: 同じキーの同時呼び出しは1回だけ実処理を走らせ、全員が同じ結果を受け取ること
+
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		SingleFlight singleFlight = new SingleFlight(registry);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> leader = pool.submit(() -> singleFlight.execute("inbox", 1L, () -> {
+				loads.incrementAndGet();
+				await(release); // 先行クエリが実行中の状態を作る
+				return "result";
+			}));
+			while (loads.get() == 0) { // 先行クエリの開始を待つ
+				Thread.onSpinWait();
+			}
+			Future<String> follower = pool.submit(() -> singleFlight.execute("inbox", 1L, () -> {
+				loads.incrementAndGet();
+				return "other";
+			}));
+			while (registry.find("expense.singleflight.calls").tag("result", "collapsed").counter() == null) { // 相乗りの開始を待つ
+				Thread.onSpinWait();
+			}
+			release.countDown();
+
+			assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+			assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+			assertThat(loads.get()).isEqualTo(1);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void execute_afterCompletion_runsLoaderAgain() {
+
+		//目的: 完了済みの結果は保持せず（キャッシュではない）、次の呼び出しで再度クエリすること
+
+		SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+		AtomicInteger loads = new AtomicInteger();
+
+		singleFlight.execute("inbox", 1L, loads::incrementAndGet);
+		singleFlight.execute("inbox", 1L, loads::incrementAndGet);
+
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -22,10 +22,15 @@ type InboxDetail = {
   amount: number;
   status: StatusCode;
   note?: string;
+  version?: number;
+  duplicateOfRequestId?: number | null;
 };
 
 function toErrorMsg(e: unknown): string {
   const axiosError = e as AxiosError;
+  if (axiosError?.response?.status === 412) {
+    return "他の承認者により更新されています。再読み込みしてください";
+  }
   return axiosError?.response?.status
     ? `HTTP ${axiosError.response.status}`
     : String(e);
@@ -61,9 +66,18 @@ function InboxDetailContent() {
     enabled: Boolean(requestId),
   });
 
+  const versionHeaders =
+    data?.version !== undefined
+      ? { headers: { "If-Match": `"${data.version}"` } }
+      : undefined;
+
   const approveMutation = useMutation({
     mutationFn: async () => {
-      await apiClient.post(`/requests/${requestId}/approve`);
+      await apiClient.post(
+        `/requests/${requestId}/approve`,
+        undefined,
+        versionHeaders,
+      );
     },
     onSuccess: async () => {
       await queryClient.invalidateQueries({ queryKey: ["inbox"] });
@@ -84,9 +98,11 @@ function InboxDetailContent() {
 
   const returnMutation = useMutation({
     mutationFn: async () => {
-      await apiClient.post(`/requests/${requestId}/return`, {
-        comment: returnComment,
-      });
+      await apiClient.post(
+        `/requests/${requestId}/return`,
+        { comment: returnComment },
+        versionHeaders,
+      );
     },
     onSuccess: async () => {
       await queryClient.invalidateQueries({ queryKey: ["inbox"] });
@@ -107,9 +123,11 @@ function InboxDetailContent() {
 
   const rejectMutation = useMutation({
     mutationFn: async () => {
-      await apiClient.post(`/requests/${requestId}/reject`, {
-        comment: rejectComment,
-      });
+      await apiClient.post(
+        `/requests/${requestId}/reject`,
+        { comment: rejectComment },
+        versionHeaders,
+      );
     },
     onSuccess: async () => {
       await queryClient.invalidateQueries({ queryKey: ["inbox"] });
@@ -178,6 +196,15 @@ function InboxDetailContent() {
               <span className={styles.fieldLabel}>備考</span>
               <span className={styles.fieldValue}>{data.note || "―"}</span>
             </div>
+
+            {data.duplicateOfRequestId != null && (
+              <div className={styles.field}>
+                <span className={styles.fieldLabel}>重複の疑い</span>
+                <span className={styles.duplicateWarning}>
+                  {toRequestLabel(data.duplicateOfRequestId)} と同じ内容の申請です
+                </span>
+              </div>
+            )}
           </div>
           <div className={styles.actions}>
             <button
@@ -19,10 +19,14 @@ type RequestDetail = {
   status: StatusCode;
   note?: string;
   lastReturnComment?: string;
+  version?: number;
 };
 
 function toErrorMsg(e: unknown): string {
   const axiosError = e as AxiosError;
+  if (axiosError?.response?.status === 412) {
+    return "他の画面で更新されています。再読み込みしてください";
+  }
   return axiosError?.response?.status
     ? `HTTP ${axiosError.response.status}`
     : String(e);
@@ -69,11 +73,16 @@ function RequestEditContent() {
       const n = isEditStarted ? note : (data?.note ?? "");
       const numericAmount = Number(a);
       const safeAmount = Number.isFinite(numericAmount) ? numericAmount : 0;
-      await apiClient.patch(`/requests/${requestId}`, {
-        title: t,
-        amount: safeAmount,
-        note: n,
-      });
+      await apiClient.patch(
+        `/requests/${requestId}`,
+        { title: t, amount: safeAmount, note: n },
+        {
+          headers:
+            data?.version !== undefined
+              ? { "If-Match": `"${data.version}"` }
+              : undefined,
+        },
+      );
     },
     onSuccess: async () => {
       await queryClient.invalidateQueries({ queryKey: ["request", requestId] });
@@ -38,7 +38,9 @@ function RequestsListContent() {
   const { data, isLoading, error } = useQuery<RequestSummary[], AxiosError>({
     queryKey: ["requests"],
     queryFn: async () => {
-      const res = await apiClient.get<RequestSummary[]>("/requests");
+      const res = await apiClient.get<RequestSummary[]>("/requests", {
+        params: { fields: "title,amount,status,lastReturnComment" },
+      });
       return res.data;
     },
     refetchOnWindowFocus: false,
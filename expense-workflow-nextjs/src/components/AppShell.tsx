@@ -6,11 +6,12 @@ import Link from "next/link";
 import { useMutation, useQueryClient } from "@tanstack/react-query";
 import { useSetAtom } from "jotai";
 import { toastAtom } from "../lib/atoms";
-import { apiClient, setSlowResponseHandler } from "../lib/apiClient";
+import { apiClient, setSlowResponseHandler, setStaleResponseHandler } from "../lib/apiClient";
 import { useMeQuery } from "../hooks/useMeQuery";
 import { AxiosError } from "axios";
 import ToastHost from "./ToastHost";
 import DbWakingOverlay from "./DbWakingOverlay";
+import StaleDataBanner from "./StaleDataBanner";
 import styles from "./AppShell.module.css";
 
 function NavItem({ href, label }: { href: string; label: string }) {
@@ -31,10 +32,23 @@ export default function AppShell({ children }: { children: React.ReactNode }) {
   useEffect(() => {
     setSlowResponseHandler(setIsDbWaking);
   }, []);
+  const [isStale, setIsStale] = useState(false);
+  useEffect(() => {
+    setStaleResponseHandler(setIsStale);
+  }, []);
 
   const router = useRouter();
   const queryClient = useQueryClient();
   const setToast = useSetAtom(toastAtom);
+
+  useEffect(() => {
+    if (!isStale) return;
+    const timer = setInterval(() => {
+      void queryClient.invalidateQueries();
+    }, 10000);
+    return () => clearInterval(timer);
+  }, [isStale, queryClient]);
+
   const {
     data: meData,
     isLoading: isMeLoading,
@@ -82,6 +96,7 @@ export default function AppShell({ children }: { children: React.ReactNode }) {
   return (
     <div className={styles.app}>
       <DbWakingOverlay isVisible={isDbWaking} />
+      <StaleDataBanner isVisible={isStale} />
       <ToastHost />
       <h1 className={styles.site_title}>Expense Workflow App</h1>
       <nav className={styles.nav}>
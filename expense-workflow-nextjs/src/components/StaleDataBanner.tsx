@@ -0,0 +1,29 @@
+"use client";
+
+type Props = {
+  isVisible: boolean;
+};
+
+const StaleDataBanner = ({ isVisible }: Props) => {
+  if (!isVisible) return null;
+
+  return (
+    <div
+      role="status"
+      style={{
+        position: "sticky",
+        top: 0,
+        backgroundColor: "#fff4ce",
+        color: "#5c4400",
+        padding: "8px 16px",
+        textAlign: "center",
+        fontSize: "0.9rem",
+        zIndex: 9998,
+      }}
+    >
+      ⏳ データベースを起動中のため、前回取得した内容を表示しています（起動後に自動で最新に更新されます）
+    </div>
+  );
+};
+
+export default StaleDataBanner;
@@ -11,6 +11,17 @@ export const setSlowResponseHandler = (handler: (isSlow: boolean) => void) => {
   onSlowResponse = handler;
 };
 
+let onStaleResponse: ((isStale: boolean) => void) | null = null;
+
+export const setStaleResponseHandler = (handler: (isStale: boolean) => void) => {
+  onStaleResponse = handler;
+};
+
+const traceSampleRatio = Number(process.env.NEXT_PUBLIC_TRACE_SAMPLE_RATIO ?? 0);
+
+const randomHex = (bytes: number) =>
+  Array.from(crypto.getRandomValues(new Uint8Array(bytes)), (b) => b.toString(16).padStart(2, "0")).join("");
+
 export const apiClient: AxiosInstance = axios.create({
   baseURL: process.env.NEXT_PUBLIC_API_BASE_URL,
   timeout: 65000,
@@ -18,6 +29,13 @@ export const apiClient: AxiosInstance = axios.create({
 });
 
 apiClient.interceptors.request.use((config) => {
+  if (config.method === "post" && !config.headers["Idempotency-Key"]) {
+    config.headers["Idempotency-Key"] = crypto.randomUUID();
+  }
+  if (traceSampleRatio > 0 && !config.headers["traceparent"]) {
+    const sampled = Math.random() < traceSampleRatio ? "01" : "00";
+    config.headers["traceparent"] = `00-${randomHex(16)}-${randomHex(8)}-${sampled}`;
+  }
   const retryConfig = config as RetryConfig;
   const timer = setTimeout(() => {
     onSlowResponse?.(true);
@@ -31,6 +49,7 @@ apiClient.interceptors.response.use(
     const retryConfig = response.config as RetryConfig;
     clearTimeout(retryConfig.__slowTimer);
     onSlowResponse?.(false);
+    onStaleResponse?.(response.headers["x-served-from"] === "snapshot");
     return response;
   },
   async (error) => {
@@ -0,0 +1,51 @@
+/*
+  dist/ の配信ファイルごとに Brotli（.br）と gzip（.gz）の圧縮版を事前に作る // バックエンドが Accept-Encoding に応じてそのまま返す（リクエストごとに圧縮しない）
+  使い方: npm run build:backend（vite build --mode backend の後に実行される）
+*/
+
+import { readdir, readFile, stat, writeFile } from "node:fs/promises";
+import { join, extname } from "node:path";
+import { brotliCompressSync, constants, gzipSync } from "node:zlib";
+
+const DIST = new URL("../dist/", import.meta.url).pathname;
+const EXTENSIONS = new Set([".html", ".js", ".mjs", ".css", ".svg", ".json", ".txt", ".map", ".webmanifest"]); // 画像（png/jpg）やフォントは圧縮済みなので対象外
+const MIN_BYTES = 1024; // 小さいファイルは圧縮しても得にならない
+
+// dist/ 配下のファイルを再帰的に列挙する
+const walk = async (dir) => {
+  const files = [];
+  for (const entry of await readdir(dir, { withFileTypes: true })) {
+    const path = join(dir, entry.name);
+    if (entry.isDirectory()) {
+      files.push(...(await walk(path)));
+    } else {
+      files.push(path);
+    }
+  }
+  return files;
+};
+
+let written = 0;
+for (const file of await walk(DIST)) {
+  if (!EXTENSIONS.has(extname(file)) || (await stat(file)).size < MIN_BYTES) {
+    continue;
+  }
+  const source = await readFile(file);
+  const br = brotliCompressSync(source, {
+    params: {
+      [constants.BROTLI_PARAM_QUALITY]: constants.BROTLI_MAX_QUALITY, // ビルド時に1回だけなので最高圧縮
+      [constants.BROTLI_PARAM_SIZE_HINT]: source.length,
+    },
+  });
+  const gz = gzipSync(source, { level: 9 });
+  // 元より小さくならない圧縮版は置かない（バックエンドは元のファイルを返す）
+  if (br.length < source.length) {
+    await writeFile(`${file}.br`, br);
+    written++;
+  }
+  if (gz.length < source.length) {
+    await writeFile(`${file}.gz`, gz);
+    written++;
+  }
+}
+console.log(`precompress: wrote ${written} files in ${DIST}`);
@@ -26,8 +26,9 @@ import RequestHistoryPage from "./pages/RequestHistoryPage";
 import InboxHistoryPage from "./pages/InboxHistoryPage";
 import RequestEditPage from "./pages/RequestEditPage";
 import ToastHost from "./components/ToastHost";
-import { setSlowResponseHandler } from "./lib/apiClient";
+import { setSlowResponseHandler, setStaleResponseHandler } from "./lib/apiClient";
 import DbWakingOverlay from "./components/DbWakingOverlay";
+import StaleDataBanner from "./components/StaleDataBanner";
 
 import styles from "./App.module.css";
 
@@ -152,11 +153,24 @@ function AppShell() {
   useEffect(() => {
     setSlowResponseHandler(setIsDbWaking);
   }, []);
+  const [isStale, setIsStale] = useState(false);
+  useEffect(() => {
+    setStaleResponseHandler(setIsStale);
+  }, []);
 
   const navigate = useNavigate();
   const queryClient = useQueryClient();
   const setToast = useSetAtom(toastAtom);
 
+  // 前回の内容を表示している間は、DBが起きたら最新に置き換わるよう定期的に取り直す
+  useEffect(() => {
+    if (!isStale) return;
+    const timer = setInterval(() => {
+      void queryClient.invalidateQueries();
+    }, 10000);
+    return () => clearInterval(timer);
+  }, [isStale, queryClient]);
+
   const {
     data: meData,
     isLoading: isMeLoading,
@@ -205,6 +219,7 @@ function AppShell() {
   return (
     <>
       <DbWakingOverlay isVisible={isDbWaking} />
+      <StaleDataBanner isVisible={isStale} />
       <h1 className={styles.site_title}>Expense Workflow App</h1>
       <div className={styles.app}>
         <ToastHost />
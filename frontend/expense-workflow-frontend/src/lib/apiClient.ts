@@ -11,14 +11,38 @@ export const setSlowResponseHandler = (handler: (isSlow: boolean) => void) => {
   onSlowResponse = handler;
 };
 
+let onStaleResponse: ((isStale: boolean) => void) | null = null;
+
+// DBのスリープ中にバックエンドが前回の内容（X-Served-From: snapshot）を返したかを通知する
+export const setStaleResponseHandler = (handler: (isStale: boolean) => void) => {
+  onStaleResponse = handler;
+};
+
+// フロントからトレースを始める割合（0〜1）。既定の0では traceparent を付けず、サーバが sample-ratio で記録するかを決める
+// （付けるとGETにもCORSプリフライトが走るので、調査のときだけ VITE_TRACE_SAMPLE_RATIO を設定する）
+const traceSampleRatio = Number(import.meta.env.VITE_TRACE_SAMPLE_RATIO ?? 0);
+
+// W3C traceparent 用のランダムな16進文字列（bytes バイト分）
+const randomHex = (bytes: number) =>
+  Array.from(crypto.getRandomValues(new Uint8Array(bytes)), (b) => b.toString(16).padStart(2, "0")).join("");
+
 export const apiClient: AxiosInstance = axios.create({
-  baseURL: import.meta.env.VITE_API_BASE_URL,
+  baseURL: import.meta.env.VITE_API_BASE_URL ?? "/api", // 未設定（npm run build:backend）ならバックエンドと同じオリジンの /api
   timeout: 65000, // HikariCP 60秒待機 + 余裕5秒
   withCredentials: true,
 });
 
 // リクエスト送信時：3秒後もレスポンスがなければDB起動中とみなす
 apiClient.interceptors.request.use((config) => {
+  // POSTには操作ごとのIdempotency-Keyを付ける（500リトライ時は同じconfigを再送するのでキーも同じになり、二重作成・二重承認を防ぐ）
+  if (config.method === "post" && !config.headers["Idempotency-Key"]) {
+    config.headers["Idempotency-Key"] = crypto.randomUUID();
+  }
+  // 有効なら操作ごとにトレースを始める（リトライは同じconfigなので同じトレースにまとまる。記録するかは割合で決めて sampled フラグで伝える）
+  if (traceSampleRatio > 0 && !config.headers["traceparent"]) {
+    const sampled = Math.random() < traceSampleRatio ? "01" : "00";
+    config.headers["traceparent"] = `00-${randomHex(16)}-${randomHex(8)}-${sampled}`;
+  }
   const timer = setTimeout(() => {
     onSlowResponse?.(true);
   }, 3000);
@@ -31,6 +55,7 @@ apiClient.interceptors.response.use(
   (response) => {
     clearTimeout((response.config as any).__slowTimer);
     onSlowResponse?.(false);
+    onStaleResponse?.(response.headers["x-served-from"] === "snapshot");
     return response;
   },
   async (error) => {
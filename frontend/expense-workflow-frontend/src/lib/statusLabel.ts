@@ -37,6 +37,7 @@ const ACTION_LABEL_MAP = {
   RETURN: "差戻し",
   WITHDRAW: "取り下げ",
   REJECT: "却下",
+  ESCALATE: "エスカレーション",
 };
 
 export function toActionLabel(action: unknown): string {
@@ -20,11 +20,16 @@ type InboxDetail = {
   amount: number;
   status: StatusCode;
   note?: string;
+  version?: number;
+  duplicateOfRequestId?: number | null;  // 提出時に検出した重複の疑いがある先行申請ID
 };
 
 // onError の共通処理をまとめたヘルパー
 function toErrorMsg(e: unknown): string {
   const axiosError = e as AxiosError;
+  if (axiosError?.response?.status === 412) {
+    return "他の承認者により更新されています。再読み込みしてください";
+  }
   return axiosError?.response?.status
     ? `HTTP ${axiosError.response.status}`
     : String(e);
@@ -61,9 +66,19 @@ export default function InboxDetailPage() {
     enabled: Boolean(requestId),
   });
 
+  // 表示中の版番号を If-Match で送り、他の操作に先を越されていれば412で止める
+  const versionHeaders =
+    data?.version !== undefined
+      ? { headers: { "If-Match": `"${data.version}"` } }
+      : undefined;
+
   const approveMutation = useMutation({
     mutationFn: async () => {
-      await apiClient.post(`/requests/${requestId}/approve`);
+      await apiClient.post(
+        `/requests/${requestId}/approve`,
+        undefined,
+        versionHeaders,
+      );
     },
     onSuccess: async () => {
       await queryClient.invalidateQueries({ queryKey: ["inbox"] });
@@ -84,9 +99,11 @@ export default function InboxDetailPage() {
 
   const returnMutation = useMutation({
     mutationFn: async () => {
-      await apiClient.post(`/requests/${requestId}/return`, {
-        comment: returnComment,
-      });
+      await apiClient.post(
+        `/requests/${requestId}/return`,
+        { comment: returnComment },
+        versionHeaders,
+      );
     },
     onSuccess: async () => {
       await queryClient.invalidateQueries({ queryKey: ["inbox"] });
@@ -108,9 +125,11 @@ export default function InboxDetailPage() {
   // 却下のミューテーションも同様に定義する（API呼び出しと成功・失敗時の処理をまとめる）
   const rejectMutation = useMutation({
     mutationFn: async () => {
-      await apiClient.post(`/requests/${requestId}/reject`, {
-        comment: rejectComment,
-      });
+      await apiClient.post(
+        `/requests/${requestId}/reject`,
+        { comment: rejectComment },
+        versionHeaders,
+      );
     },
     onSuccess: async () => {
       await queryClient.invalidateQueries({ queryKey: ["inbox"] });
@@ -190,6 +209,16 @@ export default function InboxDetailPage() {
               <span className={styles.fieldLabel}>備考</span>
               <span className={styles.fieldValue}>{data.note || "―"}</span>
             </div>
+
+            {/* 二重申請の疑い（同じ申請者・金額・経費発生日・件名の申請が提出済み） */}
+            {data.duplicateOfRequestId != null && (
+              <div className={styles.field}>
+                <span className={styles.fieldLabel}>重複の疑い</span>
+                <span className={styles.duplicateWarning}>
+                  {toRequestLabel(data.duplicateOfRequestId)} と同じ内容の申請です
+                </span>
+              </div>
+            )}
           </div>
 
           {/* 承認ボタン */}
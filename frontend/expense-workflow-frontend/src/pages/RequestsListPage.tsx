@@ -38,7 +38,10 @@ export default function RequestsListPage() {
   const { data, isLoading, error } = useQuery<RequestSummary[], AxiosError>({
     queryKey: ["requests"],
     queryFn: async () => {
-      const res = await apiClient.get<RequestSummary[]>("/requests");
+      // 一覧で表示する列だけを要求する（note は一覧に出さないので読まない）
+      const res = await apiClient.get<RequestSummary[]>("/requests", {
+        params: { fields: "title,amount,status,lastReturnComment" },
+      });
       return res.data;
     },
     refetchOnWindowFocus: false,